@@ -0,0 +1,13 @@
+package com.github.ltsopensource.biz.logger;
+
+/**
+ * 延迟批量刷盘日志, 内存队列满了之后的处理策略
+ */
+public enum JobLogOverflowPolicy {
+    // 阻塞写日志的线程, 超时之后抛异常
+    BLOCK,
+    // 丢弃最老的日志
+    DROP_OLDEST,
+    // 写到本地ltsdb, 空闲时再刷盘
+    SPILL
+}
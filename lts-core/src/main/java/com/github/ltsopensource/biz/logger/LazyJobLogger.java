@@ -5,39 +5,73 @@ import com.github.ltsopensource.biz.logger.domain.JobLogPo;
 import com.github.ltsopensource.biz.logger.domain.JobLoggerRequest;
 import com.github.ltsopensource.core.AppContext;
 import com.github.ltsopensource.core.cluster.Config;
+import com.github.ltsopensource.core.commons.concurrent.RingBuffer;
 import com.github.ltsopensource.core.commons.utils.CollectionUtils;
+import com.github.ltsopensource.core.commons.utils.StringUtils;
 import com.github.ltsopensource.core.constant.Constants;
 import com.github.ltsopensource.core.constant.ExtConfig;
-import com.github.ltsopensource.core.factory.NamedThreadFactory;
+import com.github.ltsopensource.core.domain.Pair;
+import com.github.ltsopensource.core.failstore.FailStore;
+import com.github.ltsopensource.core.failstore.FailStoreException;
+import com.github.ltsopensource.core.failstore.FailStorePathBuilder;
+import com.github.ltsopensource.core.failstore.ltsdb.LtsdbFailStoreFactory;
 import com.github.ltsopensource.core.logger.Logger;
 import com.github.ltsopensource.core.logger.LoggerFactory;
 import com.github.ltsopensource.core.support.NodeShutdownHook;
+import com.github.ltsopensource.core.support.SystemClock;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.*;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * 内部根据用户参数决定是否采用延迟批量刷盘的策略,来提高吞吐量
  * 批量刷盘有两种情况:
  * 1. 内存的日志量超过了设置的阀值
  * 2. 每3S检查一次内存中是否有日志,如果有就那么刷盘
+ * 所有生产者(JobSender, JobBizLogProcessor, 各种checker)共用一个无锁有界环形队列, 多个刷盘线程并行合并成大批量写入,
+ * 队列满了之后按 {@link JobLogOverflowPolicy} 处理, 刷盘失败之后按指数退避重试, 最多等一个检查周期
  *
  * @author Robert HG (254963746@qq.com) on 10/2/15.
  */
 public class LazyJobLogger implements JobLogger {
 
-    private static final Logger LOGGER = LoggerFactory.getLogger(SmartJobLogger.class);
+    private static final Logger LOGGER = LoggerFactory.getLogger(LazyJobLogger.class);
+    // 刷盘失败之后第一次重试的等待时间
+    private static final long FLUSH_RETRY_MIN_MILLIS = 100;
     private JobLogger delegate;
-    // 无界Queue
-    private BlockingQueue<JobLogPo> memoryQueue = new LinkedBlockingQueue<JobLogPo>();
+    private RingBuffer<JobLogPo> memoryQueue;
     // 日志批量刷盘数量
     private int batchFlushSize;
-    private int overflowSize;
     // 内存中最大的日志量阀值
     private int maxMemoryLogSize;
-    private AtomicBoolean flushing = new AtomicBoolean(false);
+    private long flushPeriodMillis;
+    private JobLogOverflowPolicy overflowPolicy;
+    // BLOCK 策略下写日志的线程最多等待时间
+    private long overflowWaitMillis;
+
+    private Thread[] flushThreads;
+    private volatile boolean running = true;
+    // 超过阀值之后只唤醒一次刷盘线程
+    private AtomicBoolean flushSignal = new AtomicBoolean(false);
+
+    // SPILL 策略下的本地存储
+    private FailStore spillStore;
+    private ReentrantLock spillLock = new ReentrantLock();
+    private AtomicLong spillPendingNum = new AtomicLong(0);
+
+    // 统计
+    private AtomicLong droppedNum = new AtomicLong(0);
+    private AtomicLong spilledNum = new AtomicLong(0);
+    private AtomicLong flushNum = new AtomicLong(0);
+    private AtomicLong flushLogNum = new AtomicLong(0);
+    private AtomicLong flushCostMillis = new AtomicLong(0);
+    private AtomicLong maxFlushCostMillis = new AtomicLong(0);
 
     public LazyJobLogger(AppContext appContext, JobLogger delegate) {
         this.delegate = delegate;
@@ -45,76 +79,288 @@ public class LazyJobLogger implements JobLogger {
         Config config = appContext.getConfig();
         maxMemoryLogSize = config.getParameter(ExtConfig.LAZY_JOB_LOGGER_MEM_SIZE, 1000);
         int flushPeriod = config.getParameter(ExtConfig.LAZY_JOB_LOGGER_CHECK_PERIOD, 3);
+        flushPeriodMillis = TimeUnit.SECONDS.toMillis(flushPeriod);
         batchFlushSize = config.getParameter(ExtConfig.LAZY_JOB_LOGGER_BATCH_FLUSH_SIZE, 100);
-        overflowSize = config.getParameter(ExtConfig.LAZY_JOB_LOGGER_OVERFLOW_SIZE, 10000);
+        int overflowSize = config.getParameter(ExtConfig.LAZY_JOB_LOGGER_OVERFLOW_SIZE, 10000);
+        overflowWaitMillis = config.getParameter(ExtConfig.LAZY_JOB_LOGGER_OVERFLOW_WAIT_MILLIS, Constants.DEFAULT_LAZY_JOB_LOGGER_OVERFLOW_WAIT_MILLIS);
+        overflowPolicy = getOverflowPolicy(config);
+        int flusherThreads = config.getParameter(ExtConfig.LAZY_JOB_LOGGER_FLUSHER_THREADS, Constants.DEFAULT_LAZY_JOB_LOGGER_FLUSHER_THREADS);
 
-        final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
-                new NamedThreadFactory("LazyJobLogger", true));
-        final ScheduledFuture<?> scheduledFuture = executor.scheduleWithFixedDelay(new Runnable() {
-            @Override
-            public void run() {
-                try {
-                    if (flushing.compareAndSet(false, true)) {
-                        checkAndFlush();
-                    }
-                } catch (Throwable t) {
-                    LOGGER.error("CheckAndFlush log error", t);
-                }
+        memoryQueue = new RingBuffer<JobLogPo>(overflowSize);
+
+        if (overflowPolicy == JobLogOverflowPolicy.SPILL) {
+            spillStore = new LtsdbFailStoreFactory().getFailStore(config, FailStorePathBuilder.getJobLoggerSpillPath(appContext));
+            try {
+                spillStore.open();
+            } catch (FailStoreException e) {
+                throw new JobLogException(e);
             }
-        }, flushPeriod, flushPeriod, TimeUnit.SECONDS);
+            // 上次没刷完的
+            spillPendingNum.set(1);
+        }
+
+        flushThreads = new Thread[Math.max(1, flusherThreads)];
+        for (int i = 0; i < flushThreads.length; i++) {
+            flushThreads[i] = new Thread(new FlushRunner(i == 0), "LazyJobLogger-Flusher-" + i);
+            flushThreads[i].setDaemon(true);
+            flushThreads[i].start();
+        }
 
         NodeShutdownHook.registerHook(appContext, this.getClass().getName(), new com.github.ltsopensource.core.commons.utils.Callable() {
             public void call() throws Exception {
-                scheduledFuture.cancel(true);
-                executor.shutdownNow();
+                stop();
             }
         });
     }
 
+    private JobLogOverflowPolicy getOverflowPolicy(Config config) {
+        String policy = config.getParameter(ExtConfig.LAZY_JOB_LOGGER_OVERFLOW_POLICY, JobLogOverflowPolicy.BLOCK.name());
+        try {
+            return JobLogOverflowPolicy.valueOf(policy.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            LOGGER.warn("Unknown {}={}, use {}", ExtConfig.LAZY_JOB_LOGGER_OVERFLOW_POLICY, policy, JobLogOverflowPolicy.BLOCK);
+            return JobLogOverflowPolicy.BLOCK;
+        }
+    }
+
     /**
-     * 检查内存中是否有日志,如果有就批量刷盘
+     * 停止, 把内存中剩下的日志刷盘
      */
-    private void checkAndFlush() {
-        try {
-            int nowSize = memoryQueue.size();
-            if (nowSize == 0) {
-                return;
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        for (Thread flushThread : flushThreads) {
+            LockSupport.unpark(flushThread);
+        }
+        for (Thread flushThread : flushThreads) {
+            try {
+                flushThread.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
             }
-            List<JobLogPo> batch = new ArrayList<JobLogPo>();
-            for (int i = 0; i < nowSize; i++) {
-                JobLogPo jobLogPo = memoryQueue.poll();
-                batch.add(jobLogPo);
+        }
+        if (spillStore != null) {
+            try {
+                spillStore.close();
+            } catch (FailStoreException e) {
+                LOGGER.error("Close spill store error", e);
+            }
+        }
+    }
+
+    private class FlushRunner implements Runnable {
+
+        // 只让一个线程处理溢出到本地的日志
+        private boolean drainSpill;
+
+        FlushRunner(boolean drainSpill) {
+            this.drainSpill = drainSpill;
+        }
 
-                if (batch.size() >= batchFlushSize) {
-                    flush(batch);
+        @Override
+        public void run() {
+            List<JobLogPo> batch = new ArrayList<JobLogPo>(batchFlushSize);
+            long nextFlushTime = SystemClock.now() + flushPeriodMillis;
+            // 连续失败次数和下次重试时间
+            int failedNum = 0;
+            long retryTime = 0;
+            while (running) {
+                long retryWait = retryTime - SystemClock.now();
+                if (retryWait > 0) {
+                    // 退避期间不管有没有超过阀值都不刷, 失败放回去的日志会让队列一直超过阀值
+                    LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(retryWait));
+                    continue;
+                }
+                if (!flushSignal.get() && memoryQueue.size() < maxMemoryLogSize) {
+                    long wait = nextFlushTime - SystemClock.now();
+                    if (wait > 0) {
+                        // 等到时间或者被唤醒之后重新检查
+                        LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(wait));
+                        continue;
+                    }
+                }
+                flushSignal.set(false);
+                boolean success;
+                try {
+                    success = drain(batch);
+                    if (success && drainSpill) {
+                        drainSpill();
+                    }
+                } catch (Throwable t) {
+                    LOGGER.error("Flush job log error", t);
+                    success = false;
                 }
+                if (success) {
+                    failedNum = 0;
+                } else {
+                    failedNum++;
+                    retryTime = SystemClock.now() + retryDelayMillis(failedNum);
+                }
+                nextFlushTime = SystemClock.now() + flushPeriodMillis;
             }
-            if (batch.size() > 0) {
-                flush(batch);
+            // 停止之后把剩下的刷掉
+            try {
+                drain(batch);
+            } catch (Throwable t) {
+                LOGGER.error("Flush job log error when stop", t);
             }
-
-        } finally {
-            flushing.compareAndSet(true, false);
         }
     }
 
-    private void checkOverflowSize() {
-        if (memoryQueue.size() > overflowSize) {
-            throw new JobLogException("Memory Log size is " +
-                    memoryQueue.size() + " , please check the JobLogger is available");
+    /**
+     * 100ms, 200ms, 400ms ... 最多 flushPeriodMillis
+     */
+    private long retryDelayMillis(int failedNum) {
+        long delay = FLUSH_RETRY_MIN_MILLIS << Math.min(failedNum - 1, 16);
+        return Math.max(FLUSH_RETRY_MIN_MILLIS, Math.min(delay, flushPeriodMillis));
+    }
+
+    /**
+     * 把内存中的日志分批刷盘
+     *
+     * @return 失败返回false
+     */
+    private boolean drain(List<JobLogPo> batch) {
+        while (memoryQueue.drainTo(batch, batchFlushSize) > 0) {
+            boolean success;
+            try {
+                success = flush(batch);
+            } finally {
+                batch.clear();
+            }
+            if (!success) {
+                // 失败了退避之后再刷, 避免一直重试
+                return false;
+            }
         }
+        return true;
     }
 
-    private void flush(List<JobLogPo> batch) {
-        boolean flushSuccess = false;
+    private boolean flush(List<JobLogPo> batch) {
+        long start = SystemClock.now();
         try {
             delegate.log(batch);
-            flushSuccess = true;
-        } finally {
-            if (!flushSuccess) {
-                memoryQueue.addAll(batch);
+        } catch (Throwable t) {
+            LOGGER.error("Flush job log error, size={}", batch.size(), t);
+            requeue(batch);
+            return false;
+        }
+        long cost = SystemClock.now() - start;
+        flushNum.incrementAndGet();
+        flushLogNum.addAndGet(batch.size());
+        flushCostMillis.addAndGet(cost);
+        long max;
+        while (cost > (max = maxFlushCostMillis.get())) {
+            if (maxFlushCostMillis.compareAndSet(max, cost)) {
+                break;
             }
-            batch.clear();
+        }
+        return true;
+    }
+
+    /**
+     * 刷盘失败放回去下次再刷, 刷盘线程自己不能阻塞
+     */
+    private void requeue(List<JobLogPo> batch) {
+        if (overflowPolicy == JobLogOverflowPolicy.SPILL) {
+            spill(batch);
+            return;
+        }
+        for (JobLogPo jobLogPo : batch) {
+            if (!memoryQueue.offer(jobLogPo)) {
+                incDropped(1);
+            }
+        }
+    }
+
+    private void drainSpill() throws FailStoreException {
+        if (spillStore == null || spillPendingNum.get() == 0) {
+            return;
+        }
+        while (running) {
+            List<Pair<String, JobLogPo>> pairs;
+            spillLock.lock();
+            try {
+                pairs = spillStore.fetchTop(batchFlushSize, JobLogPo.class);
+            } finally {
+                spillLock.unlock();
+            }
+            if (CollectionUtils.isEmpty(pairs)) {
+                spillPendingNum.set(0);
+                return;
+            }
+            List<JobLogPo> values = new ArrayList<JobLogPo>(pairs.size());
+            List<String> keys = new ArrayList<String>(pairs.size());
+            for (Pair<String, JobLogPo> pair : pairs) {
+                keys.add(pair.getKey());
+                values.add(pair.getValue());
+            }
+            // 失败了抛出去, 下次再试
+            delegate.log(values);
+            spillLock.lock();
+            try {
+                spillStore.delete(keys);
+            } finally {
+                spillLock.unlock();
+            }
+        }
+    }
+
+    private void spill(List<JobLogPo> jobLogPos) {
+        spillLock.lock();
+        try {
+            for (JobLogPo jobLogPo : jobLogPos) {
+                spillStore.put(StringUtils.generateUUID(), jobLogPo);
+            }
+            spilledNum.addAndGet(jobLogPos.size());
+            spillPendingNum.addAndGet(jobLogPos.size());
+        } catch (FailStoreException e) {
+            LOGGER.error("Spill job log error, size={}", jobLogPos.size(), e);
+            incDropped(jobLogPos.size());
+        } finally {
+            spillLock.unlock();
+        }
+    }
+
+    private void incDropped(int num) {
+        long dropped = droppedNum.addAndGet(num);
+        // 不要每条都打日志
+        if (dropped - num < 1 || (dropped / 1000) != ((dropped - num) / 1000)) {
+            LOGGER.warn("Memory Log is full, dropped {} logs, please check the JobLogger is available", dropped);
+        }
+    }
+
+    /**
+     * 入队, 满了之后按照策略处理
+     */
+    private void enqueue(JobLogPo jobLogPo) {
+        if (memoryQueue.offer(jobLogPo)) {
+            return;
+        }
+        signalFlush();
+        switch (overflowPolicy) {
+            case DROP_OLDEST:
+                while (!memoryQueue.offer(jobLogPo)) {
+                    if (memoryQueue.poll() != null) {
+                        incDropped(1);
+                    }
+                }
+                break;
+            case SPILL:
+                spill(Collections.singletonList(jobLogPo));
+                break;
+            default:
+                long deadline = SystemClock.now() + overflowWaitMillis;
+                while (!memoryQueue.offer(jobLogPo)) {
+                    if (SystemClock.now() >= deadline || Thread.currentThread().isInterrupted()) {
+                        throw new JobLogException("Memory Log size is " +
+                                memoryQueue.size() + " , please check the JobLogger is available");
+                    }
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+                }
         }
     }
 
@@ -122,20 +368,15 @@ public class LazyJobLogger implements JobLogger {
      * 检查内存中的日志量是否超过阀值,如果超过需要批量刷盘日志
      */
     private void checkCapacity() {
-        if (memoryQueue.size() > maxMemoryLogSize) {
-            // 超过阀值,需要批量刷盘
-            if (flushing.compareAndSet(false, true)) {
-                // 这里可以采用new Thread, 因为这里只会同时new一个
-                new Thread(new Runnable() {
-                    @Override
-                    public void run() {
-                        try {
-                            checkAndFlush();
-                        } catch (Throwable t) {
-                            LOGGER.error("Capacity full flush error", t);
-                        }
-                    }
-                }).start();
+        if (memoryQueue.size() >= maxMemoryLogSize) {
+            signalFlush();
+        }
+    }
+
+    private void signalFlush() {
+        if (flushSignal.compareAndSet(false, true)) {
+            for (Thread flushThread : flushThreads) {
+                LockSupport.unpark(flushThread);
             }
         }
     }
@@ -145,8 +386,7 @@ public class LazyJobLogger implements JobLogger {
         if (jobLogPo == null) {
             return;
         }
-        checkOverflowSize();
-        memoryQueue.offer(jobLogPo);
+        enqueue(jobLogPo);
         checkCapacity();
     }
 
@@ -155,9 +395,8 @@ public class LazyJobLogger implements JobLogger {
         if (CollectionUtils.isEmpty(jobLogPos)) {
             return;
         }
-        checkOverflowSize();
         for (JobLogPo jobLogPo : jobLogPos) {
-            memoryQueue.offer(jobLogPo);
+            enqueue(jobLogPo);
         }
         // checkCapacity
         checkCapacity();
@@ -168,4 +407,39 @@ public class LazyJobLogger implements JobLogger {
         return delegate.search(request);
     }
 
+    /**
+     * 内存队列中的日志数
+     */
+    public int getQueueSize() {
+        return memoryQueue.size();
+    }
+
+    public long getDroppedNum() {
+        return droppedNum.get();
+    }
+
+    public long getSpilledNum() {
+        return spilledNum.get();
+    }
+
+    public long getFlushNum() {
+        return flushNum.get();
+    }
+
+    public long getFlushLogNum() {
+        return flushLogNum.get();
+    }
+
+    /**
+     * 平均每批刷盘耗时(毫秒)
+     */
+    public long getAvgFlushCostMillis() {
+        long num = flushNum.get();
+        return num == 0 ? 0 : flushCostMillis.get() / num;
+    }
+
+    public long getMaxFlushCostMillis() {
+        return maxFlushCostMillis.get();
+    }
+
 }
@@ -23,6 +23,9 @@ import java.util.List;
  */
 public class MysqlJobLogger extends JdbcAbstractAccess implements JobLogger {
 
+    // 一条INSERT最多的行数, 避免超过 max_allowed_packet
+    private static final int MAX_ROWS_PER_INSERT = 200;
+
     public MysqlJobLogger(Config config) {
         super(config);
         createTable(readSqlFile("sql/mysql/lts_job_log_po.sql"));
@@ -49,7 +52,7 @@ public class MysqlJobLogger extends JdbcAbstractAccess implements JobLogger {
         for (JobLogPo jobLogPo : jobLogPos) {
             setInsertSqlValues(insertSql, jobLogPo);
         }
-        insertSql.doBatchInsert();
+        insertSql.doMultiRowInsert(MAX_ROWS_PER_INSERT);
     }
 
     private InsertSql buildInsertSql() {
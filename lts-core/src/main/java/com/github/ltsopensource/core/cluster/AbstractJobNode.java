@@ -27,6 +27,7 @@ import com.github.ltsopensource.core.support.AliveKeeping;
 import com.github.ltsopensource.core.support.ConfigValidator;
 import com.github.ltsopensource.ec.EventCenter;
 import com.github.ltsopensource.ec.EventInfo;
+import com.github.ltsopensource.remoting.codec.CodecFactory;
 import com.github.ltsopensource.remoting.serialize.AdaptiveSerializable;
 
 import java.util.ArrayList;
@@ -193,6 +194,12 @@ public abstract class AbstractJobNode<T extends Node, Context extends AppContext
             AdaptiveSerializable.setDefaultSerializable(defaultSerializable);
         }
 
+        // 设置默认编解码方式
+        String defaultCodec = config.getParameter(ExtConfig.REMOTING_CODEC);
+        if (StringUtils.isNotEmpty(defaultCodec)) {
+            CodecFactory.setDefaultCodec(defaultCodec);
+        }
+
         // 设置json
         String ltsJson = config.getParameter(ExtConfig.LTS_JSON);
         if (StringUtils.isNotEmpty(ltsJson)) {
@@ -0,0 +1,205 @@
+package com.github.ltsopensource.core.commons.concurrent;
+
+import com.github.ltsopensource.core.support.SystemClock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 分层时间轮
+ * 1. 第一层每格 tickMs, 放不下的放到上一层(每格是下一层一圈的时间), 层数按需创建
+ * 2. 有元素的格子放到 DelayQueue 中, 驱动线程只在有格子到期时才醒来, 没有空转
+ * 3. 上层的格子到期之后把元素重新放入下层, 直到第一层到期时交给 {@link ExpireHandler}
+ * add 是O(1), 可以多线程并发调用, {@link #advance(long)} 由一个线程循环调用
+ */
+public class TimingWheel<E> {
+
+    private final ExpireHandler<E> handler;
+    private final DelayQueue<Bucket<E>> delayQueue = new DelayQueue<Bucket<E>>();
+    private final AtomicInteger size = new AtomicInteger(0);
+    // add 用读锁, advance 用写锁, 推进时钟的时候不能有并发的add
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Wheel root;
+
+    public TimingWheel(long tickMs, int wheelSize, ExpireHandler<E> handler) {
+        if (tickMs <= 0 || wheelSize <= 0) {
+            throw new IllegalArgumentException("tickMs and wheelSize must gt 0");
+        }
+        this.handler = handler;
+        this.root = new Wheel(tickMs, wheelSize, SystemClock.now());
+    }
+
+    /**
+     * @return false 表示已经到期, 没有放入, 由调用方直接处理
+     */
+    public boolean add(E e, long expireTime) {
+        lock.readLock().lock();
+        try {
+            if (root.add(new Node<E>(e, expireTime))) {
+                size.incrementAndGet();
+                return true;
+            }
+            return false;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 等待最多 timeoutMs, 把到期的元素交给 {@link ExpireHandler}
+     */
+    public void advance(long timeoutMs) throws InterruptedException {
+        Bucket<E> bucket = delayQueue.poll(timeoutMs, TimeUnit.MILLISECONDS);
+        if (bucket == null) {
+            return;
+        }
+        List<E> expired = new ArrayList<E>();
+        lock.writeLock().lock();
+        try {
+            while (bucket != null) {
+                root.advanceClock(bucket.getExpiration());
+                for (Node<E> node : bucket.flush()) {
+                    if (!root.add(node)) {
+                        size.decrementAndGet();
+                        expired.add(node.value);
+                    }
+                }
+                bucket = delayQueue.poll();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        // 回调放在锁外面, 回调中可以再add
+        for (E e : expired) {
+            handler.onExpire(e);
+        }
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    public interface ExpireHandler<E> {
+        void onExpire(E e);
+    }
+
+    private class Wheel {
+
+        private final long tickMs;
+        private final int wheelSize;
+        // 一圈的时间
+        private final long interval;
+        private final Bucket<E>[] buckets;
+        // 当前时间, tickMs的整数倍
+        private long currentTime;
+        private volatile Wheel overflowWheel;
+
+        @SuppressWarnings("unchecked")
+        Wheel(long tickMs, int wheelSize, long startMs) {
+            this.tickMs = tickMs;
+            this.wheelSize = wheelSize;
+            this.interval = tickMs * wheelSize;
+            this.buckets = new Bucket[wheelSize];
+            for (int i = 0; i < wheelSize; i++) {
+                buckets[i] = new Bucket<E>();
+            }
+            this.currentTime = startMs - (startMs % tickMs);
+        }
+
+        boolean add(Node<E> node) {
+            long expiration = node.expireTime;
+            if (expiration < currentTime + tickMs) {
+                // 已经到期
+                return false;
+            }
+            if (expiration < currentTime + interval) {
+                long virtualId = expiration / tickMs;
+                Bucket<E> bucket = buckets[(int) (virtualId % wheelSize)];
+                bucket.add(node);
+                // 格子第一次放入元素(或者被复用)的时候才需要放入 DelayQueue
+                if (bucket.setExpiration(virtualId * tickMs)) {
+                    delayQueue.offer(bucket);
+                }
+                return true;
+            }
+            return getOverflowWheel().add(node);
+        }
+
+        void advanceClock(long timeMs) {
+            if (timeMs >= currentTime + tickMs) {
+                currentTime = timeMs - (timeMs % tickMs);
+                Wheel overflow = overflowWheel;
+                if (overflow != null) {
+                    overflow.advanceClock(currentTime);
+                }
+            }
+        }
+
+        private Wheel getOverflowWheel() {
+            if (overflowWheel == null) {
+                synchronized (this) {
+                    if (overflowWheel == null) {
+                        overflowWheel = new Wheel(interval, wheelSize, currentTime);
+                    }
+                }
+            }
+            return overflowWheel;
+        }
+    }
+
+    private static class Bucket<E> implements Delayed {
+
+        private final AtomicLong expiration = new AtomicLong(-1);
+        private List<Node<E>> nodes = new ArrayList<Node<E>>();
+
+        synchronized void add(Node<E> node) {
+            nodes.add(node);
+        }
+
+        synchronized List<Node<E>> flush() {
+            List<Node<E>> flushed = nodes;
+            nodes = new ArrayList<Node<E>>();
+            expiration.set(-1);
+            return flushed;
+        }
+
+        /**
+         * @return 过期时间是否变了
+         */
+        boolean setExpiration(long expirationMs) {
+            return expiration.getAndSet(expirationMs) != expirationMs;
+        }
+
+        long getExpiration() {
+            return expiration.get();
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(Math.max(getExpiration() - SystemClock.now(), 0), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed o) {
+            long e1 = getExpiration();
+            long e2 = ((Bucket) o).getExpiration();
+            return e1 < e2 ? -1 : (e1 == e2 ? 0 : 1);
+        }
+    }
+
+    private static class Node<E> {
+        private final E value;
+        private final long expireTime;
+
+        Node(E value, long expireTime) {
+            this.value = value;
+            this.expireTime = expireTime;
+        }
+    }
+}
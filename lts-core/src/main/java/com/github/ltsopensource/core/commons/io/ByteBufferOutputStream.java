@@ -0,0 +1,70 @@
+package com.github.ltsopensource.core.commons.io;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * 直接写入 ByteBuffer 的输出流, 空间不够时按2倍扩容
+ */
+public class ByteBufferOutputStream extends OutputStream {
+
+    private final boolean direct;
+    private ByteBuffer buffer;
+
+    public ByteBufferOutputStream(int initialCapacity) {
+        this(initialCapacity, false);
+    }
+
+    public ByteBufferOutputStream(int initialCapacity, boolean direct) {
+        this.direct = direct;
+        this.buffer = allocate(Math.max(initialCapacity, 16));
+    }
+
+    private ByteBuffer allocate(int capacity) {
+        return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+    }
+
+    private void ensureCapacity(int remaining) {
+        if (buffer.remaining() >= remaining) {
+            return;
+        }
+        int newCapacity = Math.max(buffer.capacity() << 1, buffer.position() + remaining);
+        ByteBuffer newBuffer = allocate(newCapacity);
+        buffer.flip();
+        newBuffer.put(buffer);
+        buffer = newBuffer;
+    }
+
+    @Override
+    public void write(int b) {
+        ensureCapacity(1);
+        buffer.put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        ensureCapacity(len);
+        buffer.put(b, off, len);
+    }
+
+    public void writeInt(int v) {
+        ensureCapacity(4);
+        buffer.putInt(v);
+    }
+
+    public void putInt(int index, int v) {
+        buffer.putInt(index, v);
+    }
+
+    public int position() {
+        return buffer.position();
+    }
+
+    /**
+     * 返回已经写入的数据(flip之后的buffer), 之后不能再写入
+     */
+    public ByteBuffer toByteBuffer() {
+        buffer.flip();
+        return buffer;
+    }
+}
@@ -56,6 +56,27 @@ public interface Constants {
 
     int DEFAULT_JOB_PULL_FREQUENCY = 1;
 
+    long DEFAULT_JOB_PULL_LONG_POLL_TIMEOUT_MILLIS = 30 * 1000;
+
+    long MAX_JOB_PULL_LONG_POLL_TIMEOUT_MILLIS = 60 * 1000;
+
+    int DEFAULT_NON_RELYON_PREV_CYCLE_JOB_SCHEDULER_BATCH_SIZE = 200;
+
+    int DEFAULT_NON_RELYON_PREV_CYCLE_JOB_SCHEDULER_THREADS = 4;
+
+    long DEFAULT_LAZY_JOB_LOGGER_OVERFLOW_WAIT_MILLIS = 1000;
+
+    int DEFAULT_LAZY_JOB_LOGGER_FLUSHER_THREADS = 2;
+
+    int DEFAULT_TASK_TRACKER_BIZ_LOGGER_BUFFER_SIZE = 10000;
+
+    int DEFAULT_TASK_TRACKER_BIZ_LOGGER_BATCH_SIZE = 200;
+
+    long DEFAULT_TASK_TRACKER_BIZ_LOGGER_LINGER_MILLIS = 50;
+
+    // 同时在发送中的业务日志批次
+    int TASK_TRACKER_BIZ_LOGGER_MAX_INFLIGHT_BATCH = 16;
+
     // TaskTracker 离线(网络隔离)时间 10s，超过10s，自动停止当前执行任务
     long DEFAULT_TASK_TRACKER_OFFLINE_LIMIT_MILLIS = 10 * 1000;
 
@@ -13,6 +13,12 @@ public interface ExtConfig {
     String LAZY_JOB_LOGGER_CHECK_PERIOD = "lazy.job.logger.check.period";
     String LAZY_JOB_LOGGER_BATCH_FLUSH_SIZE = "lazy.job.logger.batch.flush.size";
     String LAZY_JOB_LOGGER_OVERFLOW_SIZE = "lazy.job.logger.overflow.size";
+    // 延迟批量刷盘日志 内存队列满了之后写日志的线程最多等待时间(毫秒)
+    String LAZY_JOB_LOGGER_OVERFLOW_WAIT_MILLIS = "lazy.job.logger.overflow.wait.millis";
+    // 延迟批量刷盘日志 内存队列满了之后的策略: BLOCK(默认), DROP_OLDEST, SPILL(写到本地ltsdb)
+    String LAZY_JOB_LOGGER_OVERFLOW_POLICY = "lazy.job.logger.overflow.policy";
+    // 延迟批量刷盘日志 并行刷盘线程数, 默认 2
+    String LAZY_JOB_LOGGER_FLUSHER_THREADS = "lazy.job.logger.flusher.threads";
     /**
      * JobClient,JobTracker,TaskTracker端: 远程通讯请求处理线程数量, 默认 32 + AVAILABLE_PROCESSOR * 5
      */
@@ -25,6 +31,11 @@ public interface ExtConfig {
      * JobClient,JobTracker,TaskTracker端: 远程通讯序列化方式, 可选值 fastjson, hessian2, java, 默认fastjson
      */
     String REMOTING_SERIALIZABLE_DFT = "lts.remoting.serializable.default";
+    /**
+     * JobClient,JobTracker,TaskTracker端: 远程通讯编解码方式, 可选值 default, compact, 默认default
+     * compact 用整数id代替body类名, 并且直接在buffer上序列化, 所有节点需要配置成一样的
+     */
+    String REMOTING_CODEC = "lts.remoting.codec";
     /**
      * JobClient,TaskTracker端: FailStore,可选值 leveldb, berkeleydb,rocksdb ,mapdb  默认 leveldb
      */
@@ -54,9 +65,13 @@ public interface ExtConfig {
      */
     String LTS_LOGGER = "lts.logger";
     /**
-     * 任务队列, 可选值 mysql, mongo 默认 mysql
+     * 任务队列, 可选值 mysql, mongo, memory 默认 mysql
      */
     String JOB_QUEUE = "job.queue";
+    /**
+     * JobTracker端: job.queue=memory 时是否用ltsdb持久化, 默认 false (重启之后任务丢失)
+     */
+    String JOB_QUEUE_MEMORY_PERSIST = "job.queue.memory.persist";
     /**
      * LTS 内部使用的json, 默认fastjson
      */
@@ -122,6 +137,14 @@ public interface ExtConfig {
      * JobTracker端: 不依赖上周期任务的生成调度时间, 默认10分钟 (不建议自己设置)
      */
     String JOB_TRACKER_NON_RELYON_PREV_CYCLE_JOB_SCHEDULER_INTERVAL_MINUTE = "jobtracker.nonRelyOnPrevCycleJob.schedule.interval.minute";
+    /**
+     * JobTracker端: 不依赖上周期任务的生成, 每次从cron/repeat队列中取出的任务数, 默认200
+     */
+    String JOB_TRACKER_NON_RELYON_PREV_CYCLE_JOB_SCHEDULER_BATCH_SIZE = "jobtracker.nonRelyOnPrevCycleJob.schedule.batch.size";
+    /**
+     * JobTracker端: 不依赖上周期任务的生成线程数, 按 taskTrackerNodeGroup 分配, 默认4
+     */
+    String JOB_TRACKER_NON_RELYON_PREV_CYCLE_JOB_SCHEDULER_THREADS = "jobtracker.nonRelyOnPrevCycleJob.schedule.threads";
     /**
      * JobClient,JobTracker,TaskTracker端: 向monitor汇报数据间隔
      */
@@ -135,9 +158,59 @@ public interface ExtConfig {
      */
     String JOB_TRACKER_PRELOADER_FACTOR = "job.preloader.factor";
     /**
-     * JobTracker端: Job preload 信号检测频率
+     * JobTracker端: Job preload 信号检测频率 (已不再使用, 队列低于阀值时直接触发加载)
      */
     String JOB_TRACKER_PRELOADER_SIGNAL_CHECK_INTERVAL = "job.preloader.signal.check.interval";
+    /**
+     * JobTracker端: 最小 Job preload 的 size , 空闲的节点组只预取这么多, 默认 10
+     */
+    String JOB_TRACKER_PRELOADER_MIN_SIZE = "job.preloader.min.size";
+    /**
+     * JobTracker端: 按照最近的消费速度, 预取多少秒的任务量, 默认 10
+     */
+    String JOB_TRACKER_PRELOADER_PREFETCH_SECONDS = "job.preloader.prefetch.seconds";
+    /**
+     * JobTracker端: Job preload 的线程数, 默认 CPU 核数
+     */
+    String JOB_TRACKER_PRELOADER_THREAD_NUM = "job.preloader.thread.num";
+    /**
+     * JobTracker端: 是否用时间轮在任务到期时放入预加载队列, 默认 false
+     */
+    String JOB_TRACKER_PRELOADER_TIME_WHEEL_ENABLE = "job.preloader.timewheel.enable";
+    /**
+     * JobTracker端: 时间轮提前从队列中加载多少秒内要执行的任务, 默认 60
+     */
+    String JOB_TRACKER_PRELOADER_TIME_WHEEL_LOOKAHEAD_SECONDS = "job.preloader.timewheel.lookahead.seconds";
+    /**
+     * JobTracker端: 多个JobTracker时, 是否按 jobId 分区, 每个JobTracker只预加载和锁定自己负责的分区, 默认 false
+     */
+    String JOB_TRACKER_PRELOADER_PARTITION_ENABLE = "job.preloader.partition.enable";
+    /**
+     * JobTracker端: 开启分区时, 没有分区的任务(比如升级过程中旧版本写入的)到期超过多少秒还没有被执行, 每次加载时一起加载, 默认 10
+     */
+    String JOB_TRACKER_PRELOADER_PARTITION_ORPHAN_SECONDS = "job.preloader.partition.orphan.seconds";
+    /**
+     * JobTracker端: 是否支持TaskTracker的长轮询pull, 默认 false
+     * 关闭时长轮询pull请求按普通pull处理, 立即返回
+     */
+    String JOB_TRACKER_LONG_POLL_ENABLE = "jobtracker.long.poll.enable";
+    /**
+     * JobTracker端: 是否由JobTracker主动推送任务, 默认 false
+     * 启用后 pull 请求和任务完成只更新TaskTracker的可用线程数, 有可用线程并且有任务时立即推送
+     */
+    String JOB_TRACKER_DISPATCHER_ENABLE = "jobtracker.dispatcher.enable";
+    /**
+     * JobTracker端: 主动推送时没有被唤醒的情况下的检查间隔(毫秒), 默认 100ms
+     */
+    String JOB_TRACKER_DISPATCHER_INTERVAL_MILLIS = "jobtracker.dispatcher.interval.millis";
+    /**
+     * JobTracker端: 主动推送时每个TaskTracker正在推送(还没有应答)的最大任务数, 默认 50
+     */
+    String JOB_TRACKER_DISPATCHER_NODE_MAX_IN_FLIGHT = "jobtracker.dispatcher.node.max.inflight";
+    /**
+     * JobTracker端: 主动推送时各个节点组的权重, 格式 nodeGroup1:3,nodeGroup2:1, 没有配置的为 1
+     */
+    String JOB_TRACKER_DISPATCHER_GROUP_WEIGHTS = "jobtracker.dispatcher.group.weights";
     /**
      * Netty Frame 的最大长度(自己一般不用设置)
      */
@@ -178,10 +251,47 @@ public interface ExtConfig {
      * JobTracker端: 正在执行任务修复死任务检查的时间限制(不建议自己设置)
      */
     String JOB_TRACKER_EXECUTING_JOB_FIX_DEADLINE_SECONDS = "jobtracker.executing.job.fix.deadline.seconds";
+    /**
+     * JobTracker端: 检查正在执行任务队列中死任务时每页查询的个数, 默认1000
+     */
+    String JOB_TRACKER_EXECUTING_JOB_FIX_PAGE_SIZE = "jobtracker.executing.job.fix.page.size";
+    /**
+     * JobTracker端: 同时检查(询问或修复)的TaskTracker个数, 默认4
+     */
+    String JOB_TRACKER_EXECUTING_JOB_FIX_PARALLELISM = "jobtracker.executing.job.fix.parallelism";
     /**
      * TaskTracker端: Pull 任务频率(秒) , 默认 1s(不建议自己设置)
      */
     String JOB_PULL_FREQUENCY = "job.pull.frequency";
+    /**
+     * TaskTracker端: 是否启用长轮询pull, 默认关闭
+     * 启用后pull请求会在JobTracker端挂起, 直到有任务推送过来或者超时才返回, 返回后立即发起下一次pull
+     */
+    String JOB_PULL_LONG_POLL_ENABLE = "job.pull.long.poll.enable";
+    /**
+     * TaskTracker端: 长轮询pull在JobTracker端最长挂起时间(毫秒), 默认 30s, 最大 60s
+     */
+    String JOB_PULL_LONG_POLL_TIMEOUT_MILLIS = "job.pull.long.poll.timeout.millis";
+    /**
+     * TaskTracker端: 业务日志缓冲区大小, 满了之后放到FailStore, 默认 10000
+     */
+    String TASK_TRACKER_BIZ_LOGGER_BUFFER_SIZE = "tasktracker.biz.logger.buffer.size";
+    /**
+     * TaskTracker端: 业务日志每批最多发送的条数, 默认 200
+     */
+    String TASK_TRACKER_BIZ_LOGGER_BATCH_SIZE = "tasktracker.biz.logger.batch.size";
+    /**
+     * TaskTracker端: 业务日志凑批最长等待时间(毫秒), 默认 50ms
+     */
+    String TASK_TRACKER_BIZ_LOGGER_LINGER_MILLIS = "tasktracker.biz.logger.linger.millis";
+    /**
+     * TaskTracker端: 任务执行结果每批最多反馈的条数, 默认 100
+     */
+    String TASK_TRACKER_JOB_COMPLETED_BATCH_SIZE = "tasktracker.job.completed.batch.size";
+    /**
+     * TaskTracker端: 任务执行结果凑批最长等待时间(毫秒), 默认 5ms
+     */
+    String TASK_TRACKER_JOB_COMPLETED_LINGER_MILLIS = "tasktracker.job.completed.linger.millis";
     /**
      * TaskTracker端: 是否启用TaskTracker端的负载均衡, 默认关闭
      */
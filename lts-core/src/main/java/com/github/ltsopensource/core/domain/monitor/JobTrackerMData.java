@@ -1,5 +1,7 @@
 package com.github.ltsopensource.core.domain.monitor;
 
+import java.util.List;
+
 /**
  * @author Robert HG (254963746@qq.com) on 8/31/15.
  */
@@ -33,6 +35,10 @@ public class JobTrackerMData extends MData {
      * 修复死任务数
      */
     private Long fixExecutingJobNum;
+    /**
+     * 每个节点组的预加载数据
+     */
+    private List<PreLoaderMData> preLoaderMDatas;
 
     public Long getReceiveJobNum() {
         return receiveJobNum;
@@ -89,4 +95,12 @@ public class JobTrackerMData extends MData {
     public void setFixExecutingJobNum(Long fixExecutingJobNum) {
         this.fixExecutingJobNum = fixExecutingJobNum;
     }
+
+    public List<PreLoaderMData> getPreLoaderMDatas() {
+        return preLoaderMDatas;
+    }
+
+    public void setPreLoaderMDatas(List<PreLoaderMData> preLoaderMDatas) {
+        this.preLoaderMDatas = preLoaderMDatas;
+    }
 }
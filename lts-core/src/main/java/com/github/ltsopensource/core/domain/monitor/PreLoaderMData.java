@@ -0,0 +1,89 @@
+package com.github.ltsopensource.core.domain.monitor;
+
+/**
+ * JobTracker 每个节点组的预加载监控数据
+ */
+public class PreLoaderMData {
+
+    private String taskTrackerNodeGroup;
+    /**
+     * 当前内存队列中的任务数
+     */
+    private Integer queueSize;
+    /**
+     * 当前的目标预取量(根据消费速度调整)
+     */
+    private Integer targetSize;
+    /**
+     * 取任务时队列为空的次数
+     */
+    private Long emptyTakeNum;
+    /**
+     * 加载次数
+     */
+    private Long refillNum;
+    /**
+     * 加载总耗时
+     */
+    private Long refillCostMillis;
+    /**
+     * 加载的任务数
+     */
+    private Long refillJobNum;
+
+    public String getTaskTrackerNodeGroup() {
+        return taskTrackerNodeGroup;
+    }
+
+    public void setTaskTrackerNodeGroup(String taskTrackerNodeGroup) {
+        this.taskTrackerNodeGroup = taskTrackerNodeGroup;
+    }
+
+    public Integer getQueueSize() {
+        return queueSize;
+    }
+
+    public void setQueueSize(Integer queueSize) {
+        this.queueSize = queueSize;
+    }
+
+    public Integer getTargetSize() {
+        return targetSize;
+    }
+
+    public void setTargetSize(Integer targetSize) {
+        this.targetSize = targetSize;
+    }
+
+    public Long getEmptyTakeNum() {
+        return emptyTakeNum;
+    }
+
+    public void setEmptyTakeNum(Long emptyTakeNum) {
+        this.emptyTakeNum = emptyTakeNum;
+    }
+
+    public Long getRefillNum() {
+        return refillNum;
+    }
+
+    public void setRefillNum(Long refillNum) {
+        this.refillNum = refillNum;
+    }
+
+    public Long getRefillCostMillis() {
+        return refillCostMillis;
+    }
+
+    public void setRefillCostMillis(Long refillCostMillis) {
+        this.refillCostMillis = refillCostMillis;
+    }
+
+    public Long getRefillJobNum() {
+        return refillJobNum;
+    }
+
+    public void setRefillJobNum(Long refillJobNum) {
+        this.refillJobNum = refillJobNum;
+    }
+}
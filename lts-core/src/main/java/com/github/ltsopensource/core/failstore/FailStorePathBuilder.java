@@ -23,6 +23,10 @@ public class FailStorePathBuilder {
         return getStorePath(appContext) + "/dep_job_submit_failstore/";
     }
 
+    public static String getJobLoggerSpillPath(AppContext appContext) {
+        return getStorePath(appContext) + "/job_logger_spill/";
+    }
+
     private static String getStorePath(AppContext appContext) {
         return appContext.getConfig().getDataPath()
                 + "/.lts" + "/" +
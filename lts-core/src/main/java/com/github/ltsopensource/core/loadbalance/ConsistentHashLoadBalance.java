@@ -7,16 +7,101 @@ import java.util.List;
 
 /**
  * 一致性hash算法
+ * 环按机器节点缓存, 节点没有变化直接复用, 节点增减时在原来的环上更新
  * Robert HG (254963746@qq.com) on 3/25/15.
  */
 public class ConsistentHashLoadBalance extends AbstractLoadBalance {
 
+    // 不同的调用方(JobTracker列表, Monitor列表等)各自一个环
+    private static final int MAX_CACHED_SELECTORS = 8;
+
+    private volatile ConsistentHashSelector<?>[] selectors = new ConsistentHashSelector<?>[0];
+    // seed 一般是节点自己的identity, 不用每次都计算hash
+    private volatile SeedHash seedHash;
+
     @Override
     protected <S> S doSelect(List<S> shards, String seed) {
-        if(seed == null || seed.length() == 0){
-            seed = "HASH-".concat(String.valueOf(ThreadLocalRandom.current().nextInt()));
+        long hash;
+        if (seed == null || seed.length() == 0) {
+            hash = ConsistentHashSelector.hash("HASH-".concat(String.valueOf(ThreadLocalRandom.current().nextInt())));
+        } else {
+            hash = getSeedHash(seed);
+        }
+        return current(shards, getSelector(shards).selectForHash(hash));
+    }
+
+    /**
+     * 缓存的环上是之前列表中的实例, Node只按identity比较, 重新注册的节点ip, port可能变了, 返回这次列表中的实例
+     */
+    private static <S> S current(List<S> shards, S selected) {
+        for (int i = 0; i < shards.size(); i++) {
+            S shard = shards.get(i);
+            if (shard == selected) {
+                return shard;
+            }
+        }
+        for (int i = 0; i < shards.size(); i++) {
+            S shard = shards.get(i);
+            if (shard.equals(selected)) {
+                return shard;
+            }
+        }
+        return selected;
+    }
+
+    private long getSeedHash(String seed) {
+        SeedHash seedHash = this.seedHash;
+        if (seedHash == null || !seedHash.seed.equals(seed)) {
+            seedHash = new SeedHash(seed, ConsistentHashSelector.hash(seed));
+            this.seedHash = seedHash;
+        }
+        return seedHash.hash;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <S> ConsistentHashSelector<S> getSelector(List<S> shards) {
+        ConsistentHashSelector<?>[] cached = this.selectors;
+        int baseIndex = -1;
+        int maxOverlap = 0;
+        for (int i = 0; i < cached.length; i++) {
+            ConsistentHashSelector<S> selector = (ConsistentHashSelector<S>) cached[i];
+            int overlap = selector.overlap(shards);
+            if (overlap == shards.size() && overlap == selector.size()) {
+                return selector;
+            }
+            if (overlap > maxOverlap) {
+                maxOverlap = overlap;
+                baseIndex = i;
+            }
+        }
+
+        ConsistentHashSelector<?>[] newSelectors;
+        ConsistentHashSelector<S> selector;
+        if (baseIndex >= 0) {
+            // 节点有增减, 替换掉原来的环
+            selector = ((ConsistentHashSelector<S>) cached[baseIndex]).update(shards);
+            newSelectors = cached.clone();
+            newSelectors[baseIndex] = selector;
+        } else {
+            selector = new ConsistentHashSelector<S>(shards);
+            int keep = Math.min(cached.length, MAX_CACHED_SELECTORS - 1);
+            newSelectors = new ConsistentHashSelector<?>[keep + 1];
+            // 超过个数的丢掉最早的
+            System.arraycopy(cached, cached.length - keep, newSelectors, 0, keep);
+            newSelectors[keep] = selector;
+        }
+        // 并发时可能重复计算, 没有关系
+        this.selectors = newSelectors;
+        return selector;
+    }
+
+    private static class SeedHash {
+        private final String seed;
+        private final long hash;
+
+        SeedHash(String seed, long hash) {
+            this.seed = seed;
+            this.hash = hash;
         }
-        ConsistentHashSelector<S> selector = new ConsistentHashSelector<S>(shards);
-        return selector.selectForKey(seed);
     }
 }
@@ -82,7 +82,9 @@ public class JobProtos {
         // 任务删除失败
         JOB_CANCEL_FAILED(24),
         // 任务执行错误
-        JOB_RUN_ERROR(25),;
+        JOB_RUN_ERROR(25),
+        // 长轮询的pull请求返回(已经推送了任务或者等待超时)
+        JOB_PULL_LONG_POLL_RETURN(26),;
 
 
         private int code;
@@ -18,6 +18,11 @@ public class JobCompletedRequest extends AbstractRemotingCommandBody {
      */
     private boolean receiveNewJob = false;
 
+    /**
+     * 需要的新任务个数, 批量反馈时用, 小于等于0时按一个处理
+     */
+    private int newJobNum = 0;
+
     @NotNull
     private List<JobRunResult> jobRunResults;
 
@@ -40,6 +45,14 @@ public class JobCompletedRequest extends AbstractRemotingCommandBody {
         this.receiveNewJob = receiveNewJob;
     }
 
+    public int getNewJobNum() {
+        return newJobNum;
+    }
+
+    public void setNewJobNum(int newJobNum) {
+        this.newJobNum = newJobNum;
+    }
+
     public List<JobRunResult> getJobRunResults() {
         return jobRunResults;
     }
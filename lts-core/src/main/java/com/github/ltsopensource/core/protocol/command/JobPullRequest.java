@@ -9,6 +9,10 @@ public class JobPullRequest extends AbstractRemotingCommandBody {
 	private static final long serialVersionUID = 9222159289387747395L;
 	
 	private Integer availableThreads;
+    /**
+     * 长轮询在JobTracker端最长挂起时间(毫秒), 为空或者<=0表示普通pull
+     */
+    private Long longPollTimeoutMillis;
 
     public Integer getAvailableThreads() {
         return availableThreads;
@@ -17,4 +21,12 @@ public class JobPullRequest extends AbstractRemotingCommandBody {
     public void setAvailableThreads(Integer availableThreads) {
         this.availableThreads = availableThreads;
     }
+
+    public Long getLongPollTimeoutMillis() {
+        return longPollTimeoutMillis;
+    }
+
+    public void setLongPollTimeoutMillis(Long longPollTimeoutMillis) {
+        this.longPollTimeoutMillis = longPollTimeoutMillis;
+    }
 }
@@ -110,12 +110,20 @@ public class RemotingClientDelegate {
      */
     public void invokeAsync(RemotingCommand request, AsyncCallback asyncCallback)
             throws JobTrackerNotFoundException {
+        invokeAsync(request, appContext.getConfig().getInvokeTimeoutMillis(), asyncCallback);
+    }
+
+    /**
+     * 异步调用, 指定超时时间(例如长轮询的pull请求)
+     */
+    public void invokeAsync(RemotingCommand request, long timeoutMillis, AsyncCallback asyncCallback)
+            throws JobTrackerNotFoundException {
 
         Node jobTracker = getJobTrackerNode();
 
         try {
             remotingClient.invokeAsync(jobTracker.getAddress(), request,
-                    appContext.getConfig().getInvokeTimeoutMillis(), asyncCallback);
+                    timeoutMillis, asyncCallback);
             this.serverEnable = true;
         } catch (Throwable e) {
             // 将这个JobTracker移除
@@ -126,7 +134,7 @@ public class RemotingClientDelegate {
                 LOGGER.error(e1.getMessage(), e1);
             }
             // 只要不是节点 不可用, 轮询所有节点请求
-            invokeAsync(request, asyncCallback);
+            invokeAsync(request, timeoutMillis, asyncCallback);
         }
     }
 
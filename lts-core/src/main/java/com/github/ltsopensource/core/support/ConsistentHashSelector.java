@@ -1,37 +1,135 @@
 package com.github.ltsopensource.core.support;
 
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
+import com.github.ltsopensource.core.cluster.Node;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
-import java.util.SortedMap;
-import java.util.TreeMap;
+import java.util.Map;
 
 /**
  * 一致性hash算法
+ * 1. 环建好之后不再修改, 查找是在排好序的 long[] 上二分, 不分配对象
+ * 2. 虚拟节点按机器节点的key(Node取identity, 其他取toString)计算, 增减机器节点时其他节点的虚拟节点不变, 通过 update 复用
  * Robert HG (254963746@qq.com) on 3/25/15.
  */
 public class ConsistentHashSelector<S> { // S类封装了机器节点的信息
 
-    private TreeMap<Long, S> nodes; // 虚拟节点
-    private final int NODE_NUM = 100; // 每个机器节点关联的虚拟节点个数
+    private static final int NODE_NUM = 100; // 每个机器节点关联的虚拟节点个数
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final Map<S, long[]> shardHashes; // 机器节点 -> 它的虚拟节点hash
+    private final long[] hashes; // 虚拟节点, 从小到大
+    private final Object[] owners; // hashes[i] 对应的机器节点
 
     public ConsistentHashSelector(List<S> shards) {
-        super();
-        nodes = new TreeMap<Long, S>();
-        for (int i = 0; i != shards.size(); ++i) { // 每个真实机器节点都需要关联虚拟节点
-            final S shardInfo = shards.get(i);
-            for (int n = 0; n < NODE_NUM; n++)
-                // 一个真实机器节点关联NODE_NUM个虚拟节点
-                nodes.put(hash("SHARD-" + i + "-NODE-" + n), shardInfo);
+        this(buildShardHashes(null, shards));
+    }
+
+    private ConsistentHashSelector(Map<S, long[]> shardHashes) {
+        this.shardHashes = shardHashes;
+        VirtualNode[] vNodes = new VirtualNode[shardHashes.size() * NODE_NUM];
+        int i = 0;
+        for (Map.Entry<S, long[]> entry : shardHashes.entrySet()) {
+            for (long hash : entry.getValue()) {
+                vNodes[i++] = new VirtualNode(hash, entry.getKey());
+            }
+        }
+        Arrays.sort(vNodes, VIRTUAL_NODE_COMPARATOR);
+        this.hashes = new long[vNodes.length];
+        this.owners = new Object[vNodes.length];
+        for (i = 0; i < vNodes.length; i++) {
+            hashes[i] = vNodes[i].hash;
+            owners[i] = vNodes[i].owner;
         }
     }
 
     public S selectForKey(String key) {
-        SortedMap<Long, S> tail = nodes.tailMap(hash(key)); // 沿环的顺时针找到一个虚拟节点
-        if (tail.size() == 0) {
-            return nodes.get(nodes.firstKey());
+        return selectForHash(hash(key));
+    }
+
+    /**
+     * 沿环的顺时针找到第一个 >= hash 的虚拟节点, 返回该虚拟节点对应的真实机器节点
+     */
+    @SuppressWarnings("unchecked")
+    public S selectForHash(long hash) {
+        if (hashes.length == 0) {
+            return null;
+        }
+        int index = Arrays.binarySearch(hashes, hash);
+        if (index < 0) {
+            index = -index - 1;
+            if (index == hashes.length) {
+                index = 0;
+            }
+        } else {
+            // 相同的hash取第一个
+            while (index > 0 && hashes[index - 1] == hash) {
+                index--;
+            }
         }
-        return tail.get(tail.firstKey()); // 返回该虚拟节点对应的真实机器节点的信息
+        return (S) owners[index];
+    }
+
+    /**
+     * 机器节点变化之后的环, 没有变化返回自己, 留下的机器节点不重新计算hash
+     */
+    public ConsistentHashSelector<S> update(List<S> shards) {
+        if (isSame(shards)) {
+            return this;
+        }
+        return new ConsistentHashSelector<S>(buildShardHashes(shardHashes, shards));
+    }
+
+    /**
+     * 机器节点是否和 shards 完全一样
+     */
+    public boolean isSame(List<S> shards) {
+        return shards.size() == shardHashes.size() && overlap(shards) == shards.size();
+    }
+
+    /**
+     * shards 中有多少个在这个环上
+     */
+    public int overlap(List<S> shards) {
+        int num = 0;
+        for (int i = 0; i < shards.size(); i++) {
+            if (shardHashes.containsKey(shards.get(i))) {
+                num++;
+            }
+        }
+        return num;
+    }
+
+    public int size() {
+        return shardHashes.size();
+    }
+
+    private static <S> Map<S, long[]> buildShardHashes(Map<S, long[]> old, List<S> shards) {
+        Map<S, long[]> shardHashes = new HashMap<S, long[]>();
+        for (int i = 0; i < shards.size(); i++) {
+            S shard = shards.get(i);
+            long[] hashes = old == null ? null : old.get(shard);
+            if (hashes == null) {
+                // 一个真实机器节点关联NODE_NUM个虚拟节点
+                String key = getShardKey(shard);
+                hashes = new long[NODE_NUM];
+                for (int n = 0; n < NODE_NUM; n++) {
+                    hashes[n] = hash("SHARD-" + key + "-NODE-" + n);
+                }
+            }
+            shardHashes.put(shard, hashes);
+        }
+        return shardHashes;
+    }
+
+    private static String getShardKey(Object shard) {
+        if (shard instanceof Node) {
+            return ((Node) shard).getIdentity();
+        }
+        return String.valueOf(shard);
     }
 
     /**
@@ -40,22 +138,19 @@ public class ConsistentHashSelector<S> { // S类封装了机器节点的信息
      * 等HASH算法要快很多，而且据说这个算法的碰撞率很低.
      * http://murmurhash.googlepages.com/
      */
-    private Long hash(String key) {
+    public static long hash(String key) {
 
-        ByteBuffer buf = ByteBuffer.wrap(key.getBytes());
+        byte[] data = key.getBytes(UTF_8);
         int seed = 0x1234ABCD;
 
-        ByteOrder byteOrder = buf.order();
-        buf.order(ByteOrder.LITTLE_ENDIAN);
-
         long m = 0xc6a4a7935bd1e995L;
         int r = 47;
 
-        long h = seed ^ (buf.remaining() * m);
+        long h = seed ^ (data.length * m);
 
-        long k;
-        while (buf.remaining() >= 8) {
-            k = buf.getLong();
+        int blocks = data.length >>> 3;
+        for (int i = 0; i < blocks; i++) {
+            long k = getLongLE(data, i << 3, 8);
 
             k *= m;
             k ^= k >>> r;
@@ -65,13 +160,9 @@ public class ConsistentHashSelector<S> { // S类封装了机器节点的信息
             h *= m;
         }
 
-        if (buf.remaining() > 0) {
-            ByteBuffer finish = ByteBuffer.allocate(8).order(
-                    ByteOrder.LITTLE_ENDIAN);
-            // for big-endian version, do this first:
-            // finish.position(8-buf.remaining());
-            finish.put(buf).rewind();
-            h ^= finish.getLong();
+        int remaining = data.length & 7;
+        if (remaining > 0) {
+            h ^= getLongLE(data, blocks << 3, remaining);
             h *= m;
         }
 
@@ -79,8 +170,34 @@ public class ConsistentHashSelector<S> { // S类封装了机器节点的信息
         h *= m;
         h ^= h >>> r;
 
-        buf.order(byteOrder);
         return h;
     }
 
+    /**
+     * 小端读取 len(<=8) 个字节, 不足8个的高位补0
+     */
+    private static long getLongLE(byte[] data, int offset, int len) {
+        long k = 0;
+        for (int i = len - 1; i >= 0; i--) {
+            k = (k << 8) | (data[offset + i] & 0xFFL);
+        }
+        return k;
+    }
+
+    private static final Comparator<VirtualNode> VIRTUAL_NODE_COMPARATOR = new Comparator<VirtualNode>() {
+        @Override
+        public int compare(VirtualNode o1, VirtualNode o2) {
+            return o1.hash < o2.hash ? -1 : (o1.hash == o2.hash ? 0 : 1);
+        }
+    };
+
+    private static class VirtualNode {
+        private final long hash;
+        private final Object owner;
+
+        VirtualNode(long hash, Object owner) {
+            this.hash = hash;
+            this.owner = owner;
+        }
+    }
 }
@@ -229,6 +229,17 @@ public final class CronExpression implements Serializable, Cloneable {
     protected transient int lastdayOffset = 0;
     protected transient boolean expressionParsed = false;
 
+    // Bitset form of the parsed fields, used by getTimeAfterFast
+    private transient long secondBits;
+    private transient long minuteBits;
+    private transient long hourBits;
+    private transient long dayOfMonthBits;
+    private transient long monthBits;
+    private transient long dayOfWeekBits;
+    private transient boolean fastPathSupported = false;
+
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+
     public static final int MAX_YEAR = Calendar.getInstance().get(Calendar.YEAR) + 100;
 
     /**
@@ -408,6 +419,8 @@ public final class CronExpression implements Serializable, Cloneable {
                             "Support for specifying both a day-of-week AND a day-of-month parameter is not implemented.", 0);
                 }
             }
+
+            compileBits();
         } catch (ParseException pe) {
             throw pe;
         } catch (Exception e) {
@@ -961,7 +974,228 @@ public final class CronExpression implements Serializable, Cloneable {
     //
     ////////////////////////////////////////////////////////////////////////////
 
+    /**
+     * Build the bitsets used by {@link #getTimeAfterFast}. 'W', nth and last
+     * day-of-week expressions keep using the Calendar based computation.
+     */
+    private void compileBits() {
+        secondBits = toBits(seconds, 0, 59);
+        minuteBits = toBits(minutes, 0, 59);
+        hourBits = toBits(hours, 0, 23);
+        dayOfMonthBits = toBits(daysOfMonth, 1, 31);
+        monthBits = toBits(months, 1, 12);
+        dayOfWeekBits = toBits(daysOfWeek, 1, 7);
+        fastPathSupported = !nearestWeekday && !lastdayOfWeek && nthdayOfWeek == 0
+                && lastdayOffset >= 0 && lastdayOffset < 28;
+    }
+
+    private static long toBits(TreeSet<Integer> set, int min, int max) {
+        long bits = 0;
+        for (Integer value : set) {
+            // skip the ALL_SPEC / NO_SPEC markers
+            if (value >= min && value <= max) {
+                bits |= 1L << value;
+            }
+        }
+        return bits;
+    }
+
     public Date getTimeAfter(Date afterTime) {
+        if (fastPathSupported) {
+            TimeZone tz = getTimeZone();
+            // without daylight saving the local time is a fixed offset from UTC
+            if (!tz.useDaylightTime() && tz.getOffset(afterTime.getTime()) == tz.getRawOffset()) {
+                Date time = getTimeAfterFast(afterTime, tz.getRawOffset());
+                if (time == null || tz.getOffset(time.getTime()) == tz.getRawOffset()) {
+                    return time;
+                }
+            }
+        }
+        return getTimeAfterByCalendar(afterTime);
+    }
+
+    /**
+     * Same result as {@link #getTimeAfterByCalendar} for a fixed offset time
+     * zone, computed on the parsed bitsets without allocating a Calendar.
+     */
+    Date getTimeAfterFast(Date afterTime, int offset) {
+
+        // move ahead one second, and ignore milliseconds
+        long local = afterTime.getTime() + 1000 + offset;
+        long days = floorDiv(local, DAY_MILLIS);
+        int secondOfDay = (int) ((local - days * DAY_MILLIS) / 1000);
+
+        int ymd = civilFromDays(days);
+        int year = ymd / 10000;
+        int mon = ymd / 100 % 100;
+        int day = ymd % 100;
+        int hr = secondOfDay / 3600;
+        int min = secondOfDay / 60 % 60;
+        int sec = secondOfDay % 60;
+
+        while (true) {
+            if (year > MAX_YEAR) {
+                return null;
+            }
+
+            // get year...................................................
+            Integer y = years.ceiling(year);
+            if (y == null) {
+                return null;
+            }
+            if (y != year) {
+                year = y;
+                mon = 1;
+                day = 1;
+                hr = min = sec = 0;
+            }
+
+            // get month...................................................
+            int t = nextBit(monthBits, mon);
+            if (t < 0) {
+                year++;
+                mon = 1;
+                day = 1;
+                hr = min = sec = 0;
+                continue;
+            }
+            if (t != mon) {
+                mon = t;
+                day = 1;
+                hr = min = sec = 0;
+            }
+
+            // get day...................................................
+            t = nextDay(year, mon, day);
+            if (t < 0) {
+                mon++;
+                day = 1;
+                hr = min = sec = 0;
+                continue;
+            }
+            if (t != day) {
+                day = t;
+                hr = min = sec = 0;
+            }
+
+            // get hour...................................................
+            t = nextBit(hourBits, hr);
+            if (t < 0) {
+                day++;
+                hr = min = sec = 0;
+                continue;
+            }
+            if (t != hr) {
+                hr = t;
+                min = sec = 0;
+            }
+
+            // get minute.................................................
+            t = nextBit(minuteBits, min);
+            if (t < 0) {
+                hr++;
+                min = sec = 0;
+                continue;
+            }
+            if (t != min) {
+                min = t;
+                sec = 0;
+            }
+
+            // get second.................................................
+            t = nextBit(secondBits, sec);
+            if (t < 0) {
+                min++;
+                sec = 0;
+                continue;
+            }
+            sec = t;
+            break;
+        }
+
+        long time = daysFromCivil(year, mon, day) * DAY_MILLIS + (hr * 3600L + min * 60L + sec) * 1000L;
+        return new Date(time - offset);
+    }
+
+    /**
+     * First matching day of month not before day, -1 if none in this month
+     */
+    private int nextDay(int year, int mon, int day) {
+        int lastDay = getLastDayOfMonth(mon, year);
+        if (day > lastDay) {
+            return -1;
+        }
+        if (!daysOfMonth.contains(NO_SPEC)) {
+            if (lastdayOfMonth) {
+                int target = lastDay - lastdayOffset;
+                return day <= target ? target : -1;
+            }
+            int t = nextBit(dayOfMonthBits, day);
+            return t <= lastDay ? t : -1;
+        }
+        int dow = dayOfWeek(daysFromCivil(year, mon, day));
+        for (int d = day; d <= lastDay; d++) {
+            if ((dayOfWeekBits & (1L << dow)) != 0) {
+                return d;
+            }
+            dow = dow == 7 ? 1 : dow + 1;
+        }
+        return -1;
+    }
+
+    private static int nextBit(long bits, int from) {
+        if (from >= 64) {
+            return -1;
+        }
+        long masked = bits & (-1L << from);
+        return masked == 0 ? -1 : Long.numberOfTrailingZeros(masked);
+    }
+
+    private static long floorDiv(long x, long y) {
+        long q = x / y;
+        if ((x % y != 0) && ((x ^ y) < 0)) {
+            q--;
+        }
+        return q;
+    }
+
+    /**
+     * 1 = SUN ... 7 = SAT, same as Calendar.DAY_OF_WEEK
+     */
+    private static int dayOfWeek(long epochDays) {
+        // 1970-01-01 is a Thursday
+        return (int) ((epochDays % 7 + 7 + 4) % 7) + 1;
+    }
+
+    /**
+     * Days since 1970-01-01 of a proleptic Gregorian date
+     */
+    private static long daysFromCivil(int year, int mon, int day) {
+        long y = mon <= 2 ? year - 1 : year;
+        long era = (y >= 0 ? y : y - 399) / 400;
+        long yoe = y - era * 400;
+        long doy = (153 * (mon + (mon > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146097 + doe - 719468;
+    }
+
+    /**
+     * Inverse of daysFromCivil, packed as year * 10000 + month * 100 + day
+     */
+    private static int civilFromDays(long epochDays) {
+        long z = epochDays + 719468;
+        long era = (z >= 0 ? z : z - 146096) / 146097;
+        long doe = z - era * 146097;
+        long yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+        long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        long mp = (5 * doy + 2) / 153;
+        int day = (int) (doy - (153 * mp + 2) / 5 + 1);
+        int mon = (int) (mp < 10 ? mp + 3 : mp - 9);
+        int year = (int) (yoe + era * 400 + (mon <= 2 ? 1 : 0));
+        return year * 10000 + mon * 100 + day;
+    }
+
+    Date getTimeAfterByCalendar(Date afterTime) {
 
         // Computation is based on Gregorian year only.
         Calendar cl = new java.util.GregorianCalendar(getTimeZone());
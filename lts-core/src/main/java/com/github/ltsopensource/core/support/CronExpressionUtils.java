@@ -4,38 +4,72 @@ import com.github.ltsopensource.core.exception.CronException;
 
 import java.text.ParseException;
 import java.util.Date;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author Robert HG (254963746@qq.com) on 5/27/15.
  */
 public class CronExpressionUtils {
 
+    // 缓存的最大表达式个数
+    private static final int MAX_CACHE_SIZE = 4096;
+    // 解析过的表达式缓存, 只在这里使用, 不会被修改
+    private static final ConcurrentHashMap<String, CronExpression> CACHE = new ConcurrentHashMap<String, CronExpression>();
+
     private CronExpressionUtils() {
     }
 
     public static Date getNextTriggerTime(String cronExpression) {
-        try {
-            CronExpression cron = new CronExpression(cronExpression);
-            return cron.getTimeAfter(new Date());
-        } catch (ParseException e) {
-            throw new CronException(e);
-        }
+        return getCronExpression(cronExpression).getTimeAfter(new Date());
     }
 
     public static Date getNextTriggerTime(String cronExpression, Date timeAfter) {
+        CronExpression cron = getCronExpression(cronExpression);
+        if (timeAfter == null) {
+            timeAfter = new Date();
+        }
+        return cron.getTimeAfter(timeAfter);
+    }
+
+    public static boolean isValidExpression(String cronExpression) {
+        if (cronExpression != null && CACHE.containsKey(cronExpression)) {
+            return true;
+        }
+        return CronExpression.isValidExpression(cronExpression);
+    }
+
+    private static CronExpression getCronExpression(String cronExpression) {
+        if (cronExpression == null) {
+            throw new CronException("cronExpression cannot be null");
+        }
+        CronExpression cron = CACHE.get(cronExpression);
+        if (cron != null) {
+            return cron;
+        }
         try {
-            CronExpression cron = new CronExpression(cronExpression);
-            if (timeAfter == null) {
-                timeAfter = new Date();
-            }
-            return cron.getTimeAfter(timeAfter);
+            cron = new CronExpression(cronExpression);
         } catch (ParseException e) {
             throw new CronException(e);
         }
+        if (CACHE.size() >= MAX_CACHE_SIZE) {
+            evict();
+        }
+        CronExpression old = CACHE.putIfAbsent(cronExpression, cron);
+        return old != null ? old : cron;
     }
 
-    public static boolean isValidExpression(String cronExpression) {
-        return CronExpression.isValidExpression(cronExpression);
+    /**
+     * 超过上限之后随便淘汰掉四分之一, 正常情况下表达式的个数远小于上限
+     */
+    private static void evict() {
+        int needRemoveSize = CACHE.size() - MAX_CACHE_SIZE * 3 / 4;
+        Iterator<String> iterator = CACHE.keySet().iterator();
+        while (needRemoveSize > 0 && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+            needRemoveSize--;
+        }
     }
 
 }
@@ -79,6 +79,8 @@ public class JobUtils {
     public static JobPo copy(JobPo source) {
         JobPo jobPo = new JobPo();
         JOB_PO_BEAN_COPIER.copyProps(source, jobPo);
+        // isRunning 的getter是 isRunning(), BeanCopier 找不到
+        jobPo.setIsRunning(source.isRunning());
         return jobPo;
     }
 
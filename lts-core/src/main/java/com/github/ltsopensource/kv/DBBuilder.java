@@ -1,10 +1,13 @@
 package com.github.ltsopensource.kv;
 
 import com.github.ltsopensource.core.constant.Constants;
+import com.github.ltsopensource.kv.index.IndexType;
 import com.github.ltsopensource.kv.serializer.JsonStoreSerializer;
 import com.github.ltsopensource.kv.serializer.StoreSerializer;
+import com.github.ltsopensource.kv.txlog.TxLogFlushMode;
 
 import java.io.File;
+import java.lang.reflect.Type;
 
 /**
  * @author Robert HG (254963746@qq.com) on 12/15/15.
@@ -44,6 +47,46 @@ public class DBBuilder<K, V> {
         return this;
     }
 
+    public DBBuilder<K, V> setDataBlockFileSize(int dataBlockFileSize) {
+        this.storeConfig.setDataBlockFileSize(dataBlockFileSize);
+        return this;
+    }
+
+    public DBBuilder<K, V> setDataBlockCompactCheckInterval(int dataBlockCompactCheckInterval) {
+        this.storeConfig.setDataBlockCompactCheckInterval(dataBlockCompactCheckInterval);
+        return this;
+    }
+
+    public DBBuilder<K, V> setDataBlockCompactDeleteDelay(int dataBlockCompactDeleteDelay) {
+        this.storeConfig.setDataBlockCompactDeleteDelay(dataBlockCompactDeleteDelay);
+        return this;
+    }
+
+    public DBBuilder<K, V> setTxLogFlushMode(TxLogFlushMode txLogFlushMode) {
+        this.storeConfig.setTxLogFlushMode(txLogFlushMode);
+        return this;
+    }
+
+    public DBBuilder<K, V> setGroupCommitMaxBatchSize(int groupCommitMaxBatchSize) {
+        this.storeConfig.setGroupCommitMaxBatchSize(groupCommitMaxBatchSize);
+        return this;
+    }
+
+    public DBBuilder<K, V> setEnableMmapRead(boolean enableMmapRead) {
+        this.storeConfig.setEnableMmapRead(enableMmapRead);
+        return this;
+    }
+
+    public DBBuilder<K, V> setIndexType(IndexType indexType) {
+        this.storeConfig.setIndexType(indexType);
+        return this;
+    }
+
+    public DBBuilder<K, V> setKeyType(Type keyType) {
+        this.storeConfig.setKeyType(keyType);
+        return this;
+    }
+
     public DBBuilder<K, V> setSerializer(StoreSerializer serializer) {
         this.serializer = serializer;
         return this;
@@ -5,20 +5,21 @@ import com.github.ltsopensource.kv.cache.DataCache;
 import com.github.ltsopensource.kv.cache.LRUDataCache;
 import com.github.ltsopensource.kv.data.DataAppendResult;
 import com.github.ltsopensource.kv.data.DataBlockEngine;
+import com.github.ltsopensource.kv.data.DataCompactor;
 import com.github.ltsopensource.kv.index.*;
 import com.github.ltsopensource.kv.iterator.DBIterator;
 import com.github.ltsopensource.kv.replay.TxLogReplay;
 import com.github.ltsopensource.kv.serializer.StoreSerializer;
 import com.github.ltsopensource.kv.txlog.StoreTxLogEngine;
-import com.github.ltsopensource.kv.txlog.StoreTxLogPosition;
 
 import java.io.Closeable;
 
 /**
  * ------- PUT(REMOVE) --------
+ * 由 {@link GroupCommitWriter} 组提交, 每一批:
  * 1. 一次 事务日志 (TxLog) 的顺序写入
  * 2. 一次 数据文件 (Data) 的顺序写入
- * 3. 一次 内存索引 (Index) 的写入  (后面实现B+树)
+ * 3. 内存索引 (Index) 的写入  (后面实现B+树)
  * 4. 数据缓存
  * <p/>
  * ------- GET --------
@@ -36,6 +37,8 @@ public class DBImpl<K, V> implements DB<K, V>, Closeable {
     private DataCache<K, V> dataCache;
     private IndexSnapshot<K, V> indexSnapshot;
     private TxLogReplay<K, V> txLogReplay;
+    private DataCompactor<K, V> dataCompactor;
+    private volatile GroupCommitWriter<K, V> groupCommitWriter;
 
     public DBImpl(StoreSerializer serializer, StoreConfig storeConfig) {
         this.storeConfig = storeConfig;
@@ -48,6 +51,13 @@ public class DBImpl<K, V> implements DB<K, V>, Closeable {
             this.txLogReplay = new TxLogReplay<K, V>(storeTxLogEngine, dataBlockEngine, index, dataCache);
             this.indexSnapshot = new MemIndexSnapshot<K, V>(txLogReplay, index, storeConfig, serializer);
             ((MemIndex<K, V>) this.index).setIndexSnapshot(this.indexSnapshot);
+            this.dataCompactor = new DataCompactor<K, V>(storeConfig, dataBlockEngine, index, indexSnapshot);
+        } else if (IndexType.OFF_HEAP == storeConfig.getIndexType()) {
+            this.index = new OffHeapIndex<K, V>(storeConfig, serializer, dataBlockEngine, dataCache);
+            this.txLogReplay = new TxLogReplay<K, V>(storeTxLogEngine, dataBlockEngine, index, dataCache);
+            this.indexSnapshot = new OffHeapIndexSnapshot<K, V>(txLogReplay, index, storeConfig, serializer);
+            ((OffHeapIndex<K, V>) this.index).setIndexSnapshot(this.indexSnapshot);
+            this.dataCompactor = new DataCompactor<K, V>(storeConfig, dataBlockEngine, index, indexSnapshot);
         } else {
             throw new IllegalArgumentException("Illegal IndexEngine " + storeConfig.getIndexType());
         }
@@ -60,6 +70,12 @@ public class DBImpl<K, V> implements DB<K, V>, Closeable {
             storeTxLogEngine.init();
             dataBlockEngine.init();
             indexSnapshot.init();
+            dataCompactor.init();
+
+            if (groupCommitWriter == null || groupCommitWriter.isStopped()) {
+                groupCommitWriter = new GroupCommitWriter<K, V>(storeConfig, storeTxLogEngine, dataBlockEngine, index, dataCache);
+                groupCommitWriter.start();
+            }
 
         } catch (Exception e) {
             throw new DBException("DB init error:" + e.getMessage(), e);
@@ -90,42 +106,32 @@ public class DBImpl<K, V> implements DB<K, V>, Closeable {
     }
 
     public void put(K key, V value) {
-
-        // 1. 先写Log
-        StoreTxLogPosition storeTxLogPosition = storeTxLogEngine.append(Operation.PUT, key, value);
-
-        // 2. 写Data
-        DataAppendResult dataAppendResult = dataBlockEngine.append(storeTxLogPosition, key, value);
-
-        // 3. 写Index
-        index.putIndexItem(storeTxLogPosition, key, convertToIndex(key, dataAppendResult));
-
-        // 4. 写缓存
-        dataCache.put(key, value);
+        groupCommitWriter.write(Operation.PUT, key, value);
     }
 
     public void remove(K key) {
-        // 先移除缓存
-        dataCache.remove(key);
-
-        // 1. 先写Log
-        StoreTxLogPosition storeTxLogPosition = storeTxLogEngine.append(Operation.REMOVE, key);
-
-        // 2. 移除Index
-        IndexItem<K> indexItem = index.removeIndexItem(storeTxLogPosition, key);
-
-        if (indexItem != null) {
-            // 3. 移除Data
-            dataBlockEngine.remove(storeTxLogPosition, indexItem);
-        }
+        groupCommitWriter.write(Operation.REMOVE, key, null);
     }
 
     public DBIterator<Entry<K, V>> iterator() {
         return index.iterator();
     }
 
+    public DataCompactor<K, V> getDataCompactor() {
+        return dataCompactor;
+    }
+
     @Override
     public void close() {
+        // 先停止合并, 合并会读写 DataBlock
+        dataCompactor.close();
+        index.close();
+        indexSnapshot.close();
+        if (groupCommitWriter != null) {
+            groupCommitWriter.shutdown();
+        }
+        storeTxLogEngine.close();
+        dataBlockEngine.close();
         dataCache.clear();
     }
 
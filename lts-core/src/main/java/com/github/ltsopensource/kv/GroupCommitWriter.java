@@ -0,0 +1,221 @@
+package com.github.ltsopensource.kv;
+
+import com.github.ltsopensource.core.logger.Logger;
+import com.github.ltsopensource.kv.cache.DataCache;
+import com.github.ltsopensource.kv.data.DataAppendResult;
+import com.github.ltsopensource.kv.data.DataBlockEngine;
+import com.github.ltsopensource.kv.index.Index;
+import com.github.ltsopensource.kv.index.IndexItem;
+import com.github.ltsopensource.kv.txlog.StoreTxLogEngine;
+import com.github.ltsopensource.kv.txlog.StoreTxLogPosition;
+import com.github.ltsopensource.remoting.common.ServiceThread;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 组提交
+ * 1. PUT(REMOVE) 先入队, 调用线程等待确认
+ * 2. 写线程每次取出一批, 事务日志一次连续写入, 按 {@link com.github.ltsopensource.kv.txlog.TxLogFlushMode} 整批刷盘一次
+ * 3. 数据用复用的直接内存一次写入 DataBlock, 再按顺序更新索引和缓存
+ * 4. 整批一起确认, 出错时已经生效(更新了索引)的确认成功, 其余的从事务日志中回滚后返回失败
+ */
+public class GroupCommitWriter<K, V> extends ServiceThread {
+
+    private static final Logger LOGGER = DB.LOGGER;
+
+    private StoreConfig storeConfig;
+    private StoreTxLogEngine<K, V> storeTxLogEngine;
+    private DataBlockEngine<K, V> dataBlockEngine;
+    private Index<K, V> index;
+    private DataCache<K, V> dataCache;
+
+    private final LinkedBlockingQueue<WriteRequest<K, V>> queue = new LinkedBlockingQueue<WriteRequest<K, V>>();
+
+    public GroupCommitWriter(StoreConfig storeConfig, StoreTxLogEngine<K, V> storeTxLogEngine,
+                             DataBlockEngine<K, V> dataBlockEngine, Index<K, V> index, DataCache<K, V> dataCache) {
+        this.storeConfig = storeConfig;
+        this.storeTxLogEngine = storeTxLogEngine;
+        this.dataBlockEngine = dataBlockEngine;
+        this.index = index;
+        this.dataCache = dataCache;
+        this.thread.setDaemon(true);
+    }
+
+    @Override
+    public String getServiceName() {
+        return "ltsdb-group-commit-writer";
+    }
+
+    /**
+     * 提交并等待确认
+     */
+    public void write(Operation op, K key, V value) throws DBException {
+        if (isStopped()) {
+            throw new DBException("DB is closed");
+        }
+        WriteRequest<K, V> request = new WriteRequest<K, V>(op, key, value);
+        queue.offer(request);
+        // 停止之后入队的请求不会再被处理
+        if (isStopped() && queue.remove(request)) {
+            throw new DBException("DB is closed");
+        }
+        request.await();
+    }
+
+    @Override
+    public void run() {
+
+        LOGGER.info(this.getServiceName() + " service started");
+
+        List<WriteRequest<K, V>> batch = new ArrayList<WriteRequest<K, V>>(storeConfig.getGroupCommitMaxBatchSize());
+        while (!this.isStopped()) {
+            try {
+                WriteRequest<K, V> first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, storeConfig.getGroupCommitMaxBatchSize() - 1);
+                commit(batch);
+            } catch (InterruptedException ignored) {
+            } finally {
+                batch.clear();
+            }
+        }
+
+        // 停止之后把剩下的写完
+        while (queue.drainTo(batch, storeConfig.getGroupCommitMaxBatchSize()) > 0) {
+            commit(batch);
+            batch.clear();
+        }
+        LOGGER.info(this.getServiceName() + " service end");
+    }
+
+    private void commit(List<WriteRequest<K, V>> batch) {
+
+        // 1. 序列化, 单条失败不影响其他的
+        List<WriteRequest<K, V>> requests = new ArrayList<WriteRequest<K, V>>(batch.size());
+        List<byte[]> txLogEntries = new ArrayList<byte[]>(batch.size());
+        List<byte[]> dataBytesList = new ArrayList<byte[]>(batch.size());
+        for (WriteRequest<K, V> request : batch) {
+            try {
+                byte[] txLogEntry = storeTxLogEngine.toEntryBytes(request.op, request.key, request.value);
+                if (request.op == Operation.PUT) {
+                    dataBytesList.add(dataBlockEngine.toDataBytes(request.key, request.value));
+                }
+                txLogEntries.add(txLogEntry);
+                requests.add(request);
+            } catch (Throwable t) {
+                request.done(t);
+            }
+        }
+        if (requests.size() == 0) {
+            return;
+        }
+
+        // 2. 写Log, 失败时整批已经回滚
+        List<StoreTxLogPosition> positions;
+        try {
+            positions = storeTxLogEngine.append(txLogEntries);
+        } catch (Throwable t) {
+            LOGGER.error("group commit error:" + t.getMessage(), t);
+            for (WriteRequest<K, V> request : requests) {
+                request.done(t);
+            }
+            return;
+        }
+
+        // 已经生效的条数
+        int applied = 0;
+        try {
+            // 3. 写Data
+            List<StoreTxLogPosition> dataPositions = new ArrayList<StoreTxLogPosition>(dataBytesList.size());
+            for (int i = 0; i < requests.size(); i++) {
+                if (requests.get(i).op == Operation.PUT) {
+                    dataPositions.add(positions.get(i));
+                }
+            }
+            List<DataAppendResult> dataAppendResults = dataBlockEngine.append(dataPositions, dataBytesList);
+
+            // 4. 按顺序写Index和缓存
+            int dataIndex = 0;
+            for (int i = 0; i < requests.size(); i++) {
+                WriteRequest<K, V> request = requests.get(i);
+                StoreTxLogPosition position = positions.get(i);
+                if (request.op == Operation.PUT) {
+                    IndexItem<K> indexItem = index.putIndexItem(position, request.key,
+                            DBImpl.convertToIndex(request.key, dataAppendResults.get(dataIndex++)));
+                    applied = i + 1;
+                    dataCache.put(request.key, request.value);
+                    if (indexItem != null) {
+                        // 覆盖的老数据逻辑删除
+                        dataBlockEngine.remove(position, indexItem);
+                    }
+                } else {
+                    dataCache.remove(request.key);
+                    IndexItem<K> indexItem = index.removeIndexItem(position, request.key);
+                    applied = i + 1;
+                    if (indexItem != null) {
+                        dataBlockEngine.remove(position, indexItem);
+                    }
+                }
+            }
+        } catch (Throwable t) {
+            LOGGER.error("group commit error:" + t.getMessage(), t);
+            if (applied < requests.size()) {
+                // 没有生效的从事务日志中回滚, 否则重启重放时又会生效
+                try {
+                    storeTxLogEngine.rollback(positions.get(applied));
+                } catch (Throwable e) {
+                    LOGGER.error("group commit rollback dbLog error:" + e.getMessage(), e);
+                }
+            }
+            for (int i = 0; i < requests.size(); i++) {
+                requests.get(i).done(i < applied ? null : t);
+            }
+            return;
+        }
+
+        for (WriteRequest<K, V> request : requests) {
+            request.done(null);
+        }
+    }
+
+    private static class WriteRequest<K, V> {
+
+        private final Operation op;
+        private final K key;
+        private final V value;
+        private final CountDownLatch latch = new CountDownLatch(1);
+        private volatile Throwable error;
+
+        WriteRequest(Operation op, K key, V value) {
+            this.op = op;
+            this.key = key;
+            this.value = value;
+        }
+
+        void done(Throwable error) {
+            this.error = error;
+            latch.countDown();
+        }
+
+        void await() {
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                throw new DBException("wait for group commit interrupted", e);
+            }
+            if (error != null) {
+                if (error instanceof DBException) {
+                    throw (DBException) error;
+                }
+                throw new DBException(error.getMessage(), error);
+            }
+        }
+    }
+}
@@ -2,8 +2,10 @@ package com.github.ltsopensource.kv;
 
 import com.github.ltsopensource.kv.index.IndexType;
 import com.github.ltsopensource.kv.txlog.StoreTxLogPosition;
+import com.github.ltsopensource.kv.txlog.TxLogFlushMode;
 
 import java.io.File;
+import java.lang.reflect.Type;
 
 /**
  * @author Robert HG (254963746@qq.com) on 12/15/15.
@@ -33,8 +35,14 @@ public class StoreConfig {
     private int maxxLogEntryLength = 1024;
     // dblog 定时刷盘时间
     private int dbLogFlushInterval = 1000;
+    // 事务日志刷盘策略
+    private TxLogFlushMode txLogFlushMode = TxLogFlushMode.INTERVAL;
+    // 组提交每批最多的记录数
+    private int groupCommitMaxBatchSize = 256;
     // 索引的引擎类型
     private IndexType indexType = IndexType.MEM;
+    // key的类型, 堆外索引遍历时反序列化key用
+    private Type keyType = Object.class;
     // 最大的data缓存大小
     private int maxDataCacheSize = 1000;
     // 启动时候读取出来的最后一个事务日志ID
@@ -43,6 +51,14 @@ public class StoreConfig {
     private int maxIndexSnapshotSize = 3;
     // DataBlock 合并检查间隔
     private int dataBlockCompactCheckInterval = 60 * 1000;
+    // 存活记录比例低于这个值的只读 DataBlock 才合并
+    private float dataBlockCompactAliveRatio = 0.5f;
+    // 合并时每秒最多读写的字节数, 10M
+    private int dataBlockCompactBytesPerSecond = 10 * 1024 * 1024;
+    // 合并完成后延迟删除老文件的时间, 等正在进行的读完成
+    private int dataBlockCompactDeleteDelay = 10 * 1000;
+    // 只读的 DataBlock 是否映射到内存读
+    private boolean enableMmapRead = false;
     // index每次批量写入的size是100条
     private int indexSnapshotBatchSize = 100;
 
@@ -118,6 +134,14 @@ public class StoreConfig {
         this.indexType = indexType;
     }
 
+    public Type getKeyType() {
+        return keyType;
+    }
+
+    public void setKeyType(Type keyType) {
+        this.keyType = keyType;
+    }
+
     public int getMaxDataCacheSize() {
         return maxDataCacheSize;
     }
@@ -174,6 +198,30 @@ public class StoreConfig {
         this.dataBlockCompactCheckInterval = dataBlockCompactCheckInterval;
     }
 
+    public float getDataBlockCompactAliveRatio() {
+        return dataBlockCompactAliveRatio;
+    }
+
+    public void setDataBlockCompactAliveRatio(float dataBlockCompactAliveRatio) {
+        this.dataBlockCompactAliveRatio = dataBlockCompactAliveRatio;
+    }
+
+    public int getDataBlockCompactBytesPerSecond() {
+        return dataBlockCompactBytesPerSecond;
+    }
+
+    public void setDataBlockCompactBytesPerSecond(int dataBlockCompactBytesPerSecond) {
+        this.dataBlockCompactBytesPerSecond = dataBlockCompactBytesPerSecond;
+    }
+
+    public int getDataBlockCompactDeleteDelay() {
+        return dataBlockCompactDeleteDelay;
+    }
+
+    public void setDataBlockCompactDeleteDelay(int dataBlockCompactDeleteDelay) {
+        this.dataBlockCompactDeleteDelay = dataBlockCompactDeleteDelay;
+    }
+
     public int getIndexSnapshotThreshold() {
         return indexSnapshotThreshold;
     }
@@ -189,4 +237,28 @@ public class StoreConfig {
     public void setIndexSnapshotBatchSize(int indexSnapshotBatchSize) {
         this.indexSnapshotBatchSize = indexSnapshotBatchSize;
     }
+
+    public boolean isEnableMmapRead() {
+        return enableMmapRead;
+    }
+
+    public void setEnableMmapRead(boolean enableMmapRead) {
+        this.enableMmapRead = enableMmapRead;
+    }
+
+    public TxLogFlushMode getTxLogFlushMode() {
+        return txLogFlushMode;
+    }
+
+    public void setTxLogFlushMode(TxLogFlushMode txLogFlushMode) {
+        this.txLogFlushMode = txLogFlushMode;
+    }
+
+    public int getGroupCommitMaxBatchSize() {
+        return groupCommitMaxBatchSize;
+    }
+
+    public void setGroupCommitMaxBatchSize(int groupCommitMaxBatchSize) {
+        this.groupCommitMaxBatchSize = groupCommitMaxBatchSize;
+    }
 }
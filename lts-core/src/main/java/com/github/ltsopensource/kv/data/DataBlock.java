@@ -1,7 +1,6 @@
 package com.github.ltsopensource.kv.data;
 
 import com.github.ltsopensource.core.commons.file.FileUtils;
-import com.github.ltsopensource.core.commons.io.UnsafeByteArrayInputStream;
 import com.github.ltsopensource.kv.CapacityNotEnoughException;
 import com.github.ltsopensource.kv.DB;
 import com.github.ltsopensource.kv.DBException;
@@ -14,10 +13,12 @@ import com.github.ltsopensource.remoting.common.ServiceThread;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.lang.reflect.Method;
 import java.nio.ByteBuffer;
-import java.nio.channels.Channels;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
-import java.nio.channels.ReadableByteChannel;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * 每个数据块格式
@@ -49,6 +50,11 @@ public class DataBlock {
 
     private FlushDataService flushDataService;
 
+    // 只读之后映射到内存, 读的时候直接从映射内存读
+    private volatile MappedByteBuffer mappedByteBuffer;
+    // 读映射内存时持有读锁, 解除映射要等读完, 否则释放之后再访问会导致JVM崩溃
+    private final ReentrantReadWriteLock mapLock = new ReentrantReadWriteLock();
+
     public DataBlock(String fileName, StoreConfig storeConfig) throws IOException {
         this.fileName = fileName;
         this.fileId = Long.parseLong(fileName.substring(0, fileName.lastIndexOf(".")));
@@ -66,6 +72,10 @@ public class DataBlock {
         this(System.currentTimeMillis() + FILE_SUFFIX, storeConfig);
     }
 
+    public DataBlock(long fileId, StoreConfig storeConfig) throws IOException {
+        this(fileId + FILE_SUFFIX, storeConfig);
+    }
+
     private void init() throws IOException {
 
         boolean success = false;
@@ -137,11 +147,9 @@ public class DataBlock {
                 throw new CapacityNotEnoughException();
             }
 
-            ReadableByteChannel src = Channels.newChannel(new UnsafeByteArrayInputStream(dataBytes));
-
             long position = fileHeader.getFileLength();
 
-            fileChannel.transferFrom(src, position, length);
+            writeFully(ByteBuffer.wrap(dataBytes), position);
 
             result.setFileId(fileId);
             result.setFromIndex(position);
@@ -158,6 +166,74 @@ public class DataBlock {
         return result;
     }
 
+    /**
+     * 批量写data, 用调用方复用的 buffer 拼成连续写入
+     * 从 fromIndex 开始尽量多写, 容量不够时标记为满, 只写能放下的部分
+     *
+     * @param txLogs     每条data对应的事务日志位置
+     * @param buffer     复用的写缓冲区, 容量不能小于单条data的最大长度
+     * @return 写入的条数
+     */
+    public int append(List<StoreTxLogPosition> txLogs, List<byte[]> dataBytesList, int fromIndex,
+                      ByteBuffer buffer, List<DataAppendResult> results) throws IOException {
+
+        synchronized (this) {
+
+            long writePosition = fileHeader.getFileLength();
+            long position = writePosition;
+            buffer.clear();
+
+            int index = fromIndex;
+            for (; index < dataBytesList.size(); index++) {
+                byte[] dataBytes = dataBytesList.get(index);
+                int length = dataBytes.length;
+                if (length > maxDataEntrySize) {
+                    throw new DBException("Value size can not great than " + maxDataEntrySize);
+                }
+                if (position + length >= fileSize) {
+                    fileHeader.markFull();
+                    break;
+                }
+                if (buffer.remaining() < length) {
+                    buffer.flip();
+                    writePosition += writeFully(buffer, writePosition);
+                    buffer.clear();
+                }
+                buffer.put(dataBytes);
+
+                DataAppendResult result = new DataAppendResult();
+                result.setFileId(fileId);
+                result.setFromIndex(position);
+                result.setLength(length);
+                results.add(result);
+
+                position += length;
+            }
+
+            int num = index - fromIndex;
+            if (num == 0) {
+                throw new CapacityNotEnoughException();
+            }
+            buffer.flip();
+            writeFully(buffer, writePosition);
+
+            fileHeader.setFileLength(position);
+            fileHeader.getTotalNum().addAndGet(num);
+            fileHeader.getAliveNum().addAndGet(num);
+
+            this.lastTxLogPosition = txLogs.get(index - 1);
+            return num;
+        }
+    }
+
+    private int writeFully(ByteBuffer buffer, long position) throws IOException {
+        int written = 0;
+        while (buffer.hasRemaining()) {
+            written += fileChannel.write(buffer, position + written);
+        }
+        return written;
+    }
+
     public boolean isFull() {
         return fileHeader.isFull();
     }
@@ -183,13 +259,140 @@ public class DataBlock {
      */
     public byte[] readData(long fromIndex, int length) throws IOException {
 
-        fileChannel.position(fromIndex);
+        mapLock.readLock().lock();
+        try {
+            ByteBuffer mapped = mappedSlice(fromIndex, length);
+            if (mapped != null) {
+                byte[] data = new byte[length];
+                mapped.get(data);
+                return data;
+            }
+        } finally {
+            mapLock.readLock().unlock();
+        }
 
         ByteBuffer byteBuffer = ByteBuffer.allocate(length);
-        fileChannel.read(byteBuffer);
+        // 按位置读, 不改变channel的position, 可以和合并线程并发读
+        long position = fromIndex;
+        while (byteBuffer.hasRemaining()) {
+            int read = fileChannel.read(byteBuffer, position);
+            if (read < 0) {
+                throw new IOException("read data block " + fileName + " EOF, fromIndex:" + fromIndex + ", length:" + length);
+            }
+            position += read;
+        }
         return byteBuffer.array();
     }
 
+    /**
+     * 读取指定位置数据交给 reader 处理, 已经映射到内存的直接传映射内存的视图, 不拷贝
+     * reader 返回之后不能再访问传入的 buffer
+     */
+    public <T> T readData(long fromIndex, int length, DataReader<T> reader) throws IOException {
+        mapLock.readLock().lock();
+        try {
+            ByteBuffer mapped = mappedSlice(fromIndex, length);
+            if (mapped != null) {
+                return reader.read(mapped);
+            }
+        } finally {
+            mapLock.readLock().unlock();
+        }
+        return reader.read(ByteBuffer.wrap(readData(fromIndex, length)));
+    }
+
+    private ByteBuffer mappedSlice(long fromIndex, int length) {
+        MappedByteBuffer buffer = this.mappedByteBuffer;
+        if (buffer == null || fromIndex + length > buffer.capacity()) {
+            return null;
+        }
+        ByteBuffer slice = buffer.duplicate();
+        slice.limit((int) fromIndex + length);
+        slice.position((int) fromIndex);
+        return slice;
+    }
+
+    /**
+     * 只读的block映射到内存, 之后不会再写入
+     */
+    public void mmap() throws IOException {
+        synchronized (this) {
+            if (mappedByteBuffer == null) {
+                mappedByteBuffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, fileHeader.getFileLength());
+            }
+        }
+    }
+
+    /**
+     * 解除内存映射, 之后的读走FileChannel
+     */
+    public void unmap() {
+        MappedByteBuffer buffer;
+        synchronized (this) {
+            buffer = mappedByteBuffer;
+            mappedByteBuffer = null;
+        }
+        if (buffer == null) {
+            return;
+        }
+        // 等正在读映射内存的读完, 之后的读走FileChannel
+        mapLock.writeLock().lock();
+        try {
+            // 不主动释放的话要等GC才会解除映射, 文件删除之后磁盘空间也不会释放
+            Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(buffer);
+            if (cleaner != null) {
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+            }
+        } catch (Throwable t) {
+            LOGGER.warn("unmap data block " + fileName + " error:" + t.getMessage());
+        } finally {
+            mapLock.writeLock().unlock();
+        }
+    }
+
+    public int getTotalNum() {
+        return fileHeader.getTotalNum().get();
+    }
+
+    public int getAliveNum() {
+        return fileHeader.getAliveNum().get();
+    }
+
+    /**
+     * 数据部分的长度(不包括文件头)
+     */
+    public long getDataLength() {
+        return fileHeader.getFileLength() - fileHeader.getLength();
+    }
+
+    /**
+     * 标记为满了, 不再写入
+     */
+    public void markFull() {
+        fileHeader.markFull();
+    }
+
+    /**
+     * 合并时一条存活的记录移到了新的block
+     */
+    void removeMovedData() {
+        fileHeader.getAliveNum().decrementAndGet();
+    }
+
+    /**
+     * 关闭并删除文件
+     */
+    public void delete() throws IOException {
+        flushDataService.shutdown();
+        unmap();
+        synchronized (this) {
+            fileChannel.close();
+        }
+        FileUtils.delete(file);
+    }
+
     private int totalNum;
     private int aliveNum;
 
@@ -247,4 +450,8 @@ public class DataBlock {
             }
         }
     }
+
+    public interface DataReader<T> {
+        T read(ByteBuffer data) throws IOException;
+    }
 }
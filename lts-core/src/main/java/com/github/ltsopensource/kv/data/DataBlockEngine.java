@@ -1,7 +1,7 @@
 package com.github.ltsopensource.kv.data;
 
 import com.github.ltsopensource.core.commons.file.FileUtils;
-import com.github.ltsopensource.core.commons.io.UnsafeByteArrayInputStream;
+import com.github.ltsopensource.core.commons.io.ByteBufferInputStream;
 import com.github.ltsopensource.core.commons.io.UnsafeByteArrayOutputStream;
 import com.github.ltsopensource.core.json.TypeReference;
 import com.github.ltsopensource.core.logger.Logger;
@@ -16,6 +16,8 @@ import com.github.ltsopensource.kv.txlog.StoreTxLogPosition;
 import java.io.File;
 import java.io.FilenameFilter;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -40,6 +42,9 @@ public class DataBlockEngine<K, V> {
     private StoreConfig storeConfig;
     private ReentrantLock lock = new ReentrantLock();
     private DataCompactor dataCompactor;
+    // 批量写入复用的直接内存, 单条data最大1000 byte
+    private ByteBuffer batchBuffer;
+    private static final int BATCH_BUFFER_SIZE = 64 * 1024;
 
     public DataBlockEngine(StoreSerializer serializer, StoreConfig storeConfig) {
         this.serializer = serializer;
@@ -78,6 +83,7 @@ public class DataBlockEngine<K, V> {
                 NAME_BLOCK_MAP.put(dataBlock.getFileId(), dataBlock);
                 if (dataBlock.isFull()) {
                     readonlyBlocks.add(dataBlock);
+                    mmap(dataBlock);
                 } else {
                     writableBlocks.add(dataBlock);
                 }
@@ -97,25 +103,105 @@ public class DataBlockEngine<K, V> {
         return readonlyBlocks;
     }
 
+    protected DataBlock getDataBlock(long fileId) {
+        return NAME_BLOCK_MAP.get(fileId);
+    }
+
+    /**
+     * 创建合并用的block, 可以读, 但是在合并完成之前不会被正常写入
+     */
+    protected DataBlock createCompactBlock() throws IOException {
+        lock.lock();
+        try {
+            DataBlock dataBlock = new DataBlock(nextFileId(), storeConfig);
+            NAME_BLOCK_MAP.put(dataBlock.getFileId(), dataBlock);
+            return dataBlock;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 合并完成, 没满的可以继续写入
+     */
+    protected void addCompactedBlock(DataBlock dataBlock) {
+        if (dataBlock.isFull()) {
+            readonlyBlocks.add(dataBlock);
+            mmap(dataBlock);
+        } else {
+            writableBlocks.add(dataBlock);
+        }
+    }
+
+    /**
+     * 移除已经合并的block, 之后不能再读
+     */
+    protected void removeBlock(DataBlock dataBlock) {
+        readonlyBlocks.remove(dataBlock);
+        NAME_BLOCK_MAP.remove(dataBlock.getFileId(), dataBlock);
+    }
+
+    /**
+     * 文件名用时间戳, 合并时会同时创建block, 保证不重复
+     */
+    private long nextFileId() {
+        long fileId = System.currentTimeMillis();
+        while (NAME_BLOCK_MAP.containsKey(fileId) || new File(dataPath, fileId + DataBlock.FILE_SUFFIX).exists()) {
+            fileId++;
+        }
+        return fileId;
+    }
+
     /**
      * 追加一个键值对
      */
     public DataAppendResult append(StoreTxLogPosition storeTxLogPosition, K key, V value) {
+        try {
+            return append(storeTxLogPosition, toDataBytes(key, value));
+        } catch (Exception e) {
+            throw new DBException("Persistent data error: " + e.getMessage(), e);
+        }
+    }
 
+    /**
+     * 批量追加, 用复用的直接内存拼成连续写入, 当前block写满时接着写下一个block
+     *
+     * @param storeTxLogPositions 每条data对应的事务日志位置
+     */
+    public synchronized List<DataAppendResult> append(List<StoreTxLogPosition> storeTxLogPositions, List<byte[]> dataBytesList) {
+        List<DataAppendResult> results = new ArrayList<DataAppendResult>(dataBytesList.size());
+        if (batchBuffer == null) {
+            batchBuffer = ByteBuffer.allocateDirect(BATCH_BUFFER_SIZE);
+        }
+        try {
+            int index = 0;
+            while (index < dataBytesList.size()) {
+                DataBlock writeBlock = getWriteDataBlock();
+                try {
+                    index += writeBlock.append(storeTxLogPositions, dataBytesList, index, batchBuffer, results);
+                } catch (CapacityNotEnoughException e) {
+                    toReadonly(writeBlock);
+                }
+            }
+        } catch (DBException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new DBException("Persistent data error: " + e.getMessage(), e);
+        }
+        return results;
+    }
+
+    /**
+     * 序列化一个键值对
+     */
+    public byte[] toDataBytes(K key, V value) throws IOException {
         UnsafeByteArrayOutputStream out = new UnsafeByteArrayOutputStream();
         try {
             DataEntry<K, V> dataEntry = new DataEntry<K, V>(key, value);
             serializer.serialize(dataEntry, out);
-
-            return append(storeTxLogPosition, out.toByteArray());
-
-        } catch (Exception e) {
-            throw new DBException("Persistent data error: " + e.getMessage(), e);
+            return out.toByteArray();
         } finally {
-            try {
-                out.close();
-            } catch (IOException ignored) {
-            }
+            out.close();
         }
     }
 
@@ -125,11 +211,14 @@ public class DataBlockEngine<K, V> {
             if (dataBlock == null) {
                 return null;
             }
-            byte[] data = dataBlock.readData(index.getFromIndex(), index.getLength());
-
-            UnsafeByteArrayInputStream is = new UnsafeByteArrayInputStream(data);
-            DataEntry<K, V> dataEntry = serializer.deserialize(is, new TypeReference<DataEntry<K, V>>() {
-            }.getType());
+            // 内存映射时直接从映射内存解码, 解码完成之前不会解除映射
+            DataEntry<K, V> dataEntry = dataBlock.readData(index.getFromIndex(), index.getLength(), new DataBlock.DataReader<DataEntry<K, V>>() {
+                @Override
+                public DataEntry<K, V> read(ByteBuffer data) throws IOException {
+                    return serializer.deserialize(new ByteBufferInputStream(data), new TypeReference<DataEntry<K, V>>() {
+                    }.getType());
+                }
+            });
 
             return dataEntry.getValue();
 
@@ -162,7 +251,7 @@ public class DataBlockEngine<K, V> {
             if (writableBlocks.size() != 0) {
                 return writableBlocks.get(0);
             }
-            DataBlock dataBlock = new DataBlock(storeConfig);
+            DataBlock dataBlock = new DataBlock(nextFileId(), storeConfig);
             NAME_BLOCK_MAP.put(dataBlock.getFileId(), dataBlock);
             writableBlocks.add(dataBlock);
             return dataBlock;
@@ -180,13 +269,42 @@ public class DataBlockEngine<K, V> {
         try {
             return writeBlock.append(storeTxLogPosition, dataBytes);
         } catch (CapacityNotEnoughException e) {
-            if (!readonlyBlocks.contains(writeBlock)) {
-                readonlyBlocks.add(writeBlock);
-            }
-            writableBlocks.remove(writeBlock);
+            toReadonly(writeBlock);
 
             return append(storeTxLogPosition, dataBytes);
         }
     }
 
+    private void toReadonly(DataBlock writeBlock) {
+        if (!readonlyBlocks.contains(writeBlock)) {
+            readonlyBlocks.add(writeBlock);
+        }
+        writableBlocks.remove(writeBlock);
+        mmap(writeBlock);
+    }
+
+    /**
+     * 开启了内存映射读时, 只读的block映射到内存
+     */
+    private void mmap(DataBlock dataBlock) {
+        if (!storeConfig.isEnableMmapRead()) {
+            return;
+        }
+        try {
+            dataBlock.mmap();
+        } catch (IOException e) {
+            // 映射失败走FileChannel读
+            LOGGER.warn("mmap data block [" + dataBlock.getFileId() + "] error:" + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 解除所有的内存映射
+     */
+    public void close() {
+        for (DataBlock dataBlock : NAME_BLOCK_MAP.values()) {
+            dataBlock.unmap();
+        }
+    }
+
 }
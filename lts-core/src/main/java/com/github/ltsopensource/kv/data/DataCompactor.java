@@ -1,30 +1,71 @@
 package com.github.ltsopensource.kv.data;
 
+import com.github.ltsopensource.core.commons.concurrent.limiter.RateLimiter;
+import com.github.ltsopensource.core.factory.NamedThreadFactory;
+import com.github.ltsopensource.core.logger.Logger;
+import com.github.ltsopensource.core.support.SystemClock;
+import com.github.ltsopensource.kv.CapacityNotEnoughException;
 import com.github.ltsopensource.kv.DB;
+import com.github.ltsopensource.kv.DBImpl;
 import com.github.ltsopensource.kv.StoreConfig;
 import com.github.ltsopensource.kv.index.Index;
-import com.github.ltsopensource.core.logger.Logger;
+import com.github.ltsopensource.kv.index.IndexItem;
+import com.github.ltsopensource.kv.index.IndexSnapshot;
+import com.github.ltsopensource.kv.txlog.StoreTxLogPosition;
 
-import java.util.List;
-import java.util.concurrent.ScheduledExecutorService;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * TODO 负责将两个block合并成一个,合并的过程中会物理删除已经删除的数据, 而且要更新索引
+ * 负责将存活记录比较少的只读block合并到新的block中, 合并的过程中会物理删除已经删除的数据, 而且要更新索引
+ * 1. 选出存活比例低于 dataBlockCompactAliveRatio 的只读block
+ * 2. 按索引把存活的记录拷贝到新的block (限速), 并刷盘
+ * 3. 逐个CAS替换索引, 替换失败说明合并期间被覆盖或者删除了, 新block中的这条记录直接标记删除
+ * 4. 强制做一次索引快照, 保证重启后不会再引用老文件, 之后延迟删除存活数已经减到0的老文件, 没有减到0的留到下次合并
  *
  * @author Robert HG (254963746@qq.com) on 12/17/15.
  */
 public class DataCompactor<K, V> {
 
     private static final Logger LOGGER = DB.LOGGER;
-    private ScheduledExecutorService executorService;
+    // 关闭时等待正在进行的合并结束的最长时间
+    private static final long CLOSE_WAIT_SECONDS = 30;
+    private ScheduledThreadPoolExecutor executorService;
     private ScheduledFuture<?> future;
     private StoreConfig storeConfig;
     private Index<K, V> index;
+    private IndexSnapshot<K, V> indexSnapshot;
     private DataBlockEngine<K, V> dataBlockEngine;
     private AtomicBoolean running = new AtomicBoolean(false);
+    private RateLimiter rateLimiter;
+    private volatile boolean closed = false;
+    // 已经合并, 等待延迟删除的block
+    private final Set<DataBlock> pendingDeleteBlocks = Collections.synchronizedSet(new HashSet<DataBlock>());
+
+    // 合并次数
+    private final AtomicLong compactNum = new AtomicLong(0);
+    // 回收的字节数
+    private final AtomicLong reclaimedBytes = new AtomicLong(0);
+    // 合并总耗时
+    private final AtomicLong compactCostMillis = new AtomicLong(0);
+
+    public DataCompactor(StoreConfig storeConfig, DataBlockEngine<K, V> dataBlockEngine,
+                         Index<K, V> index, IndexSnapshot<K, V> indexSnapshot) {
+        this.storeConfig = storeConfig;
+        this.dataBlockEngine = dataBlockEngine;
+        this.index = index;
+        this.indexSnapshot = indexSnapshot;
+        this.rateLimiter = RateLimiter.create(storeConfig.getDataBlockCompactBytesPerSecond());
+        this.executorService = new ScheduledThreadPoolExecutor(1, new NamedThreadFactory("ltsdb-data-compact-service", true));
+        // 关闭之后不再等延迟删除, 由 close 直接删除
+        this.executorService.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
 
     public void init() {
         future = this.executorService.scheduleWithFixedDelay(
@@ -47,15 +88,191 @@ public class DataCompactor<K, V> {
                 storeConfig.getDataBlockCompactCheckInterval(), TimeUnit.MILLISECONDS);
     }
 
-    private void compact() {
-        // 未完成的compact文件
+    private void compact() throws IOException {
+
+        // 检查是否有需要合并的block, 存活比例小于 dataBlockCompactAliveRatio
+        Map<Long, DataBlock> sourceBlocks = new HashMap<Long, DataBlock>();
+        long maxTxLogRecordId = 0;
+        for (DataBlock dataBlock : dataBlockEngine.getReadonlyBlocks()) {
+            if (dataBlock.getAliveNum() < dataBlock.getTotalNum() * storeConfig.getDataBlockCompactAliveRatio()) {
+                sourceBlocks.put(dataBlock.getFileId(), dataBlock);
+                maxTxLogRecordId = Math.max(maxTxLogRecordId, dataBlock.getLastTxLogPosition().getRecordId());
+            }
+        }
+        if (sourceBlocks.size() == 0) {
+            return;
+        }
+
+        long startTime = SystemClock.now();
+        // 新block中的数据和老block中的数据一致, 事务日志位置不能比老block新
+        StoreTxLogPosition txLogPosition = new StoreTxLogPosition(maxTxLogRecordId);
+
+        // 拷贝存活的记录
+        List<DataBlock> targetBlocks = new ArrayList<DataBlock>();
+        List<IndexItem<K>> expects = new ArrayList<IndexItem<K>>();
+        List<IndexItem<K>> updates = new ArrayList<IndexItem<K>>();
+        DataBlock targetBlock = null;
+        long copiedBytes = 0;
+
+        Iterator<IndexItem<K>> iterator = index.indexItemIterator();
+        while (iterator.hasNext()) {
+            if (closed) {
+                // 还没有更新索引, 直接丢弃新block
+                abort(targetBlocks);
+                return;
+            }
+            IndexItem<K> indexItem = iterator.next();
+            DataBlock sourceBlock = sourceBlocks.get(indexItem.getFileId());
+            if (sourceBlock == null) {
+                continue;
+            }
+            // 读写限速
+            rateLimiter.acquire(indexItem.getLength());
+
+            byte[] data = sourceBlock.readData(indexItem.getFromIndex(), indexItem.getLength());
+
+            if (targetBlock == null) {
+                targetBlock = dataBlockEngine.createCompactBlock();
+                targetBlocks.add(targetBlock);
+            }
+            DataAppendResult result;
+            try {
+                result = targetBlock.append(txLogPosition, data);
+            } catch (CapacityNotEnoughException e) {
+                targetBlock = dataBlockEngine.createCompactBlock();
+                targetBlocks.add(targetBlock);
+                result = targetBlock.append(txLogPosition, data);
+            }
+            expects.add(indexItem);
+            updates.add(DBImpl.convertToIndex(indexItem.getKey(), result));
+            copiedBytes += data.length;
+        }
+
+        // 先把新的block刷盘, 再更新索引
+        for (DataBlock dataBlock : targetBlocks) {
+            dataBlock.flushDisk();
+        }
+
+        int movedNum = 0;
+        for (int i = 0; i < expects.size(); i++) {
+            IndexItem<K> update = updates.get(i);
+            IndexItem<K> expect = expects.get(i);
+            if (index.replaceIndexItem(update.getKey(), expect, update)) {
+                sourceBlocks.get(expect.getFileId()).removeMovedData();
+                movedNum++;
+            } else {
+                // 合并期间被覆盖或者删除了
+                dataBlockEngine.getDataBlock(update.getFileId()).removeData(txLogPosition, update.getFromIndex(), update.getLength());
+            }
+        }
+        for (DataBlock dataBlock : targetBlocks) {
+            dataBlockEngine.addCompactedBlock(dataBlock);
+        }
+        // 存活的记录没有全部移走的不能删除
+        Iterator<DataBlock> sourceIterator = sourceBlocks.values().iterator();
+        while (sourceIterator.hasNext()) {
+            DataBlock dataBlock = sourceIterator.next();
+            if (dataBlock.getAliveNum() > 0) {
+                LOGGER.warn("DataCompactor data block [" + dataBlock.getFileId() + "] still has "
+                        + dataBlock.getAliveNum() + " alive records after compact, keep it");
+                sourceIterator.remove();
+            }
+        }
+
+        // 索引快照之后才能删除老文件, 否则重启时从老快照恢复的索引会引用到已经删除的文件
+        if (!indexSnapshot.forceSnapshot()) {
+            LOGGER.warn("DataCompactor snapshot index failed, delay to delete compacted data blocks");
+            return;
+        }
+
+        long sourceBytes = 0;
+        for (final DataBlock dataBlock : sourceBlocks.values()) {
+            sourceBytes += dataBlock.getDataLength();
+            dataBlockEngine.removeBlock(dataBlock);
+            pendingDeleteBlocks.add(dataBlock);
+            // 延迟删除, 等正在进行的读完成
+            try {
+                executorService.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        delete(dataBlock);
+                    }
+                }, storeConfig.getDataBlockCompactDeleteDelay(), TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException ignored) {
+                // 已经关闭, 由 close 删除
+            }
+        }
+
+        long cost = SystemClock.now() - startTime;
+        long reclaimed = sourceBytes - copiedBytes;
+        compactNum.incrementAndGet();
+        reclaimedBytes.addAndGet(reclaimed);
+        compactCostMillis.addAndGet(cost);
+
+        LOGGER.info("DataCompactor compact finished, sourceBlocks:" + sourceBlocks.keySet() + ", targetBlocks:" + targetBlocks.size()
+                + ", movedNum:" + movedNum + ", reclaimedBytes:" + reclaimed + ", cost mills:" + cost);
+    }
+
+    private void abort(List<DataBlock> targetBlocks) {
+        LOGGER.info("DataCompactor closed, abort compact, targetBlocks:" + targetBlocks.size());
+        for (DataBlock dataBlock : targetBlocks) {
+            dataBlockEngine.removeBlock(dataBlock);
+            try {
+                dataBlock.delete();
+            } catch (Throwable t) {
+                LOGGER.error("DataCompactor delete data block [" + dataBlock.getFileId() + "] error:" + t.getMessage(), t);
+            }
+        }
+    }
 
-        // 检查是否有需要合并的block, 容量小于50%
-        List<DataBlock> readonlyBlocks = dataBlockEngine.getReadonlyBlocks();
+    private void delete(DataBlock dataBlock) {
+        if (!pendingDeleteBlocks.remove(dataBlock)) {
+            return;
+        }
+        try {
+            dataBlock.delete();
+        } catch (Throwable t) {
+            LOGGER.error("DataCompactor delete data block [" + dataBlock.getFileId() + "] error:" + t.getMessage(), t);
+        }
+    }
 
+    /**
+     * 停止合并, 等正在进行的合并结束(拷贝阶段会直接中止), 还在等待延迟删除的block立即删除
+     */
+    public void close() {
+        closed = true;
+        if (future != null) {
+            future.cancel(false);
+        }
+        executorService.shutdown();
+        try {
+            if (!executorService.awaitTermination(CLOSE_WAIT_SECONDS, TimeUnit.SECONDS)) {
+                LOGGER.warn("DataCompactor close timeout, compact is still running");
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        DataBlock[] dataBlocks;
+        synchronized (pendingDeleteBlocks) {
+            dataBlocks = pendingDeleteBlocks.toArray(new DataBlock[pendingDeleteBlocks.size()]);
+        }
+        for (DataBlock dataBlock : dataBlocks) {
+            delete(dataBlock);
+        }
+    }
 
-        // 合并这两个block
+    public long getCompactNum() {
+        return compactNum.get();
+    }
+
+    public long getReclaimedBytes() {
+        return reclaimedBytes.get();
+    }
 
+    public long getCompactCostMillis() {
+        return compactCostMillis.get();
     }
 
 }
@@ -1,16 +1,25 @@
 package com.github.ltsopensource.kv.index;
 
+import com.github.ltsopensource.core.commons.file.FileUtils;
 import com.github.ltsopensource.core.factory.NamedThreadFactory;
 import com.github.ltsopensource.kv.DB;
 import com.github.ltsopensource.kv.StoreConfig;
+import com.github.ltsopensource.kv.replay.TxLogReplay;
 import com.github.ltsopensource.kv.serializer.StoreSerializer;
+import com.github.ltsopensource.kv.txlog.StoreTxLogPosition;
 import com.github.ltsopensource.core.logger.Logger;
 
+import java.io.File;
+import java.io.FilenameFilter;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * @author Robert HG (254963746@qq.com) on 12/16/15.
@@ -18,13 +27,19 @@ import java.util.concurrent.TimeUnit;
 public abstract class AbstractIndexSnapshot<K, V> implements IndexSnapshot<K, V> {
 
     protected static final Logger LOGGER = DB.LOGGER;
+    // 关闭时等待正在进行的快照结束的最长时间
+    private static final long CLOSE_WAIT_SECONDS = 30;
     private ScheduledExecutorService executorService;
     private ScheduledFuture<?> future;
     protected Index<K, V> index;
     protected StoreSerializer serializer;
     protected StoreConfig storeConfig;
+    private TxLogReplay<K, V> txLogReplay;
+    private AtomicBoolean snapshoting = new AtomicBoolean(false);
+    private StoreTxLogPosition lastStoreTxLogPosition;
 
-    public AbstractIndexSnapshot(Index<K, V> index, StoreConfig storeConfig, StoreSerializer serializer) {
+    public AbstractIndexSnapshot(TxLogReplay<K, V> txLogReplay, Index<K, V> index, StoreConfig storeConfig, StoreSerializer serializer) {
+        this.txLogReplay = txLogReplay;
         this.index = index;
         this.storeConfig = storeConfig;
         this.serializer = serializer;
@@ -59,6 +74,169 @@ public abstract class AbstractIndexSnapshot<K, V> implements IndexSnapshot<K, V>
     /**
      * 重放没有持久化的事务日志
      */
-    protected abstract void replayTxLog();
+    protected void replayTxLog() {
+        // 重放
+        StoreTxLogPosition indexTxLog = index.lastTxLog();
+        StoreTxLogPosition dataTxLog = storeConfig.getLastTxLogPositionOnDataBlock();
+
+        // 需要重放的位置
+        StoreTxLogPosition replayTxLog = null;
+        if (dataTxLog == null) {
+            replayTxLog = indexTxLog;
+        } else if (indexTxLog == null) {
+            replayTxLog = dataTxLog;
+        } else {
+            replayTxLog = (indexTxLog.getRecordId() < dataTxLog.getRecordId() ? indexTxLog : dataTxLog);
+        }
+
+        if (replayTxLog == null) {
+            return;
+        }
+
+        txLogReplay.replay(replayTxLog);
+    }
+
+    @Override
+    public void close() {
+        if (future != null) {
+            future.cancel(false);
+        }
+        executorService.shutdown();
+        try {
+            if (!executorService.awaitTermination(CLOSE_WAIT_SECONDS, TimeUnit.SECONDS)) {
+                LOGGER.warn("IndexSnapshot close timeout, snapshot is still running");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void snapshot() throws IOException {
+        if (!snapshoting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            snapshot0(false);
+        } finally {
+            snapshoting.set(false);
+        }
+    }
+
+    @Override
+    public boolean forceSnapshot() throws IOException {
+        while (!snapshoting.compareAndSet(false, true)) {
+            try {
+                Thread.sleep(10L);
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+        }
+        try {
+            return snapshot0(true);
+        } finally {
+            snapshoting.set(false);
+        }
+    }
+
+    private boolean snapshot0(boolean force) throws IOException {
+        StoreTxLogPosition storeTxLogPosition = index.lastTxLog();
+
+        if (storeTxLogPosition == null) {
+            return false;
+        }
+        if (!force && lastStoreTxLogPosition != null && lastStoreTxLogPosition.getRecordId() == storeTxLogPosition.getRecordId()) {
+            return false;
+        }
+
+        String name = System.currentTimeMillis() + getSnapshotFileSuffix();
+        File snapshot = new File(storeConfig.getIndexPath(), name);
+        FileChannel fileChannel = FileUtils.newFileChannel(snapshot, "rw");
+        try {
+            IndexSnapshotFileHeader fileHeader = new IndexSnapshotFileHeader();
+
+            // 先写一个空的文件头
+            fileHeader.write(fileChannel);
+
+            // 写内容
+            writeSnapshot(fileChannel, fileHeader.getLength());
+
+            fileChannel.force(true);
+
+            // 写真实的文件头
+            fileHeader.setStoreTxLogRecordId(storeTxLogPosition.getRecordId());
+            fileHeader.write(fileChannel);
+        } finally {
+            fileChannel.close();
+        }
+
+        // 删除多余的快照数目
+        deleteOverSnapshot();
+
+        LOGGER.info("snapshot index finished: [" + name + "]");
+
+        lastStoreTxLogPosition = storeTxLogPosition;
+        return true;
+    }
+
+    /**
+     * 快照文件的后缀, 不同的索引类型的快照文件互不识别
+     */
+    protected abstract String getSnapshotFileSuffix();
+
+    /**
+     * 从 position 开始写入快照内容
+     */
+    protected abstract void writeSnapshot(FileChannel fileChannel, long position) throws IOException;
+
+    /**
+     * 按时间顺序排好的快照文件
+     */
+    protected String[] getIndexFiles() throws IOException {
+        String[] indexFiles = storeConfig.getIndexPath().list(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.endsWith(getSnapshotFileSuffix());
+            }
+        });
+
+        if (indexFiles == null) {
+            throw new IOException("can't list file in " + storeConfig.getIndexPath());
+        }
+
+        if (indexFiles.length == 0) {
+            return null;
+        }
+
+        Arrays.sort(indexFiles, new Comparator<String>() {
+            @Override
+            public int compare(String left, String right) {
+                return left.compareTo(right);
+            }
+        });
+
+        return indexFiles;
+    }
+
+    /**
+     * 删除多余的快照数目
+     */
+    private void deleteOverSnapshot() throws IOException {
+        String[] indexFiles = getIndexFiles();
+        if (indexFiles == null || indexFiles.length == 0) {
+            return;
+        }
+
+        if (storeConfig.getMaxIndexSnapshotSize() > 1 && indexFiles.length > storeConfig.getMaxIndexSnapshotSize()) {
+
+            for (int i = 0; i < indexFiles.length - storeConfig.getMaxIndexSnapshotSize(); i++) {
+
+                FileUtils.delete(new File(storeConfig.getIndexPath(), indexFiles[i]));
+                LOGGER.info("delete index snapshot [" + indexFiles[i] + "] succeed");
+            }
+
+        }
+
+    }
 
 }
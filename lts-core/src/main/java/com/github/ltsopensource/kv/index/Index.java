@@ -4,6 +4,8 @@ import com.github.ltsopensource.kv.Entry;
 import com.github.ltsopensource.kv.iterator.DBIterator;
 import com.github.ltsopensource.kv.txlog.StoreTxLogPosition;
 
+import java.util.Iterator;
+
 /**
  * @author Robert HG (254963746@qq.com) on 12/18/15.
  */
@@ -13,7 +15,20 @@ public interface Index<K, V> {
 
     IndexItem<K> removeIndexItem(StoreTxLogPosition txLogResult, K key);
 
-    void putIndexItem(StoreTxLogPosition txLogResult, K key, IndexItem<K> indexItem);
+    /**
+     * @return 被覆盖的索引项, 没有返回null
+     */
+    IndexItem<K> putIndexItem(StoreTxLogPosition txLogResult, K key, IndexItem<K> indexItem);
+
+    /**
+     * 只有当前的索引项还是expect时才替换成update, DataBlock合并时使用
+     */
+    boolean replaceIndexItem(K key, IndexItem<K> expect, IndexItem<K> update);
+
+    /**
+     * 遍历所有的索引项
+     */
+    Iterator<IndexItem<K>> indexItemIterator();
 
     public int size();
 
@@ -22,4 +37,9 @@ public interface Index<K, V> {
     DBIterator<Entry<K, V>> iterator();
 
     StoreTxLogPosition lastTxLog();
+
+    /**
+     * 停止快照检查线程
+     */
+    void close();
 }
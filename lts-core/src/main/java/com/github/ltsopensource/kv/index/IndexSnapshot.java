@@ -17,4 +17,16 @@ public interface IndexSnapshot<K, V> {
      */
     public void snapshot() throws IOException;
 
+    /**
+     * 强制快照, 正在快照时等待其完成后再做一次
+     *
+     * @return 是否写入了快照
+     */
+    public boolean forceSnapshot() throws IOException;
+
+    /**
+     * 停止定时快照, 等正在进行的快照结束
+     */
+    public void close();
+
 }
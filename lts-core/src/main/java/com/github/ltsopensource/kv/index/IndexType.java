@@ -6,5 +6,6 @@ package com.github.ltsopensource.kv.index;
 public enum IndexType {
 
     MEM,        // 内存
+    OFF_HEAP,   // 堆外内存, 见 OffHeapIndex
     BTREE       // B+树
 }
@@ -11,6 +11,7 @@ import com.github.ltsopensource.kv.iterator.DBIterator;
 import com.github.ltsopensource.kv.iterator.MemIteratorImpl;
 import com.github.ltsopensource.kv.txlog.StoreTxLogPosition;
 
+import java.util.Iterator;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -28,13 +29,14 @@ public class MemIndex<K, V> implements Index<K, V> {
     private AtomicLong lastSnapshotChangeNum = new AtomicLong(0);
     private AtomicLong currentChangeNum = new AtomicLong(0);
     private IndexSnapshot<K, V> indexSnapshot;
+    private ScheduledExecutorService executorService;
 
     public MemIndex(final StoreConfig storeConfig, DataBlockEngine<K, V> dataBlockEngine, DataCache<K, V> dataCache) {
         this.indexMap = new ConcurrentSkipListMap<K, IndexItem<K>>();
         this.storeConfig = storeConfig;
         this.dataBlockEngine = dataBlockEngine;
         this.dataCache = dataCache;
-        ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("ltsdb-index-snapshot-check-service", true));
+        this.executorService = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("ltsdb-index-snapshot-check-service", true));
         executorService.scheduleWithFixedDelay(new Runnable() {
             @Override
             public void run() {
@@ -63,10 +65,21 @@ public class MemIndex<K, V> implements Index<K, V> {
     }
 
     @Override
-    public void putIndexItem(StoreTxLogPosition txLogResult, K key, IndexItem<K> indexItem) {
-        indexMap.put(key, indexItem);
+    public IndexItem<K> putIndexItem(StoreTxLogPosition txLogResult, K key, IndexItem<K> indexItem) {
+        IndexItem<K> value = indexMap.put(key, indexItem);
         this.lastTxLog = txLogResult;
         currentChangeNum.incrementAndGet();
+        return value;
+    }
+
+    @Override
+    public boolean replaceIndexItem(K key, IndexItem<K> expect, IndexItem<K> update) {
+        return indexMap.replace(key, expect, update);
+    }
+
+    @Override
+    public Iterator<IndexItem<K>> indexItemIterator() {
+        return indexMap.values().iterator();
     }
 
     @Override
@@ -89,6 +102,11 @@ public class MemIndex<K, V> implements Index<K, V> {
         return lastTxLog;
     }
 
+    @Override
+    public void close() {
+        executorService.shutdown();
+    }
+
     void setLastTxLog(StoreTxLogPosition lastTxLog) {
         this.lastTxLog = lastTxLog;
     }
@@ -0,0 +1,552 @@
+package com.github.ltsopensource.kv.index;
+
+import com.github.ltsopensource.core.commons.io.ByteBufferInputStream;
+import com.github.ltsopensource.core.commons.io.UnsafeByteArrayOutputStream;
+import com.github.ltsopensource.core.factory.NamedThreadFactory;
+import com.github.ltsopensource.core.logger.Logger;
+import com.github.ltsopensource.core.logger.LoggerFactory;
+import com.github.ltsopensource.kv.DBException;
+import com.github.ltsopensource.kv.Entry;
+import com.github.ltsopensource.kv.StoreConfig;
+import com.github.ltsopensource.kv.cache.DataCache;
+import com.github.ltsopensource.kv.data.DataBlockEngine;
+import com.github.ltsopensource.kv.iterator.DBIterator;
+import com.github.ltsopensource.kv.iterator.OffHeapIteratorImpl;
+import com.github.ltsopensource.kv.serializer.StoreSerializer;
+import com.github.ltsopensource.kv.txlog.StoreTxLogPosition;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 堆外内存索引, 开放寻址(线性探测)哈希表, 每条索引没有 key对象 + IndexItem + 跳表节点 的堆内开销
+ * 1. 槽位区(直接内存), 每个槽位 40 byte
+ * keyHash 4 | keyLength 4 (0表示空槽位) | keyOffset 8 | fileId 8 | fromIndex 8 | length 4 | 保留 4
+ * 2. key区(直接内存), 顺序追加序列化之后的key, 删除留下的空洞超过一半时整理
+ * 3. 删除时后面的槽位前移(backward shift), 不用墓碑
+ * <p/>
+ * key按序列化之后的字节比较, 遍历是无序的, 遍历的是创建迭代器时的槽位快照
+ */
+public class OffHeapIndex<K, V> implements Index<K, V> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OffHeapIndex.class);
+
+    private static final int SLOT_SIZE = 40;
+    private static final int KEY_LENGTH_OFFSET = 4;
+    private static final int KEY_OFFSET_OFFSET = 8;
+    private static final int FILE_ID_OFFSET = 16;
+    private static final int FROM_INDEX_OFFSET = 24;
+    private static final int LENGTH_OFFSET = 32;
+
+    private static final int INITIAL_CAPACITY = 1024;
+    // 槽位区不能超过 Integer.MAX_VALUE
+    private static final int MAXIMUM_CAPACITY = 1 << 25;
+    private static final float LOAD_FACTOR = 0.75f;
+    // 快照中 capacity, size, keysUsed, keysGarbage
+    private static final int META_LENGTH = 4 * 4;
+
+    private ByteBuffer slots;
+    // 槽位数, 2的幂
+    private int capacity;
+    private volatile int size;
+    private ByteBuffer keys;
+    private int keysUsed;
+    private int keysGarbage;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private volatile StoreTxLogPosition lastTxLog;
+    private StoreSerializer serializer;
+    private Type keyType;
+    private DataBlockEngine<K, V> dataBlockEngine;
+    private DataCache<K, V> dataCache;
+    private AtomicLong lastSnapshotChangeNum = new AtomicLong(0);
+    private AtomicLong currentChangeNum = new AtomicLong(0);
+    private IndexSnapshot<K, V> indexSnapshot;
+    private ScheduledExecutorService executorService;
+
+    public OffHeapIndex(final StoreConfig storeConfig, StoreSerializer serializer,
+                        DataBlockEngine<K, V> dataBlockEngine, DataCache<K, V> dataCache) {
+        this.serializer = serializer;
+        this.keyType = storeConfig.getKeyType();
+        this.dataBlockEngine = dataBlockEngine;
+        this.dataCache = dataCache;
+        this.capacity = INITIAL_CAPACITY;
+        this.slots = ByteBuffer.allocateDirect(capacity * SLOT_SIZE);
+        this.keys = ByteBuffer.allocateDirect(capacity * 16);
+
+        this.executorService = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("ltsdb-index-snapshot-check-service", true));
+        executorService.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    // 检查一下当改变的量达到一定量时要snapshot
+                    if (currentChangeNum.get() - lastSnapshotChangeNum.get() > storeConfig.getIndexSnapshotThreshold()) {
+                        indexSnapshot.snapshot();
+                    }
+                } catch (Throwable t) {
+                    LOGGER.error("SNAPSHOT Error", t);
+                }
+            }
+        }, 3, 2, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public IndexItem<K> getIndexItem(K key) {
+        byte[] keyBytes = toKeyBytes(key);
+        lock.readLock().lock();
+        try {
+            int slot = findSlot(keyBytes, hash(keyBytes));
+            if (slot < 0) {
+                return null;
+            }
+            return toIndexItem(key, slot);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public IndexItem<K> removeIndexItem(StoreTxLogPosition txLogResult, K key) {
+        byte[] keyBytes = toKeyBytes(key);
+        IndexItem<K> value = null;
+        lock.writeLock().lock();
+        try {
+            int slot = findSlot(keyBytes, hash(keyBytes));
+            if (slot >= 0) {
+                value = toIndexItem(key, slot);
+                keysGarbage += keyBytes.length;
+                deleteSlot(slot);
+                size--;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        this.lastTxLog = txLogResult;
+        currentChangeNum.incrementAndGet();
+        return value;
+    }
+
+    @Override
+    public IndexItem<K> putIndexItem(StoreTxLogPosition txLogResult, K key, IndexItem<K> indexItem) {
+        byte[] keyBytes = toKeyBytes(key);
+        int hash = hash(keyBytes);
+        IndexItem<K> value = null;
+        lock.writeLock().lock();
+        try {
+            int slot = findSlot(keyBytes, hash);
+            if (slot < 0) {
+                if (size + 1 > capacity * LOAD_FACTOR) {
+                    resize(capacity << 1);
+                    slot = findSlot(keyBytes, hash);
+                }
+                slot = -slot - 1;
+                long keyOffset = appendKey(keyBytes);
+                int base = slot * SLOT_SIZE;
+                slots.putInt(base, hash);
+                slots.putInt(base + KEY_LENGTH_OFFSET, keyBytes.length);
+                slots.putLong(base + KEY_OFFSET_OFFSET, keyOffset);
+                size++;
+            } else {
+                value = toIndexItem(key, slot);
+            }
+            setValue(slot, indexItem);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        this.lastTxLog = txLogResult;
+        currentChangeNum.incrementAndGet();
+        return value;
+    }
+
+    @Override
+    public boolean replaceIndexItem(K key, IndexItem<K> expect, IndexItem<K> update) {
+        byte[] keyBytes = toKeyBytes(key);
+        lock.writeLock().lock();
+        try {
+            int slot = findSlot(keyBytes, hash(keyBytes));
+            if (slot < 0) {
+                return false;
+            }
+            int base = slot * SLOT_SIZE;
+            if (slots.getLong(base + FILE_ID_OFFSET) != expect.getFileId()
+                    || slots.getLong(base + FROM_INDEX_OFFSET) != expect.getFromIndex()
+                    || slots.getInt(base + LENGTH_OFFSET) != expect.getLength()) {
+                return false;
+            }
+            setValue(slot, update);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Iterator<IndexItem<K>> indexItemIterator() {
+        return new IndexItemIterator();
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(K key) {
+        byte[] keyBytes = toKeyBytes(key);
+        lock.readLock().lock();
+        try {
+            return findSlot(keyBytes, hash(keyBytes)) >= 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public DBIterator<Entry<K, V>> iterator() {
+        return new OffHeapIteratorImpl<K, V>(indexItemIterator(), dataBlockEngine, dataCache);
+    }
+
+    @Override
+    public StoreTxLogPosition lastTxLog() {
+        return lastTxLog;
+    }
+
+    @Override
+    public void close() {
+        executorService.shutdown();
+    }
+
+    void setLastTxLog(StoreTxLogPosition lastTxLog) {
+        this.lastTxLog = lastTxLog;
+    }
+
+    public void setIndexSnapshot(IndexSnapshot<K, V> indexSnapshot) {
+        this.indexSnapshot = indexSnapshot;
+    }
+
+    /**
+     * 快照: 元信息 + 槽位区 + key区 一次批量写入
+     * 写的过程中持有读锁, 索引的修改要等快照写完
+     */
+    void writeTo(FileChannel fileChannel, long position) throws IOException {
+        lock.readLock().lock();
+        try {
+            ByteBuffer meta = ByteBuffer.allocate(META_LENGTH);
+            meta.putInt(capacity).putInt(size).putInt(keysUsed).putInt(keysGarbage);
+            meta.flip();
+            ByteBuffer slotsView = slots.duplicate();
+            slotsView.clear();
+            ByteBuffer keysView = keys.duplicate();
+            keysView.clear();
+            keysView.limit(keysUsed);
+
+            ByteBuffer[] buffers = new ByteBuffer[]{meta, slotsView, keysView};
+            long total = META_LENGTH + slotsView.remaining() + keysView.remaining();
+            fileChannel.position(position);
+            long written = 0;
+            while (written < total) {
+                written += fileChannel.write(buffers);
+            }
+            lastSnapshotChangeNum.set(currentChangeNum.get());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 从快照中加载, 槽位区和key区直接读到直接内存
+     */
+    void readFrom(FileChannel fileChannel, long position) throws IOException {
+        ByteBuffer meta = ByteBuffer.allocate(META_LENGTH);
+        readFully(fileChannel, meta, position);
+        meta.flip();
+        int newCapacity = meta.getInt();
+        int newSize = meta.getInt();
+        int newKeysUsed = meta.getInt();
+        int newKeysGarbage = meta.getInt();
+
+        ByteBuffer newSlots = ByteBuffer.allocateDirect(newCapacity * SLOT_SIZE);
+        readFully(fileChannel, newSlots, position + META_LENGTH);
+        ByteBuffer newKeys = ByteBuffer.allocateDirect(Math.max(newKeysUsed, INITIAL_CAPACITY * 16));
+        newKeys.limit(newKeysUsed);
+        readFully(fileChannel, newKeys, position + META_LENGTH + newSlots.capacity());
+        newKeys.clear();
+
+        lock.writeLock().lock();
+        try {
+            this.capacity = newCapacity;
+            this.size = newSize;
+            this.slots = newSlots;
+            this.keysUsed = newKeysUsed;
+            this.keysGarbage = newKeysGarbage;
+            this.keys = newKeys;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void readFully(FileChannel fileChannel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = fileChannel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("read index snapshot EOF, position:" + position);
+            }
+            position += read;
+        }
+    }
+
+    /**
+     * @return 找到返回槽位下标, 找不到返回 (-插入位置 - 1)
+     */
+    private int findSlot(byte[] keyBytes, int hash) {
+        int mask = capacity - 1;
+        int slot = hash & mask;
+        while (true) {
+            int base = slot * SLOT_SIZE;
+            int keyLength = slots.getInt(base + KEY_LENGTH_OFFSET);
+            if (keyLength == 0) {
+                return -slot - 1;
+            }
+            if (slots.getInt(base) == hash && keyLength == keyBytes.length
+                    && keyEquals(slots.getLong(base + KEY_OFFSET_OFFSET), keyBytes)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private boolean keyEquals(long keyOffset, byte[] keyBytes) {
+        int offset = (int) keyOffset;
+        for (int i = 0; i < keyBytes.length; i++) {
+            if (keys.get(offset + i) != keyBytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void setValue(int slot, IndexItem<K> indexItem) {
+        int base = slot * SLOT_SIZE;
+        slots.putLong(base + FILE_ID_OFFSET, indexItem.getFileId());
+        slots.putLong(base + FROM_INDEX_OFFSET, indexItem.getFromIndex());
+        slots.putInt(base + LENGTH_OFFSET, indexItem.getLength());
+    }
+
+    private IndexItem<K> toIndexItem(K key, int slot) {
+        int base = slot * SLOT_SIZE;
+        IndexItem<K> indexItem = new IndexItem<K>();
+        indexItem.setKey(key);
+        indexItem.setFileId(slots.getLong(base + FILE_ID_OFFSET));
+        indexItem.setFromIndex(slots.getLong(base + FROM_INDEX_OFFSET));
+        indexItem.setLength(slots.getInt(base + LENGTH_OFFSET));
+        return indexItem;
+    }
+
+    /**
+     * 删除槽位, 后面探测链上的槽位前移填补空位
+     */
+    private void deleteSlot(int slot) {
+        int mask = capacity - 1;
+        int hole = slot;
+        int next = slot;
+        while (true) {
+            next = (next + 1) & mask;
+            int base = next * SLOT_SIZE;
+            if (slots.getInt(base + KEY_LENGTH_OFFSET) == 0) {
+                break;
+            }
+            int home = slots.getInt(base) & mask;
+            // home 在 (hole, next] 之间的不用移动
+            boolean stay = hole <= next ? (hole < home && home <= next) : (hole < home || home <= next);
+            if (!stay) {
+                copySlot(slots, next, slots, hole);
+                hole = next;
+            }
+        }
+        clearSlot(hole);
+    }
+
+    private static void copySlot(ByteBuffer from, int fromSlot, ByteBuffer to, int toSlot) {
+        int fromBase = fromSlot * SLOT_SIZE;
+        int toBase = toSlot * SLOT_SIZE;
+        for (int i = 0; i < SLOT_SIZE; i += 8) {
+            to.putLong(toBase + i, from.getLong(fromBase + i));
+        }
+    }
+
+    private void clearSlot(int slot) {
+        int base = slot * SLOT_SIZE;
+        for (int i = 0; i < SLOT_SIZE; i += 8) {
+            slots.putLong(base + i, 0L);
+        }
+    }
+
+    private void resize(int newCapacity) {
+        if (newCapacity > MAXIMUM_CAPACITY) {
+            throw new DBException("OffHeapIndex is full, size:" + size);
+        }
+        ByteBuffer newSlots = ByteBuffer.allocateDirect(newCapacity * SLOT_SIZE);
+        int mask = newCapacity - 1;
+        for (int slot = 0; slot < capacity; slot++) {
+            int base = slot * SLOT_SIZE;
+            if (slots.getInt(base + KEY_LENGTH_OFFSET) == 0) {
+                continue;
+            }
+            int newSlot = slots.getInt(base) & mask;
+            while (newSlots.getInt(newSlot * SLOT_SIZE + KEY_LENGTH_OFFSET) != 0) {
+                newSlot = (newSlot + 1) & mask;
+            }
+            copySlot(slots, slot, newSlots, newSlot);
+        }
+        this.slots = newSlots;
+        this.capacity = newCapacity;
+    }
+
+    private long appendKey(byte[] keyBytes) {
+        if (keysUsed + keyBytes.length > keys.capacity()) {
+            int liveLength = keysUsed - keysGarbage;
+            long newCapacity = keysGarbage > keysUsed / 2 ? keys.capacity() : (long) keys.capacity() << 1;
+            while (newCapacity < liveLength + keyBytes.length) {
+                newCapacity <<= 1;
+            }
+            if (newCapacity > Integer.MAX_VALUE) {
+                throw new DBException("OffHeapIndex keys is full, size:" + size);
+            }
+            rebuildKeys((int) newCapacity);
+        }
+        long keyOffset = keysUsed;
+        for (int i = 0; i < keyBytes.length; i++) {
+            keys.put(keysUsed + i, keyBytes[i]);
+        }
+        keysUsed += keyBytes.length;
+        return keyOffset;
+    }
+
+    /**
+     * 把存活的key拷贝到新的key区, 去掉删除留下的空洞
+     */
+    private void rebuildKeys(int newCapacity) {
+        ByteBuffer newKeys = ByteBuffer.allocateDirect(newCapacity);
+        int newKeysUsed = 0;
+        for (int slot = 0; slot < capacity; slot++) {
+            int base = slot * SLOT_SIZE;
+            int keyLength = slots.getInt(base + KEY_LENGTH_OFFSET);
+            if (keyLength == 0) {
+                continue;
+            }
+            int keyOffset = (int) slots.getLong(base + KEY_OFFSET_OFFSET);
+            for (int i = 0; i < keyLength; i++) {
+                newKeys.put(newKeysUsed + i, keys.get(keyOffset + i));
+            }
+            slots.putLong(base + KEY_OFFSET_OFFSET, newKeysUsed);
+            newKeysUsed += keyLength;
+        }
+        this.keys = newKeys;
+        this.keysUsed = newKeysUsed;
+        this.keysGarbage = 0;
+    }
+
+    private byte[] toKeyBytes(K key) {
+        UnsafeByteArrayOutputStream out = new UnsafeByteArrayOutputStream();
+        try {
+            serializer.serialize(key, out);
+            byte[] keyBytes = out.toByteArray();
+            if (keyBytes.length == 0) {
+                throw new DBException("Illegal key " + key);
+            }
+            return keyBytes;
+        } catch (IOException e) {
+            throw new DBException("Serialize key error: " + e.getMessage(), e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private K toKey(byte[] keyBytes) {
+        try {
+            return (K) serializer.deserialize(new ByteBufferInputStream(ByteBuffer.wrap(keyBytes)), keyType);
+        } catch (IOException e) {
+            throw new DBException("Deserialize key error: " + e.getMessage(), e);
+        }
+    }
+
+    private static int hash(byte[] keyBytes) {
+        // FNV-1a
+        int h = 0x811c9dc5;
+        for (byte b : keyBytes) {
+            h ^= b;
+            h *= 0x01000193;
+        }
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * 遍历创建时的槽位快照, 之后的删除(槽位前移)和扩容不会导致跳过或者重复
+     * key区只在末尾追加, 整理时换成新的key区, 所以快照引用的key区中的key不会被覆盖
+     */
+    private class IndexItemIterator implements Iterator<IndexItem<K>> {
+
+        private final ByteBuffer slotsSnapshot;
+        private final ByteBuffer keysSnapshot;
+        private final int snapshotCapacity;
+        private int nextSlot = 0;
+
+        IndexItemIterator() {
+            lock.readLock().lock();
+            try {
+                ByteBuffer slotsView = slots.duplicate();
+                slotsView.clear();
+                this.slotsSnapshot = ByteBuffer.allocate(slotsView.capacity());
+                this.slotsSnapshot.put(slotsView);
+                this.keysSnapshot = keys.duplicate();
+                this.snapshotCapacity = capacity;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (nextSlot < snapshotCapacity) {
+                if (slotsSnapshot.getInt(nextSlot * SLOT_SIZE + KEY_LENGTH_OFFSET) != 0) {
+                    return true;
+                }
+                nextSlot++;
+            }
+            return false;
+        }
+
+        @Override
+        public IndexItem<K> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            int base = nextSlot++ * SLOT_SIZE;
+            int keyLength = slotsSnapshot.getInt(base + KEY_LENGTH_OFFSET);
+            int keyOffset = (int) slotsSnapshot.getLong(base + KEY_OFFSET_OFFSET);
+            byte[] keyBytes = new byte[keyLength];
+            for (int i = 0; i < keyLength; i++) {
+                keyBytes[i] = keysSnapshot.get(keyOffset + i);
+            }
+            IndexItem<K> indexItem = new IndexItem<K>();
+            indexItem.setKey(toKey(keyBytes));
+            indexItem.setFileId(slotsSnapshot.getLong(base + FILE_ID_OFFSET));
+            indexItem.setFromIndex(slotsSnapshot.getLong(base + FROM_INDEX_OFFSET));
+            indexItem.setLength(slotsSnapshot.getInt(base + LENGTH_OFFSET));
+            return indexItem;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.github.ltsopensource.kv.index;
+
+import com.github.ltsopensource.core.commons.file.FileUtils;
+import com.github.ltsopensource.kv.StoreConfig;
+import com.github.ltsopensource.kv.replay.TxLogReplay;
+import com.github.ltsopensource.kv.serializer.StoreSerializer;
+import com.github.ltsopensource.kv.txlog.StoreTxLogPosition;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+/**
+ * {@link OffHeapIndex} 的快照, 直接内存一次批量写入, 加载时直接读回直接内存, 不经过序列化
+ */
+public class OffHeapIndexSnapshot<K, V> extends AbstractIndexSnapshot<K, V> {
+
+    public OffHeapIndexSnapshot(TxLogReplay<K, V> txLogReplay, Index<K, V> index, StoreConfig storeConfig, StoreSerializer serializer) {
+        super(txLogReplay, index, storeConfig, serializer);
+    }
+
+    @Override
+    protected void loadFromDisk() throws IOException {
+
+        FileUtils.createDirIfNotExist(storeConfig.getIndexPath());
+
+        String[] indexFiles = getIndexFiles();
+        if (indexFiles == null || indexFiles.length == 0) {
+            return;
+        }
+
+        FileChannel fileChannel = null;
+        try {
+            File lastSnapshot = new File(storeConfig.getIndexPath(), indexFiles[indexFiles.length - 1]);
+            fileChannel = FileUtils.newFileChannel(lastSnapshot, "rw");
+            IndexSnapshotFileHeader fileHeader = new IndexSnapshotFileHeader();
+            fileHeader.read(fileChannel);
+
+            if (fileHeader.getStoreTxLogRecordId() != 0 && fileChannel.size() > fileHeader.getLength()) {
+                LOGGER.info("Start to read OffHeapIndexSnapshot File ....");
+
+                ((OffHeapIndex<K, V>) index).readFrom(fileChannel, fileHeader.getLength());
+
+                LOGGER.info("Finish read OffHeapIndexSnapshot File");
+            }
+
+            StoreTxLogPosition lastTxLog = new StoreTxLogPosition();
+            lastTxLog.setRecordId(fileHeader.getStoreTxLogRecordId());
+
+            ((OffHeapIndex<K, V>) index).setLastTxLog(lastTxLog);
+
+        } finally {
+            if (fileChannel != null) {
+                fileChannel.close();
+            }
+        }
+    }
+
+    @Override
+    protected String getSnapshotFileSuffix() {
+        return ".offheap";
+    }
+
+    @Override
+    protected void writeSnapshot(FileChannel fileChannel, long position) throws IOException {
+        ((OffHeapIndex<K, V>) index).writeTo(fileChannel, position);
+    }
+}
@@ -0,0 +1,44 @@
+package com.github.ltsopensource.kv.iterator;
+
+import com.github.ltsopensource.kv.Entry;
+import com.github.ltsopensource.kv.cache.DataCache;
+import com.github.ltsopensource.kv.data.DataBlockEngine;
+import com.github.ltsopensource.kv.index.IndexItem;
+
+import java.util.Iterator;
+
+public class OffHeapIteratorImpl<K, V> implements DBIterator<Entry<K, V>> {
+
+    private Iterator<IndexItem<K>> iterator;
+    private DataBlockEngine<K, V> dataBlockEngine;
+    private DataCache<K, V> dataCache;
+
+    public OffHeapIteratorImpl(Iterator<IndexItem<K>> iterator, DataBlockEngine<K, V> dataBlockEngine, DataCache<K, V> dataCache) {
+        this.iterator = iterator;
+        this.dataBlockEngine = dataBlockEngine;
+        this.dataCache = dataCache;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return iterator.hasNext();
+    }
+
+    @Override
+    public Entry<K, V> next() {
+        IndexItem<K> index = iterator.next();
+
+        // 1. 从缓存中读取
+        V value = dataCache.get(index.getKey());
+        if (value != null) {
+            return new Entry<K, V>(index.getKey(), value);
+        }
+        // 2. 从文件中读取
+        value = dataBlockEngine.getValue(index);
+        if (value == null) {
+            return null;
+        }
+        return new Entry<K, V>(index.getKey(), value);
+    }
+
+}
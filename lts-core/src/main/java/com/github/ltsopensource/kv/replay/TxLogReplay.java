@@ -56,7 +56,11 @@ public class TxLogReplay<K, V> {
                 // 1. 写Data
                 DataAppendResult dataAppendResult = dataBlockEngine.append(position, key, value);
                 // 2. 写Index
-                index.putIndexItem(position, key, DBImpl.convertToIndex(key, dataAppendResult));
+                IndexItem<K> indexItem = index.putIndexItem(position, key, DBImpl.convertToIndex(key, dataAppendResult));
+                if (indexItem != null) {
+                    // 覆盖的老数据逻辑删除
+                    dataBlockEngine.remove(position, indexItem);
+                }
 //                 3. 写缓存
 //                dataCache.put(key, value);
 
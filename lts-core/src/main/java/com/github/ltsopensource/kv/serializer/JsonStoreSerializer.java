@@ -2,12 +2,14 @@ package com.github.ltsopensource.kv.serializer;
 
 
 import com.github.ltsopensource.core.commons.file.FileUtils;
+import com.github.ltsopensource.core.commons.io.ByteBufferInputStream;
 import com.github.ltsopensource.core.json.JSON;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.lang.reflect.Type;
+import java.nio.charset.Charset;
 
 /**
  * JSON 序列化
@@ -15,6 +17,8 @@ import java.lang.reflect.Type;
  */
 public class JsonStoreSerializer implements StoreSerializer {
 
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
     @Override
     public void serialize(Object value, OutputStream out) throws IOException {
         String v = JSON.toJSONString(value);
@@ -25,7 +29,13 @@ public class JsonStoreSerializer implements StoreSerializer {
 
     @Override
     public <T> T deserialize(InputStream in, Type type) throws IOException {
-        String v = FileUtils.read(in, "UTF-8");
+        String v;
+        if (in instanceof ByteBufferInputStream) {
+            // 直接从(映射)内存解码, 不经过Reader
+            v = UTF_8.decode(((ByteBufferInputStream) in).getBuffer()).toString();
+        } else {
+            v = FileUtils.read(in, "UTF-8");
+        }
         return JSON.parse(v, type);
     }
 }
@@ -9,6 +9,7 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.util.List;
 import java.util.Timer;
 
 /**
@@ -18,7 +19,7 @@ import java.util.Timer;
  * 3.logEntrySize   4 byte
  * 4.logEntry
  * <p/>
- * 非线程安全
+ * 非线程安全, 由 {@link StoreTxLogEngine} 保证串行写入
  *
  * @author Robert HG (254963746@qq.com) on 12/13/15.
  */
@@ -27,10 +28,14 @@ public class StoreTxLog implements Closeable {
     private static final Logger LOGGER = DB.LOGGER;
     private StoreTxLog next;
 
+    private File file;
     private FileChannel fileChannel;
     private StoreConfig storeConfig;
 
     private final ByteBuffer entryBuffer;
+    // 批量写入复用的直接内存
+    private ByteBuffer batchBuffer;
+    private static final int BATCH_BUFFER_SIZE = 64 * 1024;
     private StoreTxLogFileHeader fileHeader;
 
     private static final int ENTRY_HEAD_LENGTH = 1 + 4;
@@ -49,6 +54,7 @@ public class StoreTxLog implements Closeable {
     public StoreTxLog(StoreConfig storeConfig, File file, boolean readonly,
                       boolean isNewFile, long firstRecordId) throws IOException {
         this.storeConfig = storeConfig;
+        this.file = file;
         this.entryBuffer = ByteBuffer.allocate(storeConfig.getMaxxLogEntryLength() + 1 + 4);
         this.fileHeader = new StoreTxLogFileHeader();
 
@@ -123,15 +129,108 @@ public class StoreTxLog implements Closeable {
             ok = true;
         } finally {
             if (ok) {
-                if (syncTimerTask == null || syncTimerTask.isDone()) {
-                    syncTimerTask = new FutureTimerTask("ltsdb-dblog-sync-timertask", syncCallable);
-                    syncTimer.schedule(syncTimerTask, storeConfig.getDbLogFlushInterval());
-                }
+                scheduleCheckPoint();
             }
         }
         return result;
     }
 
+    /**
+     * 批量追加记录, 拼成一次连续写入
+     * 从 fromIndex 开始尽量多写, 文件容量不够时只写能放下的部分
+     *
+     * @return 写入的条数
+     */
+    public int append(List<byte[]> entries, int fromIndex, List<StoreTxLogPosition> results) throws IOException {
+
+        int num = 0;
+        int batchLength = 0;
+        for (int i = fromIndex; i < entries.size(); i++) {
+            int length = entries.get(i).length;
+            if (length > storeConfig.getMaxxLogEntryLength()) {
+                throw new DBException("Value size can not great than " + storeConfig.getMaxxLogEntryLength());
+            }
+            if (fileLength + batchLength + length + ENTRY_HEAD_LENGTH > storeConfig.getTxLogFileSize()) {
+                break;
+            }
+            batchLength += length + ENTRY_HEAD_LENGTH;
+            num++;
+        }
+        if (num == 0) {
+            throw new CapacityNotEnoughException();
+        }
+
+        if (batchBuffer == null || batchBuffer.capacity() < batchLength) {
+            batchBuffer = ByteBuffer.allocateDirect(Math.max(batchLength, BATCH_BUFFER_SIZE));
+        }
+        batchBuffer.clear();
+        long recordId = getNextRecordId();
+        for (int i = fromIndex; i < fromIndex + num; i++) {
+            byte[] entry = entries.get(i);
+            batchBuffer.put(magic);
+            batchBuffer.putInt(entry.length);
+            batchBuffer.put(entry);
+
+            results.add(new StoreTxLogPosition(recordId));
+            recordId += entry.length + ENTRY_HEAD_LENGTH;
+        }
+        batchBuffer.flip();
+
+        long position = fileLength;
+        while (batchBuffer.hasRemaining()) {
+            position += fileChannel.write(batchBuffer, position);
+        }
+        fileLength += batchLength;
+
+        scheduleCheckPoint();
+        return num;
+    }
+
+    private void scheduleCheckPoint() {
+        if (storeConfig.getTxLogFlushMode() != TxLogFlushMode.INTERVAL) {
+            return;
+        }
+        if (syncTimerTask == null || syncTimerTask.isDone()) {
+            syncTimerTask = new FutureTimerTask("ltsdb-dblog-sync-timertask", syncCallable);
+            syncTimer.schedule(syncTimerTask, storeConfig.getDbLogFlushInterval());
+        }
+    }
+
+    /**
+     * 回滚到 recordId, 丢弃之后写入的记录
+     */
+    public void truncate(long recordId) throws IOException {
+        long length = recordId - getFirstRecordId();
+        if (length < getHeaderLength() || length > fileLength) {
+            throw new IOException("Illegal truncate recordId " + recordId + ", fileLength=" + fileLength);
+        }
+        if (length == fileLength) {
+            return;
+        }
+        fileChannel.truncate(length);
+        fileLength = length;
+        fileChannel.force(true);
+        lastCheckPointLength = fileLength;
+    }
+
+    /**
+     * 关闭并删除文件, 用于回滚时丢弃新建的文件
+     */
+    public void delete() throws IOException {
+        if (syncTimer != null) {
+            syncTimer.cancel();
+        }
+        fileChannel.close();
+        FileUtils.delete(file);
+    }
+
+    /**
+     * 强制刷盘
+     */
+    public void force() throws IOException {
+        checkPoint();
+    }
+
     public byte[] readEntry(long position) throws IOException {
         fileChannel.position(position);
         entryBuffer.clear();
@@ -191,9 +290,16 @@ public class StoreTxLog implements Closeable {
         return fileHeader.getLength();
     }
 
+    /**
+     * 刷盘, 停止定时刷盘并关闭文件
+     */
     @Override
     public void close() throws IOException {
+        if (syncTimer != null) {
+            syncTimer.cancel();
+        }
         checkPoint();
+        fileChannel.close();
     }
 
 }
@@ -10,6 +10,7 @@ import com.github.ltsopensource.kv.serializer.StoreSerializer;
 import java.io.File;
 import java.io.FilenameFilter;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
@@ -109,20 +110,101 @@ public class StoreTxLogEngine<K, V> {
     /**
      * 追加一条事务日志
      */
-    public StoreTxLogPosition append(Operation op, K key, V value) throws DBException {
+    public synchronized StoreTxLogPosition append(Operation op, K key, V value) throws DBException {
         try {
+            byte[] entryBytes = toEntryBytes(op, key, value);
+            StoreTxLogPosition position;
             try {
-                return this.append(storeTxLog, op, key, value);
+                position = storeTxLog.append(entryBytes);
             } catch (CapacityNotEnoughException notEnough) {
                 // 要新建一个文件
-                return this.append(nextNewStoreTxLog(), op, key, value);
+                position = nextNewStoreTxLog().append(entryBytes);
             }
+            if (storeConfig.getTxLogFlushMode() == TxLogFlushMode.GROUP) {
+                storeTxLog.force();
+            }
+            return position;
+        } catch (DBException e) {
+            throw e;
         } catch (Exception e) {
             throw new DBException("append dbLog error:" + e.getMessage(), e);
         }
     }
 
-    private StoreTxLogPosition append(StoreTxLog storeTxLog, Operation op, K key, V value) throws IOException {
+    /**
+     * 批量追加事务日志, 整批一次连续写入(跨文件时分两次)
+     * 刷盘策略为 {@link TxLogFlushMode#GROUP} 时整批只强制刷盘一次
+     */
+    public synchronized List<StoreTxLogPosition> append(List<byte[]> entries) throws DBException {
+        List<StoreTxLogPosition> positions = new ArrayList<StoreTxLogPosition>(entries.size());
+        boolean groupFlush = storeConfig.getTxLogFlushMode() == TxLogFlushMode.GROUP;
+        StoreTxLogPosition start = new StoreTxLogPosition(storeTxLog.getNextRecordId());
+        try {
+            int index = 0;
+            while (index < entries.size()) {
+                try {
+                    index += storeTxLog.append(entries, index, positions);
+                } catch (CapacityNotEnoughException notEnough) {
+                    if (groupFlush) {
+                        storeTxLog.force();
+                    }
+                    // 要新建一个文件
+                    nextNewStoreTxLog();
+                }
+            }
+            if (groupFlush) {
+                storeTxLog.force();
+            }
+        } catch (Exception e) {
+            // 写了一部分的回滚掉, 整批都没有写入
+            rollbackQuietly(start);
+            if (e instanceof DBException) {
+                throw (DBException) e;
+            }
+            throw new DBException("append dbLog error:" + e.getMessage(), e);
+        }
+        return positions;
+    }
+
+    /**
+     * 回滚到 position, 丢弃之后写入的事务日志(包括之后新建的文件), 只能回滚最近写入的还没有生效的记录
+     */
+    public synchronized void rollback(StoreTxLogPosition position) throws IOException {
+        long recordId = position.getRecordId();
+        while (storeTxLogs.size() > 1 && storeTxLog.getFirstRecordId() + storeTxLog.getHeaderLength() > recordId) {
+            StoreTxLog removed = storeTxLogs.remove(storeTxLogs.size() - 1);
+            storeTxLog = storeTxLogs.get(storeTxLogs.size() - 1);
+            storeTxLog.setNext(null);
+            removed.delete();
+        }
+        storeTxLog.truncate(recordId);
+    }
+
+    /**
+     * 关闭所有的事务日志文件
+     */
+    public synchronized void close() {
+        for (StoreTxLog txLog : storeTxLogs) {
+            try {
+                txLog.close();
+            } catch (Throwable t) {
+                DB.LOGGER.error("close dbLog error:" + t.getMessage(), t);
+            }
+        }
+    }
+
+    private void rollbackQuietly(StoreTxLogPosition position) {
+        try {
+            rollback(position);
+        } catch (Throwable t) {
+            DB.LOGGER.error("rollback dbLog to " + position.getRecordId() + " error:" + t.getMessage(), t);
+        }
+    }
+
+    /**
+     * 序列化一条事务日志
+     */
+    public byte[] toEntryBytes(Operation op, K key, V value) throws IOException {
         StoreTxLogEntry<K, V> entry = null;
         long timestamp = System.currentTimeMillis();
         switch (op) {
@@ -138,7 +220,10 @@ public class StoreTxLogEngine<K, V> {
         try {
             serializer.serialize(entry, out);
             byte[] entryBytes = out.toByteArray();
-            return storeTxLog.append(entryBytes);
+            if (entryBytes.length > storeConfig.getMaxxLogEntryLength()) {
+                throw new DBException("Value size can not great than " + storeConfig.getMaxxLogEntryLength());
+            }
+            return entryBytes;
         } finally {
             out.close();
         }
@@ -0,0 +1,11 @@
+package com.github.ltsopensource.kv.txlog;
+
+/**
+ * 事务日志刷盘策略
+ */
+public enum TxLogFlushMode {
+
+    NONE,       // 不主动刷盘, 由操作系统决定(关闭时会刷一次)
+    GROUP,      // 每组提交强制刷盘一次, 刷盘之后才确认
+    INTERVAL    // 定时刷盘 (dbLogFlushInterval)
+}
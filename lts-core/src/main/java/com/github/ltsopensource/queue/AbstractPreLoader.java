@@ -1,142 +1,113 @@
 package com.github.ltsopensource.queue;
 
 import com.github.ltsopensource.core.AppContext;
-import com.github.ltsopensource.core.commons.concurrent.ConcurrentHashSet;
+import com.github.ltsopensource.core.commons.concurrent.TimingWheel;
 import com.github.ltsopensource.core.commons.utils.Callable;
 import com.github.ltsopensource.core.commons.utils.*;
 import com.github.ltsopensource.core.constant.Constants;
 import com.github.ltsopensource.core.constant.ExtConfig;
+import com.github.ltsopensource.core.domain.monitor.PreLoaderMData;
 import com.github.ltsopensource.core.factory.NamedThreadFactory;
+import com.github.ltsopensource.core.logger.Logger;
+import com.github.ltsopensource.core.logger.LoggerFactory;
 import com.github.ltsopensource.core.support.NodeShutdownHook;
 import com.github.ltsopensource.core.support.SystemClock;
 import com.github.ltsopensource.queue.domain.JobPo;
+import com.github.ltsopensource.queue.support.JobPartitioner;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
+ * 队列低于水位时由取任务的线程直接触发加载, 加载在有界线程池中执行, 每个节点组同时只有一个加载任务
+ * 每个节点组的加载量根据最近的消费速度调整, 消费快的预取得多, 空闲的只保留最小量
+ * 开启时间轮之后, 定时按 triggerTime 范围加载将要到期的任务放入时间轮, 到期时再放入内存队列
+ * 开启分区之后, 每个JobTracker只加载和锁定自己分区的任务, 再加上没有分区的任务中到期很久还没执行的;
+ * 自己的分区没有任务时加载全部, 负责其他分区的JobTracker可能没有这个节点组的TaskTracker来取任务
+ *
  * @author Robert HG (254963746@qq.com) on 8/14/15.
  */
 public abstract class AbstractPreLoader implements PreLoader {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(AbstractPreLoader.class);
+
+    // 时间轮第一层每格1ms, 一圈约1s
+    private static final long TIME_WHEEL_TICK_MS = 1;
+    private static final int TIME_WHEEL_SIZE = 1024;
+    // 时间轮中最多的任务数, 超过之后暂停加载, 防止窗口内任务太多占满内存
+    private static final int TIME_WHEEL_MAX_SIZE = 100000;
+    // 开启时间轮之后, 上次没有加载到到期任务的节点组, 这段时间内不再扫描
+    private static final long IDLE_LOAD_INTERVAL_MILLIS = 1000;
+    // 没有开启时间轮时, 没有加载到任务的节点组第一次退避的时间
+    private static final long MIN_IDLE_LOAD_INTERVAL_MILLIS = 100;
+    // 连续没有加载到任务时退避时间加倍, 最长
+    private static final long MAX_IDLE_LOAD_INTERVAL_MILLIS = 5000;
+
+    // 最大预取量
     private int loadSize;
+    // 最小预取量
+    private int minLoadSize;
     // 预取阀值
     private double factor;
+    // 按照最近的消费速度, 预取多长时间的量
+    private long prefetchMillis;
 
-    private ConcurrentHashMap<String/*taskTrackerNodeGroup*/, JobPriorityBlockingDeque> JOB_MAP = new ConcurrentHashMap<String, JobPriorityBlockingDeque>();
+    private ConcurrentHashMap<String/*taskTrackerNodeGroup*/, GroupLoader> LOADER_MAP = new ConcurrentHashMap<String, GroupLoader>();
 
-    // 加载的信号
-    private ConcurrentHashSet<String> LOAD_SIGNAL = new ConcurrentHashSet<String>();
-    private ScheduledExecutorService LOAD_EXECUTOR_SERVICE = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("LTS-PreLoader", true));
-    @SuppressWarnings("unused")
-    private ScheduledFuture<?> scheduledFuture;
+    private ExecutorService LOAD_EXECUTOR_SERVICE;
+    // 提前加载多长时间内到期的任务
+    private long lookaheadMillis;
+    // 没有开启时为null
+    private TimingWheel<JobPo> timingWheel;
+    private ScheduledExecutorService TIME_WHEEL_EXECUTOR_SERVICE;
+    // 没有开启时为null
+    private JobPartitioner partitioner;
+    // 没有分区的任务到期超过这个时间还没执行, 每次加载时一起加载
+    private long orphanMillis;
+    private volatile RefillListener refillListener;
     private AtomicBoolean start = new AtomicBoolean(false);
-    private String FORCE_PREFIX = "force_"; // 强制加载的信号
-    private ConcurrentHashMap<String/*taskTrackerNodeGroup*/, AtomicBoolean/*是否在加载*/> LOADING = new ConcurrentHashMap<String, AtomicBoolean>();
 
     public AbstractPreLoader(final AppContext appContext) {
         if (start.compareAndSet(false, true)) {
 
             loadSize = appContext.getConfig().getParameter(ExtConfig.JOB_TRACKER_PRELOADER_SIZE, 300);
+            minLoadSize = Math.min(loadSize, appContext.getConfig().getParameter(ExtConfig.JOB_TRACKER_PRELOADER_MIN_SIZE, 10));
             factor = appContext.getConfig().getParameter(ExtConfig.JOB_TRACKER_PRELOADER_FACTOR, 0.2);
-            long interval = appContext.getConfig().getParameter(ExtConfig.JOB_TRACKER_PRELOADER_SIGNAL_CHECK_INTERVAL, 100);
+            prefetchMillis = appContext.getConfig().getParameter(ExtConfig.JOB_TRACKER_PRELOADER_PREFETCH_SECONDS, 10) * 1000L;
+            int threadNum = appContext.getConfig().getParameter(ExtConfig.JOB_TRACKER_PRELOADER_THREAD_NUM, Constants.AVAILABLE_PROCESSOR);
 
-            scheduledFuture = LOAD_EXECUTOR_SERVICE.scheduleWithFixedDelay(new Runnable() {
-                @Override
-                public void run() {
-                    doLoad();
-                }
-            }, interval, interval, TimeUnit.MILLISECONDS);
+            // 每个节点组最多只有一个加载任务在队列中, 所以任务队列的长度不会超过节点组的个数
+            LOAD_EXECUTOR_SERVICE = new ThreadPoolExecutor(threadNum, threadNum, 0L, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory("LTS-PreLoader", true));
+
+            if (appContext.getConfig().getParameter(ExtConfig.JOB_TRACKER_PRELOADER_TIME_WHEEL_ENABLE, false)) {
+                lookaheadMillis = appContext.getConfig().getParameter(ExtConfig.JOB_TRACKER_PRELOADER_TIME_WHEEL_LOOKAHEAD_SECONDS, 60) * 1000L;
+                startTimeWheel();
+            }
+
+            if (appContext.getConfig().getParameter(ExtConfig.JOB_TRACKER_PRELOADER_PARTITION_ENABLE, false)) {
+                partitioner = new JobPartitioner(appContext.getConfig().getIdentity());
+                orphanMillis = appContext.getConfig().getParameter(ExtConfig.JOB_TRACKER_PRELOADER_PARTITION_ORPHAN_SECONDS, 10) * 1000L;
+            }
 
             NodeShutdownHook.registerHook(appContext, this.getClass().getName(), new Callable() {
                 @Override
                 public void call() throws Exception {
-                    scheduledFuture.cancel(true);
-                    LOAD_EXECUTOR_SERVICE.shutdown();
+                    LOAD_EXECUTOR_SERVICE.shutdownNow();
+                    if (TIME_WHEEL_EXECUTOR_SERVICE != null) {
+                        TIME_WHEEL_EXECUTOR_SERVICE.shutdownNow();
+                    }
                     start.set(false);
                 }
             });
         }
     }
 
-    private void doLoad() {
-        for (final String loadTaskTrackerNodeGroup : LOAD_SIGNAL) {
-            new Thread(new Runnable() {
-                @Override
-                public void run() {
-                    AtomicBoolean loading = LOADING.get(loadTaskTrackerNodeGroup);
-                        if (loading == null) {
-                            loading = new AtomicBoolean(false);
-                            AtomicBoolean _loading = LOADING.putIfAbsent(loadTaskTrackerNodeGroup, loading);
-                            if (_loading != null) {
-                                loading = _loading;
-                            }
-                        }
-                        if (loading.compareAndSet(false, true)) {
-                            try {
-                                handleSignal(loadTaskTrackerNodeGroup);
-                            } finally {
-                                loading.compareAndSet(true, false);
-                            }
-                    }
-                }
-            }).start();
-        }
-    }
-
-    private void handleSignal(String loadTaskTrackerNodeGroup) {
-        // 是否是强制加载
-        boolean force = false;
-        if (loadTaskTrackerNodeGroup.startsWith(FORCE_PREFIX)) {
-            loadTaskTrackerNodeGroup = loadTaskTrackerNodeGroup.replaceFirst(FORCE_PREFIX, "");
-            force = true;
-        }
-
-        JobPriorityBlockingDeque queue = JOB_MAP.get(loadTaskTrackerNodeGroup);
-        if (queue == null) {
-            return;
-        }
-        int size = queue.size();
-        if (force || (isInFactor(size))) {
-
-            int needLoadSize = loadSize + size;
-            if (force) {
-                // 强制加载全量加载吧
-                needLoadSize = loadSize;
-            }
-            // load
-            PeriodUtils.start();
-            List<JobPo> loads = null;
-            try {
-                loads = load(loadTaskTrackerNodeGroup, needLoadSize);
-            } finally {
-                PeriodUtils.end("AbstractPreLoader.load loadTaskTrackerNodeGroup:{},loadSide={}", loadTaskTrackerNodeGroup, needLoadSize);
-            }
-            // 加入到内存中
-            if (CollectionUtils.isNotEmpty(loads)) {
-                PeriodUtils.start();
-                try {
-                    for (JobPo load : loads) {
-                        if (!queue.offer(load)) {   // queue的offer等方法都是要获取lock锁的,可以保证线程安全.
-                            // 没有成功说明已经满了
-                            if (force) {
-                                // force场景，移除队列尾部的，插入新的
-                                queue.pollLast();
-                                queue.offer(load);
-                            } else {
-                                break;
-                            }
-                        }
-                    }
-                } finally {
-                    PeriodUtils.end("AbstractPreLoader.offer loadTaskTrackerNodeGroup:{},loadSide={}", loadTaskTrackerNodeGroup, needLoadSize);
-                }
-            }
-        }
-        LOAD_SIGNAL.remove(loadTaskTrackerNodeGroup);
-    }
-
     public JobPo take(String taskTrackerNodeGroup, String taskTrackerIdentity) {
         while (true) {
             JobPo jobPo = get(taskTrackerNodeGroup);                    // 这里的get操作是从内存中的队列中获取job任务
@@ -161,15 +132,63 @@ public abstract class AbstractPreLoader implements PreLoader {
         }
     }
 
+    public List<JobPo> takeBatch(String taskTrackerNodeGroup, String taskTrackerIdentity, int size) {
+        List<JobPo> jobPos = new ArrayList<JobPo>(size);
+        while (jobPos.size() < size) {
+            int needSize = size - jobPos.size();
+            List<JobPo> candidates = new ArrayList<JobPo>(needSize);
+            for (int i = 0; i < needSize; i++) {
+                JobPo jobPo = get(taskTrackerNodeGroup);
+                if (jobPo == null) {
+                    break;
+                }
+                candidates.add(jobPo);
+            }
+            if (candidates.size() == 0) {
+                DotLogUtils.dot("Empty JobQueue, taskTrackerNodeGroup:{}, taskTrackerIdentity:{}", taskTrackerNodeGroup, taskTrackerIdentity);
+                break;
+            }
+            // 一次锁定一批, 没有锁定成功的(被其他JobTracker拿走了)继续从内存队列中补
+            List<JobPo> retry = new ArrayList<JobPo>();
+            PeriodUtils.start();
+            try {
+                boolean[] locked = lockJobs(taskTrackerNodeGroup, taskTrackerIdentity, candidates, retry);
+                for (int i = 0; i < candidates.size(); i++) {
+                    if (locked[i]) {
+                        JobPo jobPo = candidates.get(i);
+                        jobPo.setTaskTrackerIdentity(taskTrackerIdentity);
+                        jobPo.setIsRunning(true);
+                        jobPo.setGmtModified(SystemClock.now());
+                        jobPos.add(jobPo);
+                    }
+                }
+            } finally {
+                PeriodUtils.end("AbstractPreLoader.lockJobs taskTrackerNodeGroup:{}, size:{}", taskTrackerNodeGroup, candidates.size());
+            }
+            if (retry.size() > 0) {
+                // 锁定出错, 还可以锁定的放回内存队列, 这次不再重试, 避免出错时空转
+                JobPriorityIndexedDeque queue = getLoader(taskTrackerNodeGroup).queue;
+                for (JobPo jobPo : retry) {
+                    queue.offer(jobPo);
+                }
+                break;
+            }
+        }
+        return jobPos;
+    }
+
     @Override
     public void load(String taskTrackerNodeGroup) {
         if (StringUtils.isEmpty(taskTrackerNodeGroup)) {
-            for (String key : JOB_MAP.keySet()) {
-                LOAD_SIGNAL.add(FORCE_PREFIX + key);
+            for (GroupLoader loader : LOADER_MAP.values()) {
+                loader.signal(true);
             }
             return;
         }
-        LOAD_SIGNAL.add(FORCE_PREFIX + taskTrackerNodeGroup);
+        GroupLoader loader = LOADER_MAP.get(taskTrackerNodeGroup);
+        if (loader != null) {
+            loader.signal(true);
+        }
     }
 
     @Override
@@ -178,7 +197,7 @@ public abstract class AbstractPreLoader implements PreLoader {
         if (jobPo == null) {
             return;
         }
-        JobPriorityBlockingDeque queue = getQueue(taskTrackerNodeGroup);
+        JobPriorityIndexedDeque queue = getLoader(taskTrackerNodeGroup).queue;
         jobPo.setInternalExtParam(Constants.OLD_PRIORITY, String.valueOf(jobPo.getPriority()));
 
         jobPo.setPriority(Integer.MIN_VALUE);
@@ -189,6 +208,53 @@ public abstract class AbstractPreLoader implements PreLoader {
         }
     }
 
+    @Override
+    public boolean offer(JobPo jobPo) {
+        if (jobPo == null || jobPo.getGmtModified() == null) {
+            // 锁定任务需要 gmtModified
+            return false;
+        }
+        if (partitioner != null && !partitioner.owns(jobPo.getJobId())) {
+            // 其他JobTracker负责的
+            return false;
+        }
+        GroupLoader loader = getLoader(jobPo.getTaskTrackerNodeGroup());
+        if (jobPo.getTriggerTime() != null && jobPo.getTriggerTime() > SystemClock.now()) {
+            // 还没到执行时间, 已经加载过的时间范围内的才放入时间轮, 之后的等加载时间轮的时候加载
+            if (timingWheel == null || jobPo.getTriggerTime() >= loader.wheelLoadedTime) {
+                return false;
+            }
+            schedule(jobPo);
+            return true;
+        }
+        // 有新任务, 之前空的节点组不再退避
+        loader.wakeup();
+        return loader.queue.offer(jobPo);
+    }
+
+    @Override
+    public void addJobTracker(String jobTrackerIdentity) {
+        if (partitioner != null) {
+            partitioner.addJobTracker(jobTrackerIdentity);
+        }
+    }
+
+    @Override
+    public void removeJobTracker(String jobTrackerIdentity) {
+        if (partitioner != null) {
+            partitioner.removeJobTracker(jobTrackerIdentity);
+        }
+    }
+
+    @Override
+    public List<PreLoaderMData> collectMData() {
+        List<PreLoaderMData> mDatas = new ArrayList<PreLoaderMData>(LOADER_MAP.size());
+        for (GroupLoader loader : LOADER_MAP.values()) {
+            mDatas.add(loader.collectMData());
+        }
+        return mDatas;
+    }
+
     protected abstract JobPo getJob(String taskTrackerNodeGroup, String jobId);
 
     /**
@@ -200,26 +266,208 @@ public abstract class AbstractPreLoader implements PreLoader {
                                        Long triggerTime,
                                        Long gmtModified);
 
+    /**
+     * 批量锁定任务, 返回值和jobPos一一对应, true表示锁定成功
+     * 出错时没有锁定但是还可以锁定的任务放到 retry 中, 由调用方放回内存队列
+     * 默认逐个调用 {@link #lockJob}, 子类可以覆盖为一次批量更新
+     */
+    protected boolean[] lockJobs(String taskTrackerNodeGroup,
+                                 String taskTrackerIdentity,
+                                 List<JobPo> jobPos,
+                                 List<JobPo> retry) {
+        boolean[] locked = new boolean[jobPos.size()];
+        for (int i = 0; i < jobPos.size(); i++) {
+            JobPo jobPo = jobPos.get(i);
+            locked[i] = lockJob(taskTrackerNodeGroup, jobPo.getJobId(),
+                    taskTrackerIdentity, jobPo.getTriggerTime(),
+                    jobPo.getGmtModified());
+        }
+        return locked;
+    }
+
     /**
      * 加载任务
      */
     protected abstract List<JobPo> load(String loadTaskTrackerNodeGroup, int loadSize);
 
+    /**
+     * 加载没有分区并且 triggerTime 小于 toTriggerTime 的任务
+     * 默认不加载, 不在存储中记录分区的都按 jobId 计算分区
+     */
+    protected List<JobPo> loadNoPartition(String loadTaskTrackerNodeGroup, long toTriggerTime, int loadSize) {
+        return null;
+    }
+
+    /**
+     * 只加载 partitions 分区中的任务
+     * 默认多加载一些在内存中过滤, 子类可以覆盖为在查询中过滤
+     */
+    protected List<JobPo> load(String loadTaskTrackerNodeGroup, int loadSize, int[] partitions) {
+        List<JobPo> jobPos = load(loadTaskTrackerNodeGroup, loadSize * partitioner.getJobTrackerNum());
+        if (CollectionUtils.isEmpty(jobPos)) {
+            return jobPos;
+        }
+        List<JobPo> owned = new ArrayList<JobPo>(Math.min(loadSize, jobPos.size()));
+        for (JobPo jobPo : jobPos) {
+            if (owned.size() >= loadSize) {
+                break;
+            }
+            if (partitioner.owns(jobPo.getJobId())) {
+                owned.add(jobPo);
+            }
+        }
+        return owned;
+    }
+
+    /**
+     * 加载 fromTriggerTime <= triggerTime < toTriggerTime 并且没有在执行的任务, 按 triggerTime 排序, 给时间轮用
+     * 出错返回null
+     */
+    protected abstract List<JobPo> load(String loadTaskTrackerNodeGroup, long fromTriggerTime, long toTriggerTime, int loadSize);
+
+    private void startTimeWheel() {
+        timingWheel = new TimingWheel<JobPo>(TIME_WHEEL_TICK_MS, TIME_WHEEL_SIZE, new TimingWheel.ExpireHandler<JobPo>() {
+            @Override
+            public void onExpire(JobPo jobPo) {
+                // 满了就放弃, 之后加载到期任务的时候还会加载到
+                if (getLoader(jobPo.getTaskTrackerNodeGroup()).queue.offer(jobPo)) {
+                    onRefilled(jobPo.getTaskTrackerNodeGroup());
+                }
+            }
+        });
+        TIME_WHEEL_EXECUTOR_SERVICE = Executors.newScheduledThreadPool(2, new NamedThreadFactory("LTS-PreLoader-TimeWheel", true));
+        TIME_WHEEL_EXECUTOR_SERVICE.execute(new Runnable() {
+            @Override
+            public void run() {
+                while (start.get()) {
+                    try {
+                        timingWheel.advance(1000);
+                    } catch (InterruptedException e) {
+                        return;
+                    } catch (Throwable t) {
+                        LOGGER.error("TimingWheel advance error", t);
+                    }
+                }
+            }
+        });
+        // 每四分之一个窗口加载一次, 保证时间轮中总是有接下来一段时间的任务
+        long feedInterval = Math.max(lookaheadMillis / 4, 1000);
+        TIME_WHEEL_EXECUTOR_SERVICE.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    feedTimeWheel();
+                } catch (Throwable t) {
+                    LOGGER.error("Feed TimingWheel error", t);
+                }
+            }
+        }, 0, feedInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 每个节点组从上次加载到的时间开始, 按范围加载到 now + lookaheadMillis
+     */
+    private void feedTimeWheel() {
+        long now = SystemClock.now();
+        long to = now + lookaheadMillis;
+        for (GroupLoader loader : LOADER_MAP.values()) {
+            long from = Math.max(loader.wheelLoadedTime, now);
+            while (from < to && timingWheel.size() < TIME_WHEEL_MAX_SIZE) {
+                List<JobPo> jobPos = load(loader.nodeGroup, from, to, loadSize);
+                if (jobPos == null) {
+                    // 出错了, 下次从这里继续
+                    break;
+                }
+                for (JobPo jobPo : jobPos) {
+                    if (partitioner == null || partitioner.owns(jobPo.getJobId())) {
+                        schedule(jobPo);
+                    }
+                }
+                if (jobPos.size() < loadSize) {
+                    from = to;
+                } else {
+                    // 没有加载完, 从最后一个的时间继续, 相同时间的会重复加载, 内存队列会去重
+                    long lastTriggerTime = jobPos.get(jobPos.size() - 1).getTriggerTime();
+                    from = Math.max(lastTriggerTime, from + 1);
+                }
+            }
+            loader.wheelLoadedTime = from;
+        }
+    }
+
+    /**
+     * 开启分区时加载自己分区的, 自己分区没有的时候加载全部
+     * 没有分区的任务(比如升级过程中旧版本写入的)不属于任何JobTracker, 每次再加载到期超过 orphanMillis 的放在前面,
+     * 只加载没有分区的, 不和其他分区的JobTracker抢; 合并之后最多 2 * loadSize 个
+     */
+    private List<JobPo> loadOwned(String nodeGroup, int loadSize) {
+        int[] partitions = partitioner == null ? null : partitioner.getOwnedPartitions();
+        if (partitions == null) {
+            return load(nodeGroup, loadSize);
+        }
+        List<JobPo> loads = partitions.length == 0 ? null : load(nodeGroup, loadSize, partitions);
+        if (CollectionUtils.isEmpty(loads)) {
+            return load(nodeGroup, loadSize);
+        }
+        List<JobPo> orphans = loadNoPartition(nodeGroup, SystemClock.now() - orphanMillis, loadSize);
+        if (CollectionUtils.isEmpty(orphans)) {
+            return loads;
+        }
+        Set<String> jobIds = new HashSet<String>(orphans.size() * 2);
+        for (JobPo jobPo : orphans) {
+            jobIds.add(jobPo.getJobId());
+        }
+        List<JobPo> merged = new ArrayList<JobPo>(orphans.size() + loads.size());
+        merged.addAll(orphans);
+        for (JobPo jobPo : loads) {
+            if (!jobIds.contains(jobPo.getJobId())) {
+                merged.add(jobPo);
+            }
+        }
+        return merged;
+    }
+
+    @Override
+    public void setRefillListener(RefillListener refillListener) {
+        this.refillListener = refillListener;
+    }
+
+    private void onRefilled(String taskTrackerNodeGroup) {
+        RefillListener refillListener = this.refillListener;
+        if (refillListener == null) {
+            return;
+        }
+        try {
+            refillListener.onRefilled(taskTrackerNodeGroup);
+        } catch (Throwable t) {
+            LOGGER.error("PreLoader refill listener error, taskTrackerNodeGroup:{}", taskTrackerNodeGroup, t);
+        }
+    }
+
+    private void schedule(JobPo jobPo) {
+        if (!timingWheel.add(jobPo, jobPo.getTriggerTime())) {
+            // 已经到期
+            getLoader(jobPo.getTaskTrackerNodeGroup()).queue.offer(jobPo);
+        }
+    }
+
     private JobPo get(String taskTrackerNodeGroup) {
 
-        JobPriorityBlockingDeque queue = getQueue(taskTrackerNodeGroup);
+        GroupLoader loader = getLoader(taskTrackerNodeGroup);
 
-        int size = queue.size();
+        int size = loader.queue.size();
         DotLogUtils.dot("AbstractPreLoader.queue size:{},taskTrackerNodeGroup:{}", size, taskTrackerNodeGroup);
-        if (isInFactor(size)) {     // 判断是否到触发的点了
-            // 触发加载的请求
-            if (!LOAD_SIGNAL.contains(taskTrackerNodeGroup)) {
-                LOAD_SIGNAL.add(taskTrackerNodeGroup);
-                doLoad();
-            }
+        if (loader.isLowWater(size)) {     // 判断是否到触发的点了
+            // 触发加载
+            loader.signal(false);
+        }
+        JobPo jobPo = loader.queue.poll();
+        if (jobPo == null) {
+            loader.emptyTakeNum.incrementAndGet();
+            return null;
         }
-        JobPo jobPo = queue.poll();
-        if (jobPo != null && jobPo.getPriority() == Integer.MIN_VALUE) {
+        loader.takenNum.incrementAndGet();
+        if (jobPo.getPriority() == Integer.MIN_VALUE) {
             if (CollectionUtils.isNotEmpty(jobPo.getInternalExtParams())) {
                 if (jobPo.getInternalExtParams().containsKey(Constants.OLD_PRIORITY)) {
                     try {
@@ -234,19 +482,187 @@ public abstract class AbstractPreLoader implements PreLoader {
         return jobPo;
     }
 
-    private boolean isInFactor(int size) {
-        return size / (loadSize * 1.0) < factor;
+    private GroupLoader getLoader(String taskTrackerNodeGroup) {
+        GroupLoader loader = LOADER_MAP.get(taskTrackerNodeGroup);
+        if (loader == null) {
+            loader = new GroupLoader(taskTrackerNodeGroup);
+            GroupLoader oldLoader = LOADER_MAP.putIfAbsent(taskTrackerNodeGroup, loader);
+            if (oldLoader != null) {
+                loader = oldLoader;
+            }
+        }
+        return loader;
     }
 
-    private JobPriorityBlockingDeque getQueue(String taskTrackerNodeGroup) {
-        JobPriorityBlockingDeque queue = JOB_MAP.get(taskTrackerNodeGroup);
-        if (queue == null) {
-            queue = new JobPriorityBlockingDeque(loadSize);
-            JobPriorityBlockingDeque oldQueue = JOB_MAP.putIfAbsent(taskTrackerNodeGroup, queue);
-            if (oldQueue != null) {
-                queue = oldQueue;
+    /**
+     * 一个节点组的内存队列和加载状态
+     */
+    private class GroupLoader implements Runnable {
+
+        private final String nodeGroup;
+        private final JobPriorityIndexedDeque queue = new JobPriorityIndexedDeque(loadSize);
+        // 是否在加载(或者已经提交了加载任务)
+        private final AtomicBoolean loading = new AtomicBoolean(false);
+        // 是否有强制加载的信号
+        private final AtomicBoolean forcePending = new AtomicBoolean(false);
+
+        // 两次加载之间取走的任务数, 用来计算消费速度
+        private final AtomicLong takenNum = new AtomicLong(0);
+        private volatile long lastRefillTime = SystemClock.now();
+        // 每秒消费的任务数
+        private volatile double consumeRate = -1;
+        private volatile int targetSize = loadSize;
+
+        // 监控数据
+        private final AtomicLong emptyTakeNum = new AtomicLong(0);
+        private final AtomicLong refillNum = new AtomicLong(0);
+        private final AtomicLong refillCostMillis = new AtomicLong(0);
+        private final AtomicLong refillJobNum = new AtomicLong(0);
+
+        // 时间轮已经加载到的 triggerTime
+        private volatile long wheelLoadedTime = 0;
+        // 连续没有加载到任务时的退避, 在 nextLoadTime 之前不再加载(强制加载和新任务除外)
+        private volatile long idleLoadInterval = 0;
+        private volatile long nextLoadTime = 0;
+
+        GroupLoader(String nodeGroup) {
+            this.nodeGroup = nodeGroup;
+        }
+
+        boolean isLowWater(int size) {
+            return size < targetSize * factor;
+        }
+
+        void signal(boolean force) {
+            if (force) {
+                forcePending.set(true);
+            }
+            if (loading.compareAndSet(false, true)) {
+                try {
+                    LOAD_EXECUTOR_SERVICE.execute(this);
+                } catch (RejectedExecutionException e) {
+                    // 已经关闭
+                    loading.set(false);
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                refill(forcePending.getAndSet(false));
+            } catch (Throwable t) {
+                LOGGER.error("PreLoader refill error, taskTrackerNodeGroup:{}", nodeGroup, t);
+            } finally {
+                loading.set(false);
+            }
+            if (forcePending.get()) {
+                // 加载过程中又收到了强制加载的信号
+                signal(false);
+            }
+        }
+
+        private void refill(boolean force) {
+            int size = queue.size();
+            if (!force && !isLowWater(size)) {
+                return;
+            }
+            if (!force && SystemClock.now() < nextLoadTime) {
+                // 刚刚扫描过没有到期任务, 退避时间内不用再扫描 (开启时间轮时将要到期的任务由时间轮放入)
+                return;
+            }
+            adjustTargetSize();
+
+            int needLoadSize = targetSize + size;
+            if (force) {
+                // 强制加载全量加载吧
+                needLoadSize = loadSize;
+            }
+            // load
+            long start = SystemClock.now();
+            List<JobPo> loads = loadOwned(nodeGroup, needLoadSize);
+            refillCostMillis.addAndGet(SystemClock.now() - start);
+            refillNum.incrementAndGet();
+            if (CollectionUtils.isEmpty(loads)) {
+                backoff();
+            } else {
+                wakeup();
+            }
+
+            // 加入到内存中
+            if (CollectionUtils.isNotEmpty(loads)) {
+                refillJobNum.addAndGet(loads.size());
+                for (JobPo load : loads) {
+                    if (!queue.offer(load)) {
+                        // 没有成功说明已经满了
+                        if (force) {
+                            // force场景，移除队列尾部的，插入新的
+                            queue.pollLast();
+                            queue.offer(load);
+                        } else {
+                            break;
+                        }
+                    }
+                }
+                onRefilled(nodeGroup);
+            }
+        }
+
+        /**
+         * 没有加载到任务, 退避时间加倍
+         */
+        private void backoff() {
+            long interval = idleLoadInterval;
+            if (interval == 0) {
+                interval = timingWheel != null ? IDLE_LOAD_INTERVAL_MILLIS : MIN_IDLE_LOAD_INTERVAL_MILLIS;
+            } else {
+                interval = Math.min(interval * 2, MAX_IDLE_LOAD_INTERVAL_MILLIS);
+            }
+            idleLoadInterval = interval;
+            nextLoadTime = SystemClock.now() + interval;
+        }
+
+        /**
+         * 有任务了, 取消退避
+         */
+        void wakeup() {
+            idleLoadInterval = 0;
+            nextLoadTime = 0;
+        }
+
+        /**
+         * 根据上次加载以来的消费速度调整预取量
+         */
+        private void adjustTargetSize() {
+            long now = SystemClock.now();
+            long elapsed = now - lastRefillTime;
+            if (elapsed <= 0) {
+                return;
+            }
+            long taken = takenNum.getAndSet(0);
+            lastRefillTime = now;
+            if (consumeRate < 0 && taken == 0) {
+                // 还没有消费过, 保持初始的预取量
+                return;
             }
+
+            double rate = taken * 1000.0 / elapsed;
+            consumeRate = consumeRate < 0 ? rate : (consumeRate + rate) / 2;
+
+            long size = (long) Math.ceil(consumeRate * prefetchMillis / 1000.0);
+            targetSize = (int) Math.max(minLoadSize, Math.min(loadSize, size));
+        }
+
+        PreLoaderMData collectMData() {
+            PreLoaderMData mData = new PreLoaderMData();
+            mData.setTaskTrackerNodeGroup(nodeGroup);
+            mData.setQueueSize(queue.size());
+            mData.setTargetSize(targetSize);
+            mData.setEmptyTakeNum(emptyTakeNum.getAndSet(0));
+            mData.setRefillNum(refillNum.getAndSet(0));
+            mData.setRefillCostMillis(refillCostMillis.getAndSet(0));
+            mData.setRefillJobNum(refillJobNum.getAndSet(0));
+            return mData;
         }
-        return queue;
     }
 }
@@ -26,6 +26,13 @@ public interface ExecutableJobQueue extends JobQueue {
      */
     boolean add(JobPo jobPo);
 
+    /**
+     * 批量入队列, 已经存在的(taskId + taskTrackerNodeGroup)忽略
+     *
+     * @return 实际插入的条数
+     */
+    int addBatch(List<JobPo> jobPos);
+
     /**
      * 出队列
      */
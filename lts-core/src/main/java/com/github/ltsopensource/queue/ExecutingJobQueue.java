@@ -31,10 +31,25 @@ public interface ExecutingJobQueue extends JobQueue {
      */
     List<JobPo> getDeadJobs(long deadline);
 
+    /**
+     * 分页得到死掉的任务, 按 jobId 升序, 只返回 jobId 大于 lastJobId 的 (lastJobId 为null从头开始)
+     */
+    List<JobPo> getDeadJobs(long deadline, String lastJobId, int limit);
+
     /**
      * 得到JobPo
      */
     JobPo getJob(String taskTrackerNodeGroup, String taskId);
 
     JobPo getJob(String jobId);
+
+    /**
+     * 批量得到JobPo, 不存在的不返回
+     */
+    List<JobPo> getJobsByJobIds(List<String> jobIds);
+
+    /**
+     * 批量出队列, 返回删除的个数
+     */
+    int removeBatch(List<String> jobIds);
 }
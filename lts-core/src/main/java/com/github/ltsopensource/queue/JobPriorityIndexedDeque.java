@@ -0,0 +1,152 @@
+package com.github.ltsopensource.queue;
+
+import com.github.ltsopensource.queue.domain.JobPo;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 优先级 有界 去重 双向队列
+ * 排序规则和 {@link JobPriorityBlockingDeque} 一致 (priority, triggerTime, gmtCreated)
+ * 用红黑树排序 + jobId 索引, offer, pollFirst, pollLast, remove(jobId) 都是 O(log n)
+ */
+public class JobPriorityIndexedDeque {
+
+    private final int capacity;
+
+    private final TreeMap<SortKey, JobPo> tree = new TreeMap<SortKey, JobPo>();
+    // Key: jobId
+    private final Map<String, SortKey> index = new HashMap<String, SortKey>();
+    private final ReentrantLock lock = new ReentrantLock();
+
+    public JobPriorityIndexedDeque(int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException();
+        this.capacity = capacity;
+    }
+
+    public JobPo pollFirst() {
+        lock.lock();
+        try {
+            return unlink(tree.pollFirstEntry());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public JobPo pollLast() {
+        lock.lock();
+        try {
+            return unlink(tree.pollLastEntry());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public JobPo poll() {
+        return pollFirst();
+    }
+
+    /**
+     * 相同jobId的任务已经在队列中时, 用新的替换旧的(排序字段可能变了, 例如 loadOne2First)
+     */
+    public boolean offer(JobPo e) {
+        if (e == null) throw new NullPointerException();
+
+        lock.lock();
+        try {
+            SortKey old = index.get(e.getJobId());
+            if (old != null) {
+                tree.remove(old);
+            } else if (tree.size() >= capacity) {
+                return false;
+            }
+            SortKey key = new SortKey(e);
+            tree.put(key, e);
+            index.put(e.getJobId(), key);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public JobPo remove(String jobId) {
+        lock.lock();
+        try {
+            SortKey key = index.remove(jobId);
+            if (key == null) {
+                return null;
+            }
+            return tree.remove(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean contains(String jobId) {
+        lock.lock();
+        try {
+            return index.containsKey(jobId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return tree.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private JobPo unlink(Map.Entry<SortKey, JobPo> entry) {
+        if (entry == null) {
+            return null;
+        }
+        index.remove(entry.getKey().jobId);
+        return entry.getValue();
+    }
+
+    @Override
+    public String toString() {
+        lock.lock();
+        try {
+            return tree.values().toString();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 入队时的排序字段快照, 防止JobPo在队列中被修改后破坏树的顺序
+     */
+    private static final class SortKey implements Comparable<SortKey> {
+
+        private final int priority;
+        private final long triggerTime;
+        private final long gmtCreated;
+        private final String jobId;
+
+        SortKey(JobPo jobPo) {
+            this.priority = jobPo.getPriority() == null ? 0 : jobPo.getPriority();
+            this.triggerTime = jobPo.getTriggerTime() == null ? 0 : jobPo.getTriggerTime();
+            this.gmtCreated = jobPo.getGmtCreated() == null ? 0 : jobPo.getGmtCreated();
+            this.jobId = jobPo.getJobId();
+        }
+
+        @Override
+        public int compareTo(SortKey o) {
+            if (priority != o.priority) {
+                return priority < o.priority ? -1 : 1;
+            }
+            if (triggerTime != o.triggerTime) {
+                return triggerTime < o.triggerTime ? -1 : 1;
+            }
+            if (gmtCreated != o.gmtCreated) {
+                return gmtCreated < o.gmtCreated ? -1 : 1;
+            }
+            return jobId.compareTo(o.jobId);
+        }
+    }
+}
@@ -1,7 +1,10 @@
 package com.github.ltsopensource.queue;
 
+import com.github.ltsopensource.core.domain.monitor.PreLoaderMData;
 import com.github.ltsopensource.queue.domain.JobPo;
 
+import java.util.List;
+
 /**
  * @author Robert HG (254963746@qq.com) on 8/14/15.
  */
@@ -9,6 +12,11 @@ public interface PreLoader {
 
     public JobPo take(String taskTrackerNodeGroup, String taskTrackerIdentity);
 
+    /**
+     * 一次获取并锁定最多size个任务, 返回成功锁定的任务(可能少于size)
+     */
+    public List<JobPo> takeBatch(String taskTrackerNodeGroup, String taskTrackerIdentity, int size);
+
     /**
      * 如果taskTrackerNodeGroup为空，那么load所有的
      */
@@ -18,4 +26,38 @@ public interface PreLoader {
      * 加载某个任务并放置第一个
      */
     public void loadOne2First(String taskTrackerNodeGroup, String jobId);
+
+    /**
+     * 把刚加入可执行队列的任务直接放入内存队列, 不用等下一次加载
+     * 还没到执行时间的, 开启了时间轮时放入时间轮, 到期再放入内存队列
+     * 没有放入返回false, 任务仍然会在后续加载中被取到
+     */
+    public boolean offer(JobPo jobPo);
+
+    /**
+     * JobTracker 节点加入, 开启分区之后重新分配每个JobTracker负责的分区
+     */
+    public void addJobTracker(String jobTrackerIdentity);
+
+    /**
+     * JobTracker 节点退出, 它负责的分区分给剩下的JobTracker
+     */
+    public void removeJobTracker(String jobTrackerIdentity);
+
+    /**
+     * 收集每个节点组的预加载监控数据, 计数类数据收集后清零
+     */
+    public List<PreLoaderMData> collectMData();
+
+    /**
+     * 设置内存队列补充了任务(加载到了任务, 时间轮中的任务到期)时的回调
+     */
+    public void setRefillListener(RefillListener refillListener);
+
+    /**
+     * 内存队列补充了任务的回调, 在加载线程或者时间轮线程中执行, 不能阻塞
+     */
+    public interface RefillListener {
+        void onRefilled(String taskTrackerNodeGroup);
+    }
 }
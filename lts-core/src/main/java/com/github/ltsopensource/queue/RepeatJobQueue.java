@@ -3,6 +3,9 @@ package com.github.ltsopensource.queue;
 import com.github.ltsopensource.queue.domain.JobPo;
 import com.github.ltsopensource.store.jdbc.exception.DupEntryException;
 
+import java.util.List;
+import java.util.Map;
+
 /**
  * @author Robert HG (254963746@qq.com) on 3/26/16.
  */
@@ -34,4 +37,9 @@ public interface RepeatJobQueue extends SchedulerJobQueue {
      */
     int incRepeatedCount(String jobId);
 
+    /**
+     * 批量增加重复次数, jobIds 中不能有重复的, 返回 jobId -> 增加后的重复次数, 不存在的不返回
+     */
+    Map<String, Integer> incRepeatedCount(List<String> jobIds);
+
 }
@@ -3,6 +3,7 @@ package com.github.ltsopensource.queue;
 import com.github.ltsopensource.queue.domain.JobPo;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author Robert HG (254963746@qq.com) on 4/4/16.
@@ -13,5 +14,15 @@ public interface SchedulerJobQueue extends JobQueue {
      */
     boolean updateLastGenerateTriggerTime(String jobId, Long lastGenerateTriggerTime);
 
+    /**
+     * 批量更新 lastGenerateTriggerTime, key: jobId, value: lastGenerateTriggerTime
+     */
+    void updateLastGenerateTriggerTime(Map<String, Long> lastGenerateTriggerTimes);
+
     List<JobPo> getNeedGenerateJobPos(Long checkTime, int topSize);
+
+    /**
+     * 批量得到JobPo, 不存在的不返回
+     */
+    List<JobPo> getJobsByJobIds(List<String> jobIds);
 }
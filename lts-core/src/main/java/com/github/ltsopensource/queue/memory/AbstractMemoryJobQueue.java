@@ -0,0 +1,197 @@
+package com.github.ltsopensource.queue.memory;
+
+import com.github.ltsopensource.admin.request.JobQueueReq;
+import com.github.ltsopensource.admin.response.PaginationRsp;
+import com.github.ltsopensource.core.commons.utils.Assert;
+import com.github.ltsopensource.core.commons.utils.StringUtils;
+import com.github.ltsopensource.core.support.SystemClock;
+import com.github.ltsopensource.queue.JobQueue;
+import com.github.ltsopensource.queue.domain.JobPo;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 和 AbstractMysqlJobQueue 的查询和更新条件保持一致
+ */
+public abstract class AbstractMemoryJobQueue implements JobQueue {
+
+    private MemoryJobStore store;
+
+    public AbstractMemoryJobQueue(MemoryJobStore store) {
+        this.store = store;
+    }
+
+    protected MemoryJobStore getStore() {
+        return store;
+    }
+
+    /**
+     * 返回null表示表不存在
+     */
+    protected abstract JobTable getTable(JobQueueReq request);
+
+    @Override
+    public PaginationRsp<JobPo> pageSelect(final JobQueueReq request) {
+        PaginationRsp<JobPo> response = new PaginationRsp<JobPo>();
+        JobTable table = getTable(request);
+        if (table == null) {
+            response.setResults(0);
+            return response;
+        }
+        List<JobPo> jobPos = table.list(new JobTable.Filter() {
+            @Override
+            public boolean match(JobPo jobPo) {
+                return matches(request, jobPo);
+            }
+        }, 0);
+        response.setResults(jobPos.size());
+        if (jobPos.size() > 0) {
+            Collections.sort(jobPos, getComparator(request.getField(), request.getDirection()));
+            int from = Math.min(request.getStart(), jobPos.size());
+            int to = Math.min(from + request.getLimit(), jobPos.size());
+            response.setRows(jobPos.subList(from, to));
+        }
+        return response;
+    }
+
+    @Override
+    public boolean selectiveUpdateByJobId(JobQueueReq request) {
+        Assert.hasLength(request.getJobId(), "Only allow update by jobId");
+        JobTable table = getTable(request);
+        return table != null && table.update(request.getJobId(), newSelectiveUpdater(request));
+    }
+
+    @Override
+    public boolean selectiveUpdateByTaskId(final JobQueueReq request) {
+        Assert.hasLength(request.getRealTaskId(), "Only allow update by realTaskId and taskTrackerNodeGroup");
+        Assert.hasLength(request.getTaskTrackerNodeGroup(), "Only allow update by realTaskId and taskTrackerNodeGroup");
+        JobTable table = getTable(request);
+        if (table == null) {
+            return false;
+        }
+        List<JobPo> jobPos = table.list(new JobTable.Filter() {
+            @Override
+            public boolean match(JobPo jobPo) {
+                return request.getRealTaskId().equals(jobPo.getRealTaskId())
+                        && request.getTaskTrackerNodeGroup().equals(jobPo.getTaskTrackerNodeGroup());
+            }
+        }, 0);
+        int num = 0;
+        JobTable.Updater updater = newSelectiveUpdater(request);
+        for (JobPo jobPo : jobPos) {
+            if (table.update(jobPo.getJobId(), updater)) {
+                num++;
+            }
+        }
+        return num == 1;
+    }
+
+    private JobTable.Updater newSelectiveUpdater(final JobQueueReq request) {
+        return new JobTable.Updater() {
+            @Override
+            public boolean update(JobPo jobPo) {
+                if (request.getCronExpression() != null) {
+                    jobPo.setCronExpression(request.getCronExpression());
+                }
+                if (request.getNeedFeedback() != null) {
+                    jobPo.setNeedFeedback(request.getNeedFeedback());
+                }
+                if (request.getExtParams() != null) {
+                    jobPo.setExtParams(request.getExtParams());
+                }
+                if (request.getTriggerTime() != null) {
+                    jobPo.setTriggerTime(request.getTriggerTime().getTime());
+                }
+                if (request.getPriority() != null) {
+                    jobPo.setPriority(request.getPriority());
+                }
+                if (request.getMaxRetryTimes() != null) {
+                    jobPo.setMaxRetryTimes(request.getMaxRetryTimes());
+                }
+                jobPo.setRelyOnPrevCycle(request.getRelyOnPrevCycle() == null ? true : request.getRelyOnPrevCycle());
+                if (request.getSubmitNodeGroup() != null) {
+                    jobPo.setSubmitNodeGroup(request.getSubmitNodeGroup());
+                }
+                if (request.getTaskTrackerNodeGroup() != null) {
+                    jobPo.setTaskTrackerNodeGroup(request.getTaskTrackerNodeGroup());
+                }
+                if (request.getRepeatCount() != null) {
+                    jobPo.setRepeatCount(request.getRepeatCount());
+                }
+                if (request.getRepeatInterval() != null) {
+                    jobPo.setRepeatInterval(request.getRepeatInterval());
+                }
+                jobPo.setGmtModified(SystemClock.now());
+                return true;
+            }
+        };
+    }
+
+    private boolean matches(JobQueueReq request, JobPo jobPo) {
+        return equalsOnNotEmpty(request.getJobId(), jobPo.getJobId())
+                && equalsOnNotEmpty(request.getTaskId(), jobPo.getTaskId())
+                && equalsOnNotEmpty(request.getRealTaskId(), jobPo.getRealTaskId())
+                && equalsOnNotEmpty(request.getTaskTrackerNodeGroup(), jobPo.getTaskTrackerNodeGroup())
+                && equalsOnNotEmpty(request.getJobType(), jobPo.getJobType() == null ? null : jobPo.getJobType().name())
+                && equalsOnNotEmpty(request.getSubmitNodeGroup(), jobPo.getSubmitNodeGroup())
+                && (request.getNeedFeedback() == null || request.getNeedFeedback() == jobPo.isNeedFeedback())
+                && between(jobPo.getGmtCreated(), request.getStartGmtCreated(), request.getEndGmtCreated())
+                && between(jobPo.getGmtModified(), request.getStartGmtModified(), request.getEndGmtModified());
+    }
+
+    private static boolean equalsOnNotEmpty(String condition, String value) {
+        return StringUtils.isEmpty(condition) || condition.equals(value);
+    }
+
+    private static boolean between(Long value, Date start, Date end) {
+        if (start == null && end == null) {
+            return true;
+        }
+        if (value == null) {
+            return false;
+        }
+        return (start == null || value >= start.getTime())
+                && (end == null || value <= end.getTime());
+    }
+
+    private static Comparator<JobPo> getComparator(String field, String direction) {
+        final boolean desc = "DESC".equalsIgnoreCase(direction);
+        final String sortField = StringUtils.isEmpty(field) ? "gmtCreated" : field;
+        return new Comparator<JobPo>() {
+            @Override
+            public int compare(JobPo o1, JobPo o2) {
+                int c = compareValue(getSortValue(o1, sortField), getSortValue(o2, sortField));
+                return desc ? -c : c;
+            }
+        };
+    }
+
+    /**
+     * 后台页面上能排序的字段
+     */
+    private static Comparable getSortValue(JobPo jobPo, String field) {
+        if ("gmtModified".equals(field)) {
+            return jobPo.getGmtModified();
+        } else if ("triggerTime".equals(field)) {
+            return jobPo.getTriggerTime();
+        } else if ("priority".equals(field)) {
+            return jobPo.getPriority();
+        } else if ("lastGenerateTriggerTime".equals(field)) {
+            return jobPo.getLastGenerateTriggerTime();
+        } else if ("taskId".equals(field)) {
+            return jobPo.getTaskId();
+        }
+        return jobPo.getGmtCreated();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int compareValue(Comparable c1, Comparable c2) {
+        if (c1 == null) {
+            return c2 == null ? 0 : -1;
+        }
+        return c2 == null ? 1 : c1.compareTo(c2);
+    }
+}
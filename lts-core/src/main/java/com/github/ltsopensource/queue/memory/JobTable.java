@@ -0,0 +1,338 @@
+package com.github.ltsopensource.queue.memory;
+
+import com.github.ltsopensource.core.support.JobUtils;
+import com.github.ltsopensource.queue.domain.JobPo;
+import com.github.ltsopensource.store.jdbc.exception.DupEntryException;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * 内存中的一张任务表, 对应数据库中的一张表
+ * 1. jobId 唯一, (taskId, taskTrackerNodeGroup) 唯一, 和数据库的唯一索引一致
+ * 2. 读不加锁, 写在表上串行, 保证几个索引之间一致
+ * 3. 表中保存的JobPo不会被修改, 更新时复制一份替换掉, 读出去的也都是复制的
+ */
+public class JobTable {
+
+    // 按照 priority, triggerTime, gmtCreated 排序, 和 MysqlPreLoader 加载的顺序一致
+    private static final Comparator<JobPo> READY_COMPARATOR = new Comparator<JobPo>() {
+        @Override
+        public int compare(JobPo o1, JobPo o2) {
+            int c = compare(o1.getPriority(), o2.getPriority());
+            if (c != 0) {
+                return c;
+            }
+            c = compare(o1.getTriggerTime(), o2.getTriggerTime());
+            if (c != 0) {
+                return c;
+            }
+            c = compare(o1.getGmtCreated(), o2.getGmtCreated());
+            if (c != 0) {
+                return c;
+            }
+            return o1.getJobId().compareTo(o2.getJobId());
+        }
+
+        @SuppressWarnings("unchecked")
+        private int compare(Comparable c1, Comparable c2) {
+            if (c1 == null) {
+                return c2 == null ? 0 : -1;
+            }
+            return c2 == null ? 1 : c1.compareTo(c2);
+        }
+    };
+
+    // 按照 triggerTime, jobId 排序, 按触发时间范围加载用, 对应数据库的 idx_isRunning_triggerTime
+    private static final Comparator<JobPo> TRIGGER_TIME_COMPARATOR = new Comparator<JobPo>() {
+        @Override
+        public int compare(JobPo o1, JobPo o2) {
+            int c = o1.getTriggerTime().compareTo(o2.getTriggerTime());
+            if (c != 0) {
+                return c;
+            }
+            return o1.getJobId().compareTo(o2.getJobId());
+        }
+    };
+
+    private final String name;
+    // jobId -> JobPo
+    private final ConcurrentHashMap<String, JobPo> jobs = new ConcurrentHashMap<String, JobPo>();
+    // taskTrackerNodeGroup + taskId -> jobId
+    private final ConcurrentHashMap<String, String> taskIndex = new ConcurrentHashMap<String, String>();
+    // 没有在执行的任务, 只有可执行队列需要
+    private final ConcurrentSkipListSet<JobPo> readyIndex;
+    // 没有在执行并且有 triggerTime 的任务, 和 readyIndex 一起维护
+    private final ConcurrentSkipListSet<JobPo> triggerTimeIndex;
+    // 为null表示不持久化
+    private final MemoryTableStore store;
+
+    JobTable(String name, boolean needReadyIndex, MemoryTableStore store) {
+        this.name = name;
+        this.readyIndex = needReadyIndex ? new ConcurrentSkipListSet<JobPo>(READY_COMPARATOR) : null;
+        this.triggerTimeIndex = needReadyIndex ? new ConcurrentSkipListSet<JobPo>(TRIGGER_TIME_COMPARATOR) : null;
+        this.store = store;
+        if (store != null) {
+            Map<String, JobPo> loads = store.loadAll(JobPo.class);
+            for (JobPo jobPo : loads.values()) {
+                index(jobPo);
+            }
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @throws DupEntryException jobId 或者 (taskId, taskTrackerNodeGroup) 已经存在
+     */
+    public synchronized boolean add(JobPo jobPo) {
+        if (jobs.containsKey(jobPo.getJobId())
+                || taskIndex.containsKey(getTaskKey(jobPo))) {
+            throw new DupEntryException("Duplicate entry jobId:" + jobPo.getJobId() + ", taskId:" + jobPo.getTaskId() + " in " + name);
+        }
+        JobPo stored = JobUtils.copy(jobPo);
+        index(stored);
+        persist(stored);
+        return true;
+    }
+
+    public synchronized boolean remove(String jobId) {
+        JobPo stored = jobs.get(jobId);
+        if (stored == null) {
+            return false;
+        }
+        unIndex(stored);
+        if (store != null) {
+            store.remove(jobId);
+        }
+        return true;
+    }
+
+    /**
+     * 更新一个任务, updater 返回 false 表示不满足更新条件
+     */
+    public synchronized boolean update(String jobId, Updater updater) {
+        JobPo stored = jobs.get(jobId);
+        if (stored == null) {
+            return false;
+        }
+        JobPo updated = JobUtils.copy(stored);
+        if (!updater.update(updated)) {
+            return false;
+        }
+        String taskKey = getTaskKey(updated);
+        if (!taskKey.equals(getTaskKey(stored))) {
+            String existJobId = taskIndex.get(taskKey);
+            if (existJobId != null && !existJobId.equals(jobId)) {
+                throw new DupEntryException("Duplicate entry taskId:" + updated.getTaskId() + " in " + name);
+            }
+        }
+        unIndex(stored);
+        index(updated);
+        persist(updated);
+        return true;
+    }
+
+    public JobPo get(String jobId) {
+        JobPo stored = jobs.get(jobId);
+        return stored == null ? null : JobUtils.copy(stored);
+    }
+
+    /**
+     * 批量取, 不存在的不返回
+     */
+    public List<JobPo> get(List<String> jobIds) {
+        List<JobPo> list = new ArrayList<JobPo>(jobIds.size());
+        for (String jobId : jobIds) {
+            JobPo stored = jobs.get(jobId);
+            if (stored != null) {
+                list.add(JobUtils.copy(stored));
+            }
+        }
+        return list;
+    }
+
+    public JobPo getByTaskId(String taskTrackerNodeGroup, String taskId) {
+        String jobId = taskIndex.get(getTaskKey(taskTrackerNodeGroup, taskId));
+        return jobId == null ? null : get(jobId);
+    }
+
+    /**
+     * 全表扫描, limit <= 0 表示不限制
+     */
+    public List<JobPo> list(Filter filter, int limit) {
+        List<JobPo> list = new ArrayList<JobPo>();
+        for (JobPo jobPo : jobs.values()) {
+            if (filter == null || filter.match(jobPo)) {
+                list.add(JobUtils.copy(jobPo));
+                if (limit > 0 && list.size() >= limit) {
+                    break;
+                }
+            }
+        }
+        return list;
+    }
+
+    public int count(Filter filter) {
+        if (filter == null) {
+            return jobs.size();
+        }
+        int count = 0;
+        for (JobPo jobPo : jobs.values()) {
+            if (filter.match(jobPo)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 按照优先级取没有在执行的, 并且 triggerTime < now 的任务
+     */
+    public List<JobPo> getReadyJobs(long now, int size) {
+        return getReadyJobs(now, size, null);
+    }
+
+    /**
+     * 同上, 只取满足 filter 的
+     * 同一优先级内按 triggerTime 排序, 遇到没到期的就跳到下一个优先级, 不遍历还没到期的任务
+     */
+    public List<JobPo> getReadyJobs(long now, int size, Filter filter) {
+        if (readyIndex == null) {
+            throw new UnsupportedOperationException(name + " has no ready index");
+        }
+        List<JobPo> list = new ArrayList<JobPo>(Math.min(size, 1024));
+        Iterator<JobPo> iterator = readyIndex.iterator();
+        while (list.size() < size && iterator.hasNext()) {
+            JobPo jobPo = iterator.next();
+            if (jobPo.getTriggerTime() == null) {
+                continue;
+            }
+            if (jobPo.getTriggerTime() >= now) {
+                // 这个优先级剩下的都还没到期
+                JobPo bound = nextPriorityBound(jobPo.getPriority());
+                if (bound == null) {
+                    break;
+                }
+                iterator = readyIndex.tailSet(bound, true).iterator();
+                continue;
+            }
+            if (filter == null || filter.match(jobPo)) {
+                list.add(JobUtils.copy(jobPo));
+            }
+        }
+        return list;
+    }
+
+    /**
+     * 下一个优先级中最小的边界, 没有下一个优先级返回null
+     */
+    private static JobPo nextPriorityBound(Integer priority) {
+        if (priority != null && priority == Integer.MAX_VALUE) {
+            return null;
+        }
+        JobPo bound = new JobPo();
+        bound.setJobId("");
+        bound.setPriority(priority == null ? Integer.MIN_VALUE : priority + 1);
+        return bound;
+    }
+
+    /**
+     * 没有在执行的, 并且 fromTriggerTime <= triggerTime < toTriggerTime 的任务, 按 triggerTime 排序
+     * 在 triggerTimeIndex 上按范围遍历, 取够 size 个就停
+     */
+    public List<JobPo> getReadyJobs(long fromTriggerTime, long toTriggerTime, int size) {
+        if (triggerTimeIndex == null) {
+            throw new UnsupportedOperationException(name + " has no ready index");
+        }
+        List<JobPo> list = new ArrayList<JobPo>(Math.min(size, 1024));
+        if (fromTriggerTime >= toTriggerTime) {
+            return list;
+        }
+        // jobId 为空串的边界, 比同一 triggerTime 的任务都小
+        for (JobPo jobPo : triggerTimeIndex.subSet(triggerTimeBound(fromTriggerTime), true, triggerTimeBound(toTriggerTime), false)) {
+            if (list.size() >= size) {
+                break;
+            }
+            list.add(JobUtils.copy(jobPo));
+        }
+        return list;
+    }
+
+    private static JobPo triggerTimeBound(long triggerTime) {
+        JobPo bound = new JobPo();
+        bound.setJobId("");
+        bound.setTriggerTime(triggerTime);
+        return bound;
+    }
+
+    public int size() {
+        return jobs.size();
+    }
+
+    synchronized void destroy() {
+        jobs.clear();
+        taskIndex.clear();
+        if (readyIndex != null) {
+            readyIndex.clear();
+            triggerTimeIndex.clear();
+        }
+        if (store != null) {
+            store.destroy();
+        }
+    }
+
+    private void index(JobPo jobPo) {
+        jobs.put(jobPo.getJobId(), jobPo);
+        taskIndex.put(getTaskKey(jobPo), jobPo.getJobId());
+        if (readyIndex != null && !Boolean.TRUE.equals(jobPo.isRunning())) {
+            readyIndex.add(jobPo);
+            if (jobPo.getTriggerTime() != null) {
+                triggerTimeIndex.add(jobPo);
+            }
+        }
+    }
+
+    private void unIndex(JobPo jobPo) {
+        jobs.remove(jobPo.getJobId());
+        taskIndex.remove(getTaskKey(jobPo), jobPo.getJobId());
+        if (readyIndex != null) {
+            readyIndex.remove(jobPo);
+            if (jobPo.getTriggerTime() != null) {
+                triggerTimeIndex.remove(jobPo);
+            }
+        }
+    }
+
+    private void persist(JobPo jobPo) {
+        if (store != null) {
+            store.put(jobPo.getJobId(), jobPo);
+        }
+    }
+
+    private static String getTaskKey(JobPo jobPo) {
+        return getTaskKey(jobPo.getTaskTrackerNodeGroup(), jobPo.getTaskId());
+    }
+
+    private static String getTaskKey(String taskTrackerNodeGroup, String taskId) {
+        return taskTrackerNodeGroup + "\u0001" + taskId;
+    }
+
+    public interface Filter {
+        boolean match(JobPo jobPo);
+    }
+
+    public interface Updater {
+        /**
+         * 修改传入的JobPo, 返回false表示不更新
+         */
+        boolean update(JobPo jobPo);
+    }
+}
@@ -0,0 +1,11 @@
+package com.github.ltsopensource.queue.memory;
+
+import com.github.ltsopensource.core.support.JobQueueUtils;
+import com.github.ltsopensource.queue.CronJobQueue;
+
+public class MemoryCronJobQueue extends MemorySchedulerJobQueue implements CronJobQueue {
+
+    public MemoryCronJobQueue(MemoryJobStore store) {
+        super(store, JobQueueUtils.CRON_JOB_QUEUE);
+    }
+}
@@ -0,0 +1,148 @@
+package com.github.ltsopensource.queue.memory;
+
+import com.github.ltsopensource.admin.request.JobQueueReq;
+import com.github.ltsopensource.core.commons.utils.CollectionUtils;
+import com.github.ltsopensource.core.commons.utils.StringUtils;
+import com.github.ltsopensource.core.support.JobQueueUtils;
+import com.github.ltsopensource.core.support.SystemClock;
+import com.github.ltsopensource.queue.ExecutableJobQueue;
+import com.github.ltsopensource.queue.domain.JobPo;
+import com.github.ltsopensource.store.jdbc.exception.DupEntryException;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 每个 taskTrackerNodeGroup 一张表
+ */
+public class MemoryExecutableJobQueue extends AbstractMemoryJobQueue implements ExecutableJobQueue {
+
+    public MemoryExecutableJobQueue(MemoryJobStore store) {
+        super(store);
+    }
+
+    @Override
+    protected JobTable getTable(JobQueueReq request) {
+        if (StringUtils.isEmpty(request.getTaskTrackerNodeGroup())) {
+            throw new IllegalArgumentException(" takeTrackerNodeGroup cat not be null");
+        }
+        return getTable(request.getTaskTrackerNodeGroup(), false);
+    }
+
+    private JobTable getTable(String taskTrackerNodeGroup, boolean create) {
+        return getStore().getJobTable(JobQueueUtils.getExecutableQueueName(taskTrackerNodeGroup), true, create);
+    }
+
+    @Override
+    public boolean createQueue(String taskTrackerNodeGroup) {
+        getTable(taskTrackerNodeGroup, true);
+        return true;
+    }
+
+    @Override
+    public boolean removeQueue(String taskTrackerNodeGroup) {
+        getStore().dropJobTable(JobQueueUtils.getExecutableQueueName(taskTrackerNodeGroup));
+        return true;
+    }
+
+    @Override
+    public boolean add(JobPo jobPo) {
+        jobPo.setGmtModified(SystemClock.now());
+        return getTable(jobPo.getTaskTrackerNodeGroup(), true).add(jobPo);
+    }
+
+    @Override
+    public int addBatch(List<JobPo> jobPos) {
+        if (CollectionUtils.isEmpty(jobPos)) {
+            return 0;
+        }
+        long now = SystemClock.now();
+        int num = 0;
+        for (JobPo jobPo : jobPos) {
+            jobPo.setGmtModified(now);
+            try {
+                getTable(jobPo.getTaskTrackerNodeGroup(), true).add(jobPo);
+                num++;
+            } catch (DupEntryException ignored) {
+                // 已经存在的忽略
+            }
+        }
+        return num;
+    }
+
+    @Override
+    public boolean remove(String taskTrackerNodeGroup, String jobId) {
+        JobTable table = getTable(taskTrackerNodeGroup, false);
+        return table != null && table.remove(jobId);
+    }
+
+    @Override
+    public long countJob(String realTaskId, String taskTrackerNodeGroup) {
+        JobTable table = getTable(taskTrackerNodeGroup, false);
+        if (table == null) {
+            return 0;
+        }
+        return table.count(newRealTaskIdFilter(realTaskId, taskTrackerNodeGroup));
+    }
+
+    @Override
+    public boolean removeBatch(String realTaskId, String taskTrackerNodeGroup) {
+        JobTable table = getTable(taskTrackerNodeGroup, false);
+        if (table == null) {
+            return true;
+        }
+        List<JobPo> jobPos = table.list(newRealTaskIdFilter(realTaskId, taskTrackerNodeGroup), 0);
+        for (JobPo jobPo : jobPos) {
+            table.remove(jobPo.getJobId());
+        }
+        return true;
+    }
+
+    @Override
+    public void resume(JobPo jobPo) {
+        JobTable table = getTable(jobPo.getTaskTrackerNodeGroup(), false);
+        if (table == null) {
+            return;
+        }
+        table.update(jobPo.getJobId(), new JobTable.Updater() {
+            @Override
+            public boolean update(JobPo jobPo) {
+                jobPo.setIsRunning(false);
+                jobPo.setTaskTrackerIdentity(null);
+                jobPo.setGmtModified(SystemClock.now());
+                return true;
+            }
+        });
+    }
+
+    @Override
+    public List<JobPo> getDeadJob(String taskTrackerNodeGroup, final long deadline) {
+        JobTable table = getTable(taskTrackerNodeGroup, false);
+        if (table == null) {
+            return Collections.emptyList();
+        }
+        return table.list(new JobTable.Filter() {
+            @Override
+            public boolean match(JobPo jobPo) {
+                return Boolean.TRUE.equals(jobPo.isRunning())
+                        && jobPo.getGmtModified() != null && jobPo.getGmtModified() < deadline;
+            }
+        }, 0);
+    }
+
+    @Override
+    public JobPo getJob(String taskTrackerNodeGroup, String taskId) {
+        JobTable table = getTable(taskTrackerNodeGroup, false);
+        return table == null ? null : table.getByTaskId(taskTrackerNodeGroup, taskId);
+    }
+
+    private JobTable.Filter newRealTaskIdFilter(final String realTaskId, final String taskTrackerNodeGroup) {
+        return new JobTable.Filter() {
+            @Override
+            public boolean match(JobPo jobPo) {
+                return realTaskId.equals(jobPo.getRealTaskId())
+                        && taskTrackerNodeGroup.equals(jobPo.getTaskTrackerNodeGroup());
+            }
+        };
+    }
+}
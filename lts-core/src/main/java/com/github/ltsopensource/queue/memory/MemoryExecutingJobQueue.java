@@ -0,0 +1,100 @@
+package com.github.ltsopensource.queue.memory;
+
+import com.github.ltsopensource.admin.request.JobQueueReq;
+import com.github.ltsopensource.core.support.JobQueueUtils;
+import com.github.ltsopensource.queue.ExecutingJobQueue;
+import com.github.ltsopensource.queue.domain.JobPo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+public class MemoryExecutingJobQueue extends AbstractMemoryJobQueue implements ExecutingJobQueue {
+
+    private final JobTable table;
+
+    public MemoryExecutingJobQueue(MemoryJobStore store) {
+        super(store);
+        this.table = store.getJobTable(JobQueueUtils.EXECUTING_JOB_QUEUE, false, true);
+    }
+
+    @Override
+    protected JobTable getTable(JobQueueReq request) {
+        return table;
+    }
+
+    @Override
+    public boolean add(JobPo jobPo) {
+        return table.add(jobPo);
+    }
+
+    @Override
+    public boolean remove(String jobId) {
+        return table.remove(jobId);
+    }
+
+    @Override
+    public List<JobPo> getJobs(final String taskTrackerIdentity) {
+        return table.list(new JobTable.Filter() {
+            @Override
+            public boolean match(JobPo jobPo) {
+                return taskTrackerIdentity.equals(jobPo.getTaskTrackerIdentity());
+            }
+        }, 0);
+    }
+
+    @Override
+    public List<JobPo> getDeadJobs(final long deadline) {
+        return table.list(new JobTable.Filter() {
+            @Override
+            public boolean match(JobPo jobPo) {
+                return jobPo.getGmtModified() != null && jobPo.getGmtModified() < deadline;
+            }
+        }, 0);
+    }
+
+    @Override
+    public List<JobPo> getDeadJobs(final long deadline, final String lastJobId, int limit) {
+        List<JobPo> jobPos = table.list(new JobTable.Filter() {
+            @Override
+            public boolean match(JobPo jobPo) {
+                return jobPo.getGmtModified() != null && jobPo.getGmtModified() < deadline
+                        && (lastJobId == null || jobPo.getJobId().compareTo(lastJobId) > 0);
+            }
+        }, 0);
+        Collections.sort(jobPos, new Comparator<JobPo>() {
+            @Override
+            public int compare(JobPo o1, JobPo o2) {
+                return o1.getJobId().compareTo(o2.getJobId());
+            }
+        });
+        return jobPos.size() > limit ? new ArrayList<JobPo>(jobPos.subList(0, limit)) : jobPos;
+    }
+
+    @Override
+    public JobPo getJob(String taskTrackerNodeGroup, String taskId) {
+        return table.getByTaskId(taskTrackerNodeGroup, taskId);
+    }
+
+    @Override
+    public JobPo getJob(String jobId) {
+        return table.get(jobId);
+    }
+
+    @Override
+    public List<JobPo> getJobsByJobIds(List<String> jobIds) {
+        return table.get(jobIds);
+    }
+
+    @Override
+    public int removeBatch(List<String> jobIds) {
+        int num = 0;
+        for (String jobId : jobIds) {
+            if (table.remove(jobId)) {
+                num++;
+            }
+        }
+        return num;
+    }
+}
@@ -0,0 +1,69 @@
+package com.github.ltsopensource.queue.memory;
+
+import com.github.ltsopensource.core.commons.utils.CollectionUtils;
+import com.github.ltsopensource.core.support.JobQueueUtils;
+import com.github.ltsopensource.queue.JobFeedbackQueue;
+import com.github.ltsopensource.queue.domain.JobFeedbackPo;
+
+import java.util.List;
+
+/**
+ * 按加入的顺序保存, 和按 gmtCreated 排序基本一致
+ */
+public class MemoryJobFeedbackQueue implements JobFeedbackQueue {
+
+    private MemoryJobStore store;
+
+    public MemoryJobFeedbackQueue(MemoryJobStore store) {
+        this.store = store;
+    }
+
+    private ObjectTable<JobFeedbackPo> getTable(String jobClientNodeGroup) {
+        return store.getObjectTable(JobQueueUtils.getFeedbackQueueName(jobClientNodeGroup), JobFeedbackPo.class);
+    }
+
+    @Override
+    public boolean createQueue(String jobClientNodeGroup) {
+        getTable(jobClientNodeGroup);
+        return true;
+    }
+
+    @Override
+    public boolean removeQueue(String jobClientNodeGroup) {
+        store.dropObjectTable(JobQueueUtils.getFeedbackQueueName(jobClientNodeGroup));
+        return true;
+    }
+
+    @Override
+    public boolean add(List<JobFeedbackPo> jobFeedbackPos) {
+        if (CollectionUtils.isEmpty(jobFeedbackPos)) {
+            return true;
+        }
+        for (JobFeedbackPo jobFeedbackPo : jobFeedbackPos) {
+            String jobClientNodeGroup = jobFeedbackPo.getJobRunResult().getJobMeta().getJob().getSubmitNodeGroup();
+            ObjectTable<JobFeedbackPo> table = getTable(jobClientNodeGroup);
+
+            JobFeedbackPo po = new JobFeedbackPo();
+            po.setId(table.nextId());
+            po.setGmtCreated(jobFeedbackPo.getGmtCreated());
+            po.setJobRunResult(jobFeedbackPo.getJobRunResult());
+            table.putIfAbsent(po.getId(), po);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean remove(String jobClientNodeGroup, String id) {
+        return getTable(jobClientNodeGroup).remove(id);
+    }
+
+    @Override
+    public long getCount(String jobClientNodeGroup) {
+        return getTable(jobClientNodeGroup).size();
+    }
+
+    @Override
+    public List<JobFeedbackPo> fetchTop(String jobClientNodeGroup, int top) {
+        return getTable(jobClientNodeGroup).top(top);
+    }
+}
@@ -0,0 +1,52 @@
+package com.github.ltsopensource.queue.memory;
+
+import com.github.ltsopensource.core.AppContext;
+import com.github.ltsopensource.core.cluster.Config;
+import com.github.ltsopensource.queue.*;
+
+/**
+ * 纯内存的任务队列, 不依赖外部数据库, 适合单节点部署和测试
+ * 多个JobTracker不能共用, 需要持久化时配置 job.queue.memory.persist=true
+ */
+public class MemoryJobQueueFactory implements JobQueueFactory {
+
+    @Override
+    public CronJobQueue getCronJobQueue(Config config) {
+        return new MemoryCronJobQueue(MemoryJobStore.getStore(config));
+    }
+
+    @Override
+    public RepeatJobQueue getRepeatJobQueue(Config config) {
+        return new MemoryRepeatJobQueue(MemoryJobStore.getStore(config));
+    }
+
+    @Override
+    public ExecutableJobQueue getExecutableJobQueue(Config config) {
+        return new MemoryExecutableJobQueue(MemoryJobStore.getStore(config));
+    }
+
+    @Override
+    public ExecutingJobQueue getExecutingJobQueue(Config config) {
+        return new MemoryExecutingJobQueue(MemoryJobStore.getStore(config));
+    }
+
+    @Override
+    public JobFeedbackQueue getJobFeedbackQueue(Config config) {
+        return new MemoryJobFeedbackQueue(MemoryJobStore.getStore(config));
+    }
+
+    @Override
+    public NodeGroupStore getNodeGroupStore(Config config) {
+        return new MemoryNodeGroupStore(MemoryJobStore.getStore(config));
+    }
+
+    @Override
+    public SuspendJobQueue getSuspendJobQueue(Config config) {
+        return new MemorySuspendJobQueue(MemoryJobStore.getStore(config));
+    }
+
+    @Override
+    public PreLoader getPreLoader(AppContext appContext) {
+        return new MemoryPreLoader(appContext);
+    }
+}
@@ -0,0 +1,105 @@
+package com.github.ltsopensource.queue.memory;
+
+import com.github.ltsopensource.core.cluster.Config;
+import com.github.ltsopensource.core.constant.ExtConfig;
+
+import java.io.File;
+import java.lang.reflect.Type;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 内存任务队列的所有表, 同一个集群在一个JVM中共用一份, 相当于同一个数据库
+ * 开启 {@link ExtConfig#JOB_QUEUE_MEMORY_PERSIST} 之后每张表用一个ltsdb持久化
+ */
+public class MemoryJobStore {
+
+    private static final ConcurrentHashMap<String/*clusterName*/, MemoryJobStore> STORES = new ConcurrentHashMap<String, MemoryJobStore>();
+
+    private final boolean persist;
+    private final File path;
+    private final ConcurrentHashMap<String, JobTable> jobTables = new ConcurrentHashMap<String, JobTable>();
+    private final ConcurrentHashMap<String, ObjectTable<?>> objectTables = new ConcurrentHashMap<String, ObjectTable<?>>();
+
+    private MemoryJobStore(Config config) {
+        this.persist = config.getParameter(ExtConfig.JOB_QUEUE_MEMORY_PERSIST, false);
+        this.path = new File(config.getDataPath() + "/.lts/jobqueue/" + config.getClusterName());
+    }
+
+    public static MemoryJobStore getStore(Config config) {
+        String key = String.valueOf(config.getClusterName());
+        MemoryJobStore store = STORES.get(key);
+        if (store == null) {
+            store = new MemoryJobStore(config);
+            MemoryJobStore old = STORES.putIfAbsent(key, store);
+            if (old != null) {
+                store = old;
+            }
+        }
+        return store;
+    }
+
+    /**
+     * @param needReadyIndex 是否需要按优先级取可执行任务
+     * @param create         不存在是否创建
+     */
+    public JobTable getJobTable(String name, boolean needReadyIndex, boolean create) {
+        JobTable table = jobTables.get(name);
+        if (table != null) {
+            return table;
+        }
+        synchronized (this) {
+            table = jobTables.get(name);
+            if (table == null) {
+                if (!create && !(persist && new File(path, name).exists())) {
+                    return null;
+                }
+                table = new JobTable(name, needReadyIndex, newTableStore(name));
+                jobTables.put(name, table);
+            }
+        }
+        return table;
+    }
+
+    public void dropJobTable(String name) {
+        JobTable table;
+        synchronized (this) {
+            table = jobTables.remove(name);
+        }
+        if (table != null) {
+            table.destroy();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    <V> ObjectTable<V> getObjectTable(String name, Type type) {
+        ObjectTable<V> table = (ObjectTable<V>) objectTables.get(name);
+        if (table != null) {
+            return table;
+        }
+        synchronized (this) {
+            table = (ObjectTable<V>) objectTables.get(name);
+            if (table == null) {
+                table = new ObjectTable<V>(type, newTableStore(name));
+                objectTables.put(name, table);
+            }
+        }
+        return table;
+    }
+
+    void dropObjectTable(String name) {
+        ObjectTable<?> table;
+        synchronized (this) {
+            table = objectTables.remove(name);
+        }
+        if (table != null) {
+            table.destroy();
+        }
+    }
+
+    private MemoryTableStore newTableStore(String name) {
+        if (!persist) {
+            return null;
+        }
+        return new MemoryTableStore(new File(path, name));
+    }
+}
@@ -0,0 +1,82 @@
+package com.github.ltsopensource.queue.memory;
+
+import com.github.ltsopensource.admin.response.PaginationRsp;
+import com.github.ltsopensource.core.cluster.NodeType;
+import com.github.ltsopensource.core.commons.utils.StringUtils;
+import com.github.ltsopensource.core.domain.NodeGroupGetReq;
+import com.github.ltsopensource.core.support.JobQueueUtils;
+import com.github.ltsopensource.core.support.SystemClock;
+import com.github.ltsopensource.queue.NodeGroupStore;
+import com.github.ltsopensource.queue.domain.NodeGroupPo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+public class MemoryNodeGroupStore implements NodeGroupStore {
+
+    private final ObjectTable<NodeGroupPo> table;
+
+    public MemoryNodeGroupStore(MemoryJobStore store) {
+        this.table = store.getObjectTable(JobQueueUtils.NODE_GROUP_STORE, NodeGroupPo.class);
+    }
+
+    @Override
+    public void addNodeGroup(NodeType nodeType, String name) {
+        NodeGroupPo nodeGroupPo = new NodeGroupPo();
+        nodeGroupPo.setNodeType(nodeType);
+        nodeGroupPo.setName(name);
+        nodeGroupPo.setGmtCreated(SystemClock.now());
+        // already exist 的忽略
+        table.putIfAbsent(getKey(nodeType, name), nodeGroupPo);
+    }
+
+    @Override
+    public void removeNodeGroup(NodeType nodeType, String name) {
+        table.remove(getKey(nodeType, name));
+    }
+
+    @Override
+    public List<NodeGroupPo> getNodeGroup(NodeType nodeType) {
+        List<NodeGroupPo> list = new ArrayList<NodeGroupPo>();
+        for (NodeGroupPo nodeGroupPo : table.values()) {
+            if (nodeGroupPo.getNodeType() == nodeType) {
+                list.add(nodeGroupPo);
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public PaginationRsp<NodeGroupPo> getNodeGroup(NodeGroupGetReq request) {
+        PaginationRsp<NodeGroupPo> response = new PaginationRsp<NodeGroupPo>();
+
+        List<NodeGroupPo> list = new ArrayList<NodeGroupPo>();
+        for (NodeGroupPo nodeGroupPo : table.values()) {
+            if ((request.getNodeType() == null || request.getNodeType() == nodeGroupPo.getNodeType())
+                    && (StringUtils.isEmpty(request.getNodeGroup()) || request.getNodeGroup().equals(nodeGroupPo.getName()))) {
+                list.add(nodeGroupPo);
+            }
+        }
+        response.setResults(list.size());
+        if (list.size() == 0) {
+            return response;
+        }
+        // gmt_created DESC
+        Collections.sort(list, new Comparator<NodeGroupPo>() {
+            @Override
+            public int compare(NodeGroupPo o1, NodeGroupPo o2) {
+                return o2.getGmtCreated().compareTo(o1.getGmtCreated());
+            }
+        });
+        int from = Math.min(request.getStart(), list.size());
+        int to = Math.min(from + request.getLimit(), list.size());
+        response.setRows(list.subList(from, to));
+        return response;
+    }
+
+    private String getKey(NodeType nodeType, String name) {
+        return nodeType.name() + "_" + name;
+    }
+}
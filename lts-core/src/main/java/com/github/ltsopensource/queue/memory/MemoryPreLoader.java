@@ -0,0 +1,99 @@
+package com.github.ltsopensource.queue.memory;
+
+import com.github.ltsopensource.core.AppContext;
+import com.github.ltsopensource.core.support.JobQueueUtils;
+import com.github.ltsopensource.core.support.SystemClock;
+import com.github.ltsopensource.queue.AbstractPreLoader;
+import com.github.ltsopensource.queue.domain.JobPo;
+import com.github.ltsopensource.queue.support.JobPartitioner;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 直接从内存表中按优先级取, 锁定任务就是一次表上的比较替换
+ */
+public class MemoryPreLoader extends AbstractPreLoader {
+
+    private MemoryJobStore store;
+
+    public MemoryPreLoader(AppContext appContext) {
+        super(appContext);
+        this.store = MemoryJobStore.getStore(appContext.getConfig());
+    }
+
+    @Override
+    protected JobPo getJob(String taskTrackerNodeGroup, String jobId) {
+        JobTable table = getTable(taskTrackerNodeGroup);
+        return table == null ? null : table.get(jobId);
+    }
+
+    @Override
+    protected boolean lockJob(String taskTrackerNodeGroup, String jobId,
+                              final String taskTrackerIdentity,
+                              final Long triggerTime,
+                              final Long gmtModified) {
+        JobTable table = getTable(taskTrackerNodeGroup);
+        if (table == null) {
+            return false;
+        }
+        return table.update(jobId, new JobTable.Updater() {
+            @Override
+            public boolean update(JobPo jobPo) {
+                if (Boolean.TRUE.equals(jobPo.isRunning())
+                        || !equals(triggerTime, jobPo.getTriggerTime())
+                        || !equals(gmtModified, jobPo.getGmtModified())) {
+                    return false;
+                }
+                jobPo.setIsRunning(true);
+                jobPo.setTaskTrackerIdentity(taskTrackerIdentity);
+                jobPo.setGmtModified(SystemClock.now());
+                return true;
+            }
+
+            private boolean equals(Long l1, Long l2) {
+                return l1 == null ? l2 == null : l1.equals(l2);
+            }
+        });
+    }
+
+    @Override
+    protected List<JobPo> load(String loadTaskTrackerNodeGroup, int loadSize) {
+        JobTable table = getTable(loadTaskTrackerNodeGroup);
+        if (table == null) {
+            return Collections.emptyList();
+        }
+        return table.getReadyJobs(SystemClock.now(), loadSize);
+    }
+
+    @Override
+    protected List<JobPo> load(String loadTaskTrackerNodeGroup, int loadSize, int[] partitions) {
+        JobTable table = getTable(loadTaskTrackerNodeGroup);
+        if (table == null) {
+            return Collections.emptyList();
+        }
+        final boolean[] owned = new boolean[JobPartitioner.PARTITION_NUM];
+        for (int partition : partitions) {
+            owned[partition] = true;
+        }
+        return table.getReadyJobs(SystemClock.now(), loadSize, new JobTable.Filter() {
+            @Override
+            public boolean match(JobPo jobPo) {
+                return owned[JobPartitioner.partition(jobPo.getJobId())];
+            }
+        });
+    }
+
+    @Override
+    protected List<JobPo> load(String loadTaskTrackerNodeGroup, long fromTriggerTime, long toTriggerTime, int loadSize) {
+        JobTable table = getTable(loadTaskTrackerNodeGroup);
+        if (table == null) {
+            return Collections.emptyList();
+        }
+        return table.getReadyJobs(fromTriggerTime, toTriggerTime, loadSize);
+    }
+
+    private JobTable getTable(String taskTrackerNodeGroup) {
+        return store.getJobTable(JobQueueUtils.getExecutableQueueName(taskTrackerNodeGroup), true, false);
+    }
+}
@@ -0,0 +1,42 @@
+package com.github.ltsopensource.queue.memory;
+
+import com.github.ltsopensource.core.support.JobQueueUtils;
+import com.github.ltsopensource.queue.RepeatJobQueue;
+import com.github.ltsopensource.queue.domain.JobPo;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class MemoryRepeatJobQueue extends MemorySchedulerJobQueue implements RepeatJobQueue {
+
+    public MemoryRepeatJobQueue(MemoryJobStore store) {
+        super(store, JobQueueUtils.REPEAT_JOB_QUEUE);
+    }
+
+    @Override
+    public int incRepeatedCount(String jobId) {
+        final int[] repeatedCount = {-1};
+        getTable().update(jobId, new JobTable.Updater() {
+            @Override
+            public boolean update(JobPo jobPo) {
+                repeatedCount[0] = jobPo.getRepeatedCount() + 1;
+                jobPo.setRepeatedCount(repeatedCount[0]);
+                return true;
+            }
+        });
+        return repeatedCount[0];
+    }
+
+    @Override
+    public Map<String, Integer> incRepeatedCount(List<String> jobIds) {
+        Map<String, Integer> repeatedCounts = new HashMap<String, Integer>();
+        for (String jobId : jobIds) {
+            int repeatedCount = incRepeatedCount(jobId);
+            if (repeatedCount != -1) {
+                repeatedCounts.put(jobId, repeatedCount);
+            }
+        }
+        return repeatedCounts;
+    }
+}
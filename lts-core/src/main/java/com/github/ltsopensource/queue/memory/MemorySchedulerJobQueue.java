@@ -0,0 +1,80 @@
+package com.github.ltsopensource.queue.memory;
+
+import com.github.ltsopensource.admin.request.JobQueueReq;
+import com.github.ltsopensource.core.support.SystemClock;
+import com.github.ltsopensource.queue.SchedulerJobQueue;
+import com.github.ltsopensource.queue.domain.JobPo;
+
+import java.util.List;
+import java.util.Map;
+
+public abstract class MemorySchedulerJobQueue extends AbstractMemoryJobQueue implements SchedulerJobQueue {
+
+    private final JobTable table;
+
+    public MemorySchedulerJobQueue(MemoryJobStore store, String tableName) {
+        super(store);
+        this.table = store.getJobTable(tableName, false, true);
+    }
+
+    protected JobTable getTable() {
+        return table;
+    }
+
+    @Override
+    protected JobTable getTable(JobQueueReq request) {
+        return table;
+    }
+
+    public boolean add(JobPo jobPo) {
+        return table.add(jobPo);
+    }
+
+    public JobPo getJob(String jobId) {
+        return table.get(jobId);
+    }
+
+    public boolean remove(String jobId) {
+        return table.remove(jobId);
+    }
+
+    public JobPo getJob(String taskTrackerNodeGroup, String taskId) {
+        return table.getByTaskId(taskTrackerNodeGroup, taskId);
+    }
+
+    @Override
+    public List<JobPo> getJobsByJobIds(List<String> jobIds) {
+        return table.get(jobIds);
+    }
+
+    @Override
+    public boolean updateLastGenerateTriggerTime(String jobId, final Long lastGenerateTriggerTime) {
+        return table.update(jobId, new JobTable.Updater() {
+            @Override
+            public boolean update(JobPo jobPo) {
+                jobPo.setLastGenerateTriggerTime(lastGenerateTriggerTime);
+                jobPo.setGmtModified(SystemClock.now());
+                return true;
+            }
+        });
+    }
+
+    @Override
+    public void updateLastGenerateTriggerTime(Map<String, Long> lastGenerateTriggerTimes) {
+        for (Map.Entry<String, Long> entry : lastGenerateTriggerTimes.entrySet()) {
+            updateLastGenerateTriggerTime(entry.getKey(), entry.getValue());
+        }
+    }
+
+    @Override
+    public List<JobPo> getNeedGenerateJobPos(final Long checkTime, int topSize) {
+        return table.list(new JobTable.Filter() {
+            @Override
+            public boolean match(JobPo jobPo) {
+                return Boolean.FALSE.equals(jobPo.getRelyOnPrevCycle())
+                        && jobPo.getLastGenerateTriggerTime() != null
+                        && jobPo.getLastGenerateTriggerTime() <= checkTime;
+            }
+        }, topSize);
+    }
+}
@@ -0,0 +1,41 @@
+package com.github.ltsopensource.queue.memory;
+
+import com.github.ltsopensource.admin.request.JobQueueReq;
+import com.github.ltsopensource.core.support.JobQueueUtils;
+import com.github.ltsopensource.queue.SuspendJobQueue;
+import com.github.ltsopensource.queue.domain.JobPo;
+
+public class MemorySuspendJobQueue extends AbstractMemoryJobQueue implements SuspendJobQueue {
+
+    private final JobTable table;
+
+    public MemorySuspendJobQueue(MemoryJobStore store) {
+        super(store);
+        this.table = store.getJobTable(JobQueueUtils.SUSPEND_JOB_QUEUE, false, true);
+    }
+
+    @Override
+    protected JobTable getTable(JobQueueReq request) {
+        return table;
+    }
+
+    @Override
+    public boolean add(JobPo jobPo) {
+        return table.add(jobPo);
+    }
+
+    @Override
+    public JobPo getJob(String jobId) {
+        return table.get(jobId);
+    }
+
+    @Override
+    public boolean remove(String jobId) {
+        return table.remove(jobId);
+    }
+
+    @Override
+    public JobPo getJob(String taskTrackerNodeGroup, String taskId) {
+        return table.getByTaskId(taskTrackerNodeGroup, taskId);
+    }
+}
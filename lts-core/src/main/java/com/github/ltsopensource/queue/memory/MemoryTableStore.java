@@ -0,0 +1,65 @@
+package com.github.ltsopensource.queue.memory;
+
+import com.github.ltsopensource.core.commons.file.FileUtils;
+import com.github.ltsopensource.core.json.JSON;
+import com.github.ltsopensource.kv.DB;
+import com.github.ltsopensource.kv.DBBuilder;
+import com.github.ltsopensource.kv.Entry;
+import com.github.ltsopensource.kv.iterator.DBIterator;
+
+import java.io.File;
+import java.lang.reflect.Type;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 内存表的持久化, 每张表一个ltsdb, 值用json保存
+ * 写入走ltsdb的txlog, 启动时把全部数据读回内存
+ */
+class MemoryTableStore {
+
+    private final File path;
+    private final DB<String, String> db;
+
+    MemoryTableStore(File path) {
+        this.path = path;
+        this.db = new DBBuilder<String, String>()
+                .setPath(path)
+                .create();
+        this.db.init();
+    }
+
+    void put(String key, Object value) {
+        db.put(key, JSON.toJSONString(value));
+    }
+
+    void remove(String key) {
+        db.remove(key);
+    }
+
+    <V> Map<String, V> loadAll(Type type) {
+        Map<String, V> map = new LinkedHashMap<String, V>();
+        DBIterator<Entry<String, String>> iterator = db.iterator();
+        while (iterator.hasNext()) {
+            Entry<String, String> entry = iterator.next();
+            V value = JSON.parse(entry.getValue(), type);
+            map.put(entry.getKey(), value);
+        }
+        return map;
+    }
+
+    void close() {
+        db.close();
+    }
+
+    /**
+     * 关闭并删除数据
+     */
+    void destroy() {
+        try {
+            close();
+        } finally {
+            FileUtils.delete(path);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.github.ltsopensource.queue.memory;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按key排序的内存表, 用于反馈队列和节点组这种没有复杂索引的数据
+ */
+class ObjectTable<V> {
+
+    private final ConcurrentSkipListMap<String, V> data = new ConcurrentSkipListMap<String, V>();
+    // 为null表示不持久化
+    private final MemoryTableStore store;
+    // 自增主键, 用 {@link #nextId()} 生成key的表才用
+    private final AtomicLong sequence = new AtomicLong(0);
+
+    ObjectTable(Type type, MemoryTableStore store) {
+        this.store = store;
+        if (store != null) {
+            Map<String, V> loads = store.loadAll(type);
+            data.putAll(loads);
+            if (!data.isEmpty()) {
+                try {
+                    sequence.set(Long.parseLong(data.lastKey()));
+                } catch (NumberFormatException ignored) {
+                }
+            }
+        }
+    }
+
+    /**
+     * 定长的自增主键, 字符串顺序和数字顺序一致
+     */
+    String nextId() {
+        return String.format("%019d", sequence.incrementAndGet());
+    }
+
+    /**
+     * 已经存在返回false
+     */
+    synchronized boolean putIfAbsent(String key, V value) {
+        if (data.putIfAbsent(key, value) != null) {
+            return false;
+        }
+        if (store != null) {
+            store.put(key, value);
+        }
+        return true;
+    }
+
+    synchronized boolean remove(String key) {
+        if (data.remove(key) == null) {
+            return false;
+        }
+        if (store != null) {
+            store.remove(key);
+        }
+        return true;
+    }
+
+    V get(String key) {
+        return data.get(key);
+    }
+
+    /**
+     * 按key的顺序取前size个
+     */
+    List<V> top(int size) {
+        List<V> list = new ArrayList<V>(Math.min(size, data.size()));
+        for (V value : data.values()) {
+            if (list.size() >= size) {
+                break;
+            }
+            list.add(value);
+        }
+        return list;
+    }
+
+    List<V> values() {
+        return new ArrayList<V>(data.values());
+    }
+
+    int size() {
+        return data.size();
+    }
+
+    synchronized void destroy() {
+        data.clear();
+        if (store != null) {
+            store.destroy();
+        }
+    }
+}
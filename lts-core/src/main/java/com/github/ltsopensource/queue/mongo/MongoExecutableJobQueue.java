@@ -88,6 +88,23 @@ public class MongoExecutableJobQueue extends AbstractMongoJobQueue implements Ex
         return true;
     }
 
+    @Override
+    public int addBatch(List<JobPo> jobPos) {
+        if (CollectionUtils.isEmpty(jobPos)) {
+            return 0;
+        }
+        int num = 0;
+        for (JobPo jobPo : jobPos) {
+            try {
+                add(jobPo);
+                num++;
+            } catch (DupEntryException e) {
+                // 已经存在, 忽略
+            }
+        }
+        return num;
+    }
+
     @Override
     public boolean remove(String taskTrackerNodeGroup, String jobId) {
         String tableName = JobQueueUtils.getExecutableQueueName(taskTrackerNodeGroup);
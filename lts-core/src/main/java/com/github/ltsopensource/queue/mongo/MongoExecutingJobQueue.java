@@ -12,6 +12,7 @@ import com.mongodb.DuplicateKeyException;
 import com.mongodb.WriteResult;
 import org.mongodb.morphia.query.Query;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -76,6 +77,17 @@ public class MongoExecutingJobQueue extends AbstractMongoJobQueue implements Exe
         return query.asList();
     }
 
+    @Override
+    public List<JobPo> getDeadJobs(long deadline, String lastJobId, int limit) {
+        Query<JobPo> query = template.createQuery(JobPo.class);
+        query.filter("gmtModified < ", deadline);
+        if (lastJobId != null) {
+            query.filter("jobId > ", lastJobId);
+        }
+        query.order("jobId").limit(limit);
+        return query.asList();
+    }
+
     @Override
     public JobPo getJob(String taskTrackerNodeGroup, String taskId) {
         Query<JobPo> query = template.createQuery(JobPo.class);
@@ -91,4 +103,24 @@ public class MongoExecutingJobQueue extends AbstractMongoJobQueue implements Exe
         return query.get();
     }
 
+    @Override
+    public List<JobPo> getJobsByJobIds(List<String> jobIds) {
+        if (CollectionUtils.isEmpty(jobIds)) {
+            return new ArrayList<JobPo>();
+        }
+        Query<JobPo> query = template.createQuery(JobPo.class);
+        query.field("jobId").in(jobIds);
+        return query.asList();
+    }
+
+    @Override
+    public int removeBatch(List<String> jobIds) {
+        if (CollectionUtils.isEmpty(jobIds)) {
+            return 0;
+        }
+        Query<JobPo> query = template.createQuery(JobPo.class);
+        query.field("jobId").in(jobIds);
+        WriteResult wr = template.delete(query);
+        return wr.getN();
+    }
 }
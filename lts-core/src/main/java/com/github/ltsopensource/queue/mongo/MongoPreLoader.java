@@ -64,4 +64,15 @@ public class MongoPreLoader extends AbstractPreLoader {
         return query.asList();
     }
 
+    @Override
+    protected List<JobPo> load(String loadTaskTrackerNodeGroup, long fromTriggerTime, long toTriggerTime, int loadSize) {
+        String tableName = JobQueueUtils.getExecutableQueueName(loadTaskTrackerNodeGroup);
+        Query<JobPo> query = template.createQuery(tableName, JobPo.class);
+        query.field("isRunning").equal(false)
+                .filter("triggerTime >= ", fromTriggerTime)
+                .filter("triggerTime < ", toTriggerTime)
+                .order("triggerTime").offset(0).limit(loadSize);
+        return query.asList();
+    }
+
 }
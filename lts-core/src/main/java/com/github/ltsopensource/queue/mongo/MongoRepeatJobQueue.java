@@ -14,7 +14,9 @@ import org.mongodb.morphia.query.Query;
 import org.mongodb.morphia.query.UpdateOperations;
 import org.mongodb.morphia.query.UpdateResults;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author Robert HG (254963746@qq.com) on 3/26/16.
@@ -98,4 +100,22 @@ public class MongoRepeatJobQueue extends MongoSchedulerJobQueue implements Repea
         }
     }
 
+    @Override
+    public Map<String, Integer> incRepeatedCount(List<String> jobIds) {
+        Map<String, Integer> repeatedCounts = new HashMap<String, Integer>();
+        if (CollectionUtils.isEmpty(jobIds)) {
+            return repeatedCounts;
+        }
+        Query<JobPo> query = template.createQuery(JobPo.class);
+        query.field("jobId").in(jobIds);
+        UpdateOperations<JobPo> opts = template.createUpdateOperations(JobPo.class);
+        opts.inc("repeatedCount");
+        template.update(query, opts);
+
+        for (JobPo jobPo : getJobsByJobIds(jobIds)) {
+            repeatedCounts.put(jobPo.getJobId(), jobPo.getRepeatedCount());
+        }
+        return repeatedCounts;
+    }
+
 }
@@ -1,6 +1,7 @@
 package com.github.ltsopensource.queue.mongo;
 
 import com.github.ltsopensource.core.cluster.Config;
+import com.github.ltsopensource.core.commons.utils.CollectionUtils;
 import com.github.ltsopensource.core.support.SystemClock;
 import com.github.ltsopensource.queue.SchedulerJobQueue;
 import com.github.ltsopensource.queue.domain.JobPo;
@@ -8,7 +9,9 @@ import org.mongodb.morphia.query.Query;
 import org.mongodb.morphia.query.UpdateOperations;
 import org.mongodb.morphia.query.UpdateResults;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author Robert HG (254963746@qq.com) on 4/4/16.
@@ -34,6 +37,16 @@ public abstract class MongoSchedulerJobQueue extends AbstractMongoJobQueue imple
         return ur.getUpdatedCount() == 1;
     }
 
+    @Override
+    public void updateLastGenerateTriggerTime(Map<String, Long> lastGenerateTriggerTimes) {
+        if (CollectionUtils.isEmpty(lastGenerateTriggerTimes)) {
+            return;
+        }
+        for (Map.Entry<String, Long> entry : lastGenerateTriggerTimes.entrySet()) {
+            updateLastGenerateTriggerTime(entry.getKey(), entry.getValue());
+        }
+    }
+
     @Override
     public List<JobPo> getNeedGenerateJobPos(Long checkTime, int topSize) {
         Query<JobPo> query = template.createQuery(JobPo.class);
@@ -42,4 +55,14 @@ public abstract class MongoSchedulerJobQueue extends AbstractMongoJobQueue imple
         query.offset(0).limit(topSize);
         return query.asList();
     }
+
+    @Override
+    public List<JobPo> getJobsByJobIds(List<String> jobIds) {
+        if (CollectionUtils.isEmpty(jobIds)) {
+            return new ArrayList<JobPo>();
+        }
+        Query<JobPo> query = template.createQuery(JobPo.class);
+        query.field("jobId").in(jobIds);
+        return query.asList();
+    }
 }
@@ -5,15 +5,21 @@ import com.github.ltsopensource.admin.response.PaginationRsp;
 import com.github.ltsopensource.core.cluster.Config;
 import com.github.ltsopensource.core.commons.utils.Assert;
 import com.github.ltsopensource.core.commons.utils.CharacterUtils;
+import com.github.ltsopensource.core.commons.utils.CollectionUtils;
 import com.github.ltsopensource.core.json.JSON;
 import com.github.ltsopensource.core.support.SystemClock;
 import com.github.ltsopensource.queue.JobQueue;
 import com.github.ltsopensource.queue.domain.JobPo;
 import com.github.ltsopensource.queue.mysql.support.RshHolder;
+import com.github.ltsopensource.queue.support.JobPartitioner;
 import com.github.ltsopensource.store.jdbc.JdbcAbstractAccess;
 import com.github.ltsopensource.store.jdbc.builder.*;
 import com.github.ltsopensource.store.jdbc.dbutils.JdbcTypeUtils;
+import com.github.ltsopensource.store.jdbc.exception.JdbcException;
 
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -21,14 +27,171 @@ import java.util.List;
  */
 public abstract class AbstractMysqlJobQueue extends JdbcAbstractAccess implements JobQueue {
 
+    // 批量插入时一条INSERT最多的行数
+    protected static final int MAX_ROWS_PER_INSERT = 200;
+    // 批量查询/删除时一条SQL中 IN 的最多个数
+    protected static final int MAX_IDS_PER_IN = 200;
+
     public AbstractMysqlJobQueue(Config config) {
         super(config);
     }
 
+    /**
+     * 老版本建的表没有这个列时补上, 多个节点同时添加时, 已经存在的错误忽略
+     *
+     * @return 是否是这次添加的
+     */
+    protected boolean addColumnIfNotExists(String tableName, String columnName, String definition) {
+        if (!isNeedCreateTable() || columnExists(tableName, columnName)) {
+            return false;
+        }
+        try {
+            getSqlTemplate().update("ALTER TABLE `" + tableName + "` ADD COLUMN `" + columnName + "` " + definition);
+            return true;
+        } catch (SQLException e) {
+            if (!columnExists(tableName, columnName)) {
+                throw new JdbcException("Add column " + columnName + " to " + tableName + " error", e);
+            }
+            return false;
+        }
+    }
+
+    private boolean columnExists(String tableName, String columnName) {
+        Long count = new SelectSql(getSqlTemplate())
+                .select()
+                .columns("COUNT(1)")
+                .from()
+                .tables("information_schema.COLUMNS")
+                .where("TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ?", tableName)
+                .and("COLUMN_NAME = ?", columnName)
+                .single();
+        return count != null && count > 0;
+    }
+
+    /**
+     * CREATE TABLE IF NOT EXISTS 不会修改已经存在的表, 老版本建的表没有这个索引时补上
+     * 多个节点同时添加时, 已经存在的错误忽略
+     */
+    protected void addIndexIfNotExists(String tableName, String indexName, String columns) {
+        if (!isNeedCreateTable() || indexExists(tableName, indexName)) {
+            return;
+        }
+        try {
+            getSqlTemplate().update("ALTER TABLE `" + tableName + "` ADD INDEX `" + indexName + "` (" + columns + ")");
+        } catch (SQLException e) {
+            if (!indexExists(tableName, indexName)) {
+                throw new JdbcException("Add index " + indexName + " to " + tableName + " error", e);
+            }
+        }
+    }
+
+    /**
+     * 删除多余的索引, 不存在时忽略
+     */
+    protected void dropIndexIfExists(String tableName, String indexName) {
+        if (!isNeedCreateTable() || !indexExists(tableName, indexName)) {
+            return;
+        }
+        try {
+            getSqlTemplate().update("ALTER TABLE `" + tableName + "` DROP INDEX `" + indexName + "`");
+        } catch (SQLException e) {
+            if (indexExists(tableName, indexName)) {
+                throw new JdbcException("Drop index " + indexName + " from " + tableName + " error", e);
+            }
+        }
+    }
+
+    private boolean indexExists(String tableName, String indexName) {
+        Long count = new SelectSql(getSqlTemplate())
+                .select()
+                .columns("COUNT(1)")
+                .from()
+                .tables("information_schema.STATISTICS")
+                .where("TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ?", tableName)
+                .and("INDEX_NAME = ?", indexName)
+                .single();
+        return count != null && count > 0;
+    }
+
     protected boolean add(String tableName, JobPo jobPo) {
-        return new InsertSql(getSqlTemplate())
-                .insert(tableName)
-                .columns("job_id",
+        InsertSql insertSql = columns(new InsertSql(getSqlTemplate()).insert(tableName));
+        return values(insertSql, jobPo).doInsert() == 1;
+    }
+
+    /**
+     * 批量插入, 已经存在的忽略
+     */
+    protected int addBatch(String tableName, List<JobPo> jobPos) {
+        InsertSql insertSql = columns(new InsertSql(getSqlTemplate()).insertIgnore(tableName));
+        for (JobPo jobPo : jobPos) {
+            values(insertSql, jobPo);
+        }
+        return insertSql.doMultiRowInsert(MAX_ROWS_PER_INSERT);
+    }
+
+    /**
+     * 按 jobId 批量查询, 不存在的不返回
+     */
+    protected List<JobPo> getJobsByJobIds(String tableName, List<String> jobIds) {
+        List<JobPo> jobPos = new ArrayList<JobPo>();
+        if (CollectionUtils.isEmpty(jobIds)) {
+            return jobPos;
+        }
+        for (int from = 0; from < jobIds.size(); from += MAX_IDS_PER_IN) {
+            List<String> ids = jobIds.subList(from, Math.min(jobIds.size(), from + MAX_IDS_PER_IN));
+            String sql = "SELECT * FROM `" + tableName + "` WHERE `job_id` IN (" + placeholders(ids.size()) + ")";
+            try {
+                List<JobPo> list = getSqlTemplate().query(sql, RshHolder.JOB_PO_LIST_RSH, ids.toArray());
+                if (list != null) {
+                    jobPos.addAll(list);
+                }
+            } catch (SQLException e) {
+                throw new JdbcException("Select SQL Error:" + sql, e);
+            }
+        }
+        return jobPos;
+    }
+
+    /**
+     * 按 jobId 批量删除, 返回删除的个数
+     */
+    protected int removeByJobIds(String tableName, List<String> jobIds) {
+        if (CollectionUtils.isEmpty(jobIds)) {
+            return 0;
+        }
+        int num = 0;
+        for (int from = 0; from < jobIds.size(); from += MAX_IDS_PER_IN) {
+            List<String> ids = jobIds.subList(from, Math.min(jobIds.size(), from + MAX_IDS_PER_IN));
+            String sql = "DELETE FROM `" + tableName + "` WHERE `job_id` IN (" + placeholders(ids.size()) + ")";
+            try {
+                num += getSqlTemplate().delete(sql, ids.toArray());
+            } catch (SQLException e) {
+                throw new JdbcException("Delete SQL Error:" + sql, e);
+            }
+        }
+        return num;
+    }
+
+    protected static String placeholders(int size) {
+        StringBuilder sb = new StringBuilder(size * 2);
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                sb.append(",");
+            }
+            sb.append("?");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 表中是否有 job_partition 列, 有的话插入时写入 JobPartitioner.partition(jobId)
+     */
+    protected boolean hasPartitionColumn() {
+        return false;
+    }
+
+    private InsertSql columns(InsertSql insertSql) {
+        List<String> columns = new ArrayList<String>(Arrays.asList("job_id",
                         "job_type",
                         "priority",
                         "retry_times",
@@ -49,8 +212,15 @@ public abstract class AbstractMysqlJobQueue extends JdbcAbstractAccess implement
                         "trigger_time",
                         "repeat_count",
                         "repeated_count",
-                        "repeat_interval")
-                .values(jobPo.getJobId(),
+                        "repeat_interval"));
+        if (hasPartitionColumn()) {
+            columns.add("job_partition");
+        }
+        return insertSql.columns(columns.toArray(new String[columns.size()]));
+    }
+
+    private InsertSql values(InsertSql insertSql, JobPo jobPo) {
+        List<Object> values = new ArrayList<Object>(Arrays.asList(jobPo.getJobId(),
                         jobPo.getJobType() == null ? null : jobPo.getJobType().name(),
                         jobPo.getPriority(),
                         jobPo.getRetryTimes(),
@@ -71,8 +241,11 @@ public abstract class AbstractMysqlJobQueue extends JdbcAbstractAccess implement
                         jobPo.getTriggerTime(),
                         jobPo.getRepeatCount(),
                         jobPo.getRepeatedCount(),
-                        jobPo.getRepeatInterval())
-                .doInsert() == 1;
+                        jobPo.getRepeatInterval()));
+        if (hasPartitionColumn()) {
+            values.add(JobPartitioner.partition(jobPo.getJobId()));
+        }
+        return insertSql.values(values.toArray());
     }
 
     public PaginationRsp<JobPo> pageSelect(JobQueueReq request) {
@@ -2,25 +2,37 @@ package com.github.ltsopensource.queue.mysql;
 
 import com.github.ltsopensource.admin.request.JobQueueReq;
 import com.github.ltsopensource.core.cluster.Config;
+import com.github.ltsopensource.core.commons.concurrent.ConcurrentHashSet;
+import com.github.ltsopensource.core.commons.utils.CollectionUtils;
 import com.github.ltsopensource.core.commons.utils.StringUtils;
 import com.github.ltsopensource.core.support.JobQueueUtils;
 import com.github.ltsopensource.core.support.SystemClock;
 import com.github.ltsopensource.queue.ExecutableJobQueue;
 import com.github.ltsopensource.queue.domain.JobPo;
 import com.github.ltsopensource.queue.mysql.support.RshHolder;
+import com.github.ltsopensource.queue.support.JobPartitioner;
 import com.github.ltsopensource.store.jdbc.builder.DeleteSql;
 import com.github.ltsopensource.store.jdbc.builder.DropTableSql;
 import com.github.ltsopensource.store.jdbc.builder.SelectSql;
 import com.github.ltsopensource.store.jdbc.builder.UpdateSql;
+import com.github.ltsopensource.store.jdbc.exception.JdbcException;
 import com.github.ltsopensource.store.jdbc.exception.TableNotExistException;
 
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * @author Robert HG (254963746@qq.com) on 5/31/15.
  */
 public class MysqlExecutableJobQueue extends AbstractMysqlJobQueue implements ExecutableJobQueue {
 
+    // 已经检查过索引的表, 每个表只检查一次
+    private final Set<String> upgradedTables = new ConcurrentHashSet<String>();
+
     public MysqlExecutableJobQueue(Config config) {
         super(config);
     }
@@ -35,7 +47,30 @@ public class MysqlExecutableJobQueue extends AbstractMysqlJobQueue implements Ex
 
     @Override
     public boolean createQueue(String taskTrackerNodeGroup) {
-        createTable(readSqlFile("sql/mysql/lts_executable_job_queue.sql", getTableName(taskTrackerNodeGroup)));
+        String tableName = getTableName(taskTrackerNodeGroup);
+        createTable(readSqlFile("sql/mysql/lts_executable_job_queue.sql", tableName));
+        if (!upgradedTables.contains(tableName)) {
+            // 老版本建的表补上按触发时间范围加载用的索引, idx_isRunning 是它的前缀, 多余了
+            addIndexIfNotExists(tableName, "idx_isRunning_triggerTime", "`is_running`, `trigger_time`");
+            dropIndexIfExists(tableName, "idx_isRunning");
+            // 补上分区列, 已有的任务按 jobId 计算 (和 JobPartitioner.partition 一致)
+            if (addColumnIfNotExists(tableName, "job_partition", "smallint(6) DEFAULT NULL COMMENT '分区,CRC32(job_id)取模'")) {
+                String sql = "UPDATE `" + tableName + "` SET `job_partition` = CRC32(`job_id`) % "
+                        + JobPartitioner.PARTITION_NUM + " WHERE `job_partition` IS NULL";
+                try {
+                    getSqlTemplate().update(sql);
+                } catch (SQLException e) {
+                    throw new JdbcException("Update SQL Error:" + sql, e);
+                }
+            }
+            addIndexIfNotExists(tableName, "idx_isRunning_jobPartition_triggerTime", "`is_running`, `job_partition`, `trigger_time`");
+            upgradedTables.add(tableName);
+        }
+        return true;
+    }
+
+    @Override
+    protected boolean hasPartitionColumn() {
         return true;
     }
 
@@ -63,6 +98,37 @@ public class MysqlExecutableJobQueue extends AbstractMysqlJobQueue implements Ex
         return true;
     }
 
+    @Override
+    public int addBatch(List<JobPo> jobPos) {
+        if (CollectionUtils.isEmpty(jobPos)) {
+            return 0;
+        }
+        // 不同的 taskTrackerNodeGroup 在不同的表
+        Map<String, List<JobPo>> groupJobPos = new HashMap<String, List<JobPo>>();
+        long now = SystemClock.now();
+        for (JobPo jobPo : jobPos) {
+            jobPo.setGmtModified(now);
+            List<JobPo> list = groupJobPos.get(jobPo.getTaskTrackerNodeGroup());
+            if (list == null) {
+                list = new ArrayList<JobPo>();
+                groupJobPos.put(jobPo.getTaskTrackerNodeGroup(), list);
+            }
+            list.add(jobPo);
+        }
+        int num = 0;
+        for (Map.Entry<String, List<JobPo>> entry : groupJobPos.entrySet()) {
+            String tableName = getTableName(entry.getKey());
+            try {
+                num += super.addBatch(tableName, entry.getValue());
+            } catch (TableNotExistException e) {
+                // 表不存在
+                createQueue(entry.getKey());
+                num += super.addBatch(tableName, entry.getValue());
+            }
+        }
+        return num;
+    }
+
     @Override
     public boolean remove(String taskTrackerNodeGroup, String jobId) {
         return new DeleteSql(getSqlTemplate())
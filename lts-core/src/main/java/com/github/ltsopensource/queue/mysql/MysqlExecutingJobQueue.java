@@ -7,6 +7,7 @@ import com.github.ltsopensource.queue.ExecutingJobQueue;
 import com.github.ltsopensource.queue.domain.JobPo;
 import com.github.ltsopensource.queue.mysql.support.RshHolder;
 import com.github.ltsopensource.store.jdbc.builder.DeleteSql;
+import com.github.ltsopensource.store.jdbc.builder.OrderByType;
 import com.github.ltsopensource.store.jdbc.builder.SelectSql;
 
 import java.util.List;
@@ -64,6 +65,22 @@ public class MysqlExecutingJobQueue extends AbstractMysqlJobQueue implements Exe
                 .list(RshHolder.JOB_PO_LIST_RSH);
     }
 
+    @Override
+    public List<JobPo> getDeadJobs(long deadline, String lastJobId, int limit) {
+        // 按 job_id 翻页, 修复过程中删除的记录不影响后面的页
+        return new SelectSql(getSqlTemplate())
+                .select()
+                .all()
+                .from()
+                .table(getTableName())
+                .where("gmt_modified < ?", deadline)
+                .andOnNotNull("job_id > ?", lastJobId)
+                .orderBy()
+                .column("job_id", OrderByType.ASC)
+                .limit(0, limit)
+                .list(RshHolder.JOB_PO_LIST_RSH);
+    }
+
     @Override
     public JobPo getJob(String taskTrackerNodeGroup, String taskId) {
         return new SelectSql(getSqlTemplate())
@@ -87,6 +104,16 @@ public class MysqlExecutingJobQueue extends AbstractMysqlJobQueue implements Exe
                 .single(RshHolder.JOB_PO_RSH);
     }
 
+    @Override
+    public List<JobPo> getJobsByJobIds(List<String> jobIds) {
+        return getJobsByJobIds(getTableName(), jobIds);
+    }
+
+    @Override
+    public int removeBatch(List<String> jobIds) {
+        return removeByJobIds(getTableName(), jobIds);
+    }
+
     private String getTableName() {
         return JobQueueUtils.EXECUTING_JOB_QUEUE;
     }
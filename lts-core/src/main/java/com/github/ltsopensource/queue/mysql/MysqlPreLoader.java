@@ -14,7 +14,12 @@ import com.github.ltsopensource.store.jdbc.builder.OrderByType;
 import com.github.ltsopensource.store.jdbc.builder.SelectSql;
 import com.github.ltsopensource.store.jdbc.builder.UpdateSql;
 
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author Robert HG (254963746@qq.com) on 8/14/15.
@@ -64,6 +69,113 @@ public class MysqlPreLoader extends AbstractPreLoader {
         }
     }
 
+    @Override
+    protected boolean[] lockJobs(String taskTrackerNodeGroup,
+                                 String taskTrackerIdentity,
+                                 List<JobPo> jobPos,
+                                 List<JobPo> retry) {
+        if (jobPos.size() == 1) {
+            return super.lockJobs(taskTrackerNodeGroup, taskTrackerIdentity, jobPos, retry);
+        }
+        boolean[] locked = new boolean[jobPos.size()];
+        Long now = SystemClock.now();
+        int rows = -1;
+        try {
+            rows = batchLock(taskTrackerNodeGroup, taskTrackerIdentity, jobPos, now);
+        } catch (Exception e) {
+            // 分多条语句时可能已经有部分锁定成功了, 下面重新查询确认
+            LOGGER.error("Error when lock jobs:" + e.getMessage(), e);
+        }
+        if (rows == jobPos.size()) {
+            // job_id 唯一, 更新行数相等就是全部锁定了
+            Arrays.fill(locked, true);
+            return locked;
+        }
+        // 有被其他JobTracker锁定的或者出错了, 重新查询确认哪些是这次锁定的
+        List<Integer> unknown = new ArrayList<Integer>(jobPos.size());
+        for (int i = 0; i < jobPos.size(); i++) {
+            unknown.add(i);
+        }
+        confirmLocked(taskTrackerNodeGroup, taskTrackerIdentity, now, jobPos, unknown, locked, retry);
+        return locked;
+    }
+
+    /**
+     * 用一条 UPDATE ... WHERE job_id IN (...) AND is_running = 0 锁定一批, 一次往返一次提交, 返回更新的行数;
+     * 不再按每个任务的 trigger_time, gmt_modified 做乐观锁, 只要求还没被锁定
+     */
+    protected int batchLock(String taskTrackerNodeGroup, String taskTrackerIdentity, List<JobPo> jobPos, Long now) throws SQLException {
+        String tableName = getTableName(taskTrackerNodeGroup);
+        int rows = 0;
+        for (int from = 0; from < jobPos.size(); from += AbstractMysqlJobQueue.MAX_IDS_PER_IN) {
+            List<JobPo> sub = jobPos.subList(from, Math.min(jobPos.size(), from + AbstractMysqlJobQueue.MAX_IDS_PER_IN));
+            List<Object> params = new ArrayList<Object>(sub.size() + 4);
+            params.add(true);
+            params.add(taskTrackerIdentity);
+            params.add(now);
+            for (JobPo jobPo : sub) {
+                params.add(jobPo.getJobId());
+            }
+            params.add(false);
+            String sql = "UPDATE `" + tableName + "` SET `is_running` = ?, `task_tracker_identity` = ?, `gmt_modified` = ?" +
+                    " WHERE `job_id` IN (" + AbstractMysqlJobQueue.placeholders(sub.size()) + ")" +
+                    " AND `is_running` = ?";
+            rows += sqlTemplate.update(sql, params.toArray());
+        }
+        return rows;
+    }
+
+    /**
+     * 重新查询确认是否锁定: 被这次锁定的(is_running, 同一个taskTrackerIdentity, gmt_modified为这次锁定的时间)算锁定成功,
+     * 还没有被锁定的放回 retry, 查询也出错时全部放回 retry
+     */
+    private void confirmLocked(String taskTrackerNodeGroup, String taskTrackerIdentity, Long now,
+                               List<JobPo> jobPos, List<Integer> unknown, boolean[] locked, List<JobPo> retry) {
+        List<String> jobIds = new ArrayList<String>(unknown.size());
+        for (Integer i : unknown) {
+            jobIds.add(jobPos.get(i).getJobId());
+        }
+        Map<String, JobPo> current = new HashMap<String, JobPo>(jobIds.size() * 2);
+        try {
+            for (JobPo jobPo : getJobs(taskTrackerNodeGroup, jobIds)) {
+                current.put(jobPo.getJobId(), jobPo);
+            }
+        } catch (Exception e) {
+            LOGGER.error("Error when confirm locked jobs:" + e.getMessage(), e);
+            for (Integer i : unknown) {
+                retry.add(jobPos.get(i));
+            }
+            return;
+        }
+        for (Integer i : unknown) {
+            JobPo jobPo = current.get(jobPos.get(i).getJobId());
+            if (jobPo == null) {
+                // 已经被删除了
+                continue;
+            }
+            if (Boolean.TRUE.equals(jobPo.isRunning())) {
+                locked[i] = taskTrackerIdentity.equals(jobPo.getTaskTrackerIdentity())
+                        && now.equals(jobPo.getGmtModified());
+            } else {
+                // 还没有被锁定, 用最新的数据重新放回内存队列
+                retry.add(jobPo);
+            }
+        }
+    }
+
+    private List<JobPo> getJobs(String taskTrackerNodeGroup, List<String> jobIds) throws SQLException {
+        List<JobPo> jobPos = new ArrayList<JobPo>(jobIds.size());
+        String tableName = getTableName(taskTrackerNodeGroup);
+        for (int from = 0; from < jobIds.size(); from += AbstractMysqlJobQueue.MAX_IDS_PER_IN) {
+            List<String> ids = jobIds.subList(from, Math.min(jobIds.size(), from + AbstractMysqlJobQueue.MAX_IDS_PER_IN));
+            String sql = "SELECT * FROM `" + tableName + "` WHERE `job_id` IN (" + AbstractMysqlJobQueue.placeholders(ids.size()) + ")";
+            List<JobPo> list = sqlTemplate.query(sql, RshHolder.JOB_PO_LIST_RSH, ids.toArray());
+            if (list != null) {
+                jobPos.addAll(list);
+            }
+        }
+        return jobPos;
+    }
 
     @Override
     protected List<JobPo> load(String loadTaskTrackerNodeGroup, int loadSize) {
@@ -87,6 +199,84 @@ public class MysqlPreLoader extends AbstractPreLoader {
         }
     }
 
+    @Override
+    protected List<JobPo> load(String loadTaskTrackerNodeGroup, int loadSize, int[] partitions) {
+        try {
+            return new SelectSql(sqlTemplate)
+                    .select()
+                    .all()
+                    .from()
+                    .table(getTableName(loadTaskTrackerNodeGroup))
+                    .where("is_running = ?", false)
+                    .and("trigger_time< ?", SystemClock.now())
+                    // 插入时写入的 JobPartitioner.partition, 走 idx_isRunning_jobPartition_triggerTime
+                    .and("job_partition IN (" + toInList(partitions) + ")")
+                    .orderBy()
+                    .column("priority", OrderByType.ASC)
+                    .column("trigger_time", OrderByType.ASC)
+                    .column("gmt_created", OrderByType.ASC)
+                    .limit(0, loadSize)
+                    .list(RshHolder.JOB_PO_LIST_RSH);
+        } catch (Exception e) {
+            LOGGER.error("Error when load partition job:" + e.getMessage(), e);
+            return null;
+        }
+    }
+
+    @Override
+    protected List<JobPo> load(String loadTaskTrackerNodeGroup, long fromTriggerTime, long toTriggerTime, int loadSize) {
+        try {
+            return new SelectSql(sqlTemplate)
+                    .select()
+                    .all()
+                    .from()
+                    .table(getTableName(loadTaskTrackerNodeGroup))
+                    .where("is_running = ?", false)
+                    .and("trigger_time >= ?", fromTriggerTime)
+                    .and("trigger_time < ?", toTriggerTime)
+                    .orderBy()
+                    .column("trigger_time", OrderByType.ASC)
+                    .limit(0, loadSize)
+                    .list(RshHolder.JOB_PO_LIST_RSH);
+        } catch (Exception e) {
+            LOGGER.error("Error when load job by trigger time:" + e.getMessage(), e);
+            return null;
+        }
+    }
+
+    @Override
+    protected List<JobPo> loadNoPartition(String loadTaskTrackerNodeGroup, long toTriggerTime, int loadSize) {
+        try {
+            return new SelectSql(sqlTemplate)
+                    .select()
+                    .all()
+                    .from()
+                    .table(getTableName(loadTaskTrackerNodeGroup))
+                    .where("is_running = ?", false)
+                    // 旧版本写入的没有 job_partition, 也走 idx_isRunning_jobPartition_triggerTime
+                    .and("job_partition IS NULL")
+                    .and("trigger_time < ?", toTriggerTime)
+                    .orderBy()
+                    .column("trigger_time", OrderByType.ASC)
+                    .limit(0, loadSize)
+                    .list(RshHolder.JOB_PO_LIST_RSH);
+        } catch (Exception e) {
+            LOGGER.error("Error when load no partition job:" + e.getMessage(), e);
+            return null;
+        }
+    }
+
+    private static String toInList(int[] partitions) {
+        StringBuilder sb = new StringBuilder(partitions.length * 4);
+        for (int i = 0; i < partitions.length; i++) {
+            if (i > 0) {
+                sb.append(",");
+            }
+            sb.append(partitions[i]);
+        }
+        return sb.toString();
+    }
+
     private String getTableName(String taskTrackerNodeGroup) {
         return JobQueueUtils.getExecutableQueueName(taskTrackerNodeGroup);
     }
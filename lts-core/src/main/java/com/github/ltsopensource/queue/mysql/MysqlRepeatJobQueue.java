@@ -2,6 +2,7 @@ package com.github.ltsopensource.queue.mysql;
 
 import com.github.ltsopensource.admin.request.JobQueueReq;
 import com.github.ltsopensource.core.cluster.Config;
+import com.github.ltsopensource.core.commons.utils.CollectionUtils;
 import com.github.ltsopensource.core.support.JobQueueUtils;
 import com.github.ltsopensource.queue.RepeatJobQueue;
 import com.github.ltsopensource.queue.domain.JobPo;
@@ -9,6 +10,12 @@ import com.github.ltsopensource.queue.mysql.support.RshHolder;
 import com.github.ltsopensource.store.jdbc.builder.DeleteSql;
 import com.github.ltsopensource.store.jdbc.builder.SelectSql;
 import com.github.ltsopensource.store.jdbc.builder.UpdateSql;
+import com.github.ltsopensource.store.jdbc.exception.JdbcException;
+
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * @author Robert HG (254963746@qq.com) on 3/26/16.
@@ -83,6 +90,29 @@ public class MysqlRepeatJobQueue extends MysqlSchedulerJobQueue implements Repea
         }
     }
 
+    @Override
+    public Map<String, Integer> incRepeatedCount(List<String> jobIds) {
+        Map<String, Integer> repeatedCounts = new HashMap<String, Integer>();
+        if (CollectionUtils.isEmpty(jobIds)) {
+            return repeatedCounts;
+        }
+        for (int from = 0; from < jobIds.size(); from += MAX_IDS_PER_IN) {
+            List<String> ids = jobIds.subList(from, Math.min(jobIds.size(), from + MAX_IDS_PER_IN));
+            // 一条UPDATE原子加1, 再查回加之后的值
+            String sql = "UPDATE `" + getTableName() + "` SET `repeated_count` = `repeated_count` + 1 WHERE `job_id` IN ("
+                    + placeholders(ids.size()) + ")";
+            try {
+                getSqlTemplate().update(sql, ids.toArray());
+            } catch (SQLException e) {
+                throw new JdbcException("Update SQL Error:" + sql, e);
+            }
+            for (JobPo jobPo : getJobsByJobIds(ids)) {
+                repeatedCounts.put(jobPo.getJobId(), jobPo.getRepeatedCount());
+            }
+        }
+        return repeatedCounts;
+    }
+
     protected String getTableName() {
         return JobQueueUtils.REPEAT_JOB_QUEUE;
     }
@@ -1,20 +1,28 @@
 package com.github.ltsopensource.queue.mysql;
 
 import com.github.ltsopensource.core.cluster.Config;
+import com.github.ltsopensource.core.commons.utils.CollectionUtils;
 import com.github.ltsopensource.core.support.SystemClock;
 import com.github.ltsopensource.queue.SchedulerJobQueue;
 import com.github.ltsopensource.queue.domain.JobPo;
 import com.github.ltsopensource.queue.mysql.support.RshHolder;
 import com.github.ltsopensource.store.jdbc.builder.SelectSql;
 import com.github.ltsopensource.store.jdbc.builder.UpdateSql;
+import com.github.ltsopensource.store.jdbc.exception.JdbcException;
 
+import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author Robert HG (254963746@qq.com) on 4/4/16.
  */
 public abstract class MysqlSchedulerJobQueue extends AbstractMysqlJobQueue implements SchedulerJobQueue {
 
+    // 批量更新时一条UPDATE最多的行数
+    private static final int MAX_ROWS_PER_UPDATE = 200;
+
     public MysqlSchedulerJobQueue(Config config) {
         super(config);
     }
@@ -30,6 +38,40 @@ public abstract class MysqlSchedulerJobQueue extends AbstractMysqlJobQueue imple
                 .doUpdate() == 1;
     }
 
+    @Override
+    public void updateLastGenerateTriggerTime(Map<String, Long> lastGenerateTriggerTimes) {
+        if (CollectionUtils.isEmpty(lastGenerateTriggerTimes)) {
+            return;
+        }
+        // UPDATE xx SET last_generate_trigger_time = CASE job_id WHEN ? THEN ? ... END WHERE job_id IN (...)
+        List<Map.Entry<String, Long>> entries = new ArrayList<Map.Entry<String, Long>>(lastGenerateTriggerTimes.entrySet());
+        for (int from = 0; from < entries.size(); from += MAX_ROWS_PER_UPDATE) {
+            List<Map.Entry<String, Long>> batch = entries.subList(from, Math.min(entries.size(), from + MAX_ROWS_PER_UPDATE));
+            StringBuilder sql = new StringBuilder("UPDATE `").append(getTableName())
+                    .append("` SET `gmt_modified` = ?, `last_generate_trigger_time` = CASE `job_id`");
+            List<Object> params = new ArrayList<Object>(batch.size() * 3 + 1);
+            params.add(SystemClock.now());
+            for (Map.Entry<String, Long> entry : batch) {
+                sql.append(" WHEN ? THEN ?");
+                params.add(entry.getKey());
+                params.add(entry.getValue());
+            }
+            sql.append(" END WHERE `job_id` IN (");
+            String split = "";
+            for (Map.Entry<String, Long> entry : batch) {
+                sql.append(split).append("?");
+                split = ",";
+                params.add(entry.getKey());
+            }
+            sql.append(")");
+            try {
+                getSqlTemplate().update(sql.toString(), params.toArray());
+            } catch (SQLException e) {
+                throw new JdbcException("Update SQL Error:" + sql, e);
+            }
+        }
+    }
+
     @Override
     public List<JobPo> getNeedGenerateJobPos(Long checkTime, int topSize) {
         return new SelectSql(getSqlTemplate())
@@ -43,5 +85,10 @@ public abstract class MysqlSchedulerJobQueue extends AbstractMysqlJobQueue imple
                 .list(RshHolder.JOB_PO_LIST_RSH);
     }
 
+    @Override
+    public List<JobPo> getJobsByJobIds(List<String> jobIds) {
+        return getJobsByJobIds(getTableName(), jobIds);
+    }
+
     protected abstract String getTableName();
 }
@@ -0,0 +1,104 @@
+package com.github.ltsopensource.queue.support;
+
+import com.github.ltsopensource.core.constant.Constants;
+import com.github.ltsopensource.core.logger.Logger;
+import com.github.ltsopensource.core.logger.LoggerFactory;
+import com.github.ltsopensource.core.support.ConsistentHashSelector;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.CRC32;
+
+/**
+ * 多个JobTracker之间按 jobId 分区
+ * 1. jobId 按 CRC32(jobId) % PARTITION_NUM 分到固定个数的分区, 和 mysql 的 CRC32 函数结果一致, 可以在查询中过滤
+ * 2. 分区用一致性hash分给JobTracker, 所有JobTracker按同样的节点列表计算, 结果一致
+ * 3. JobTracker加入或者退出时重新计算
+ */
+public class JobPartitioner {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JobPartitioner.class);
+
+    public static final int PARTITION_NUM = 1024;
+    private static final Charset CHARSET = Charset.forName(Constants.CHARSET);
+
+    private final String identity;
+    // 排好序的, 保证每个JobTracker计算出来的一致性hash环相同
+    private final Set<String> jobTrackers = new TreeSet<String>();
+    // 为null表示所有分区都是自己的
+    private volatile boolean[] owned;
+    private volatile int[] ownedPartitions;
+    private volatile int jobTrackerNum = 1;
+
+    public JobPartitioner(String identity) {
+        this.identity = identity;
+        this.jobTrackers.add(identity);
+    }
+
+    public synchronized void addJobTracker(String jobTrackerIdentity) {
+        if (jobTrackers.add(jobTrackerIdentity)) {
+            rebalance();
+        }
+    }
+
+    public synchronized void removeJobTracker(String jobTrackerIdentity) {
+        // 自己一直在
+        if (!identity.equals(jobTrackerIdentity) && jobTrackers.remove(jobTrackerIdentity)) {
+            rebalance();
+        }
+    }
+
+    private void rebalance() {
+        jobTrackerNum = jobTrackers.size();
+        if (jobTrackerNum == 1) {
+            owned = null;
+            ownedPartitions = null;
+            LOGGER.info("JobPartitioner rebalanced, own all partitions");
+            return;
+        }
+        ConsistentHashSelector<String> selector = new ConsistentHashSelector<String>(new ArrayList<String>(jobTrackers));
+        boolean[] newOwned = new boolean[PARTITION_NUM];
+        List<Integer> partitions = new ArrayList<Integer>();
+        for (int i = 0; i < PARTITION_NUM; i++) {
+            if (identity.equals(selector.selectForKey("PARTITION-" + i))) {
+                newOwned[i] = true;
+                partitions.add(i);
+            }
+        }
+        int[] newOwnedPartitions = new int[partitions.size()];
+        for (int i = 0; i < newOwnedPartitions.length; i++) {
+            newOwnedPartitions[i] = partitions.get(i);
+        }
+        owned = newOwned;
+        ownedPartitions = newOwnedPartitions;
+        LOGGER.info("JobPartitioner rebalanced, jobTrackers:{}, own {}/{} partitions", jobTrackers, newOwnedPartitions.length, PARTITION_NUM);
+    }
+
+    /**
+     * 是否是自己负责的任务
+     */
+    public boolean owns(String jobId) {
+        boolean[] owned = this.owned;
+        return owned == null || owned[partition(jobId)];
+    }
+
+    /**
+     * @return 自己负责的分区, null表示全部
+     */
+    public int[] getOwnedPartitions() {
+        return ownedPartitions;
+    }
+
+    public int getJobTrackerNum() {
+        return jobTrackerNum;
+    }
+
+    public static int partition(String jobId) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(jobId.getBytes(CHARSET));
+        return (int) (crc32.getValue() % PARTITION_NUM);
+    }
+}
@@ -10,9 +10,10 @@ import com.github.ltsopensource.queue.CronJobQueue;
 import com.github.ltsopensource.queue.ExecutableJobQueue;
 import com.github.ltsopensource.queue.RepeatJobQueue;
 import com.github.ltsopensource.queue.domain.JobPo;
-import com.github.ltsopensource.store.jdbc.exception.DupEntryException;
 
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 
 /**
  * @author Robert HG (254963746@qq.com) on 4/6/16.
@@ -29,87 +30,105 @@ public class NonRelyJobUtils {
                                              int scheduleIntervalMinute,
                                              final JobPo finalJobPo,
                                              Date lastGenerateTime) {
-        JobPo jobPo = JobUtils.copy(finalJobPo);
+        List<JobPo> jobPos = new ArrayList<JobPo>();
+        long endTime = generateCronJobForInterval(scheduleIntervalMinute, finalJobPo, lastGenerateTime, jobPos);
+        addBatch(executableJobQueue, jobPos);
+        cronJobQueue.updateLastGenerateTriggerTime(finalJobPo.getJobId(), endTime);
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Add CronJob {} to {}", finalJobPo, DateUtils.formatYMD_HMS(new Date(endTime)));
+        }
+    }
 
-        String cronExpression = jobPo.getCronExpression();
+    /**
+     * 在内存中生成 lastGenerateTime 之后 scheduleIntervalMinute 分钟内的任务, 放到 jobPos 中
+     *
+     * @return 生成到的时间, 即新的 lastGenerateTriggerTime
+     */
+    public static long generateCronJobForInterval(int scheduleIntervalMinute,
+                                                  final JobPo finalJobPo,
+                                                  Date lastGenerateTime,
+                                                  List<JobPo> jobPos) {
+        String cronExpression = finalJobPo.getCronExpression();
         long endTime = DateUtils.addMinute(lastGenerateTime, scheduleIntervalMinute).getTime();
         Date timeAfter = lastGenerateTime;
-        boolean stop = false;
-        while (!stop) {
+        while (true) {
             Date nextTriggerTime = CronExpressionUtils.getNextTriggerTime(cronExpression, timeAfter);
-            if (nextTriggerTime == null) {
-                stop = true;
-            } else {
-                if (nextTriggerTime.getTime() <= endTime) {
-                    // 添加任务
-                    jobPo.setTriggerTime(nextTriggerTime.getTime());
-                    jobPo.setJobId(JobUtils.generateJobId());
-                    jobPo.setTaskId(finalJobPo.getTaskId() + "_" + DateUtils.format(nextTriggerTime, "MMdd-HHmmss"));
-                    jobPo.setInternalExtParam(Constants.ONCE, Boolean.TRUE.toString());
-                    try {
-                        jobPo.setInternalExtParam(Constants.EXE_SEQ_ID, JobUtils.generateExeSeqId(jobPo));
-                        executableJobQueue.add(jobPo);
-                    } catch (DupEntryException e) {
-                        LOGGER.warn("Cron Job[taskId={}, taskTrackerNodeGroup={}] Already Exist in ExecutableJobQueue",
-                                jobPo.getTaskId(), jobPo.getTaskTrackerNodeGroup());
-                    }
-                } else {
-                    stop = true;
-                }
+            if (nextTriggerTime == null || nextTriggerTime.getTime() > endTime) {
+                break;
             }
+            JobPo jobPo = JobUtils.copy(finalJobPo);
+            jobPo.setTriggerTime(nextTriggerTime.getTime());
+            jobPo.setJobId(JobUtils.generateJobId());
+            jobPo.setTaskId(finalJobPo.getTaskId() + "_" + DateUtils.format(nextTriggerTime, "MMdd-HHmmss"));
+            jobPo.setInternalExtParam(Constants.ONCE, Boolean.TRUE.toString());
+            jobPo.setInternalExtParam(Constants.EXE_SEQ_ID, JobUtils.generateExeSeqId(jobPo));
+            jobPos.add(jobPo);
             timeAfter = nextTriggerTime;
         }
-        cronJobQueue.updateLastGenerateTriggerTime(finalJobPo.getJobId(), endTime);
-        if (LOGGER.isDebugEnabled()) {
-            LOGGER.debug("Add CronJob {} to {}", jobPo, DateUtils.formatYMD_HMS(new Date(endTime)));
-        }
+        return endTime;
     }
 
     public static void addRepeatJobForInterval(
             ExecutableJobQueue executableJobQueue,
             RepeatJobQueue repeatJobQueue,
             int scheduleIntervalMinute, final JobPo finalJobPo, Date lastGenerateTime) {
-        JobPo jobPo = JobUtils.copy(finalJobPo);
-        long firstTriggerTime = Long.valueOf(jobPo.getInternalExtParam(Constants.FIRST_FIRE_TIME));
+        List<JobPo> jobPos = new ArrayList<JobPo>();
+        long endTime = generateRepeatJobForInterval(scheduleIntervalMinute, finalJobPo, lastGenerateTime, jobPos);
+        addBatch(executableJobQueue, jobPos);
+        // 更新时间
+        repeatJobQueue.updateLastGenerateTriggerTime(finalJobPo.getJobId(), endTime);
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Add RepeatJob {} to {}", finalJobPo, DateUtils.formatYMD_HMS(new Date(endTime)));
+        }
+    }
+
+    /**
+     * 在内存中生成 lastGenerateTime 之后 scheduleIntervalMinute 分钟内的任务, 放到 jobPos 中
+     *
+     * @return 生成到的时间, 即新的 lastGenerateTriggerTime
+     */
+    public static long generateRepeatJobForInterval(int scheduleIntervalMinute,
+                                                    final JobPo finalJobPo,
+                                                    Date lastGenerateTime,
+                                                    List<JobPo> jobPos) {
+        long firstTriggerTime = Long.valueOf(finalJobPo.getInternalExtParam(Constants.FIRST_FIRE_TIME));
 
-        Long repeatInterval = jobPo.getRepeatInterval();
-        Integer repeatCount = jobPo.getRepeatCount();
+        Long repeatInterval = finalJobPo.getRepeatInterval();
+        Integer repeatCount = finalJobPo.getRepeatCount();
 
         long endTime = DateUtils.addMinute(lastGenerateTime, scheduleIntervalMinute).getTime();
         if (endTime <= firstTriggerTime) {
-            return;
+            // 还没到第一次执行时间
+            return endTime;
         }
         // 计算出应该重复的次数
-        int repeatedCount = Long.valueOf((lastGenerateTime.getTime() - firstTriggerTime) / jobPo.getRepeatInterval()).intValue();
-
-        boolean stop = false;
-        while (!stop) {
-            Long nextTriggerTime = firstTriggerTime + repeatedCount * repeatInterval;
+        int repeatedCount = Long.valueOf((lastGenerateTime.getTime() - firstTriggerTime) / repeatInterval).intValue();
 
-            if (nextTriggerTime <= endTime &&
-                    (repeatCount == -1 || repeatedCount <= repeatCount)) {
-                // 添加任务
-                jobPo.setTriggerTime(nextTriggerTime);
-                jobPo.setJobId(JobUtils.generateJobId());
-                jobPo.setTaskId(finalJobPo.getTaskId() + "_" + DateUtils.format(new Date(nextTriggerTime), "MMdd-HHmmss"));
-                jobPo.setRepeatedCount(repeatedCount);
-                jobPo.setInternalExtParam(Constants.ONCE, Boolean.TRUE.toString());
-                try {
-                    jobPo.setInternalExtParam(Constants.EXE_SEQ_ID, JobUtils.generateExeSeqId(jobPo));
-                    executableJobQueue.add(jobPo);
-                } catch (DupEntryException e) {
-                    LOGGER.warn("Repeat Job[taskId={}, taskTrackerNodeGroup={}] Already Exist in ExecutableJobQueue",
-                            jobPo.getTaskId(), jobPo.getTaskTrackerNodeGroup());
-                }
-                repeatedCount++;
-            } else {
-                stop = true;
+        while (true) {
+            long nextTriggerTime = firstTriggerTime + repeatedCount * repeatInterval;
+            if (nextTriggerTime > endTime || (repeatCount != -1 && repeatedCount > repeatCount)) {
+                break;
             }
+            JobPo jobPo = JobUtils.copy(finalJobPo);
+            jobPo.setTriggerTime(nextTriggerTime);
+            jobPo.setJobId(JobUtils.generateJobId());
+            jobPo.setTaskId(finalJobPo.getTaskId() + "_" + DateUtils.format(new Date(nextTriggerTime), "MMdd-HHmmss"));
+            jobPo.setRepeatedCount(repeatedCount);
+            jobPo.setInternalExtParam(Constants.ONCE, Boolean.TRUE.toString());
+            jobPo.setInternalExtParam(Constants.EXE_SEQ_ID, JobUtils.generateExeSeqId(jobPo));
+            jobPos.add(jobPo);
+            repeatedCount++;
         }
-        // 更新时间
-        repeatJobQueue.updateLastGenerateTriggerTime(finalJobPo.getJobId(), endTime);
-        if (LOGGER.isDebugEnabled()) {
-            LOGGER.debug("Add RepeatJob {} to {}", jobPo, DateUtils.formatYMD_HMS(new Date(endTime)));
+        return endTime;
+    }
+
+    private static void addBatch(ExecutableJobQueue executableJobQueue, List<JobPo> jobPos) {
+        if (jobPos.isEmpty()) {
+            return;
+        }
+        int num = executableJobQueue.addBatch(jobPos);
+        if (num < jobPos.size() && LOGGER.isDebugEnabled()) {
+            LOGGER.debug("{} Non-Rely Job Already Exist in ExecutableJobQueue", jobPos.size() - num);
         }
     }
 }
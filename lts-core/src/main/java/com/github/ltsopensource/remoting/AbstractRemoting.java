@@ -6,7 +6,7 @@ import com.github.ltsopensource.core.logger.Logger;
 import com.github.ltsopensource.core.logger.LoggerFactory;
 import com.github.ltsopensource.core.support.SystemClock;
 import com.github.ltsopensource.remoting.codec.Codec;
-import com.github.ltsopensource.remoting.codec.DefaultCodec;
+import com.github.ltsopensource.remoting.codec.CodecFactory;
 import com.github.ltsopensource.remoting.common.RemotingHelper;
 import com.github.ltsopensource.remoting.common.SemaphoreReleaseOnlyOnce;
 import com.github.ltsopensource.remoting.common.ServiceThread;
@@ -422,8 +422,7 @@ public abstract class AbstractRemoting {
     }
 
     protected Codec getCodec() {
-        // TODO 改为SPI
-        return new DefaultCodec();
+        return CodecFactory.getCodec();
     }
 
 }
\ No newline at end of file
@@ -10,6 +10,9 @@ import com.github.ltsopensource.remoting.serialize.RemotingSerializable;
  */
 public abstract class AbstractCodec implements Codec {
 
+    // ServiceLoader 返回的是单例, 缓存起来不用每条消息都查找
+    private volatile RemotingSerializable adaptiveSerializable;
+
     protected RemotingSerializable getRemotingSerializable(int serializableTypeId) {
 
         RemotingSerializable serializable = null;
@@ -19,7 +22,11 @@ public abstract class AbstractCodec implements Codec {
                 throw new IllegalArgumentException("Can not support RemotingSerializable that serializableTypeId=" + serializableTypeId);
             }
         } else {
-            serializable = ServiceLoader.load(RemotingSerializable.class, Constants.ADAPTIVE);
+            serializable = adaptiveSerializable;
+            if (serializable == null) {
+                serializable = ServiceLoader.load(RemotingSerializable.class, Constants.ADAPTIVE);
+                adaptiveSerializable = serializable;
+            }
         }
         return serializable;
     }
@@ -0,0 +1,65 @@
+package com.github.ltsopensource.remoting.codec;
+
+import com.github.ltsopensource.core.protocol.command.*;
+import com.github.ltsopensource.remoting.RemotingCommandBody;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * RemotingCommandBody 类型 和 整数id 的映射, {@link CompactCodec} 用id代替类名传输
+ * 已经注册的id不能修改, 新增的类型只能追加新的id
+ */
+public class BodyTypeRegistry {
+
+    /**
+     * 没有注册的类型, 后面跟着类名
+     */
+    public static final int UNREGISTERED = 0;
+
+    private static final ConcurrentHashMap<Integer, Class<? extends RemotingCommandBody>> ID_TYPE_MAP
+            = new ConcurrentHashMap<Integer, Class<? extends RemotingCommandBody>>();
+    private static final ConcurrentHashMap<Class<?>, Integer> TYPE_ID_MAP
+            = new ConcurrentHashMap<Class<?>, Integer>();
+
+    static {
+        register(1, AbstractRemotingCommandBody.class);
+        register(2, BizLogSendRequest.class);
+        register(3, HeartBeatRequest.class);
+        register(4, JobAskRequest.class);
+        register(5, JobAskResponse.class);
+        register(6, JobCancelRequest.class);
+        register(7, JobCompletedRequest.class);
+        register(8, JobFinishedRequest.class);
+        register(9, JobPullRequest.class);
+        register(10, JobPushRequest.class);
+        register(11, JobPushResponse.class);
+        register(12, JobSubmitRequest.class);
+        register(13, JobSubmitResponse.class);
+    }
+
+    /**
+     * 注册自定义的body类型, 通讯的两端必须注册相同的id
+     */
+    public static void register(int id, Class<? extends RemotingCommandBody> type) {
+        if (id <= UNREGISTERED) {
+            throw new IllegalArgumentException("body type id must > " + UNREGISTERED);
+        }
+        Class<? extends RemotingCommandBody> exist = ID_TYPE_MAP.putIfAbsent(id, type);
+        if (exist != null && exist != type) {
+            throw new IllegalArgumentException("body type id " + id + " already registered by " + exist.getName());
+        }
+        TYPE_ID_MAP.put(type, id);
+    }
+
+    /**
+     * 没有注册返回 {@link #UNREGISTERED}
+     */
+    public static int getId(Class<?> type) {
+        Integer id = TYPE_ID_MAP.get(type);
+        return id == null ? UNREGISTERED : id;
+    }
+
+    public static Class<? extends RemotingCommandBody> getType(int id) {
+        return ID_TYPE_MAP.get(id);
+    }
+}
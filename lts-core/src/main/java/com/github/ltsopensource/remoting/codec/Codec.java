@@ -1,5 +1,7 @@
 package com.github.ltsopensource.remoting.codec;
 
+import com.github.ltsopensource.core.constant.ExtConfig;
+import com.github.ltsopensource.core.spi.SPI;
 import com.github.ltsopensource.remoting.protocol.RemotingCommand;
 
 import java.nio.ByteBuffer;
@@ -7,6 +9,7 @@ import java.nio.ByteBuffer;
 /**
  * @author Robert HG (254963746@qq.com) on 11/5/15.
  */
+@SPI(key = ExtConfig.REMOTING_CODEC, dftValue = "default")
 public interface Codec {
 
     RemotingCommand decode(final ByteBuffer byteBuffer) throws Exception;
@@ -0,0 +1,25 @@
+package com.github.ltsopensource.remoting.codec;
+
+import com.github.ltsopensource.core.logger.Logger;
+import com.github.ltsopensource.core.logger.LoggerFactory;
+import com.github.ltsopensource.core.spi.ServiceLoader;
+
+public class CodecFactory {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CodecFactory.class);
+
+    private static volatile String defaultCodec;
+
+    public static void setDefaultCodec(String defaultCodec) {
+        CodecFactory.defaultCodec = defaultCodec;
+        LOGGER.info("Using defaultCodec [{}]", defaultCodec);
+    }
+
+    public static Codec getCodec() {
+        String codec = defaultCodec; // copy reference
+        if (codec != null) {
+            return ServiceLoader.load(Codec.class, codec);
+        }
+        return ServiceLoader.loadDefault(Codec.class);
+    }
+}
@@ -0,0 +1,154 @@
+package com.github.ltsopensource.remoting.codec;
+
+import com.github.ltsopensource.core.commons.io.ByteBufferOutputStream;
+import com.github.ltsopensource.remoting.RemotingCommandBody;
+import com.github.ltsopensource.remoting.protocol.RemotingCommand;
+import com.github.ltsopensource.remoting.serialize.BufferSerializable;
+import com.github.ltsopensource.remoting.serialize.RemotingSerializable;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 协议格式
+ *    | <length> | <serializable id> | <header> | <body type id> | <body class> | <body data> |
+ *    |    1     |        2          |    3     |       4        |      5       |      6      |
+ *
+ *    1、大端4个字节整数，等于2、3、4、5、6长度总和
+ *    2、大端4个字节整数，serializable id
+ *    3、header 定长字段 code, subCode, version, opaque, flag, sid 各4个字节, 之后是 remark 长度(4个字节, -1表示null) 和 remark(UTF-8)
+ *    4、大端4个字节整数, {@link BodyTypeRegistry} 中的id, 没有body时4、5、6都没有
+ *    5、只有body type id 为 {@link BodyTypeRegistry#UNREGISTERED} 时才有, 类名长度(4个字节) 和 类名
+ *    6、body 信息内容, 一直到结尾
+ *
+ * 和 {@link DefaultCodec} 不兼容, 通讯的两端需要配置相同的codec
+ */
+public class CompactCodec extends AbstractCodec {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int DEFAULT_SIZE_HINT = 256;
+
+    // Key: body class, 上一次编码的大小, 用来分配buffer, 避免扩容
+    private final ConcurrentHashMap<Class<?>, Integer> sizeHints = new ConcurrentHashMap<Class<?>, Integer>();
+
+    @Override
+    public RemotingCommand decode(ByteBuffer byteBuffer) throws Exception {
+
+        int serializableId = byteBuffer.getInt();
+
+        RemotingSerializable serializable =
+                getRemotingSerializable(serializableId);
+
+        RemotingCommand cmd = RemotingCommand.createResponseCommand(byteBuffer.getInt());
+        cmd.setSubCode(byteBuffer.getInt());
+        cmd.setVersion(byteBuffer.getInt());
+        cmd.setOpaque(byteBuffer.getInt());
+        cmd.setFlag(byteBuffer.getInt());
+        cmd.setSid(byteBuffer.getInt());
+        cmd.setRemark(getString(byteBuffer));
+
+        if (byteBuffer.hasRemaining()) {
+            int bodyTypeId = byteBuffer.getInt();
+            Class<?> bodyType;
+            if (bodyTypeId == BodyTypeRegistry.UNREGISTERED) {
+                bodyType = Class.forName(getString(byteBuffer));
+            } else {
+                bodyType = BodyTypeRegistry.getType(bodyTypeId);
+                if (bodyType == null) {
+                    throw new IllegalArgumentException("Unknown body type id=" + bodyTypeId);
+                }
+            }
+            if (byteBuffer.hasRemaining()) {
+                Object body;
+                if (serializable instanceof BufferSerializable) {
+                    // 直接从buffer中读取, 不拷贝
+                    body = ((BufferSerializable) serializable).deserialize(byteBuffer.slice(), bodyType);
+                } else {
+                    byte[] bodyData = new byte[byteBuffer.remaining()];
+                    byteBuffer.get(bodyData);
+                    body = serializable.deserialize(bodyData, bodyType);
+                }
+                cmd.setBody((RemotingCommandBody) body);
+            }
+        }
+        return cmd;
+    }
+
+    @Override
+    public ByteBuffer encode(RemotingCommand remotingCommand) throws Exception {
+
+        RemotingSerializable serializable =
+                getRemotingSerializable(remotingCommand.getSid());
+
+        RemotingCommandBody body = remotingCommand.getBody();
+        Class<?> bodyType = body == null ? null : body.getClass();
+
+        ByteBufferOutputStream out = new ByteBufferOutputStream(getSizeHint(bodyType));
+
+        // length, 最后回填
+        out.writeInt(0);
+        out.writeInt(serializable.getId());
+
+        // header
+        out.writeInt(remotingCommand.getCode());
+        out.writeInt(remotingCommand.getSubCode());
+        out.writeInt(remotingCommand.getVersion());
+        out.writeInt(remotingCommand.getOpaque());
+        out.writeInt(remotingCommand.getFlag());
+        out.writeInt(remotingCommand.getSid());
+        putString(out, remotingCommand.getRemark());
+
+        if (body != null) {
+            int bodyTypeId = BodyTypeRegistry.getId(bodyType);
+            out.writeInt(bodyTypeId);
+            if (bodyTypeId == BodyTypeRegistry.UNREGISTERED) {
+                putString(out, bodyType.getName());
+            }
+            if (serializable instanceof BufferSerializable) {
+                // 直接序列化到输出buffer中
+                ((BufferSerializable) serializable).serialize(body, out);
+            } else {
+                out.write(serializable.serialize(body));
+            }
+        }
+
+        int size = out.position();
+        out.putInt(0, size - 4);
+        sizeHints.put(bodyType == null ? RemotingCommand.class : bodyType, size);
+
+        return out.toByteBuffer();
+    }
+
+    private int getSizeHint(Class<?> bodyType) {
+        Integer hint = sizeHints.get(bodyType == null ? RemotingCommand.class : bodyType);
+        return hint == null ? DEFAULT_SIZE_HINT : hint + (hint >> 3);
+    }
+
+    private static void putString(ByteBufferOutputStream out, String value) {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] data = value.getBytes(UTF_8);
+        out.writeInt(data.length);
+        out.write(data, 0, data.length);
+    }
+
+    private static String getString(ByteBuffer byteBuffer) {
+        int length = byteBuffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String value;
+        if (byteBuffer.hasArray()) {
+            value = new String(byteBuffer.array(), byteBuffer.arrayOffset() + byteBuffer.position(), length, UTF_8);
+            byteBuffer.position(byteBuffer.position() + length);
+        } else {
+            byte[] data = new byte[length];
+            byteBuffer.get(data);
+            value = new String(data, UTF_8);
+        }
+        return value;
+    }
+}
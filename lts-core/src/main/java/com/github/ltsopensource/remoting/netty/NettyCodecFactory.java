@@ -70,12 +70,12 @@ public class NettyCodecFactory {
                     return null;
                 }
 
-                byte[] tmpBuf = new byte[frame.capacity()];
-                frame.getBytes(0, tmpBuf);
-                frame.release();    // todo 联系ByteBuf看下了?
-
-                ByteBuffer byteBuffer = ByteBuffer.wrap(tmpBuf);
-                return codec.decode(byteBuffer);
+                try {
+                    // 直接在frame上解码, 解码完成之后再释放
+                    return codec.decode(frame.nioBuffer());
+                } finally {
+                    frame.release();
+                }
             } catch (Exception e) {
                 Channel channel = new NettyChannel(ctx);
                 LOGGER.error("decode exception, {}", RemotingHelper.parseChannelRemoteAddr(channel), e);
@@ -5,6 +5,8 @@ import com.github.ltsopensource.core.logger.Logger;
 import com.github.ltsopensource.core.logger.LoggerFactory;
 import com.github.ltsopensource.core.spi.ServiceLoader;
 
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
@@ -12,12 +14,14 @@ import java.util.Set;
 /**
  * @author Robert HG (254963746@qq.com) on 11/6/15.
  */
-public class AdaptiveSerializable implements RemotingSerializable {
+public class AdaptiveSerializable implements BufferSerializable {
 
     private final static Logger LOGGER = LoggerFactory.getLogger(RemotingSerializable.class);
 
     private static volatile String defaultSerializable;
 
+    private volatile Resolved resolved;
+
     private static final Map<Integer, RemotingSerializable>
             ID_SERIALIZABLE_MAP = new HashMap<Integer, RemotingSerializable>();
 
@@ -41,14 +45,19 @@ public class AdaptiveSerializable implements RemotingSerializable {
     }
 
     private RemotingSerializable getRemotingSerializable() {
-        RemotingSerializable remotingSerializable;
-
         String serializable = defaultSerializable; // copy reference
+        // 每次编解码都会调用, defaultSerializable 没有变化时不再经过 ServiceLoader
+        Resolved resolved = this.resolved;
+        if (resolved != null && resolved.name == serializable) {
+            return resolved.serializable;
+        }
+        RemotingSerializable remotingSerializable;
         if (serializable != null) {
             remotingSerializable = ServiceLoader.load(RemotingSerializable.class, serializable);
         } else {
             remotingSerializable = ServiceLoader.loadDefault(RemotingSerializable.class);
         }
+        this.resolved = new Resolved(serializable, remotingSerializable);
         return remotingSerializable;
     }
 
@@ -66,4 +75,35 @@ public class AdaptiveSerializable implements RemotingSerializable {
     public <T> T deserialize(byte[] data, Class<T> clazz) throws Exception {
         return getRemotingSerializable().deserialize(data, clazz);
     }
+
+    @Override
+    public void serialize(Object obj, OutputStream out) throws Exception {
+        RemotingSerializable serializable = getRemotingSerializable();
+        if (serializable instanceof BufferSerializable) {
+            ((BufferSerializable) serializable).serialize(obj, out);
+        } else {
+            out.write(serializable.serialize(obj));
+        }
+    }
+
+    @Override
+    public <T> T deserialize(ByteBuffer buffer, Class<T> clazz) throws Exception {
+        RemotingSerializable serializable = getRemotingSerializable();
+        if (serializable instanceof BufferSerializable) {
+            return ((BufferSerializable) serializable).deserialize(buffer, clazz);
+        }
+        byte[] data = new byte[buffer.remaining()];
+        buffer.get(data);
+        return serializable.deserialize(data, clazz);
+    }
+
+    private static class Resolved {
+        private final String name;
+        private final RemotingSerializable serializable;
+
+        Resolved(String name, RemotingSerializable serializable) {
+            this.name = name;
+            this.serializable = serializable;
+        }
+    }
 }
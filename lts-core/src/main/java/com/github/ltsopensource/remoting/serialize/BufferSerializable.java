@@ -0,0 +1,18 @@
+package com.github.ltsopensource.remoting.serialize;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * 可以直接写入输出流, 直接从 ByteBuffer 读取的序列化, 省去中间的 byte[] 拷贝
+ * 没有实现该接口的 {@link RemotingSerializable} 仍然按 byte[] 方式使用
+ */
+public interface BufferSerializable extends RemotingSerializable {
+
+    void serialize(final Object obj, final OutputStream out) throws Exception;
+
+    /**
+     * 读取 buffer 的 position 到 limit 之间的数据
+     */
+    <T> T deserialize(final ByteBuffer buffer, Class<T> clazz) throws Exception;
+}
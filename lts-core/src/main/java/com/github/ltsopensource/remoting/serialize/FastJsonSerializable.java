@@ -1,13 +1,20 @@
 package com.github.ltsopensource.remoting.serialize;
 
 import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.serializer.JSONSerializer;
+import com.alibaba.fastjson.serializer.SerializeWriter;
+import com.github.ltsopensource.core.commons.io.Utf8Writer;
 
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 
 /**
  * @author Robert HG (254963746@qq.com) on 11/6/15.
  */
-public class FastJsonSerializable implements RemotingSerializable {
+public class FastJsonSerializable implements BufferSerializable {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
 
     @Override
     public int getId() {
@@ -25,6 +32,33 @@ public class FastJsonSerializable implements RemotingSerializable {
         return fromJson(json, clazz);
     }
 
+    @Override
+    public void serialize(Object obj, OutputStream out) throws Exception {
+        // 字符直接编码写入 out, 不经过 String 和 byte[], char buffer 由 fastjson 按线程复用
+        Utf8Writer utf8Writer = new Utf8Writer(out);
+        SerializeWriter writer = new SerializeWriter(utf8Writer);
+        try {
+            new JSONSerializer(writer).write(obj);
+        } finally {
+            writer.close();
+        }
+        utf8Writer.close();
+    }
+
+    @Override
+    public <T> T deserialize(ByteBuffer buffer, Class<T> clazz) throws Exception {
+        if (buffer.hasArray()) {
+            // heap buffer 直接在原数组上解析
+            T obj = JSON.parseObject(buffer.array(), buffer.arrayOffset() + buffer.position(),
+                    buffer.remaining(), UTF_8.newDecoder(), clazz);
+            buffer.position(buffer.limit());
+            return obj;
+        }
+        byte[] data = new byte[buffer.remaining()];
+        buffer.get(data);
+        return deserialize(data, clazz);
+    }
+
     private String toJson(final Object obj, boolean prettyFormat) {
         return JSON.toJSONString(obj, prettyFormat);
     }
@@ -2,13 +2,18 @@ package com.github.ltsopensource.remoting.serialize;
 
 import com.caucho.hessian.io.Hessian2Input;
 import com.caucho.hessian.io.Hessian2Output;
+import com.github.ltsopensource.core.commons.io.ByteBufferInputStream;
 import com.github.ltsopensource.core.commons.io.UnsafeByteArrayInputStream;
 import com.github.ltsopensource.core.commons.io.UnsafeByteArrayOutputStream;
 
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
 /**
  * @author Robert HG (254963746@qq.com) on 11/6/15.
  */
-public class Hessian2Serializable implements RemotingSerializable {
+public class Hessian2Serializable implements BufferSerializable {
 
     @Override
     public int getId() {
@@ -19,20 +24,32 @@ public class Hessian2Serializable implements RemotingSerializable {
     public byte[] serialize(Object obj) throws Exception {
 
         UnsafeByteArrayOutputStream bos = new UnsafeByteArrayOutputStream();
-        Hessian2Output out = new Hessian2Output(bos);
+        serialize(obj, bos);
+        return bos.toByteArray();
+    }
+
+    @Override
+    public <T> T deserialize(byte[] data, Class<T> clazz) throws Exception {
+        return deserialize(new UnsafeByteArrayInputStream(data), clazz);
+    }
+
+    @Override
+    public void serialize(Object obj, OutputStream os) throws Exception {
+        Hessian2Output out = new Hessian2Output(os);
         out.startMessage();
         out.writeObject(obj);
         out.completeMessage();
         out.close();
-        return bos.toByteArray();
     }
 
-    @SuppressWarnings("unchecked")
-	@Override
-    public <T> T deserialize(byte[] data, Class<T> clazz) throws Exception {
+    @Override
+    public <T> T deserialize(ByteBuffer buffer, Class<T> clazz) throws Exception {
+        return deserialize(new ByteBufferInputStream(buffer), clazz);
+    }
 
-        UnsafeByteArrayInputStream bin = new UnsafeByteArrayInputStream(data);
-        Hessian2Input in = new Hessian2Input(bin);
+    @SuppressWarnings("unchecked")
+    private <T> T deserialize(InputStream is, Class<T> clazz) throws Exception {
+        Hessian2Input in = new Hessian2Input(is);
         in.startMessage();
         Object obj = in.readObject(clazz);
         in.completeMessage();
@@ -1,15 +1,19 @@
 package com.github.ltsopensource.remoting.serialize;
 
+import com.github.ltsopensource.core.commons.io.ByteBufferInputStream;
 import com.github.ltsopensource.core.commons.io.UnsafeByteArrayInputStream;
 import com.github.ltsopensource.core.commons.io.UnsafeByteArrayOutputStream;
 
+import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 
 /**
  * @author Robert HG (254963746@qq.com) on 11/6/15.
  */
-public class JavaSerializable implements RemotingSerializable {
+public class JavaSerializable implements BufferSerializable {
 
     @Override
     public int getId() {
@@ -20,23 +24,34 @@ public class JavaSerializable implements RemotingSerializable {
     public byte[] serialize(Object obj) throws Exception {
 
         UnsafeByteArrayOutputStream bos = new UnsafeByteArrayOutputStream();
-        ObjectOutputStream oos = new ObjectOutputStream(bos);
+        serialize(obj, bos);
+        return bos.toByteArray();
+    }
+
+    @Override
+    public <T> T deserialize(byte[] data, Class<T> clazz) throws Exception {
+        return deserialize(new UnsafeByteArrayInputStream(data), clazz);
+    }
 
+    @Override
+    public void serialize(Object obj, OutputStream out) throws Exception {
+        ObjectOutputStream oos = new ObjectOutputStream(out);
         try {
             oos.writeObject(obj);
             oos.flush();
-            return bos.toByteArray();
         } finally {
             oos.close();
         }
     }
 
-    @SuppressWarnings("unchecked")
-	@Override
-    public <T> T deserialize(byte[] data, Class<T> clazz) throws Exception {
+    @Override
+    public <T> T deserialize(ByteBuffer buffer, Class<T> clazz) throws Exception {
+        return deserialize(new ByteBufferInputStream(buffer), clazz);
+    }
 
-        UnsafeByteArrayInputStream bin = new UnsafeByteArrayInputStream(data);
-        ObjectInputStream ois = new ObjectInputStream(bin);
+    @SuppressWarnings("unchecked")
+    private <T> T deserialize(InputStream in, Class<T> clazz) throws Exception {
+        ObjectInputStream ois = new ObjectInputStream(in);
 
         try {
             Object obj = ois.readObject();
@@ -41,8 +41,15 @@ public abstract class JdbcAbstractAccess {
         return sql.replace("{tableName}", tableName);
     }
 
+    /**
+     * 是否需要建表(包括给已经存在的表补索引)
+     */
+    protected boolean isNeedCreateTable() {
+        return config.getParameter(ExtConfig.NEED_CREATE_DB_TABLE, true);
+    }
+
     protected void createTable(String sql) throws JdbcException {
-        if (config.getParameter(ExtConfig.NEED_CREATE_DB_TABLE, true)) {
+        if (isNeedCreateTable()) {
             try {
                 getSqlTemplate().createTable(sql);
             } catch (Exception e) {
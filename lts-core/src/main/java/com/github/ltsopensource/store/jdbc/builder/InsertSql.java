@@ -9,6 +9,8 @@ import com.github.ltsopensource.store.jdbc.exception.JdbcException;
 import com.github.ltsopensource.store.jdbc.exception.TableNotExistException;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -23,6 +25,8 @@ public class InsertSql {
     private StringBuilder sql = new StringBuilder();
     private List<Object[]> params = new LinkedList<Object[]>();
     private int columnsSize = 0;
+    // VALUES 之后第一行占位符的位置, 多行插入时用
+    private int valuesIndex = 0;
 
     public InsertSql(SqlTemplate sqlTemplate) {
         this.sqlTemplate = sqlTemplate;
@@ -58,6 +62,7 @@ public class InsertSql {
             sql.append("`").append(column.trim()).append("`");
         }
         sql.append(") VALUES ");
+        valuesIndex = sql.length();
 
         sql.append("(");
         split = "";
@@ -87,13 +92,55 @@ public class InsertSql {
             throw new JdbcException("values.length gt 1, please use doBatchInsert");
         }
 
-        String execSql = sql.toString();
+        return doInsert(sql.toString(), params.get(0));
+    }
+
+    /**
+     * 多行插入 INSERT INTO xx (...) VALUES (...),(...), 每条SQL最多 maxRows 行
+     * 比 doBatchInsert 少很多次网络往返(MySQL驱动默认不重写batch)
+     */
+    public int doMultiRowInsert(int maxRows) {
+
+        if (params.size() == 0) {
+            throw new JdbcException("No values");
+        }
+        if (maxRows <= 0) {
+            throw new JdbcException("maxRows must gt 0");
+        }
+
+        String prefix = sql.substring(0, valuesIndex);
+        String row = sql.substring(valuesIndex);
+
+        int rows = 0;
+        List<Object> chunkParams = new ArrayList<Object>(Math.min(params.size(), maxRows) * columnsSize);
+        StringBuilder chunkSql = new StringBuilder(prefix);
+        int chunkRows = 0;
+        for (Object[] values : params) {
+            if (chunkRows > 0) {
+                chunkSql.append(",");
+            }
+            chunkSql.append(row);
+            Collections.addAll(chunkParams, values);
+            chunkRows++;
+            if (chunkRows >= maxRows) {
+                rows += doInsert(chunkSql.toString(), chunkParams.toArray());
+                chunkParams.clear();
+                chunkSql.setLength(prefix.length());
+                chunkRows = 0;
+            }
+        }
+        if (chunkRows > 0) {
+            rows += doInsert(chunkSql.toString(), chunkParams.toArray());
+        }
+        return rows;
+    }
 
+    private int doInsert(String execSql, Object[] values) {
         if (LOGGER.isDebugEnabled()) {
             LOGGER.debug(execSql);
         }
         try {
-            return sqlTemplate.insert(execSql, params.get(0));
+            return sqlTemplate.insert(execSql, values);
         } catch (SQLException e) {
             if (e.getMessage().contains("Duplicate entry")) {
                 throw new DupEntryException("Insert SQL Error:" + execSql, e);
@@ -183,6 +183,24 @@ public class UpdateSql {
         }
     }
 
+    /**
+     * 以当前构建的SQL为模板, batchParams中每一行参数执行一次, 在一个批次中提交
+     * 构建时传入的参数只用于占位, 不会被使用
+     */
+    public int[] doBatchUpdate(Object[][] batchParams) {
+        String finalSQL = getSQL();
+        try {
+
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug(SQLFormatter.format(finalSQL));
+            }
+
+            return sqlTemplate.batchUpdate(finalSQL, batchParams);
+        } catch (SQLException e) {
+            throw new JdbcException("Batch Update SQL Error:" + SQLFormatter.format(finalSQL), e);
+        }
+    }
+
     public String getSQL() {
         return sql.toString();
     }
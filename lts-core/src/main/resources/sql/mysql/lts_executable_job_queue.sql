@@ -23,6 +23,7 @@ CREATE TABLE IF NOT EXISTS `{tableName}` (
   `repeated_count` int(11) DEFAULT '0' COMMENT '已经重复的次数',
   `repeat_interval` bigint(20) DEFAULT '0' COMMENT '重复间隔',
   `last_generate_trigger_time` bigint(20) DEFAULT '0' COMMENT '最后生成的triggerTime时间',
+  `job_partition` smallint(6) DEFAULT NULL COMMENT '分区,CRC32(job_id)取模',
   PRIMARY KEY (`id`),
   UNIQUE KEY `idx_job_id` (`job_id`),
   UNIQUE KEY `idx_taskId_taskTrackerNodeGroup` (`task_id`, `task_tracker_node_group`),
@@ -30,5 +31,6 @@ CREATE TABLE IF NOT EXISTS `{tableName}` (
   KEY `idx_job_type` (`job_type`),
   KEY `idx_realTaskId_taskTrackerNodeGroup` (`real_task_id`, `task_tracker_node_group`),
   KEY `idx_priority_triggerTime_gmtCreated` (`priority`,`trigger_time`,`gmt_created`),
-  KEY `idx_isRunning` (`is_running`)
+  KEY `idx_isRunning_triggerTime` (`is_running`, `trigger_time`),
+  KEY `idx_isRunning_jobPartition_triggerTime` (`is_running`, `job_partition`, `trigger_time`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8 COMMENT='等待执行任务';
\ No newline at end of file
@@ -0,0 +1,233 @@
+package com.github.ltsopensource.biz.logger;
+
+import com.github.ltsopensource.admin.response.PaginationRsp;
+import com.github.ltsopensource.biz.logger.domain.JobLogPo;
+import com.github.ltsopensource.biz.logger.domain.JobLoggerRequest;
+import com.github.ltsopensource.core.AppContext;
+import com.github.ltsopensource.core.cluster.Config;
+import com.github.ltsopensource.core.commons.file.FileUtils;
+import com.github.ltsopensource.core.constant.ExtConfig;
+import com.github.ltsopensource.ec.injvm.InjvmEventCenter;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class LazyJobLoggerTest {
+
+    private static class CollectJobLogger implements JobLogger {
+
+        final Set<String> msgs = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        final AtomicInteger logNum = new AtomicInteger(0);
+        final AtomicInteger callNum = new AtomicInteger(0);
+        volatile boolean available = true;
+        volatile long sleepMillis = 0;
+        // 不为null时刷盘线程阻塞在这里, 直到countDown
+        volatile CountDownLatch blockLatch;
+        final AtomicInteger blockedNum = new AtomicInteger(0);
+
+        @Override
+        public void log(JobLogPo jobLogPo) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void log(List<JobLogPo> jobLogPos) {
+            callNum.incrementAndGet();
+            if (!available) {
+                throw new JobLogException("not available");
+            }
+            CountDownLatch latch = blockLatch;
+            if (latch != null) {
+                blockedNum.incrementAndGet();
+                try {
+                    latch.await();
+                } catch (InterruptedException ignored) {
+                }
+            }
+            if (sleepMillis > 0) {
+                try {
+                    Thread.sleep(sleepMillis);
+                } catch (InterruptedException ignored) {
+                }
+            }
+            for (JobLogPo jobLogPo : jobLogPos) {
+                msgs.add(jobLogPo.getMsg());
+            }
+            logNum.addAndGet(jobLogPos.size());
+        }
+
+        @Override
+        public PaginationRsp<JobLogPo> search(JobLoggerRequest request) {
+            return null;
+        }
+    }
+
+    private AppContext createAppContext(JobLogOverflowPolicy policy, int overflowSize, File dataPath) {
+        Config config = new Config();
+        config.setIdentity("lazy_job_logger_test_" + System.nanoTime());
+        config.setNodeGroup("test");
+        if (dataPath != null) {
+            config.setDataPath(dataPath.getAbsolutePath());
+        }
+        config.setParameter(ExtConfig.LAZY_JOB_LOGGER_OVERFLOW_POLICY, policy.name());
+        config.setParameter(ExtConfig.LAZY_JOB_LOGGER_OVERFLOW_SIZE, String.valueOf(overflowSize));
+        config.setParameter(ExtConfig.LAZY_JOB_LOGGER_CHECK_PERIOD, "1");
+        config.setParameter(ExtConfig.LAZY_JOB_LOGGER_FLUSHER_THREADS, "4");
+        AppContext appContext = new AppContext() {
+        };
+        appContext.setConfig(config);
+        appContext.setEventCenter(new InjvmEventCenter());
+        return appContext;
+    }
+
+    private JobLogPo newJobLogPo(int i) {
+        JobLogPo jobLogPo = new JobLogPo();
+        jobLogPo.setJobId("job_" + i);
+        jobLogPo.setMsg("msg_" + i);
+        return jobLogPo;
+    }
+
+    @Test
+    public void testBlock() throws Exception {
+        CollectJobLogger delegate = new CollectJobLogger();
+        LazyJobLogger jobLogger = new LazyJobLogger(createAppContext(JobLogOverflowPolicy.BLOCK, 1024, null), delegate);
+        int num = 100000;
+        long cost = log(jobLogger, 8, num);
+        jobLogger.stop();
+
+        Assert.assertEquals(num, delegate.logNum.get());
+        Assert.assertEquals(num, delegate.msgs.size());
+        Assert.assertEquals(0, jobLogger.getDroppedNum());
+        System.out.println("policy:BLOCK, logs:" + num + ", cost(ms):" + cost / 1000000
+                + ", logs/s:" + (num * 1000000000L / cost) + ", flushNum:" + jobLogger.getFlushNum()
+                + ", avgFlushCost(ms):" + jobLogger.getAvgFlushCostMillis()
+                + ", maxFlushCost(ms):" + jobLogger.getMaxFlushCostMillis());
+    }
+
+    @Test
+    public void testDropOldest() throws Exception {
+        CollectJobLogger delegate = new CollectJobLogger();
+        delegate.blockLatch = new CountDownLatch(1);
+        AppContext appContext = createAppContext(JobLogOverflowPolicy.DROP_OLDEST, 128, null);
+        // 每条日志都唤醒刷盘线程
+        appContext.getConfig().setParameter(ExtConfig.LAZY_JOB_LOGGER_MEM_SIZE, "1");
+        LazyJobLogger jobLogger = new LazyJobLogger(appContext, delegate);
+        try {
+            // 先让4个刷盘线程都阻塞在刷盘中, 之后的日志只在内存队列中, 丢弃的个数是确定的
+            for (int i = 0; i < 4; i++) {
+                JobLogPo jobLogPo = newJobLogPo(i);
+                jobLogPo.setMsg("block_" + i);
+                jobLogger.log(jobLogPo);
+                long deadline = System.currentTimeMillis() + 5000;
+                while (delegate.blockedNum.get() < i + 1 && System.currentTimeMillis() < deadline) {
+                    Thread.sleep(1);
+                }
+                Assert.assertEquals(i + 1, delegate.blockedNum.get());
+            }
+            for (int i = 0; i < 1000; i++) {
+                jobLogger.log(newJobLogPo(i));
+            }
+            Assert.assertEquals(128, jobLogger.getQueueSize());
+            Assert.assertEquals(1000 - 128, jobLogger.getDroppedNum());
+        } finally {
+            delegate.blockLatch.countDown();
+            jobLogger.stop();
+        }
+        // 保留的是最新的
+        Assert.assertEquals(4 + 128, delegate.msgs.size());
+        Assert.assertTrue(delegate.msgs.contains("msg_999"));
+        Assert.assertTrue(delegate.msgs.contains("msg_872"));
+        Assert.assertFalse(delegate.msgs.contains("msg_871"));
+    }
+
+    @Test
+    public void testFlushFailBackoff() throws Exception {
+        CollectJobLogger delegate = new CollectJobLogger();
+        delegate.available = false;
+        LazyJobLogger jobLogger = new LazyJobLogger(createAppContext(JobLogOverflowPolicy.BLOCK, 2048, null), delegate);
+        try {
+            // 超过阀值, 失败放回去之后队列还是超过阀值
+            for (int i = 0; i < 1500; i++) {
+                jobLogger.log(newJobLogPo(i));
+            }
+            Thread.sleep(1000);
+            // 4个刷盘线程 100ms, 200ms, 400ms ... 退避, 不会一直重试
+            int callNum = delegate.callNum.get();
+            Assert.assertTrue("callNum:" + callNum, callNum < 50);
+        } finally {
+            delegate.available = true;
+            jobLogger.stop();
+        }
+        Assert.assertEquals(1500, delegate.msgs.size());
+    }
+
+    private int ltsdbThreadNum() {
+        int num = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.isAlive() && thread.getName().startsWith("ltsdb-")) {
+                num++;
+            }
+        }
+        return num;
+    }
+
+    @Test
+    public void testSpill() throws Exception {
+        File dataPath = new File(System.getProperty("java.io.tmpdir"), "lazy_job_logger_" + System.nanoTime());
+        int threadNum = ltsdbThreadNum();
+        try {
+            CollectJobLogger delegate = new CollectJobLogger();
+            delegate.available = false;
+            LazyJobLogger jobLogger = new LazyJobLogger(createAppContext(JobLogOverflowPolicy.SPILL, 128, dataPath), delegate);
+            for (int i = 0; i < 1000; i++) {
+                jobLogger.log(newJobLogPo(i));
+            }
+            Assert.assertTrue(jobLogger.getSpilledNum() > 0);
+            Assert.assertEquals(0, jobLogger.getDroppedNum());
+
+            // 恢复之后溢出到本地的也会刷掉
+            delegate.available = true;
+            long deadline = System.currentTimeMillis() + 10000;
+            while (delegate.msgs.size() < 1000 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(100);
+            }
+            jobLogger.stop();
+            Assert.assertEquals(1000, delegate.msgs.size());
+            // 本地存储的后台线程(快照, 合并等)都停了
+            long stopDeadline = System.currentTimeMillis() + 5000;
+            while (ltsdbThreadNum() > threadNum && System.currentTimeMillis() < stopDeadline) {
+                Thread.sleep(10);
+            }
+            Assert.assertEquals(threadNum, ltsdbThreadNum());
+        } finally {
+            FileUtils.delete(dataPath);
+        }
+    }
+
+    private long log(final LazyJobLogger jobLogger, int threadNum, final int num) throws InterruptedException {
+        final AtomicInteger counter = new AtomicInteger(0);
+        final CountDownLatch latch = new CountDownLatch(threadNum);
+        long start = System.nanoTime();
+        for (int t = 0; t < threadNum; t++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    int i;
+                    while ((i = counter.getAndIncrement()) < num) {
+                        jobLogger.log(newJobLogPo(i));
+                    }
+                    latch.countDown();
+                }
+            }).start();
+        }
+        latch.await();
+        return System.nanoTime() - start;
+    }
+}
@@ -0,0 +1,88 @@
+package com.github.ltsopensource.core.commons.concurrent;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+public class RingBufferTest {
+
+    @Test
+    public void testOfferPoll() {
+        RingBuffer<Integer> ringBuffer = new RingBuffer<Integer>(5);
+        Assert.assertEquals(8, ringBuffer.capacity());
+        for (int i = 0; i < 8; i++) {
+            Assert.assertTrue(ringBuffer.offer(i));
+        }
+        Assert.assertFalse(ringBuffer.offer(8));
+        Assert.assertEquals(8, ringBuffer.size());
+
+        Assert.assertEquals(Integer.valueOf(0), ringBuffer.poll());
+        Assert.assertTrue(ringBuffer.offer(8));
+
+        List<Integer> list = new ArrayList<Integer>();
+        Assert.assertEquals(3, ringBuffer.drainTo(list, 3));
+        Assert.assertEquals(Integer.valueOf(1), list.get(0));
+        Assert.assertEquals(5, ringBuffer.drainTo(list, 100));
+        Assert.assertEquals(Integer.valueOf(8), list.get(7));
+        Assert.assertNull(ringBuffer.poll());
+        Assert.assertTrue(ringBuffer.isEmpty());
+    }
+
+    @Test
+    public void testConcurrent() throws Exception {
+        final int num = 400000;
+        final int producerNum = 4;
+        final int consumerNum = 4;
+        final RingBuffer<Integer> ringBuffer = new RingBuffer<Integer>(1024);
+        final AtomicIntegerArray seen = new AtomicIntegerArray(num);
+        final AtomicInteger counter = new AtomicInteger(0);
+        final AtomicInteger consumed = new AtomicInteger(0);
+        final CountDownLatch latch = new CountDownLatch(producerNum + consumerNum);
+
+        long start = System.nanoTime();
+        for (int p = 0; p < producerNum; p++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    int i;
+                    while ((i = counter.getAndIncrement()) < num) {
+                        while (!ringBuffer.offer(i)) {
+                            Thread.yield();
+                        }
+                    }
+                    latch.countDown();
+                }
+            }).start();
+        }
+        for (int c = 0; c < consumerNum; c++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    while (consumed.get() < num) {
+                        Integer i = ringBuffer.poll();
+                        if (i == null) {
+                            Thread.yield();
+                            continue;
+                        }
+                        seen.incrementAndGet(i);
+                        consumed.incrementAndGet();
+                    }
+                    latch.countDown();
+                }
+            }).start();
+        }
+        latch.await();
+        long cost = System.nanoTime() - start;
+
+        for (int i = 0; i < num; i++) {
+            Assert.assertEquals(1, seen.get(i));
+        }
+        System.out.println("producers:" + producerNum + ", consumers:" + consumerNum + ", num:" + num
+                + ", ops/s:" + (num * 1000000000L / cost));
+    }
+}
@@ -0,0 +1,85 @@
+package com.github.ltsopensource.core.commons.concurrent;
+
+import com.github.ltsopensource.core.support.SystemClock;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class TimingWheelTest {
+
+    private Thread startDriver(final TimingWheel<?> timingWheel) {
+        Thread driver = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (!Thread.currentThread().isInterrupted()) {
+                    try {
+                        timingWheel.advance(100);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+        });
+        driver.setDaemon(true);
+        driver.start();
+        return driver;
+    }
+
+    @Test
+    public void testExpired() {
+        TimingWheel<String> timingWheel = new TimingWheel<String>(1, 16, new TimingWheel.ExpireHandler<String>() {
+            @Override
+            public void onExpire(String s) {
+            }
+        });
+        Assert.assertFalse(timingWheel.add("expired", SystemClock.now() - 10));
+        Assert.assertTrue(timingWheel.add("future", SystemClock.now() + 1000));
+        Assert.assertEquals(1, timingWheel.size());
+    }
+
+    /**
+     * 跨越多层的元素都要在到期之后很快被取出, 并且不会提前
+     */
+    @Test
+    public void testPrecision() throws Exception {
+        final int num = 2000;
+        final CountDownLatch latch = new CountDownLatch(num);
+        final ConcurrentHashMap<Integer, Long> expireTimes = new ConcurrentHashMap<Integer, Long>();
+        final AtomicLong early = new AtomicLong(0);
+        final AtomicLong maxDelay = new AtomicLong(0);
+        TimingWheel<Integer> timingWheel = new TimingWheel<Integer>(1, 32, new TimingWheel.ExpireHandler<Integer>() {
+            @Override
+            public void onExpire(Integer i) {
+                long delay = System.currentTimeMillis() - expireTimes.get(i);
+                if (delay < -1) {
+                    early.incrementAndGet();
+                }
+                if (delay > maxDelay.get()) {
+                    maxDelay.set(delay);
+                }
+                latch.countDown();
+            }
+        });
+        Thread driver = startDriver(timingWheel);
+
+        Random random = new Random(10);
+        long now = SystemClock.now();
+        for (int i = 0; i < num; i++) {
+            // 32ms 一圈, 3秒内的会用到3层
+            long expireTime = now + 200 + random.nextInt(3000);
+            expireTimes.put(i, expireTime);
+            Assert.assertTrue(timingWheel.add(i, expireTime));
+        }
+        Assert.assertTrue(latch.await(10, java.util.concurrent.TimeUnit.SECONDS));
+        driver.interrupt();
+
+        System.out.println("TimingWheel max delay(ms):" + maxDelay.get());
+        Assert.assertEquals(0, early.get());
+        Assert.assertEquals(0, timingWheel.size());
+        Assert.assertTrue(maxDelay.get() < 200);
+    }
+}
@@ -0,0 +1,190 @@
+package com.github.ltsopensource.core.support;
+
+import com.github.ltsopensource.core.cluster.Node;
+import com.github.ltsopensource.core.loadbalance.ConsistentHashLoadBalance;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class ConsistentHashSelectorTest {
+
+    private static final int SELECT_TIMES = 100000;
+
+    @Test
+    public void testHash() {
+        // 和原来基于 ByteBuffer 的实现结果一致
+        String key = "";
+        for (int i = 0; i < 40; i++) {
+            Assert.assertEquals(byteBufferHash(key), ConsistentHashSelector.hash(key));
+            key = key + (char) ('a' + i % 26);
+        }
+        Assert.assertEquals(byteBufferHash("SHARD-job_tracker_1-NODE-99"), ConsistentHashSelector.hash("SHARD-job_tracker_1-NODE-99"));
+    }
+
+    @Test
+    public void testSelect() {
+        List<String> shards = new ArrayList<String>();
+        for (int i = 0; i < 5; i++) {
+            shards.add("shard_" + i);
+        }
+        ConsistentHashSelector<String> selector = new ConsistentHashSelector<String>(shards);
+        // 和 TreeMap 的实现选出来的一样
+        TreeMap<Long, String> nodes = new TreeMap<Long, String>();
+        for (String shard : shards) {
+            for (int n = 0; n < 100; n++) {
+                nodes.put(ConsistentHashSelector.hash("SHARD-" + shard + "-NODE-" + n), shard);
+            }
+        }
+        for (int i = 0; i < 10000; i++) {
+            String key = "key_" + i;
+            SortedMap<Long, String> tail = nodes.tailMap(ConsistentHashSelector.hash(key));
+            String expect = tail.size() == 0 ? nodes.get(nodes.firstKey()) : tail.get(tail.firstKey());
+            Assert.assertEquals(expect, selector.selectForKey(key));
+        }
+    }
+
+    @Test
+    public void testUpdate() {
+        List<String> shards = new ArrayList<String>();
+        for (int i = 0; i < 5; i++) {
+            shards.add("shard_" + i);
+        }
+        ConsistentHashSelector<String> selector = new ConsistentHashSelector<String>(shards);
+        Assert.assertSame(selector, selector.update(new ArrayList<String>(shards)));
+
+        // 去掉一个节点, 只有原来在这个节点上的key会变
+        List<String> removed = new ArrayList<String>(shards);
+        removed.remove("shard_2");
+        ConsistentHashSelector<String> updated = selector.update(removed);
+        Assert.assertEquals(4, updated.size());
+        for (int i = 0; i < 10000; i++) {
+            String key = "key_" + i;
+            String before = selector.selectForKey(key);
+            String after = updated.selectForKey(key);
+            if (!"shard_2".equals(before)) {
+                Assert.assertEquals(before, after);
+            }
+            Assert.assertNotEquals("shard_2", after);
+        }
+        // 增量更新的和重新建的一样
+        List<String> added = new ArrayList<String>(removed);
+        added.add("shard_5");
+        ConsistentHashSelector<String> rebuild = new ConsistentHashSelector<String>(added);
+        ConsistentHashSelector<String> incremental = updated.update(added);
+        for (int i = 0; i < 10000; i++) {
+            Assert.assertEquals(rebuild.selectForKey("key_" + i), incremental.selectForKey("key_" + i));
+        }
+    }
+
+    /**
+     * 对比每次选择都重新建环和缓存环的耗时
+     */
+    @Test
+    public void testLoadBalance() {
+        List<Node> jobTrackers = new CopyOnWriteArrayList<Node>();
+        for (int i = 0; i < 5; i++) {
+            Node node = new Node();
+            node.setIdentity("job_tracker_" + i);
+            jobTrackers.add(node);
+        }
+        String seed = "task_tracker_identity";
+        ConsistentHashLoadBalance loadBalance = new ConsistentHashLoadBalance();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < SELECT_TIMES / 100; i++) {
+            new ConsistentHashSelector<Node>(jobTrackers).selectForKey(seed);
+        }
+        long rebuildCost = (System.nanoTime() - start) / (SELECT_TIMES / 100);
+
+        Node selected = loadBalance.select(jobTrackers, seed);
+        start = System.nanoTime();
+        for (int i = 0; i < SELECT_TIMES; i++) {
+            Assert.assertSame(selected, loadBalance.select(jobTrackers, seed));
+        }
+        long cachedCost = (System.nanoTime() - start) / SELECT_TIMES;
+        System.out.println("consistent hash select, rebuild(ns):" + rebuildCost + ", cached(ns):" + cachedCost);
+        Assert.assertTrue(cachedCost < rebuildCost);
+
+        // 节点变化之后选择结果跟着变
+        jobTrackers.remove(selected);
+        Node reselected = loadBalance.select(jobTrackers, seed);
+        Assert.assertNotSame(selected, reselected);
+        Assert.assertSame(new ConsistentHashSelector<Node>(jobTrackers).selectForKey(seed), reselected);
+
+        // 另外一组节点不影响
+        List<Node> monitors = new ArrayList<Node>();
+        for (int i = 0; i < 3; i++) {
+            Node node = new Node();
+            node.setIdentity("monitor_" + i);
+            monitors.add(node);
+        }
+        Assert.assertTrue(monitors.contains(loadBalance.select(monitors, seed)));
+        Assert.assertSame(reselected, loadBalance.select(jobTrackers, seed));
+    }
+
+    /**
+     * 节点重新注册之后identity不变, 地址变了, 缓存的环上还是原来的实例, 要返回新列表中的实例
+     */
+    @Test
+    public void testLoadBalanceReRegistered() {
+        List<Node> jobTrackers = new ArrayList<Node>();
+        for (int i = 0; i < 3; i++) {
+            Node node = new Node();
+            node.setIdentity("job_tracker_" + i);
+            node.setIp("127.0.0.1");
+            node.setPort(35000 + i);
+            jobTrackers.add(node);
+        }
+        String seed = "task_tracker_identity";
+        ConsistentHashLoadBalance loadBalance = new ConsistentHashLoadBalance();
+        Node selected = loadBalance.select(jobTrackers, seed);
+
+        List<Node> reRegistered = new ArrayList<Node>();
+        for (Node node : jobTrackers) {
+            Node newNode = new Node();
+            newNode.setIdentity(node.getIdentity());
+            newNode.setIp("127.0.0.2");
+            newNode.setPort(node.getPort());
+            reRegistered.add(newNode);
+        }
+        Node reselected = loadBalance.select(reRegistered, seed);
+        Assert.assertEquals(selected, reselected);
+        Assert.assertSame(reRegistered.get(reRegistered.indexOf(reselected)), reselected);
+        Assert.assertEquals("127.0.0.2", reselected.getIp());
+    }
+
+    private static long byteBufferHash(String key) {
+        ByteBuffer buf = ByteBuffer.wrap(key.getBytes());
+        int seed = 0x1234ABCD;
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+        long m = 0xc6a4a7935bd1e995L;
+        int r = 47;
+        long h = seed ^ (buf.remaining() * m);
+        long k;
+        while (buf.remaining() >= 8) {
+            k = buf.getLong();
+            k *= m;
+            k ^= k >>> r;
+            k *= m;
+            h ^= k;
+            h *= m;
+        }
+        if (buf.remaining() > 0) {
+            ByteBuffer finish = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+            finish.put(buf).rewind();
+            h ^= finish.getLong();
+            h *= m;
+        }
+        h ^= h >>> r;
+        h *= m;
+        h ^= h >>> r;
+        return h;
+    }
+}
@@ -0,0 +1,91 @@
+package com.github.ltsopensource.core.support;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Date;
+import java.util.Random;
+import java.util.TimeZone;
+
+/**
+ * 位图计算下次触发时间 和 Calendar 计算结果的对比
+ */
+public class CronExpressionFastTest {
+
+    private static final String[] EXPRESSIONS = new String[]{
+            "0 0/5 * * * ?",
+            "0 0 2 L * ?",
+            "0 0 2 L-3 * ?",
+            "*/10 * * * * ?",
+            "0 15 10 ? * MON-FRI",
+            "0 0 12 1/5 * ?",
+            "0 11 11 11 11 ?",
+            "0 0 0 29 2 ?",
+            "0 0 0 31 * ?",
+            "15,45 10-20/3 22-2 ? 2,5,11 SUN,SAT",
+            "0 0 12 ? * WED 2020-2040",
+            "59 59 23 31 12 ? *",
+    };
+
+    @Test
+    public void testSameAsCalendar() throws Exception {
+        Random random = new Random(10171016);
+        String[] timeZones = new String[]{"Asia/Shanghai", "UTC", "GMT+05:30"};
+        long base = 1476633600000L; // 2016-10-17 00:00:00 +08:00
+        for (String timeZone : timeZones) {
+            TimeZone tz = TimeZone.getTimeZone(timeZone);
+            for (String expression : EXPRESSIONS) {
+                CronExpression cron = new CronExpression(expression);
+                cron.setTimeZone(tz);
+                Date time = new Date(base + (long) (random.nextDouble() * 365L * 24 * 3600 * 1000));
+                for (int i = 0; i < 2000; i++) {
+                    Date expect = cron.getTimeAfterByCalendar(time);
+                    Date actual = cron.getTimeAfter(time);
+                    Assert.assertEquals(expression + " " + timeZone + " after " + time.getTime(), expect, actual);
+                    if (expect == null) {
+                        break;
+                    }
+                    // 下一个触发时间, 或者随机往后跳
+                    time = random.nextBoolean() ? expect
+                            : new Date(time.getTime() + (long) (random.nextDouble() * 40L * 24 * 3600 * 1000));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testDaylightSavingFallback() throws Exception {
+        CronExpression cron = new CronExpression("0 30 2 * * ?");
+        cron.setTimeZone(TimeZone.getTimeZone("America/New_York"));
+        // 2016-03-13 02:30 不存在
+        Date time = new Date(1457848800000L);
+        Assert.assertEquals(cron.getTimeAfterByCalendar(time), cron.getTimeAfter(time));
+    }
+
+    /**
+     * 每次 new CronExpression + Calendar 计算 和 缓存 + 位图计算 的耗时对比
+     */
+    @Test
+    public void testBenchmark() throws Exception {
+        int num = 100000;
+        for (String expression : new String[]{"0 0/5 * * * ?", "0 0 2 L * ?", "0 15 10 ? * MON-FRI"}) {
+            for (int round = 0; round < 3; round++) {
+                Date time = new Date();
+                long start = System.nanoTime();
+                for (int i = 0; i < num; i++) {
+                    new CronExpression(expression).getTimeAfterByCalendar(time);
+                }
+                long oldCost = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                for (int i = 0; i < num; i++) {
+                    CronExpressionUtils.getNextTriggerTime(expression, time);
+                }
+                long newCost = System.nanoTime() - start;
+
+                System.out.println("expression:[" + expression + "] round " + round
+                        + ", parse+Calendar ns/op:" + oldCost / num + ", cached+bitset ns/op:" + newCost / num);
+            }
+        }
+    }
+}
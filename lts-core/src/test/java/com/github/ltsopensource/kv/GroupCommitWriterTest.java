@@ -0,0 +1,197 @@
+package com.github.ltsopensource.kv;
+
+import com.github.ltsopensource.core.commons.concurrent.ConcurrentHashSet;
+import com.github.ltsopensource.core.commons.file.FileUtils;
+import com.github.ltsopensource.kv.cache.LRUDataCache;
+import com.github.ltsopensource.kv.data.DataBlockEngine;
+import com.github.ltsopensource.kv.index.IndexItem;
+import com.github.ltsopensource.kv.index.MemIndex;
+import com.github.ltsopensource.kv.serializer.JsonStoreSerializer;
+import com.github.ltsopensource.kv.txlog.StoreTxLogCursorEntry;
+import com.github.ltsopensource.kv.txlog.StoreTxLogEngine;
+import com.github.ltsopensource.kv.txlog.StoreTxLogPosition;
+import com.github.ltsopensource.kv.txlog.TxLogFlushMode;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class GroupCommitWriterTest {
+
+    private static final int WRITE_NUM = 4000;
+
+    private File newPath() {
+        return new File(System.getProperty("java.io.tmpdir"), "ltsdb_group_commit_" + System.nanoTime());
+    }
+
+    private DB<String, String> createDB(File path, TxLogFlushMode flushMode) {
+        DB<String, String> db = new DBBuilder<String, String>()
+                .setPath(path)
+                .setDataBlockFileSize(256 * 1024)
+                .setTxLogFlushMode(flushMode)
+                .create();
+        db.init();
+        return db;
+    }
+
+    @Test
+    public void testConcurrentWrite() throws Exception {
+        File path = newPath();
+        try {
+            DB<String, String> db = createDB(path, TxLogFlushMode.GROUP);
+            write(db, 8, WRITE_NUM);
+            for (int i = 0; i < WRITE_NUM; i++) {
+                if (i % 3 == 0) {
+                    db.remove("key_" + i);
+                }
+            }
+            Assert.assertEquals(WRITE_NUM - (WRITE_NUM + 2) / 3, db.size());
+            for (int i = 0; i < WRITE_NUM; i++) {
+                if (i % 3 == 0) {
+                    Assert.assertNull(db.get("key_" + i));
+                } else {
+                    Assert.assertEquals("value_" + i, db.get("key_" + i));
+                }
+            }
+            db.close();
+        } finally {
+            FileUtils.delete(path);
+        }
+    }
+
+    /**
+     * 不同刷盘策略下 1, 8, 32 个写线程的吞吐
+     */
+    @Test
+    public void testThroughput() throws Exception {
+        for (TxLogFlushMode flushMode : TxLogFlushMode.values()) {
+            for (int threadNum : new int[]{1, 8, 32}) {
+                File path = newPath();
+                try {
+                    DB<String, String> db = createDB(path, flushMode);
+                    long start = System.nanoTime();
+                    write(db, threadNum, WRITE_NUM);
+                    long cost = System.nanoTime() - start;
+                    Assert.assertEquals(WRITE_NUM, db.size());
+                    db.close();
+
+                    System.out.println("flushMode:" + flushMode + ", threads:" + threadNum + ", writes:" + WRITE_NUM
+                            + ", cost(ms):" + cost / 1000000 + ", ops/s:" + (WRITE_NUM * 1000000000L / cost));
+                } finally {
+                    FileUtils.delete(path);
+                }
+            }
+        }
+    }
+
+    /**
+     * 一批中有失败时, 已经生效的确认成功, 其余的返回失败并且从事务日志中回滚, 重启重放时不会生效
+     */
+    @Test
+    public void testPartialFailure() throws Exception {
+        File path = newPath();
+        try {
+            StoreConfig storeConfig = new StoreConfig();
+            storeConfig.setDbPath(path);
+            storeConfig.setDataPath(new File(path, "data"));
+            storeConfig.setLogPath(new File(path, "logs"));
+            storeConfig.setIndexPath(new File(path, "index"));
+            // 文件小一些, 回滚时会跨文件
+            storeConfig.setTxLogFileSize(16 * 1024);
+            JsonStoreSerializer serializer = new JsonStoreSerializer();
+            StoreTxLogEngine<String, String> storeTxLogEngine = new StoreTxLogEngine<String, String>(serializer, storeConfig);
+            storeTxLogEngine.init();
+            DataBlockEngine<String, String> dataBlockEngine = new DataBlockEngine<String, String>(serializer, storeConfig);
+            dataBlockEngine.init();
+            LRUDataCache<String, String> dataCache = new LRUDataCache<String, String>(100);
+            MemIndex<String, String> index = new MemIndex<String, String>(storeConfig, dataBlockEngine, dataCache) {
+                @Override
+                public IndexItem<String> putIndexItem(StoreTxLogPosition txLogResult, String key, IndexItem<String> indexItem) {
+                    if (key.startsWith("bad_")) {
+                        throw new DBException("bad key:" + key);
+                    }
+                    return super.putIndexItem(txLogResult, key, indexItem);
+                }
+            };
+            final GroupCommitWriter<String, String> writer = new GroupCommitWriter<String, String>(
+                    storeConfig, storeTxLogEngine, dataBlockEngine, index, dataCache);
+            writer.start();
+
+            final Set<String> succeeded = new ConcurrentHashSet<String>();
+            final Set<String> failed = new ConcurrentHashSet<String>();
+            final AtomicInteger counter = new AtomicInteger(0);
+            int threadNum = 8;
+            final CountDownLatch latch = new CountDownLatch(threadNum);
+            for (int t = 0; t < threadNum; t++) {
+                new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        int i;
+                        while ((i = counter.getAndIncrement()) < WRITE_NUM) {
+                            String key = (i % 50 == 0 ? "bad_" : "key_") + i;
+                            try {
+                                writer.write(Operation.PUT, key, "value_" + i);
+                                succeeded.add(key);
+                            } catch (DBException e) {
+                                failed.add(key);
+                            }
+                        }
+                        latch.countDown();
+                    }
+                }).start();
+            }
+            latch.await();
+            writer.shutdown();
+
+            Assert.assertEquals(WRITE_NUM, succeeded.size() + failed.size());
+            for (String key : succeeded) {
+                Assert.assertFalse(key.startsWith("bad_"));
+                Assert.assertNotNull(index.getIndexItem(key));
+            }
+            for (String key : failed) {
+                Assert.assertNull(index.getIndexItem(key));
+            }
+            Assert.assertEquals(succeeded.size(), index.size());
+
+            // 事务日志中只有确认成功的
+            Set<String> logged = new HashSet<String>();
+            Cursor<StoreTxLogCursorEntry<String, String>> cursor = storeTxLogEngine.cursor(new StoreTxLogPosition(0));
+            while (cursor.hasNext()) {
+                Assert.assertTrue(logged.add(cursor.next().getStoreTxLogEntry().getKey()));
+            }
+            Assert.assertEquals(succeeded, logged);
+        } finally {
+            FileUtils.delete(path);
+        }
+    }
+
+    private void write(final DB<String, String> db, int threadNum, final int writeNum) throws InterruptedException {
+        final AtomicInteger counter = new AtomicInteger(0);
+        final AtomicInteger errorNum = new AtomicInteger(0);
+        final CountDownLatch latch = new CountDownLatch(threadNum);
+        for (int t = 0; t < threadNum; t++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        int i;
+                        while ((i = counter.getAndIncrement()) < writeNum) {
+                            db.put("key_" + i, "value_" + i);
+                        }
+                    } catch (Throwable t) {
+                        t.printStackTrace();
+                        errorNum.incrementAndGet();
+                    } finally {
+                        latch.countDown();
+                    }
+                }
+            }).start();
+        }
+        latch.await();
+        Assert.assertEquals(0, errorNum.get());
+    }
+}
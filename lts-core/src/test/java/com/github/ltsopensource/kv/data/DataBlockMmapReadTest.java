@@ -0,0 +1,138 @@
+package com.github.ltsopensource.kv.data;
+
+import com.github.ltsopensource.core.commons.file.FileUtils;
+import com.github.ltsopensource.kv.DB;
+import com.github.ltsopensource.kv.DBBuilder;
+import com.github.ltsopensource.kv.Entry;
+import com.github.ltsopensource.kv.StoreConfig;
+import com.github.ltsopensource.kv.iterator.DBIterator;
+import com.github.ltsopensource.kv.txlog.StoreTxLogPosition;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 全量遍历时 FileChannel 读 和 内存映射读 的对比
+ */
+public class DataBlockMmapReadTest {
+
+    private static final int KEY_NUM = 50000;
+
+    private DB<String, String> createDB(File path, boolean enableMmapRead) {
+        DB<String, String> db = new DBBuilder<String, String>()
+                .setPath(path)
+                .setDataBlockFileSize(512 * 1024)
+                .setEnableMmapRead(enableMmapRead)
+                .create();
+        db.init();
+        return db;
+    }
+
+    private String value(int i) {
+        return "value_" + i + "_0123456789012345678901234567890123456789";
+    }
+
+    @Test
+    public void testScan() throws Exception {
+        File channelPath = new File(System.getProperty("java.io.tmpdir"), "ltsdb_channel_read_" + System.nanoTime());
+        File mmapPath = new File(System.getProperty("java.io.tmpdir"), "ltsdb_mmap_read_" + System.nanoTime());
+        try {
+            DB<String, String> channelDB = createDB(channelPath, false);
+            DB<String, String> mmapDB = createDB(mmapPath, true);
+            for (int i = 0; i < KEY_NUM; i++) {
+                channelDB.put("key_" + i, value(i));
+                mmapDB.put("key_" + i, value(i));
+            }
+
+            for (int round = 0; round < 3; round++) {
+                long start = System.nanoTime();
+                Assert.assertEquals(KEY_NUM, scan(channelDB));
+                long channelCost = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                Assert.assertEquals(KEY_NUM, scan(mmapDB));
+                long mmapCost = System.nanoTime() - start;
+
+                System.out.println("round " + round + ", keys:" + KEY_NUM + ", FileChannel scan(ms):" + channelCost / 1000000
+                        + ", mmap scan(ms):" + mmapCost / 1000000);
+            }
+
+            channelDB.close();
+            mmapDB.close();
+        } finally {
+            FileUtils.delete(channelPath);
+            FileUtils.delete(mmapPath);
+        }
+    }
+
+    /**
+     * 解除映射要等正在读映射内存的读完, 之后的读走 FileChannel
+     */
+    @Test
+    public void testUnmapWaitForReaders() throws Exception {
+        File path = new File(System.getProperty("java.io.tmpdir"), "ltsdb_unmap_" + System.nanoTime());
+        try {
+            FileUtils.createDirIfNotExist(path);
+            StoreConfig storeConfig = new StoreConfig();
+            storeConfig.setDataPath(path);
+            final DataBlock dataBlock = new DataBlock(System.currentTimeMillis(), storeConfig);
+            final byte[] data = value(1).getBytes("UTF-8");
+            final DataAppendResult result = dataBlock.append(new StoreTxLogPosition(1), data);
+            dataBlock.mmap();
+
+            final CountDownLatch reading = new CountDownLatch(1);
+            final AtomicReference<byte[]> read = new AtomicReference<byte[]>();
+            Thread reader = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        read.set(dataBlock.readData(result.getFromIndex(), result.getLength(), new DataBlock.DataReader<byte[]>() {
+                            @Override
+                            public byte[] read(ByteBuffer buffer) throws IOException {
+                                reading.countDown();
+                                try {
+                                    Thread.sleep(500);
+                                } catch (InterruptedException ignored) {
+                                }
+                                byte[] bytes = new byte[buffer.remaining()];
+                                buffer.get(bytes);
+                                return bytes;
+                            }
+                        }));
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                }
+            });
+            reader.start();
+            reading.await();
+
+            long start = System.currentTimeMillis();
+            dataBlock.unmap();
+            Assert.assertTrue(System.currentTimeMillis() - start >= 300);
+            reader.join();
+            Assert.assertArrayEquals(data, read.get());
+
+            Assert.assertArrayEquals(data, dataBlock.readData(result.getFromIndex(), result.getLength()));
+            dataBlock.delete();
+        } finally {
+            FileUtils.delete(path);
+        }
+    }
+
+    private int scan(DB<String, String> db) {
+        int num = 0;
+        DBIterator<Entry<String, String>> iterator = db.iterator();
+        while (iterator.hasNext()) {
+            Entry<String, String> entry = iterator.next();
+            Assert.assertEquals(value(Integer.parseInt(entry.getKey().substring(4))), entry.getValue());
+            num++;
+        }
+        return num;
+    }
+}
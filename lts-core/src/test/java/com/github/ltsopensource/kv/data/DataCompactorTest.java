@@ -0,0 +1,145 @@
+package com.github.ltsopensource.kv.data;
+
+import com.github.ltsopensource.core.commons.file.FileUtils;
+import com.github.ltsopensource.kv.DB;
+import com.github.ltsopensource.kv.DBBuilder;
+import com.github.ltsopensource.kv.DBImpl;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+
+public class DataCompactorTest {
+
+    private static final int KEY_NUM = 2000;
+
+    private DB<String, String> createDB(File path) {
+        return createDB(path, 10 * 1000);
+    }
+
+    private DB<String, String> createDB(File path, int compactDeleteDelay) {
+        DB<String, String> db = new DBBuilder<String, String>()
+                .setPath(path)
+                .setDataBlockFileSize(16 * 1024)
+                .setDataBlockCompactCheckInterval(200)
+                .setDataBlockCompactDeleteDelay(compactDeleteDelay)
+                .create();
+        db.init();
+        return db;
+    }
+
+    private int compactThreadNum() {
+        int num = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.isAlive() && thread.getName().startsWith("ltsdb-data-compact-service")) {
+                num++;
+            }
+        }
+        return num;
+    }
+
+    private String value(int i) {
+        return "value_" + i + "_0123456789012345678901234567890123456789012345678901234567890123456789";
+    }
+
+    private int dataFileNum(File path) {
+        String[] files = new File(path, "data").list();
+        int num = 0;
+        for (String file : files) {
+            if (file.endsWith(DataBlock.FILE_SUFFIX)) {
+                num++;
+            }
+        }
+        return num;
+    }
+
+    @Test
+    public void testCompact() throws Exception {
+        File path = new File(System.getProperty("java.io.tmpdir"), "ltsdb_compact_" + System.currentTimeMillis());
+        try {
+            DB<String, String> db = createDB(path);
+            for (int i = 0; i < KEY_NUM; i++) {
+                db.put("key_" + i, value(i));
+            }
+            // 删除90%
+            for (int i = 0; i < KEY_NUM; i++) {
+                if (i % 10 != 0) {
+                    db.remove("key_" + i);
+                }
+            }
+            int fileNumBefore = dataFileNum(path);
+
+            DataCompactor<String, String> compactor = ((DBImpl<String, String>) db).getDataCompactor();
+            long deadline = System.currentTimeMillis() + 30 * 1000;
+            while (dataFileNum(path) >= fileNumBefore && System.currentTimeMillis() < deadline) {
+                Thread.sleep(200);
+            }
+            System.out.println("data files before:" + fileNumBefore + ", after:" + dataFileNum(path)
+                    + ", reclaimedBytes:" + compactor.getReclaimedBytes() + ", costMillis:" + compactor.getCompactCostMillis());
+
+            Assert.assertTrue(compactor.getCompactNum() > 0);
+            Assert.assertTrue(compactor.getReclaimedBytes() > 0);
+            Assert.assertTrue(dataFileNum(path) < fileNumBefore);
+
+            Assert.assertEquals(KEY_NUM / 10, db.size());
+            for (int i = 0; i < KEY_NUM; i += 10) {
+                Assert.assertEquals(value(i), db.get("key_" + i));
+            }
+
+            db.close();
+
+            // 重新打开, 索引快照不会引用到已经删除的文件
+            DB<String, String> reopened = createDB(path);
+            Assert.assertEquals(KEY_NUM / 10, reopened.size());
+            for (int i = 0; i < KEY_NUM; i += 10) {
+                Assert.assertEquals(value(i), reopened.get("key_" + i));
+            }
+            reopened.close();
+        } finally {
+            FileUtils.delete(path);
+        }
+    }
+
+    @Test
+    public void testClose() throws Exception {
+        File path = new File(System.getProperty("java.io.tmpdir"), "ltsdb_compact_close_" + System.currentTimeMillis());
+        try {
+            // 延迟删除的时间足够长, 合并之后老文件还在
+            DB<String, String> db = createDB(path, 60 * 1000);
+            for (int i = 0; i < KEY_NUM; i++) {
+                db.put("key_" + i, value(i));
+            }
+            for (int i = 0; i < KEY_NUM; i++) {
+                if (i % 10 != 0) {
+                    db.remove("key_" + i);
+                }
+            }
+            int fileNumBefore = dataFileNum(path);
+
+            DataCompactor<String, String> compactor = ((DBImpl<String, String>) db).getDataCompactor();
+            long deadline = System.currentTimeMillis() + 30 * 1000;
+            while (compactor.getCompactNum() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(200);
+            }
+            Assert.assertTrue(compactor.getCompactNum() > 0);
+            Assert.assertTrue(dataFileNum(path) >= fileNumBefore);
+
+            // 关闭时停止合并线程, 等待删除的老文件直接删除
+            int threadNum = compactThreadNum();
+            long start = System.currentTimeMillis();
+            db.close();
+            Assert.assertTrue(System.currentTimeMillis() - start < 10 * 1000);
+            Assert.assertEquals(threadNum - 1, compactThreadNum());
+            Assert.assertTrue(dataFileNum(path) < fileNumBefore);
+
+            DB<String, String> reopened = createDB(path);
+            Assert.assertEquals(KEY_NUM / 10, reopened.size());
+            for (int i = 0; i < KEY_NUM; i += 10) {
+                Assert.assertEquals(value(i), reopened.get("key_" + i));
+            }
+            reopened.close();
+        } finally {
+            FileUtils.delete(path);
+        }
+    }
+}
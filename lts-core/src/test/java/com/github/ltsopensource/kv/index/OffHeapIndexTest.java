@@ -0,0 +1,285 @@
+package com.github.ltsopensource.kv.index;
+
+import com.github.ltsopensource.core.commons.file.FileUtils;
+import com.github.ltsopensource.kv.DB;
+import com.github.ltsopensource.kv.DBBuilder;
+import com.github.ltsopensource.kv.Entry;
+import com.github.ltsopensource.kv.StoreConfig;
+import com.github.ltsopensource.kv.iterator.DBIterator;
+import com.github.ltsopensource.kv.serializer.JsonStoreSerializer;
+import com.github.ltsopensource.kv.txlog.StoreTxLogPosition;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+public class OffHeapIndexTest {
+
+    private static final int BENCHMARK_SIZE = 200000;
+
+    private StoreConfig newStoreConfig() {
+        StoreConfig storeConfig = new StoreConfig();
+        // 测试中不做定时快照
+        storeConfig.setIndexSnapshotThreshold(Integer.MAX_VALUE);
+        return storeConfig;
+    }
+
+    private OffHeapIndex<String, String> newOffHeapIndex() {
+        return new OffHeapIndex<String, String>(newStoreConfig(), new JsonStoreSerializer(), null, null);
+    }
+
+    private IndexItem<String> newIndexItem(String key, int i) {
+        IndexItem<String> indexItem = new IndexItem<String>();
+        indexItem.setKey(key);
+        indexItem.setFileId(i / 1000);
+        indexItem.setFromIndex(i * 64L);
+        indexItem.setLength(i % 1000 + 1);
+        return indexItem;
+    }
+
+    private void assertIndexItem(IndexItem<String> expect, IndexItem<String> actual) {
+        Assert.assertNotNull(actual);
+        Assert.assertEquals(expect.getFileId(), actual.getFileId());
+        Assert.assertEquals(expect.getFromIndex(), actual.getFromIndex());
+        Assert.assertEquals(expect.getLength(), actual.getLength());
+    }
+
+    @Test
+    public void testRandomOperations() {
+        OffHeapIndex<String, String> index = newOffHeapIndex();
+        Map<String, IndexItem<String>> expect = new HashMap<String, IndexItem<String>>();
+        Random random = new Random(20000);
+        StoreTxLogPosition position = new StoreTxLogPosition(1);
+
+        for (int i = 0; i < 100000; i++) {
+            String key = "key_" + random.nextInt(20000);
+            if (random.nextInt(3) == 0) {
+                IndexItem<String> removed = index.removeIndexItem(position, key);
+                IndexItem<String> expectRemoved = expect.remove(key);
+                if (expectRemoved == null) {
+                    Assert.assertNull(removed);
+                } else {
+                    assertIndexItem(expectRemoved, removed);
+                }
+            } else {
+                IndexItem<String> indexItem = newIndexItem(key, i);
+                index.putIndexItem(position, key, indexItem);
+                expect.put(key, indexItem);
+            }
+        }
+
+        Assert.assertEquals(expect.size(), index.size());
+        for (int i = 0; i < 20000; i++) {
+            String key = "key_" + i;
+            IndexItem<String> expectItem = expect.get(key);
+            if (expectItem == null) {
+                Assert.assertNull(index.getIndexItem(key));
+                Assert.assertFalse(index.containsKey(key));
+            } else {
+                assertIndexItem(expectItem, index.getIndexItem(key));
+            }
+        }
+
+        Set<String> keys = new HashSet<String>();
+        Iterator<IndexItem<String>> iterator = index.indexItemIterator();
+        while (iterator.hasNext()) {
+            IndexItem<String> indexItem = iterator.next();
+            assertIndexItem(expect.get(indexItem.getKey()), indexItem);
+            keys.add(indexItem.getKey());
+        }
+        Assert.assertEquals(expect.keySet(), keys);
+
+        // 合并时的CAS替换
+        String key = expect.keySet().iterator().next();
+        IndexItem<String> update = newIndexItem(key, 7);
+        Assert.assertFalse(index.replaceIndexItem(key, update, update));
+        Assert.assertTrue(index.replaceIndexItem(key, expect.get(key), update));
+        assertIndexItem(update, index.getIndexItem(key));
+    }
+
+    @Test
+    public void testIterateWhileModify() {
+        OffHeapIndex<String, String> index = newOffHeapIndex();
+        StoreTxLogPosition position = new StoreTxLogPosition(1);
+        Map<String, IndexItem<String>> expect = new HashMap<String, IndexItem<String>>();
+        for (int i = 0; i < 5000; i++) {
+            IndexItem<String> indexItem = newIndexItem("key_" + i, i);
+            index.putIndexItem(position, indexItem.getKey(), indexItem);
+            expect.put(indexItem.getKey(), indexItem);
+        }
+
+        Map<String, IndexItem<String>> iterated = new HashMap<String, IndexItem<String>>();
+        Iterator<IndexItem<String>> iterator = index.indexItemIterator();
+        int n = 0;
+        while (iterator.hasNext()) {
+            IndexItem<String> indexItem = iterator.next();
+            Assert.assertNull("duplicate key " + indexItem.getKey(), iterated.put(indexItem.getKey(), indexItem));
+            if (n++ == 100) {
+                // 删除(槽位前移), 覆盖, 扩容, key区整理
+                for (int i = 0; i < 5000; i += 2) {
+                    index.removeIndexItem(position, "key_" + i);
+                }
+                for (int i = 1; i < 5000; i += 4) {
+                    index.putIndexItem(position, "key_" + i, newIndexItem("key_" + i, i + 1));
+                }
+                for (int i = 5000; i < 40000; i++) {
+                    index.putIndexItem(position, "key_" + i, newIndexItem("key_" + i, i));
+                }
+            }
+        }
+        // 遍历的是创建迭代器时的快照
+        Assert.assertEquals(expect.keySet(), iterated.keySet());
+        for (IndexItem<String> indexItem : iterated.values()) {
+            assertIndexItem(expect.get(indexItem.getKey()), indexItem);
+        }
+        Assert.assertEquals(37500, index.size());
+    }
+
+    @Test
+    public void testKeyType() {
+        StoreConfig storeConfig = newStoreConfig();
+        storeConfig.setKeyType(Long.class);
+        OffHeapIndex<Long, String> index = new OffHeapIndex<Long, String>(storeConfig, new JsonStoreSerializer(), null, null);
+        StoreTxLogPosition position = new StoreTxLogPosition(1);
+        IndexItem<Long> indexItem = new IndexItem<Long>();
+        indexItem.setKey(1L);
+        indexItem.setLength(1);
+        index.putIndexItem(position, 1L, indexItem);
+
+        Iterator<IndexItem<Long>> iterator = index.indexItemIterator();
+        Assert.assertTrue(iterator.hasNext());
+        Object key = iterator.next().getKey();
+        Assert.assertEquals(Long.class, key.getClass());
+        // 合并时用遍历出来的key替换
+        Assert.assertTrue(index.replaceIndexItem((Long) key, indexItem, indexItem));
+    }
+
+    @Test
+    public void testSnapshot() throws Exception {
+        File file = new File(System.getProperty("java.io.tmpdir"), "ltsdb_offheap_" + System.nanoTime());
+        try {
+            OffHeapIndex<String, String> index = newOffHeapIndex();
+            StoreTxLogPosition position = new StoreTxLogPosition(1);
+            for (int i = 0; i < 10000; i++) {
+                index.putIndexItem(position, "key_" + i, newIndexItem("key_" + i, i));
+            }
+            for (int i = 0; i < 10000; i += 2) {
+                index.removeIndexItem(position, "key_" + i);
+            }
+
+            FileChannel fileChannel = FileUtils.newFileChannel(file, "rw");
+            index.writeTo(fileChannel, 10);
+            OffHeapIndex<String, String> loaded = newOffHeapIndex();
+            loaded.readFrom(fileChannel, 10);
+            fileChannel.close();
+
+            Assert.assertEquals(5000, loaded.size());
+            for (int i = 0; i < 10000; i++) {
+                String key = "key_" + i;
+                if (i % 2 == 0) {
+                    Assert.assertNull(loaded.getIndexItem(key));
+                } else {
+                    assertIndexItem(newIndexItem(key, i), loaded.getIndexItem(key));
+                }
+            }
+            // 加载之后可以继续写
+            loaded.putIndexItem(position, "key_0", newIndexItem("key_0", 0));
+            Assert.assertEquals(5001, loaded.size());
+        } finally {
+            FileUtils.delete(file);
+        }
+    }
+
+    @Test
+    public void testDB() throws Exception {
+        File path = new File(System.getProperty("java.io.tmpdir"), "ltsdb_offheap_db_" + System.nanoTime());
+        try {
+            DB<String, String> db = new DBBuilder<String, String>()
+                    .setPath(path)
+                    .setIndexType(IndexType.OFF_HEAP)
+                    .create();
+            db.init();
+            for (int i = 0; i < 3000; i++) {
+                db.put("key_" + i, "value_" + i);
+            }
+            for (int i = 0; i < 3000; i += 3) {
+                db.remove("key_" + i);
+            }
+            Assert.assertEquals(2000, db.size());
+            Assert.assertEquals("value_1", db.get("key_1"));
+            Assert.assertNull(db.get("key_3"));
+
+            int num = 0;
+            DBIterator<Entry<String, String>> iterator = db.iterator();
+            while (iterator.hasNext()) {
+                Entry<String, String> entry = iterator.next();
+                Assert.assertEquals("value_" + entry.getKey().substring(4), entry.getValue());
+                num++;
+            }
+            Assert.assertEquals(2000, num);
+            db.close();
+        } finally {
+            FileUtils.delete(path);
+        }
+    }
+
+    /**
+     * 和 MemIndex 对比堆内存占用和查找耗时
+     */
+    @Test
+    public void testCompareWithMemIndex() {
+        String[] keys = new String[BENCHMARK_SIZE];
+        for (int i = 0; i < BENCHMARK_SIZE; i++) {
+            keys[i] = "job_" + i + "_" + Integer.toHexString(i * 31);
+        }
+        StoreTxLogPosition position = new StoreTxLogPosition(1);
+
+        long before = usedHeap();
+        MemIndex<String, String> memIndex = new MemIndex<String, String>(newStoreConfig(), null, null);
+        for (int i = 0; i < BENCHMARK_SIZE; i++) {
+            memIndex.putIndexItem(position, keys[i], newIndexItem(keys[i], i));
+        }
+        long memIndexHeap = usedHeap() - before;
+
+        before = usedHeap();
+        OffHeapIndex<String, String> offHeapIndex = newOffHeapIndex();
+        for (int i = 0; i < BENCHMARK_SIZE; i++) {
+            offHeapIndex.putIndexItem(position, keys[i], newIndexItem(keys[i], i));
+        }
+        long offHeapIndexHeap = usedHeap() - before;
+
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < BENCHMARK_SIZE; i++) {
+                Assert.assertNotNull(memIndex.getIndexItem(keys[i]));
+            }
+            long memIndexCost = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < BENCHMARK_SIZE; i++) {
+                Assert.assertNotNull(offHeapIndex.getIndexItem(keys[i]));
+            }
+            long offHeapIndexCost = System.nanoTime() - start;
+
+            System.out.println("round " + round + ", size:" + BENCHMARK_SIZE
+                    + ", MemIndex heap(KB):" + memIndexHeap / 1024 + ", lookup(ms):" + memIndexCost / 1000000
+                    + ", OffHeapIndex heap(KB):" + offHeapIndexHeap / 1024 + ", lookup(ms):" + offHeapIndexCost / 1000000);
+        }
+        Assert.assertEquals(memIndex.size(), offHeapIndex.size());
+    }
+
+    private long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,97 @@
+package com.github.ltsopensource.queue;
+
+import com.github.ltsopensource.queue.domain.JobPo;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+public class JobPriorityIndexedDequeTest {
+
+    private static final int SIZE = 5000;
+
+    private JobPo newJobPo(String jobId, int priority, long triggerTime, long gmtCreated) {
+        JobPo jobPo = new JobPo();
+        jobPo.setJobId(jobId);
+        jobPo.setPriority(priority);
+        jobPo.setTriggerTime(triggerTime);
+        jobPo.setGmtCreated(gmtCreated);
+        jobPo.setGmtModified(gmtCreated);
+        return jobPo;
+    }
+
+    @Test
+    public void testOrder() {
+        JobPriorityIndexedDeque deque = new JobPriorityIndexedDeque(10);
+        deque.offer(newJobPo("3", 100, 3, 1));
+        deque.offer(newJobPo("1", 1, 5, 1));
+        deque.offer(newJobPo("2", 100, 2, 2));
+        deque.offer(newJobPo("4", 100, 2, 3));
+
+        Assert.assertEquals("1", deque.pollFirst().getJobId());
+        Assert.assertEquals("3", deque.pollLast().getJobId());
+        Assert.assertEquals("2", deque.pollFirst().getJobId());
+        Assert.assertEquals("4", deque.poll().getJobId());
+        Assert.assertNull(deque.poll());
+    }
+
+    @Test
+    public void testDuplicateAndCapacity() {
+        JobPriorityIndexedDeque deque = new JobPriorityIndexedDeque(2);
+        Assert.assertTrue(deque.offer(newJobPo("1", 100, 1, 1)));
+        Assert.assertTrue(deque.offer(newJobPo("2", 100, 2, 2)));
+        Assert.assertFalse(deque.offer(newJobPo("3", 100, 3, 3)));
+
+        // 相同jobId替换, 并按新的优先级排序
+        Assert.assertTrue(deque.offer(newJobPo("2", Integer.MIN_VALUE, 2, 2)));
+        Assert.assertEquals(2, deque.size());
+        Assert.assertEquals("2", deque.pollFirst().getJobId());
+
+        Assert.assertNotNull(deque.remove("1"));
+        Assert.assertNull(deque.remove("1"));
+        Assert.assertEquals(0, deque.size());
+    }
+
+    /**
+     * 和 JobPriorityBlockingDeque 对比 offer, pollFirst, pollLast 的耗时
+     */
+    @Test
+    public void testCompareWithBlockingDeque() {
+        List<JobPo> jobPos = new ArrayList<JobPo>(SIZE);
+        Random random = new Random(SIZE);
+        for (int i = 0; i < SIZE; i++) {
+            jobPos.add(newJobPo("job_" + i, random.nextInt(100), random.nextInt(100000), i));
+        }
+        Collections.shuffle(jobPos, random);
+
+        for (int round = 0; round < 3; round++) {
+            JobPriorityBlockingDeque blockingDeque = new JobPriorityBlockingDeque(SIZE);
+            long start = System.nanoTime();
+            for (JobPo jobPo : jobPos) {
+                blockingDeque.offer(jobPo);
+            }
+            for (int i = 0; i < SIZE / 2; i++) {
+                blockingDeque.pollFirst();
+                blockingDeque.pollLast();
+            }
+            long blockingCost = System.nanoTime() - start;
+
+            JobPriorityIndexedDeque indexedDeque = new JobPriorityIndexedDeque(SIZE);
+            start = System.nanoTime();
+            for (JobPo jobPo : jobPos) {
+                indexedDeque.offer(jobPo);
+            }
+            for (int i = 0; i < SIZE / 2; i++) {
+                indexedDeque.pollFirst();
+                indexedDeque.pollLast();
+            }
+            long indexedCost = System.nanoTime() - start;
+
+            System.out.println("round " + round + ", size:" + SIZE + ", JobPriorityBlockingDeque(us):" + blockingCost / 1000
+                    + ", JobPriorityIndexedDeque(us):" + indexedCost / 1000);
+        }
+    }
+}
@@ -0,0 +1,424 @@
+package com.github.ltsopensource.queue.memory;
+
+import com.github.ltsopensource.core.AppContext;
+import com.github.ltsopensource.core.cluster.Config;
+import com.github.ltsopensource.core.commons.file.FileUtils;
+import com.github.ltsopensource.core.constant.ExtConfig;
+import com.github.ltsopensource.core.support.SystemClock;
+import com.github.ltsopensource.ec.injvm.InjvmEventCenter;
+import com.github.ltsopensource.queue.CronJobQueue;
+import com.github.ltsopensource.queue.ExecutableJobQueue;
+import com.github.ltsopensource.queue.ExecutingJobQueue;
+import com.github.ltsopensource.queue.JobQueueFactory;
+import com.github.ltsopensource.queue.RepeatJobQueue;
+import com.github.ltsopensource.queue.domain.JobPo;
+import com.github.ltsopensource.store.jdbc.exception.DupEntryException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class MemoryJobQueueTest {
+
+    private static final int JOB_NUM = 5000;
+
+    private Config createConfig(String clusterName) {
+        Config config = new Config();
+        config.setIdentity("memory_queue_test");
+        config.setClusterName(clusterName + "_" + System.nanoTime());
+        config.setDataPath(System.getProperty("java.io.tmpdir"));
+        config.setParameter(ExtConfig.JOB_TRACKER_PRELOADER_SIZE, String.valueOf(JOB_NUM));
+        return config;
+    }
+
+    private AppContext createAppContext(Config config) {
+        AppContext appContext = new AppContext() {
+        };
+        appContext.setConfig(config);
+        appContext.setEventCenter(new InjvmEventCenter());
+        return appContext;
+    }
+
+    private JobPo newJobPo(String nodeGroup, int i, int priority, long triggerTime) {
+        JobPo jobPo = new JobPo();
+        jobPo.setJobId("job_" + i);
+        jobPo.setTaskId("task_" + i);
+        jobPo.setRealTaskId("task_" + i);
+        jobPo.setPriority(priority);
+        jobPo.setTaskTrackerNodeGroup(nodeGroup);
+        jobPo.setGmtCreated(triggerTime);
+        jobPo.setTriggerTime(triggerTime);
+        return jobPo;
+    }
+
+    @Test
+    public void testExecutableJobQueue() {
+        Config config = createConfig("executable");
+        MemoryJobQueueFactory factory = new MemoryJobQueueFactory();
+        ExecutableJobQueue executableJobQueue = factory.getExecutableJobQueue(config);
+
+        long now = SystemClock.now() - 1000;
+        Assert.assertTrue(executableJobQueue.add(newJobPo("group", 1, 100, now)));
+        try {
+            executableJobQueue.add(newJobPo("group", 1, 100, now));
+            Assert.fail();
+        } catch (DupEntryException ignored) {
+        }
+        // 同一个节点组里 taskId 唯一
+        JobPo sameTaskId = newJobPo("group", 2, 100, now);
+        sameTaskId.setTaskId("task_1");
+        try {
+            executableJobQueue.add(sameTaskId);
+            Assert.fail();
+        } catch (DupEntryException ignored) {
+        }
+
+        List<JobPo> jobPos = new ArrayList<JobPo>();
+        for (int i = 1; i <= 3; i++) {
+            jobPos.add(newJobPo("group", i, 100, now));
+        }
+        Assert.assertEquals(2, executableJobQueue.addBatch(jobPos));
+        Assert.assertEquals(1, executableJobQueue.countJob("task_2", "group"));
+        Assert.assertEquals("job_3", executableJobQueue.getJob("group", "task_3").getJobId());
+
+        // 读出去的是复制的, 修改不会影响队列中的
+        executableJobQueue.getJob("group", "task_3").setPriority(1);
+        Assert.assertEquals(100, executableJobQueue.getJob("group", "task_3").getPriority().intValue());
+
+        Assert.assertTrue(executableJobQueue.remove("group", "job_3"));
+        Assert.assertNull(executableJobQueue.getJob("group", "task_3"));
+        Assert.assertFalse(executableJobQueue.remove("not_exist", "job_3"));
+
+        Assert.assertTrue(executableJobQueue.removeBatch("task_2", "group"));
+        Assert.assertEquals(0, executableJobQueue.countJob("task_2", "group"));
+    }
+
+    @Test
+    public void testPreLoader() throws Exception {
+        Config config = createConfig("preloader");
+        MemoryJobQueueFactory factory = new MemoryJobQueueFactory();
+        ExecutableJobQueue executableJobQueue = factory.getExecutableJobQueue(config);
+        MemoryPreLoader preLoader = new MemoryPreLoader(createAppContext(config));
+
+        long now = SystemClock.now() - 1000;
+        executableJobQueue.add(newJobPo("group", 1, 100, now));
+        executableJobQueue.add(newJobPo("group", 2, 1, now));
+        // 还没到执行时间
+        executableJobQueue.add(newJobPo("group", 3, 1, now + 60000));
+
+        JobTable table = MemoryJobStore.getStore(config).getJobTable("lts_wjq_group", true, false);
+        List<JobPo> readyJobs = table.getReadyJobs(SystemClock.now(), 10);
+        Assert.assertEquals(2, readyJobs.size());
+        // 优先级高的在前面
+        Assert.assertEquals("job_2", readyJobs.get(0).getJobId());
+
+        JobPo jobPo = readyJobs.get(0);
+        Assert.assertTrue(preLoader.lockJob("group", jobPo.getJobId(), "identity", jobPo.getTriggerTime(), jobPo.getGmtModified()));
+        // 已经被锁定
+        Assert.assertFalse(preLoader.lockJob("group", jobPo.getJobId(), "identity", jobPo.getTriggerTime(), jobPo.getGmtModified()));
+        Assert.assertEquals(1, table.getReadyJobs(SystemClock.now(), 10).size());
+
+        List<JobPo> deadJobs = executableJobQueue.getDeadJob("group", SystemClock.now() + 1);
+        Assert.assertEquals(1, deadJobs.size());
+        executableJobQueue.resume(deadJobs.get(0));
+        Assert.assertEquals(2, table.getReadyJobs(SystemClock.now(), 10).size());
+
+        // 按触发时间范围取, [from, to) 按 triggerTime 排序
+        List<JobPo> rangeJobs = table.getReadyJobs(now, now + 60001, 10);
+        Assert.assertEquals(3, rangeJobs.size());
+        Assert.assertEquals("job_3", rangeJobs.get(2).getJobId());
+        Assert.assertEquals(2, table.getReadyJobs(now, now + 60000, 10).size());
+        Assert.assertEquals(1, table.getReadyJobs(now + 1, now + 60001, 10).size());
+        Assert.assertEquals(1, table.getReadyJobs(now, now + 60001, 1).size());
+        JobPo job3 = table.get("job_3");
+        Assert.assertTrue(preLoader.lockJob("group", "job_3", "identity", job3.getTriggerTime(), job3.getGmtModified()));
+        Assert.assertEquals(0, table.getReadyJobs(now + 1, now + 60001, 10).size());
+    }
+
+    /**
+     * 每个优先级都有大量没到期的任务时, 只取到期的, 按优先级排序
+     */
+    @Test
+    public void testReadyJobsSkipFuture() {
+        Config config = createConfig("skip_future");
+        ExecutableJobQueue executableJobQueue = new MemoryJobQueueFactory().getExecutableJobQueue(config);
+        long now = SystemClock.now();
+        int i = 0;
+        for (int priority = 1; priority <= 3; priority++) {
+            executableJobQueue.add(newJobPo("group", i++, priority, now - 1000 * priority));
+            for (int j = 0; j < JOB_NUM; j++) {
+                executableJobQueue.add(newJobPo("group", i++, priority, now + 60000 + j));
+            }
+        }
+        executableJobQueue.add(newJobPo("group", i++, Integer.MAX_VALUE, now + 60000));
+        executableJobQueue.add(newJobPo("group", i, Integer.MAX_VALUE, now - 1000));
+
+        JobTable table = MemoryJobStore.getStore(config).getJobTable("lts_wjq_group", true, false);
+        List<JobPo> readyJobs = table.getReadyJobs(now, 10);
+        Assert.assertEquals(4, readyJobs.size());
+        for (int k = 0; k < 3; k++) {
+            Assert.assertEquals(k + 1, readyJobs.get(k).getPriority().intValue());
+            Assert.assertTrue(readyJobs.get(k).getTriggerTime() < now);
+        }
+        Assert.assertEquals("job_" + i, readyJobs.get(3).getJobId());
+        Assert.assertEquals(2, table.getReadyJobs(now, 2).size());
+
+        // filter 在跳过没到期的之后生效
+        List<JobPo> filtered = table.getReadyJobs(now, 10, new JobTable.Filter() {
+            @Override
+            public boolean match(JobPo jobPo) {
+                return jobPo.getPriority() != 2;
+            }
+        });
+        Assert.assertEquals(3, filtered.size());
+    }
+
+    /**
+     * 没有任务的节点组退避加载, 有新任务时马上恢复
+     */
+    @Test
+    public void testIdleGroupBackoff() throws Exception {
+        Config config = createConfig("backoff");
+        ExecutableJobQueue executableJobQueue = new MemoryJobQueueFactory().getExecutableJobQueue(config);
+        executableJobQueue.createQueue("idle");
+        final AtomicInteger loadNum = new AtomicInteger(0);
+        MemoryPreLoader preLoader = new MemoryPreLoader(createAppContext(config)) {
+            @Override
+            protected List<JobPo> load(String loadTaskTrackerNodeGroup, int loadSize) {
+                loadNum.incrementAndGet();
+                return super.load(loadTaskTrackerNodeGroup, loadSize);
+            }
+        };
+
+        long start = SystemClock.now();
+        int takeNum = 0;
+        while (SystemClock.now() - start < 1000) {
+            Assert.assertNull(preLoader.take("idle", "identity"));
+            takeNum++;
+            Thread.sleep(1);
+        }
+        // 退避 100, 200, 400, 800ms, 1秒内最多加载5次
+        System.out.println("idle group take:" + takeNum + ", load:" + loadNum.get());
+        Assert.assertTrue(loadNum.get() <= 5);
+
+        // 新任务放入之后不再退避
+        JobPo jobPo = newJobPo("idle", 1, 100, SystemClock.now() - 1000);
+        executableJobQueue.add(jobPo);
+        Assert.assertTrue(preLoader.offer(executableJobQueue.getJob("idle", "task_1")));
+        Assert.assertNotNull(preLoader.take("idle", "identity"));
+    }
+
+    @Test
+    public void testRepeatJobQueue() {
+        Config config = createConfig("repeat");
+        RepeatJobQueue repeatJobQueue = new MemoryJobQueueFactory().getRepeatJobQueue(config);
+
+        long now = SystemClock.now();
+        for (int i = 0; i < 5; i++) {
+            JobPo jobPo = newJobPo("group", i, 100, now);
+            jobPo.setRelyOnPrevCycle(i % 2 == 0);
+            jobPo.setLastGenerateTriggerTime(now);
+            repeatJobQueue.add(jobPo);
+        }
+        List<JobPo> jobPos = repeatJobQueue.getNeedGenerateJobPos(now, 10);
+        Assert.assertEquals(2, jobPos.size());
+
+        Map<String, Long> lastGenerateTriggerTimes = new HashMap<String, Long>();
+        for (JobPo jobPo : jobPos) {
+            lastGenerateTriggerTimes.put(jobPo.getJobId(), now + 1000);
+        }
+        repeatJobQueue.updateLastGenerateTriggerTime(lastGenerateTriggerTimes);
+        Assert.assertEquals(0, repeatJobQueue.getNeedGenerateJobPos(now, 10).size());
+
+        Assert.assertEquals(1, repeatJobQueue.incRepeatedCount("job_1"));
+        Assert.assertEquals(2, repeatJobQueue.incRepeatedCount("job_1"));
+        Assert.assertEquals(-1, repeatJobQueue.incRepeatedCount("not_exist"));
+    }
+
+    @Test
+    public void testBatchOperations() {
+        Config config = createConfig("batch");
+        MemoryJobQueueFactory factory = new MemoryJobQueueFactory();
+        ExecutingJobQueue executingJobQueue = factory.getExecutingJobQueue(config);
+        CronJobQueue cronJobQueue = factory.getCronJobQueue(config);
+        RepeatJobQueue repeatJobQueue = factory.getRepeatJobQueue(config);
+
+        long now = SystemClock.now();
+        for (int i = 0; i < 3; i++) {
+            executingJobQueue.add(newJobPo("group", i, 100, now));
+            cronJobQueue.add(newJobPo("group", i, 100, now));
+            repeatJobQueue.add(newJobPo("group", i, 100, now));
+        }
+        List<String> jobIds = Arrays.asList("job_0", "job_2", "not_exist");
+
+        // 不存在的不返回
+        Assert.assertEquals(2, executingJobQueue.getJobsByJobIds(jobIds).size());
+        Assert.assertEquals(2, cronJobQueue.getJobsByJobIds(jobIds).size());
+        Assert.assertEquals(0, cronJobQueue.getJobsByJobIds(new ArrayList<String>()).size());
+
+        Map<String, Integer> repeatedCounts = repeatJobQueue.incRepeatedCount(jobIds);
+        Assert.assertEquals(2, repeatedCounts.size());
+        Assert.assertEquals(1, repeatedCounts.get("job_0").intValue());
+        Assert.assertEquals(0, repeatJobQueue.getJob("job_1").getRepeatedCount().intValue());
+        Assert.assertEquals(2, repeatJobQueue.incRepeatedCount(jobIds).get("job_2").intValue());
+
+        Assert.assertEquals(2, executingJobQueue.removeBatch(jobIds));
+        Assert.assertNull(executingJobQueue.getJob("job_0"));
+        Assert.assertNotNull(executingJobQueue.getJob("job_1"));
+    }
+
+    @Test
+    public void testDeadJobsPaging() {
+        Config config = createConfig("dead");
+        ExecutingJobQueue executingJobQueue = new MemoryJobQueueFactory().getExecutingJobQueue(config);
+        long now = SystemClock.now();
+        for (int i = 0; i < 25; i++) {
+            JobPo jobPo = newJobPo("group", i, 100, now);
+            jobPo.setGmtModified(now);
+            executingJobQueue.add(jobPo);
+        }
+        long deadline = SystemClock.now() + 1;
+
+        // 按 jobId 翻页, 翻页过程中删除已经读过的不影响后面的页
+        Set<String> jobIds = new HashSet<String>();
+        String lastJobId = null;
+        int pageNum = 0;
+        while (true) {
+            List<JobPo> page = executingJobQueue.getDeadJobs(deadline, lastJobId, 10);
+            if (page.isEmpty()) {
+                break;
+            }
+            pageNum++;
+            for (JobPo jobPo : page) {
+                Assert.assertTrue(lastJobId == null || jobPo.getJobId().compareTo(lastJobId) > 0);
+                Assert.assertTrue(jobIds.add(jobPo.getJobId()));
+                lastJobId = jobPo.getJobId();
+            }
+            executingJobQueue.removeBatch(new ArrayList<String>(jobIds));
+        }
+        Assert.assertEquals(3, pageNum);
+        Assert.assertEquals(25, jobIds.size());
+        Assert.assertEquals(0, executingJobQueue.getDeadJobs(deadline).size());
+    }
+
+    @Test
+    public void testReload() {
+        Config config = createConfig("reload");
+        config.setParameter(ExtConfig.JOB_QUEUE_MEMORY_PERSIST, "true");
+        File path = new File(config.getDataPath() + "/.lts/jobqueue/" + config.getClusterName(), "lts_cron_job_queue");
+        try {
+            MemoryTableStore store = new MemoryTableStore(path);
+            JobTable table = new JobTable("lts_cron_job_queue", false, store);
+            long now = SystemClock.now();
+            for (int i = 0; i < 100; i++) {
+                table.add(newJobPo("group", i, 100, now));
+            }
+            for (int i = 0; i < 100; i += 2) {
+                table.remove("job_" + i);
+            }
+            table.update("job_1", new JobTable.Updater() {
+                @Override
+                public boolean update(JobPo jobPo) {
+                    jobPo.setPriority(1);
+                    return true;
+                }
+            });
+            store.close();
+
+            JobTable loaded = new JobTable("lts_cron_job_queue", false, new MemoryTableStore(path));
+            Assert.assertEquals(50, loaded.size());
+            Assert.assertNull(loaded.get("job_0"));
+            Assert.assertEquals(1, loaded.getByTaskId("group", "task_1").getPriority().intValue());
+            Assert.assertEquals(100, loaded.get("job_3").getPriority().intValue());
+        } finally {
+            FileUtils.delete(path);
+        }
+    }
+
+    @Test
+    public void testFactory() {
+        Config config = createConfig("factory");
+        config.setParameter(ExtConfig.JOB_QUEUE, "memory");
+        JobQueueFactory factory = com.github.ltsopensource.core.spi.ServiceLoader.load(JobQueueFactory.class, config);
+        Assert.assertTrue(factory instanceof MemoryJobQueueFactory);
+    }
+
+    /**
+     * 开启时间轮之后, 任务到期就能取到, 不依赖下一次扫描
+     */
+    @Test
+    public void testTimeWheel() throws Exception {
+        Config config = createConfig("time_wheel");
+        config.setParameter(ExtConfig.JOB_TRACKER_PRELOADER_TIME_WHEEL_ENABLE, "true");
+        config.setParameter(ExtConfig.JOB_TRACKER_PRELOADER_TIME_WHEEL_LOOKAHEAD_SECONDS, "4");
+        ExecutableJobQueue executableJobQueue = new MemoryJobQueueFactory().getExecutableJobQueue(config);
+        MemoryPreLoader preLoader = new MemoryPreLoader(createAppContext(config));
+
+        long now = SystemClock.now();
+        // 第一次加载时间轮之前加入的, 由时间轮的范围加载取到
+        executableJobQueue.add(newJobPo("wheel_test", 1, 100, now + 2000));
+        Assert.assertNull(preLoader.take("wheel_test", "test_identity"));
+        // 等第一次加载时间轮
+        Thread.sleep(1200L);
+        // 已经加载过的范围内新加的任务, 通过 offer 放入时间轮
+        JobPo jobPo = newJobPo("wheel_test", 2, 100, SystemClock.now() + 500);
+        executableJobQueue.add(jobPo);
+        Assert.assertTrue(preLoader.offer(jobPo));
+
+        long deadline = now + 3000;
+        for (int i = 1; i <= 2; i++) {
+            JobPo taken = null;
+            while (taken == null && SystemClock.now() < deadline) {
+                taken = preLoader.take("wheel_test", "test_identity");
+                if (taken == null) {
+                    Thread.sleep(1L);
+                }
+            }
+            Assert.assertNotNull(taken);
+            long delay = SystemClock.now() - taken.getTriggerTime();
+            System.out.println("time wheel job:" + taken.getJobId() + ", delay(ms):" + delay);
+            Assert.assertTrue(delay >= 0);
+            Assert.assertTrue(delay < 200);
+        }
+    }
+
+    /**
+     * 和 MysqlPreLoaderTest 对比, 看调度本身的开销
+     */
+    @Test
+    public void testTake() throws Exception {
+        Config config = createConfig("take");
+        ExecutableJobQueue executableJobQueue = new MemoryJobQueueFactory().getExecutableJobQueue(config);
+        long now = SystemClock.now() - 1000;
+        for (int i = 0; i < JOB_NUM; i++) {
+            executableJobQueue.add(newJobPo("take_test", i, 100, now));
+        }
+        MemoryPreLoader preLoader = new MemoryPreLoader(createAppContext(config));
+        // 第一次获取触发异步加载
+        int locked = preLoader.take("take_test", "test_identity") == null ? 0 : 1;
+        Thread.sleep(1000L);
+
+        long start = System.nanoTime();
+        while (locked < JOB_NUM) {
+            JobPo jobPo = preLoader.take("take_test", "test_identity");
+            if (jobPo == null) {
+                break;
+            }
+            locked++;
+        }
+        long cost = System.nanoTime() - start;
+        System.out.println("memory take locked:" + locked + ", jobs/s:" + (locked * 1000000000L / cost));
+        Assert.assertEquals(JOB_NUM, locked);
+        Assert.assertEquals(Collections.emptyList(),
+                MemoryJobStore.getStore(config).getJobTable("lts_wjq_take_test", true, false).getReadyJobs(SystemClock.now(), 10));
+    }
+}
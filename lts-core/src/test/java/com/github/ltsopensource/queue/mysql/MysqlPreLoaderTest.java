@@ -0,0 +1,281 @@
+package com.github.ltsopensource.queue.mysql;
+
+import com.github.ltsopensource.core.AppContext;
+import com.github.ltsopensource.core.cluster.Config;
+import com.github.ltsopensource.core.constant.ExtConfig;
+import com.github.ltsopensource.core.support.JobQueueUtils;
+import com.github.ltsopensource.core.support.SystemClock;
+import com.github.ltsopensource.ec.injvm.InjvmEventCenter;
+import com.github.ltsopensource.queue.domain.JobPo;
+import com.github.ltsopensource.queue.support.JobPartitioner;
+import com.github.ltsopensource.store.jdbc.SqlTemplate;
+import com.github.ltsopensource.store.jdbc.SqlTemplateFactory;
+import com.github.ltsopensource.store.jdbc.exception.JdbcException;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 在H2内存库上对比 take 逐个锁定 和 takeBatch 批量锁定 的吞吐
+ */
+public class MysqlPreLoaderTest {
+
+    private static final int JOB_NUM = 5000;
+    private static final int BATCH_SIZE = 10;
+
+    private Config config;
+    private SqlTemplate sqlTemplate;
+
+    @Before
+    public void setup() throws Exception {
+        config = new Config();
+        config.setIdentity("preloader_test");
+        config.setParameter(ExtConfig.JDBC_DATASOURCE_PROVIDER, "h2");
+        config.setParameter(ExtConfig.JDBC_URL, "jdbc:h2:mem:lts_preloader;MODE=MySQL;DB_CLOSE_DELAY=-1");
+        config.setParameter(ExtConfig.JDBC_USERNAME, "sa");
+        config.setParameter(ExtConfig.JDBC_PASSWORD, "");
+        config.setParameter(ExtConfig.JOB_TRACKER_PRELOADER_SIZE, String.valueOf(JOB_NUM));
+        sqlTemplate = SqlTemplateFactory.create(config);
+    }
+
+    private AppContext createAppContext() {
+        AppContext appContext = new AppContext() {
+        };
+        appContext.setConfig(config);
+        appContext.setEventCenter(new InjvmEventCenter());
+        return appContext;
+    }
+
+    private void prepare(String nodeGroup) throws Exception {
+        prepare(nodeGroup, SystemClock.now() - 1000);
+    }
+
+    private void prepare(String nodeGroup, long triggerTime) throws Exception {
+        String tableName = JobQueueUtils.getExecutableQueueName(nodeGroup);
+        sqlTemplate.update("DROP TABLE IF EXISTS `" + tableName + "`");
+        sqlTemplate.createTable("CREATE TABLE `" + tableName + "` (" +
+                "`id` bigint AUTO_INCREMENT PRIMARY KEY," +
+                "`job_id` varchar(32) UNIQUE," +
+                "`job_type` varchar(32)," +
+                "`priority` int," +
+                "`retry_times` int DEFAULT 0," +
+                "`max_retry_times` int DEFAULT 0," +
+                "`rely_on_prev_cycle` tinyint," +
+                "`task_id` varchar(64)," +
+                "`real_task_id` varchar(64)," +
+                "`gmt_created` bigint," +
+                "`gmt_modified` bigint," +
+                "`submit_node_group` varchar(64)," +
+                "`task_tracker_node_group` varchar(64)," +
+                "`ext_params` text," +
+                "`internal_ext_params` text," +
+                "`is_running` tinyint," +
+                "`task_tracker_identity` varchar(64)," +
+                "`need_feedback` tinyint," +
+                "`cron_expression` varchar(128)," +
+                "`trigger_time` bigint," +
+                "`repeat_count` int DEFAULT 0," +
+                "`repeated_count` int DEFAULT 0," +
+                "`repeat_interval` bigint DEFAULT 0," +
+                "`last_generate_trigger_time` bigint DEFAULT 0," +
+                "`job_partition` smallint)");
+
+        Object[][] params = new Object[JOB_NUM][];
+        for (int i = 0; i < JOB_NUM; i++) {
+            params[i] = new Object[]{"job_" + i, 100, "task_" + i, triggerTime, triggerTime, nodeGroup, false, triggerTime,
+                    JobPartitioner.partition("job_" + i)};
+        }
+        sqlTemplate.batchInsert("INSERT INTO `" + tableName + "` (`job_id`,`priority`,`task_id`,`gmt_created`," +
+                "`gmt_modified`,`task_tracker_node_group`,`is_running`,`trigger_time`,`job_partition`) VALUES (?,?,?,?,?,?,?,?,?)", params);
+    }
+
+    private int warmUp(MysqlPreLoader preLoader, String nodeGroup) throws InterruptedException {
+        // 第一次获取触发异步加载
+        int taken = preLoader.take(nodeGroup, "test_identity") == null ? 0 : 1;
+        Thread.sleep(1000L);
+        return taken;
+    }
+
+    @Test
+    public void testTake() throws Exception {
+        String nodeGroup = "take_test";
+        prepare(nodeGroup);
+        MysqlPreLoader preLoader = new MysqlPreLoader(createAppContext());
+        int locked = warmUp(preLoader, nodeGroup);
+        long start = System.nanoTime();
+        while (locked < JOB_NUM) {
+            JobPo jobPo = preLoader.take(nodeGroup, "test_identity");
+            if (jobPo == null) {
+                break;
+            }
+            locked++;
+        }
+        long cost = System.nanoTime() - start;
+        System.out.println("take locked:" + locked + ", jobs/s:" + (locked * 1000000000L / cost));
+        Assert.assertEquals(JOB_NUM, locked);
+    }
+
+    @Test
+    public void testTakeBatch() throws Exception {
+        String nodeGroup = "take_batch_test";
+        prepare(nodeGroup);
+        MysqlPreLoader preLoader = new MysqlPreLoader(createAppContext());
+        int locked = warmUp(preLoader, nodeGroup);
+        long start = System.nanoTime();
+        while (locked < JOB_NUM) {
+            List<JobPo> jobPos = preLoader.takeBatch(nodeGroup, "test_identity", BATCH_SIZE);
+            if (jobPos.size() == 0) {
+                break;
+            }
+            for (JobPo jobPo : jobPos) {
+                Assert.assertTrue(jobPo.isRunning());
+                Assert.assertEquals("test_identity", jobPo.getTaskTrackerIdentity());
+            }
+            locked += jobPos.size();
+        }
+        long cost = System.nanoTime() - start;
+        System.out.println("takeBatch locked:" + locked + ", jobs/s:" + (locked * 1000000000L / cost));
+        Assert.assertEquals(JOB_NUM, locked);
+
+        // 所有任务在库中都已被锁定
+        Long count = sqlTemplate.queryForValue("SELECT COUNT(1) FROM `" +
+                JobQueueUtils.getExecutableQueueName(nodeGroup) + "` WHERE `is_running` = ?", true);
+        Assert.assertEquals(JOB_NUM, count.intValue());
+    }
+
+    /**
+     * 一批中有被其他JobTracker先锁定的, 更新行数不够, 重新查询确认之后只返回自己锁定的
+     */
+    @Test
+    public void testTakeBatchLockedByOther() throws Exception {
+        String nodeGroup = "take_batch_locked_by_other_test";
+        prepare(nodeGroup);
+        final Set<String> lockedByOther = new HashSet<String>();
+        MysqlPreLoader preLoader = new MysqlPreLoader(createAppContext()) {
+            @Override
+            protected int batchLock(String taskTrackerNodeGroup, String taskTrackerIdentity, List<JobPo> jobPos, Long now) throws SQLException {
+                if (lockedByOther.isEmpty()) {
+                    for (JobPo jobPo : jobPos.subList(0, jobPos.size() / 2)) {
+                        lockedByOther.add(jobPo.getJobId());
+                    }
+                    super.batchLock(taskTrackerNodeGroup, "other_identity", jobPos.subList(0, jobPos.size() / 2), now - 1);
+                }
+                return super.batchLock(taskTrackerNodeGroup, taskTrackerIdentity, jobPos, now);
+            }
+        };
+        int warm = warmUp(preLoader, nodeGroup);
+        List<JobPo> jobPos = preLoader.takeBatch(nodeGroup, "test_identity", BATCH_SIZE);
+        // 被其他JobTracker拿走的从内存队列中补上
+        Assert.assertEquals(BATCH_SIZE, jobPos.size());
+        for (JobPo jobPo : jobPos) {
+            Assert.assertFalse(lockedByOther.contains(jobPo.getJobId()));
+        }
+        Assert.assertEquals(BATCH_SIZE + BATCH_SIZE / 2 + warm, countRunning(nodeGroup));
+    }
+
+    /**
+     * 批量锁定中途出错, 已经提交的算锁定成功, 没有锁定的放回内存队列, 下次还能取到
+     */
+    @Test
+    public void testTakeBatchPartialFailure() throws Exception {
+        String nodeGroup = "take_batch_failure_test";
+        prepare(nodeGroup);
+        final AtomicBoolean fail = new AtomicBoolean(true);
+        MysqlPreLoader preLoader = new MysqlPreLoader(createAppContext()) {
+            @Override
+            protected int batchLock(String taskTrackerNodeGroup, String taskTrackerIdentity, List<JobPo> jobPos, Long now) throws SQLException {
+                if (fail.compareAndSet(true, false)) {
+                    // 前一半已经更新了, 返回之前出错
+                    super.batchLock(taskTrackerNodeGroup, taskTrackerIdentity, jobPos.subList(0, jobPos.size() / 2), now);
+                    throw new JdbcException("mock batch update error");
+                }
+                return super.batchLock(taskTrackerNodeGroup, taskTrackerIdentity, jobPos, now);
+            }
+        };
+        int warm = warmUp(preLoader, nodeGroup);
+        List<JobPo> first = preLoader.takeBatch(nodeGroup, "test_identity", BATCH_SIZE);
+        Assert.assertEquals(BATCH_SIZE / 2, first.size());
+        Assert.assertEquals(BATCH_SIZE / 2 + warm, countRunning(nodeGroup));
+
+        List<JobPo> second = preLoader.takeBatch(nodeGroup, "test_identity", BATCH_SIZE);
+        Assert.assertEquals(BATCH_SIZE, second.size());
+        Set<String> jobIds = new HashSet<String>();
+        for (JobPo jobPo : first) {
+            jobIds.add(jobPo.getJobId());
+        }
+        for (JobPo jobPo : second) {
+            Assert.assertTrue(jobIds.add(jobPo.getJobId()));
+        }
+        Assert.assertEquals(BATCH_SIZE / 2 + BATCH_SIZE + warm, countRunning(nodeGroup));
+    }
+
+    /**
+     * 开启分区, 自己的分区按 job_partition 加载, 再加上没有分区的到期很久的,
+     * 自己的分区还有任务时不加载其他JobTracker分区的; 自己的分区取完之后加载全部, 最终全部取到
+     */
+    @Test
+    public void testPartitionOrphan() throws Exception {
+        String nodeGroup = "partition_orphan_test";
+        long now = SystemClock.now();
+        prepare(nodeGroup, now - 5000);
+        JobPartitioner partitioner = new JobPartitioner(config.getIdentity());
+        partitioner.addJobTracker("other_job_tracker");
+        // 其他JobTracker的分区: 一半模拟旧版本写入的没有分区, 一半到期更早, 加载了就会排在前面
+        List<Object[]> noPartition = new ArrayList<Object[]>();
+        List<Object[]> otherPartition = new ArrayList<Object[]>();
+        Set<String> otherJobIds = new HashSet<String>();
+        int ownedNum = 0;
+        for (int i = 0; i < JOB_NUM; i++) {
+            String jobId = "job_" + i;
+            if (partitioner.owns(jobId)) {
+                ownedNum++;
+            } else if (i % 2 == 0) {
+                noPartition.add(new Object[]{jobId});
+            } else {
+                otherPartition.add(new Object[]{now - 8000, jobId});
+                otherJobIds.add(jobId);
+            }
+        }
+        String tableName = JobQueueUtils.getExecutableQueueName(nodeGroup);
+        sqlTemplate.batchUpdate("UPDATE `" + tableName + "` SET `job_partition` = NULL WHERE `job_id` = ?",
+                noPartition.toArray(new Object[noPartition.size()][]));
+        sqlTemplate.batchUpdate("UPDATE `" + tableName + "` SET `trigger_time` = ? WHERE `job_id` = ?",
+                otherPartition.toArray(new Object[otherPartition.size()][]));
+
+        config.setParameter(ExtConfig.JOB_TRACKER_PRELOADER_PARTITION_ENABLE, "true");
+        config.setParameter(ExtConfig.JOB_TRACKER_PRELOADER_PARTITION_ORPHAN_SECONDS, "1");
+        MysqlPreLoader preLoader = new MysqlPreLoader(createAppContext());
+        preLoader.addJobTracker("other_job_tracker");
+
+        Set<String> jobIds = new HashSet<String>();
+        long deadline = SystemClock.now() + 10000;
+        while (jobIds.size() < JOB_NUM && SystemClock.now() < deadline) {
+            List<JobPo> jobPos = preLoader.takeBatch(nodeGroup, "test_identity", BATCH_SIZE);
+            if (jobPos.size() == 0) {
+                Thread.sleep(10L);
+            }
+            for (JobPo jobPo : jobPos) {
+                if (jobIds.size() < ownedNum + noPartition.size()) {
+                    // 自己的和没有分区的取完之前, 不会取到其他JobTracker分区的
+                    Assert.assertFalse(otherJobIds.contains(jobPo.getJobId()));
+                }
+                Assert.assertTrue(jobIds.add(jobPo.getJobId()));
+            }
+        }
+        Assert.assertEquals(JOB_NUM, jobIds.size());
+        Assert.assertEquals(JOB_NUM, countRunning(nodeGroup));
+    }
+
+    private int countRunning(String nodeGroup) throws Exception {
+        Long count = sqlTemplate.queryForValue("SELECT COUNT(1) FROM `" +
+                JobQueueUtils.getExecutableQueueName(nodeGroup) + "` WHERE `is_running` = ?", true);
+        return count.intValue();
+    }
+}
@@ -0,0 +1,177 @@
+package com.github.ltsopensource.queue.support;
+
+import com.github.ltsopensource.core.AppContext;
+import com.github.ltsopensource.core.cluster.Config;
+import com.github.ltsopensource.core.constant.ExtConfig;
+import com.github.ltsopensource.core.support.SystemClock;
+import com.github.ltsopensource.ec.injvm.InjvmEventCenter;
+import com.github.ltsopensource.queue.ExecutableJobQueue;
+import com.github.ltsopensource.queue.domain.JobPo;
+import com.github.ltsopensource.queue.memory.MemoryJobQueueFactory;
+import com.github.ltsopensource.queue.memory.MemoryPreLoader;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class JobPartitionerTest {
+
+    private static final int JOB_TRACKER_NUM = 3;
+    private static final int THREAD_NUM = 2;
+    private static final int JOB_NUM = 6000;
+
+    @Test
+    public void testRebalance() {
+        List<JobPartitioner> partitioners = new ArrayList<JobPartitioner>();
+        for (int i = 0; i < JOB_TRACKER_NUM; i++) {
+            partitioners.add(new JobPartitioner("job_tracker_" + i));
+        }
+        for (JobPartitioner partitioner : partitioners) {
+            for (int i = 0; i < JOB_TRACKER_NUM; i++) {
+                partitioner.addJobTracker("job_tracker_" + i);
+            }
+        }
+        assertEachJobOwnedOnce(partitioners);
+
+        // 退出一个之后, 剩下的重新分配
+        for (JobPartitioner partitioner : partitioners) {
+            partitioner.removeJobTracker("job_tracker_0");
+        }
+        partitioners.remove(0);
+        assertEachJobOwnedOnce(partitioners);
+
+        // 只剩自己的时候负责全部
+        partitioners.get(0).removeJobTracker("job_tracker_2");
+        Assert.assertNull(partitioners.get(0).getOwnedPartitions());
+        Assert.assertTrue(partitioners.get(0).owns("any_job"));
+    }
+
+    private void assertEachJobOwnedOnce(List<JobPartitioner> partitioners) {
+        int[] ownedNum = new int[partitioners.size()];
+        for (int i = 0; i < 10000; i++) {
+            int owners = 0;
+            for (int j = 0; j < partitioners.size(); j++) {
+                if (partitioners.get(j).owns("job_" + i)) {
+                    owners++;
+                    ownedNum[j]++;
+                }
+            }
+            Assert.assertEquals(1, owners);
+        }
+        for (int num : ownedNum) {
+            // 不会太不均匀
+            Assert.assertTrue(num > 10000 / partitioners.size() / 3);
+        }
+    }
+
+    /**
+     * 多个JobTracker同时从同一个队列中取任务, 对比分区前后 lockJob 的成功率
+     */
+    @Test
+    public void testLockSuccessRate() throws Exception {
+        double rate = simulate(false);
+        double partitionRate = simulate(true);
+        System.out.println("lock success rate, no partition:" + rate + ", partition:" + partitionRate);
+        Assert.assertTrue(partitionRate > rate);
+    }
+
+    private double simulate(boolean partition) throws Exception {
+        String clusterName = "partition_test_" + System.nanoTime();
+        final List<CountingPreLoader> preLoaders = new ArrayList<CountingPreLoader>();
+        ExecutableJobQueue executableJobQueue = null;
+        for (int i = 0; i < JOB_TRACKER_NUM; i++) {
+            Config config = new Config();
+            config.setIdentity("job_tracker_" + i);
+            // 相同的集群名字共享同一个内存队列
+            config.setClusterName(clusterName);
+            config.setDataPath(System.getProperty("java.io.tmpdir"));
+            config.setParameter(ExtConfig.JOB_TRACKER_PRELOADER_PARTITION_ENABLE, String.valueOf(partition));
+            AppContext appContext = new AppContext() {
+            };
+            appContext.setConfig(config);
+            appContext.setEventCenter(new InjvmEventCenter());
+            if (executableJobQueue == null) {
+                executableJobQueue = new MemoryJobQueueFactory().getExecutableJobQueue(config);
+            }
+            preLoaders.add(new CountingPreLoader(appContext));
+        }
+        for (CountingPreLoader preLoader : preLoaders) {
+            for (int i = 0; i < JOB_TRACKER_NUM; i++) {
+                preLoader.addJobTracker("job_tracker_" + i);
+            }
+        }
+
+        long now = SystemClock.now() - 1000;
+        for (int i = 0; i < JOB_NUM; i++) {
+            JobPo jobPo = new JobPo();
+            jobPo.setJobId("job_" + i);
+            jobPo.setTaskId("task_" + i);
+            jobPo.setRealTaskId("task_" + i);
+            jobPo.setPriority(100);
+            jobPo.setTaskTrackerNodeGroup("partition_test");
+            jobPo.setGmtCreated(now);
+            jobPo.setTriggerTime(now);
+            executableJobQueue.add(jobPo);
+        }
+
+        final AtomicInteger taken = new AtomicInteger(0);
+        final long deadline = SystemClock.now() + 20000;
+        final CountDownLatch latch = new CountDownLatch(JOB_TRACKER_NUM * THREAD_NUM);
+        for (final CountingPreLoader preLoader : preLoaders) {
+            for (int i = 0; i < THREAD_NUM; i++) {
+                new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            while (taken.get() < JOB_NUM && SystemClock.now() < deadline) {
+                                if (preLoader.take("partition_test", "test_identity") != null) {
+                                    taken.incrementAndGet();
+                                } else {
+                                    Thread.sleep(1L);
+                                }
+                            }
+                        } catch (InterruptedException ignored) {
+                        } finally {
+                            latch.countDown();
+                        }
+                    }
+                }).start();
+            }
+        }
+        latch.await();
+        Assert.assertEquals(JOB_NUM, taken.get());
+
+        int lockNum = 0;
+        int lockedNum = 0;
+        for (CountingPreLoader preLoader : preLoaders) {
+            lockNum += preLoader.lockNum.get();
+            lockedNum += preLoader.lockedNum.get();
+        }
+        Assert.assertEquals(JOB_NUM, lockedNum);
+        return lockedNum * 1.0 / lockNum;
+    }
+
+    private static class CountingPreLoader extends MemoryPreLoader {
+
+        private final AtomicInteger lockNum = new AtomicInteger(0);
+        private final AtomicInteger lockedNum = new AtomicInteger(0);
+
+        CountingPreLoader(AppContext appContext) {
+            super(appContext);
+        }
+
+        @Override
+        protected boolean lockJob(String taskTrackerNodeGroup, String jobId, String taskTrackerIdentity,
+                                  Long triggerTime, Long gmtModified) {
+            lockNum.incrementAndGet();
+            boolean locked = super.lockJob(taskTrackerNodeGroup, jobId, taskTrackerIdentity, triggerTime, gmtModified);
+            if (locked) {
+                lockedNum.incrementAndGet();
+            }
+            return locked;
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package com.github.ltsopensource.remoting.codec;
+
+import com.alibaba.fastjson.serializer.JSONSerializer;
+import com.alibaba.fastjson.serializer.SerializeWriter;
+import com.github.ltsopensource.core.commons.io.ByteBufferOutputStream;
+import com.github.ltsopensource.core.domain.Action;
+import com.github.ltsopensource.core.domain.Job;
+import com.github.ltsopensource.core.domain.JobMeta;
+import com.github.ltsopensource.core.domain.JobRunResult;
+import com.github.ltsopensource.core.protocol.JobProtos;
+import com.github.ltsopensource.core.protocol.command.JobCompletedRequest;
+import com.github.ltsopensource.core.protocol.command.JobPushRequest;
+import com.github.ltsopensource.remoting.RemotingCommandBody;
+import com.github.ltsopensource.remoting.protocol.RemotingCommand;
+import com.github.ltsopensource.remoting.serialize.FastJsonSerializable;
+import com.github.ltsopensource.remoting.serialize.Hessian2Serializable;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * CompactCodec 编解码正确性, 以及和 DefaultCodec 的往返耗时对比
+ */
+public class CompactCodecTest {
+
+    private static final int ROUND = 20000;
+
+    private JobMeta newJobMeta(int i) {
+        Job job = new Job();
+        job.setTaskId("task_" + i);
+        job.setTaskTrackerNodeGroup("test_trade_TaskTracker");
+        job.setSubmitNodeGroup("test_jobClient");
+        job.setParam("shopId", String.valueOf(i));
+        job.setNeedFeedback(true);
+        JobMeta jobMeta = new JobMeta();
+        jobMeta.setJob(job);
+        jobMeta.setJobId("0123456789ABCDEF0123456789ABCDE" + (i % 10));
+        jobMeta.setRealTaskId(job.getTaskId());
+        return jobMeta;
+    }
+
+    private RemotingCommand newPushCommand() {
+        JobPushRequest body = new JobPushRequest();
+        List<JobMeta> jobMetas = new ArrayList<JobMeta>();
+        for (int i = 0; i < 10; i++) {
+            jobMetas.add(newJobMeta(i));
+        }
+        body.setJobMetaList(jobMetas);
+        body.setNodeGroup("test_trade_JobTracker");
+        body.setIdentity("JT_192.168.1.1_8888");
+        return RemotingCommand.createRequestCommand(JobProtos.RequestCode.PUSH_JOB.code(), body);
+    }
+
+    private RemotingCommand newCompletedCommand() {
+        JobCompletedRequest body = new JobCompletedRequest();
+        for (int i = 0; i < 10; i++) {
+            JobRunResult result = new JobRunResult();
+            result.setJobMeta(newJobMeta(i));
+            result.setAction(Action.EXECUTE_SUCCESS);
+            result.setMsg("ok");
+            result.setTime(System.currentTimeMillis());
+            body.addJobResult(result);
+        }
+        body.setReceiveNewJob(true);
+        body.setNodeGroup("test_trade_TaskTracker");
+        body.setIdentity("TT_192.168.1.2");
+        return RemotingCommand.createRequestCommand(JobProtos.RequestCode.JOB_COMPLETED.code(), body);
+    }
+
+    private RemotingCommand roundTrip(Codec codec, RemotingCommand cmd) throws Exception {
+        ByteBuffer byteBuffer = codec.encode(cmd);
+        // 跳过长度, 和 transport 中的 frame decoder 一致
+        int length = byteBuffer.getInt();
+        Assert.assertEquals(length, byteBuffer.remaining());
+        return codec.decode(byteBuffer.slice());
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        RemotingCommand push = newPushCommand();
+        push.setRemark("远程调用");
+        for (int sid : new int[]{new FastJsonSerializable().getId(), new Hessian2Serializable().getId()}) {
+            push.setSid(sid);
+            RemotingCommand decoded = roundTrip(new CompactCodec(), push);
+            Assert.assertEquals(push.getCode(), decoded.getCode());
+            Assert.assertEquals(push.getOpaque(), decoded.getOpaque());
+            Assert.assertEquals(push.getFlag(), decoded.getFlag());
+            Assert.assertEquals(push.getRemark(), decoded.getRemark());
+            JobPushRequest body = decoded.getBody();
+            Assert.assertEquals(10, body.getJobMetaList().size());
+            Assert.assertEquals("task_3", body.getJobMetaList().get(3).getJob().getTaskId());
+            Assert.assertEquals("3", body.getJobMetaList().get(3).getJob().getParam("shopId"));
+            Assert.assertEquals("JT_192.168.1.1_8888", body.getIdentity());
+        }
+
+        // 没有body的应答
+        RemotingCommand response = RemotingCommand.createResponseCommand(JobProtos.ResponseCode.JOB_PULL_SUCCESS.code());
+        RemotingCommand decoded = roundTrip(new CompactCodec(), response);
+        Assert.assertEquals(response.getCode(), decoded.getCode());
+        Assert.assertNull(decoded.getRemark());
+        Assert.assertNull(decoded.getBody());
+    }
+
+    @Test
+    public void testUnregisteredBody() throws Exception {
+        RemotingCommand cmd = RemotingCommand.createRequestCommand(1, new TestBody("hello"));
+        RemotingCommand decoded = roundTrip(new CompactCodec(), cmd);
+        TestBody body = decoded.getBody();
+        Assert.assertEquals("hello", body.getValue());
+    }
+
+    /**
+     * JobPushRequest 和 JobCompletedRequest 往返(encode + decode)耗时对比
+     */
+    @Test
+    public void testCompareWithDefaultCodec() throws Exception {
+        RemotingCommand[] commands = new RemotingCommand[]{newPushCommand(), newCompletedCommand()};
+        Codec[] codecs = new Codec[]{new DefaultCodec(), new CompactCodec()};
+        for (int round = 0; round < 3; round++) {
+            for (RemotingCommand cmd : commands) {
+                StringBuilder sb = new StringBuilder("round " + round + ", " + cmd.getBody().getClass().getSimpleName());
+                for (Codec codec : codecs) {
+                    long start = System.nanoTime();
+                    for (int i = 0; i < ROUND; i++) {
+                        roundTrip(codec, cmd);
+                    }
+                    long cost = System.nanoTime() - start;
+                    sb.append(", ").append(codec.getClass().getSimpleName()).append("(ns/op):").append(cost / ROUND)
+                            .append(" size:").append(codec.encode(cmd).remaining());
+                }
+                System.out.println(sb.toString());
+            }
+        }
+    }
+
+    /**
+     * fastjson 直接编码到输出buffer 和 原来先生成 String 再 getBytes 的结果一致, 并对比每个推送任务的编码耗时
+     */
+    @Test
+    public void testPushSerialize() throws Exception {
+        JobPushRequest body = (JobPushRequest) newPushCommand().getBody();
+        // 多字节字符和代理对
+        body.getJobMetaList().get(0).getJob().setParam("name", "远程调用\uD83D\uDE00");
+        FastJsonSerializable serializable = new FastJsonSerializable();
+        Assert.assertArrayEquals(legacySerialize(body), serialize(serializable, body));
+
+        int jobNum = body.getJobMetaList().size();
+        RemotingCommand cmd = RemotingCommand.createRequestCommand(JobProtos.RequestCode.PUSH_JOB.code(), body);
+        CompactCodec codec = new CompactCodec();
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < ROUND; i++) {
+                legacySerialize(body);
+            }
+            long legacy = (System.nanoTime() - start) / ROUND / jobNum;
+
+            start = System.nanoTime();
+            for (int i = 0; i < ROUND; i++) {
+                serialize(serializable, body);
+            }
+            long direct = (System.nanoTime() - start) / ROUND / jobNum;
+
+            start = System.nanoTime();
+            for (int i = 0; i < ROUND; i++) {
+                codec.encode(cmd);
+            }
+            long encode = (System.nanoTime() - start) / ROUND / jobNum;
+            System.out.println("round " + round + ", body serialize(ns/job) legacy:" + legacy
+                    + ", direct:" + direct + ", CompactCodec.encode(ns/job):" + encode);
+        }
+    }
+
+    /**
+     * 每个推送任务序列化的内存分配: 直接编码到输出buffer 比 先生成 String 再 getBytes 少
+     * 不用厂商的 ThreadMXBean, 用多次迭代前后的堆使用量差估算, 中间发生过GC的结果不用
+     */
+    @Test
+    public void testPushAllocation() throws Exception {
+        final JobPushRequest body = (JobPushRequest) newPushCommand().getBody();
+        final FastJsonSerializable serializable = new FastJsonSerializable();
+        int jobNum = body.getJobMetaList().size();
+        Runnable legacy = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    legacySerialize(body);
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        };
+        Runnable direct = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    serialize(serializable, body);
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        };
+        // 预热
+        allocatedBytes(legacy, ROUND);
+        allocatedBytes(direct, ROUND);
+
+        long legacyBytes = Long.MAX_VALUE;
+        long directBytes = Long.MAX_VALUE;
+        // 每次次数少一些, 中间不容易发生GC; 堆使用量按TLAB增长, 取多次中最小的
+        int times = 100;
+        for (int round = 0; round < 20; round++) {
+            legacyBytes = Math.min(legacyBytes, allocatedBytes(legacy, times));
+            directBytes = Math.min(directBytes, allocatedBytes(direct, times));
+        }
+        Assume.assumeTrue(legacyBytes != Long.MAX_VALUE && directBytes != Long.MAX_VALUE);
+        System.out.println("body serialize(bytes/job) legacy:" + legacyBytes / times / jobNum
+                + ", direct:" + directBytes / times / jobNum);
+        Assert.assertTrue("legacy:" + legacyBytes + ", direct:" + directBytes, directBytes < legacyBytes);
+    }
+
+    /**
+     * 执行 times 次分配的堆内存, 中间发生过GC返回 Long.MAX_VALUE
+     */
+    private long allocatedBytes(Runnable runnable, int times) {
+        Runtime runtime = Runtime.getRuntime();
+        long gcCount = gcCount();
+        long start = runtime.totalMemory() - runtime.freeMemory();
+        for (int i = 0; i < times; i++) {
+            runnable.run();
+        }
+        long end = runtime.totalMemory() - runtime.freeMemory();
+        if (gcCount() != gcCount || end < start) {
+            return Long.MAX_VALUE;
+        }
+        return end - start;
+    }
+
+    private long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gcMXBean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gcMXBean.getCollectionCount());
+        }
+        return count;
+    }
+
+    private byte[] serialize(FastJsonSerializable serializable, Object obj) throws Exception {
+        ByteBufferOutputStream out = new ByteBufferOutputStream(4096);
+        serializable.serialize(obj, out);
+        ByteBuffer buffer = out.toByteBuffer();
+        return Arrays.copyOf(buffer.array(), buffer.limit());
+    }
+
+    /**
+     * 原来的实现: 先转成 String, 再 getBytes 写入
+     */
+    private byte[] legacySerialize(Object obj) throws Exception {
+        ByteBufferOutputStream out = new ByteBufferOutputStream(4096);
+        SerializeWriter writer = new SerializeWriter();
+        try {
+            new JSONSerializer(writer).write(obj);
+            writer.writeTo(out, Charset.forName("UTF-8"));
+        } finally {
+            writer.close();
+        }
+        ByteBuffer buffer = out.toByteBuffer();
+        return Arrays.copyOf(buffer.array(), buffer.limit());
+    }
+
+    public static class TestBody implements RemotingCommandBody {
+
+        private String value;
+
+        public TestBody() {
+        }
+
+        public TestBody(String value) {
+            this.value = value;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        public void setValue(String value) {
+            this.value = value;
+        }
+
+        @Override
+        public void checkFields() {
+        }
+    }
+}
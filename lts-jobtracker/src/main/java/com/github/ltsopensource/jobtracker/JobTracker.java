@@ -2,6 +2,7 @@ package com.github.ltsopensource.jobtracker;
 
 import com.github.ltsopensource.biz.logger.SmartJobLogger;
 import com.github.ltsopensource.core.cluster.AbstractServerNode;
+import com.github.ltsopensource.core.constant.ExtConfig;
 import com.github.ltsopensource.core.spi.ServiceLoader;
 import com.github.ltsopensource.jobtracker.channel.ChannelManager;
 import com.github.ltsopensource.jobtracker.cmd.AddJobHttpCmd;
@@ -12,6 +13,9 @@ import com.github.ltsopensource.jobtracker.domain.JobTrackerNode;
 import com.github.ltsopensource.jobtracker.monitor.JobTrackerMStatReporter;
 import com.github.ltsopensource.jobtracker.processor.RemotingDispatcher;
 import com.github.ltsopensource.jobtracker.sender.JobSender;
+import com.github.ltsopensource.jobtracker.support.JobDispatcher;
+import com.github.ltsopensource.jobtracker.support.JobPullLongPoller;
+import com.github.ltsopensource.jobtracker.support.JobPusher;
 import com.github.ltsopensource.jobtracker.support.JobReceiver;
 import com.github.ltsopensource.jobtracker.support.NonRelyOnPrevCycleJobScheduler;
 import com.github.ltsopensource.jobtracker.support.OldDataHandler;
@@ -65,6 +69,13 @@ public class JobTracker extends AbstractServerNode<JobTrackerNode, JobTrackerApp
         appContext.setPreLoader(factory.getPreLoader(appContext));
         appContext.setJobReceiver(new JobReceiver(appContext));
         appContext.setJobSender(new JobSender(appContext));
+        appContext.setJobPusher(new JobPusher(appContext));
+        if (config.getParameter(ExtConfig.JOB_TRACKER_LONG_POLL_ENABLE, false)) {
+            appContext.setJobPullLongPoller(new JobPullLongPoller(appContext));
+        }
+        if (config.getParameter(ExtConfig.JOB_TRACKER_DISPATCHER_ENABLE, false)) {
+            appContext.setJobDispatcher(new JobDispatcher(appContext));
+        }
         appContext.setNonRelyOnPrevCycleJobScheduler(new NonRelyOnPrevCycleJobScheduler(appContext));
         appContext.setExecutableDeadJobChecker(new ExecutableDeadJobChecker(appContext));
         appContext.setExecutingDeadJobChecker(new ExecutingDeadJobChecker(appContext));
@@ -84,6 +95,9 @@ public class JobTracker extends AbstractServerNode<JobTrackerNode, JobTrackerApp
     protected void afterStart() {
         appContext.getChannelManager().start();
         appContext.getMStatReporter().start();
+        if (appContext.getJobDispatcher() != null) {
+            appContext.getJobDispatcher().start();
+        }
     }
 
     @Override
@@ -95,6 +109,13 @@ public class JobTracker extends AbstractServerNode<JobTrackerNode, JobTrackerApp
 
     @Override
     protected void beforeStop() {
+        if (appContext.getJobDispatcher() != null) {
+            appContext.getJobDispatcher().stop();
+        }
+        if (appContext.getJobPullLongPoller() != null) {
+            // 返回所有挂起的长轮询pull请求
+            appContext.getJobPullLongPoller().stop();
+        }
     }
 
     @Override
@@ -7,7 +7,6 @@ import com.github.ltsopensource.core.constant.Constants;
 import com.github.ltsopensource.core.constant.Level;
 import com.github.ltsopensource.core.domain.JobMeta;
 import com.github.ltsopensource.core.domain.JobRunResult;
-import com.github.ltsopensource.core.json.JSON;
 import com.github.ltsopensource.core.logger.Logger;
 import com.github.ltsopensource.core.logger.LoggerFactory;
 import com.github.ltsopensource.core.support.CronExpressionUtils;
@@ -16,10 +15,14 @@ import com.github.ltsopensource.core.support.JobUtils;
 import com.github.ltsopensource.core.support.SystemClock;
 import com.github.ltsopensource.jobtracker.domain.JobTrackerAppContext;
 import com.github.ltsopensource.queue.domain.JobPo;
-import com.github.ltsopensource.store.jdbc.exception.DupEntryException;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * @author Robert HG (254963746@qq.com) on 11/11/15.
@@ -38,6 +41,33 @@ public class JobFinishHandler {
         if (CollectionUtils.isEmpty(results)) {
             return;
         }
+        // 同一批中 jobId 重复的放到下一轮处理, 保证和逐个处理的结果一致
+        List<JobRunResult> remains = results;
+        while (remains.size() > 0) {
+            Set<String> jobIds = new HashSet<String>();
+            List<JobRunResult> batch = new ArrayList<JobRunResult>(remains.size());
+            List<JobRunResult> next = new ArrayList<JobRunResult>();
+            for (JobRunResult result : remains) {
+                if (jobIds.add(result.getJobMeta().getJobId())) {
+                    batch.add(result);
+                } else {
+                    next.add(result);
+                }
+            }
+            finish(batch);
+            remains = next;
+        }
+    }
+
+    /**
+     * 批量完成, 每张表一次 IN 查询, 可执行队列一次多行插入, 正在执行队列一次多行删除
+     */
+    private void finish(List<JobRunResult> results) {
+
+        List<String> cronJobIds = new ArrayList<String>();
+        List<String> repeatJobIds = new ArrayList<String>();
+        Set<String> retryRepeatJobIds = new HashSet<String>();
+        List<String> executingJobIds = new ArrayList<String>(results.size());
 
         for (JobRunResult result : results) {
 
@@ -52,44 +82,55 @@ public class JobFinishHandler {
                 if (isOnce) {
                     finishNoReplyPrevCronJob(jobMeta);
                 } else {
-                    finishCronJob(jobMeta.getJobId());
+                    cronJobIds.add(jobMeta.getJobId());
                 }
             } else if (jobMeta.getJob().isRepeatable()) {
                 if (isOnce) {
                     finishNoReplyPrevRepeatJob(jobMeta, isRetryForThisTime);
                 } else {
-                    finishRepeatJob(jobMeta.getJobId(), isRetryForThisTime);
+                    repeatJobIds.add(jobMeta.getJobId());
+                    if (isRetryForThisTime) {
+                        retryRepeatJobIds.add(jobMeta.getJobId());
+                    }
                 }
             }
+            executingJobIds.add(jobMeta.getJobId());
+        }
 
-            // 从正在执行的队列中移除
-            appContext.getExecutingJobQueue().remove(jobMeta.getJobId());
+        List<JobPo> executableJobPos = new ArrayList<JobPo>();
+        finishCronJobs(cronJobIds, executableJobPos);
+        finishRepeatJobs(repeatJobIds, retryRepeatJobIds, executableJobPos);
+        if (executableJobPos.size() > 0) {
+            int num = appContext.getExecutableJobQueue().addBatch(executableJobPos);
+            if (num < executableJobPos.size()) {
+                LOGGER.warn("ExecutableJobQueue already exist, ignore num:" + (executableJobPos.size() - num));
+            }
         }
+
+        // 从正在执行的队列中移除
+        appContext.getExecutingJobQueue().removeBatch(executingJobIds);
     }
 
-    private void finishCronJob(String jobId) {
-        JobPo jobPo = appContext.getCronJobQueue().getJob(jobId);
-        if (jobPo == null) {
-            // 可能任务队列中改条记录被删除了
-            return;
-        }
-        Date nextTriggerTime = CronExpressionUtils.getNextTriggerTime(jobPo.getCronExpression());
-        if (nextTriggerTime == null) {
-            // 从CronJob队列中移除
-            appContext.getCronJobQueue().remove(jobId);
-            jobRemoveLog(jobPo, "Cron");
+    private void finishCronJobs(List<String> jobIds, List<JobPo> executableJobPos) {
+        if (jobIds.isEmpty()) {
             return;
         }
-        // 表示下次还要执行
-        try {
+        // 不存在的可能是任务队列中改条记录被删除了
+        for (JobPo jobPo : appContext.getCronJobQueue().getJobsByJobIds(jobIds)) {
+            Date nextTriggerTime = CronExpressionUtils.getNextTriggerTime(jobPo.getCronExpression());
+            if (nextTriggerTime == null) {
+                // 从CronJob队列中移除
+                appContext.getCronJobQueue().remove(jobPo.getJobId());
+                jobRemoveLog(jobPo, "Cron");
+                continue;
+            }
+            // 表示下次还要执行
             jobPo.setTaskTrackerIdentity(null);
             jobPo.setIsRunning(false);
             jobPo.setTriggerTime(nextTriggerTime.getTime());
             jobPo.setGmtModified(SystemClock.now());
             jobPo.setInternalExtParam(Constants.EXE_SEQ_ID, JobUtils.generateExeSeqId(jobPo));
-            appContext.getExecutableJobQueue().add(jobPo);
-        } catch (DupEntryException e) {
-            LOGGER.warn("ExecutableJobQueue already exist:" + JSON.toJSONString(jobPo));
+            executableJobPos.add(jobPo);
         }
     }
 
@@ -131,40 +172,50 @@ public class JobFinishHandler {
         }
     }
 
-    private void finishRepeatJob(String jobId, boolean isRetryForThisTime) {
-        JobPo jobPo = appContext.getRepeatJobQueue().getJob(jobId);
-        if (jobPo == null) {
-            // 可能任务队列中改条记录被删除了
-            return;
-        }
-        if (jobPo.getRepeatCount() != -1 && jobPo.getRepeatedCount() >= jobPo.getRepeatCount()) {
-            // 已经重试完成, 那么删除
-            appContext.getRepeatJobQueue().remove(jobId);
-            jobRemoveLog(jobPo, "Repeat");
+    private void finishRepeatJobs(List<String> jobIds, Set<String> retryJobIds, List<JobPo> executableJobPos) {
+        if (jobIds.isEmpty()) {
             return;
         }
-
-        int repeatedCount = jobPo.getRepeatedCount();
-        // 如果当前完成的job是重试的,那么不要增加repeatedCount
-        if (!isRetryForThisTime) {
-            // 更新repeatJob的重复次数
-            repeatedCount = appContext.getRepeatJobQueue().incRepeatedCount(jobId);
+        List<JobPo> repeatJobPos = new ArrayList<JobPo>();
+        List<String> incJobIds = new ArrayList<String>();
+        // 不存在的可能是任务队列中改条记录被删除了
+        for (JobPo jobPo : appContext.getRepeatJobQueue().getJobsByJobIds(jobIds)) {
+            if (jobPo.getRepeatCount() != -1 && jobPo.getRepeatedCount() >= jobPo.getRepeatCount()) {
+                // 已经重试完成, 那么删除
+                appContext.getRepeatJobQueue().remove(jobPo.getJobId());
+                jobRemoveLog(jobPo, "Repeat");
+                continue;
+            }
+            repeatJobPos.add(jobPo);
+            // 如果当前完成的job是重试的,那么不要增加repeatedCount
+            if (!retryJobIds.contains(jobPo.getJobId())) {
+                incJobIds.add(jobPo.getJobId());
+            }
         }
-        if (repeatedCount == -1) {
-            // 表示任务已经被删除了
+        if (repeatJobPos.isEmpty()) {
             return;
         }
-        long nexTriggerTime = JobUtils.getRepeatNextTriggerTime(jobPo);
-        try {
+        // 更新repeatJob的重复次数
+        Map<String, Integer> repeatedCounts = incJobIds.isEmpty() ? Collections.<String, Integer>emptyMap()
+                : appContext.getRepeatJobQueue().incRepeatedCount(incJobIds);
+
+        for (JobPo jobPo : repeatJobPos) {
+            Integer repeatedCount = jobPo.getRepeatedCount();
+            if (!retryJobIds.contains(jobPo.getJobId())) {
+                repeatedCount = repeatedCounts.get(jobPo.getJobId());
+                if (repeatedCount == null) {
+                    // 表示任务已经被删除了
+                    continue;
+                }
+            }
+            long nexTriggerTime = JobUtils.getRepeatNextTriggerTime(jobPo);
             jobPo.setRepeatedCount(repeatedCount);
             jobPo.setTaskTrackerIdentity(null);
             jobPo.setIsRunning(false);
             jobPo.setTriggerTime(nexTriggerTime);
             jobPo.setGmtModified(SystemClock.now());
             jobPo.setInternalExtParam(Constants.EXE_SEQ_ID, JobUtils.generateExeSeqId(jobPo));
-            appContext.getExecutableJobQueue().add(jobPo);
-        } catch (DupEntryException e) {
-            LOGGER.warn("ExecutableJobQueue already exist:" + JSON.toJSONString(jobPo));
+            executableJobPos.add(jobPo);
         }
     }
 
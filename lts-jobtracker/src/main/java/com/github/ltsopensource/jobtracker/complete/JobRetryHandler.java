@@ -6,7 +6,6 @@ import com.github.ltsopensource.core.constant.ExtConfig;
 import com.github.ltsopensource.core.domain.Job;
 import com.github.ltsopensource.core.domain.JobMeta;
 import com.github.ltsopensource.core.domain.JobRunResult;
-import com.github.ltsopensource.core.json.JSON;
 import com.github.ltsopensource.core.logger.Logger;
 import com.github.ltsopensource.core.logger.LoggerFactory;
 import com.github.ltsopensource.core.spi.ServiceLoader;
@@ -17,10 +16,15 @@ import com.github.ltsopensource.jobtracker.complete.retry.DefaultJobRetryTimeGen
 import com.github.ltsopensource.jobtracker.complete.retry.JobRetryTimeGenerator;
 import com.github.ltsopensource.jobtracker.domain.JobTrackerAppContext;
 import com.github.ltsopensource.queue.domain.JobPo;
-import com.github.ltsopensource.store.jdbc.exception.DupEntryException;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * @author Robert HG (254963746@qq.com) on 11/11/15.
@@ -44,11 +48,60 @@ public class JobRetryHandler {
         if (CollectionUtils.isEmpty(results)) {
             return;
         }
+        // 同一批中 jobId 重复的放到下一轮处理, 保证和逐个处理的结果一致
+        List<JobRunResult> remains = results;
+        while (remains.size() > 0) {
+            Set<String> jobIds = new HashSet<String>();
+            List<JobRunResult> batch = new ArrayList<JobRunResult>(remains.size());
+            List<JobRunResult> next = new ArrayList<JobRunResult>();
+            for (JobRunResult result : remains) {
+                if (jobIds.add(result.getJobMeta().getJobId())) {
+                    batch.add(result);
+                } else {
+                    next.add(result);
+                }
+            }
+            retry(batch);
+            remains = next;
+        }
+    }
+
+    /**
+     * 批量重试, 每张表一次 IN 查询, 可执行队列一次多行插入, 正在执行队列一次多行删除
+     */
+    private void retry(List<JobRunResult> results) {
+
+        List<String> jobIds = new ArrayList<String>(results.size());
+        for (JobRunResult result : results) {
+            jobIds.add(result.getJobMeta().getJobId());
+        }
+        Map<String, JobPo> executingJobPos = toMap(appContext.getExecutingJobQueue().getJobsByJobIds(jobIds));
+        if (executingJobPos.isEmpty()) {    // 表示已经被删除了
+            return;
+        }
+
+        List<String> cronJobIds = new ArrayList<String>();
+        List<String> repeatJobIds = new ArrayList<String>();
+        for (JobPo jobPo : executingJobPos.values()) {
+            if (jobPo.isCron()) {
+                cronJobIds.add(jobPo.getJobId());
+            } else if (jobPo.isRepeatable()) {
+                repeatJobIds.add(jobPo.getJobId());
+            }
+        }
+        Map<String, JobPo> cronJobPos = cronJobIds.isEmpty() ? Collections.<String, JobPo>emptyMap()
+                : toMap(appContext.getCronJobQueue().getJobsByJobIds(cronJobIds));
+        Map<String, JobPo> repeatJobPos = repeatJobIds.isEmpty() ? Collections.<String, JobPo>emptyMap()
+                : toMap(appContext.getRepeatJobQueue().getJobsByJobIds(repeatJobIds));
+
+        List<JobPo> executableJobPos = new ArrayList<JobPo>(executingJobPos.size());
+        List<String> removeJobIds = new ArrayList<String>(executingJobPos.size());
+
         for (JobRunResult result : results) {
 
             JobMeta jobMeta = result.getJobMeta();
             // 1. 加入到重试队列
-            JobPo jobPo = appContext.getExecutingJobQueue().getJob(jobMeta.getJobId());
+            JobPo jobPo = executingJobPos.get(jobMeta.getJobId());
             if (jobPo == null) {    // 表示已经被删除了
                 continue;
             }
@@ -65,7 +118,7 @@ public class JobRetryHandler {
 
             if (jobPo.isCron()) {
                 // 如果是 cron Job, 判断任务下一次执行时间和重试时间的比较
-                JobPo cronJobPo = appContext.getCronJobQueue().getJob(jobMeta.getJobId());
+                JobPo cronJobPo = cronJobPos.get(jobMeta.getJobId());
                 if (cronJobPo != null) {
                     Date nextTriggerTime = CronExpressionUtils.getNextTriggerTime(cronJobPo.getCronExpression());
                     if (nextTriggerTime != null && nextTriggerTime.getTime() < nextRetryTriggerTime) {
@@ -77,7 +130,7 @@ public class JobRetryHandler {
                     }
                 }
             } else if (jobPo.isRepeatable()) {
-                JobPo repeatJobPo = appContext.getRepeatJobQueue().getJob(jobMeta.getJobId());
+                JobPo repeatJobPo = repeatJobPos.get(jobMeta.getJobId());
                 if (repeatJobPo != null) {
                     // 比较下一次重复时间和重试时间
                     if (repeatJobPo.getRepeatCount() == -1 || (repeatJobPo.getRepeatedCount() < repeatJobPo.getRepeatCount())) {
@@ -101,13 +154,27 @@ public class JobRetryHandler {
             jobPo.setGmtModified(SystemClock.now());
             // 延迟重试时间就等于重试次数(分钟)
             jobPo.setTriggerTime(nextRetryTriggerTime);
-            try {
-                appContext.getExecutableJobQueue().add(jobPo);
-            } catch (DupEntryException e) {
-                LOGGER.warn("ExecutableJobQueue already exist:" + JSON.toJSONString(jobPo));
+            executableJobPos.add(jobPo);
+            removeJobIds.add(jobPo.getJobId());
+        }
+
+        if (executableJobPos.size() > 0) {
+            int num = appContext.getExecutableJobQueue().addBatch(executableJobPos);
+            if (num < executableJobPos.size()) {
+                LOGGER.warn("ExecutableJobQueue already exist, ignore num:" + (executableJobPos.size() - num));
+            }
+        }
+        // 从正在执行的队列中移除
+        appContext.getExecutingJobQueue().removeBatch(removeJobIds);
+    }
+
+    private static Map<String, JobPo> toMap(List<JobPo> jobPos) {
+        Map<String, JobPo> map = new HashMap<String, JobPo>();
+        if (jobPos != null) {
+            for (JobPo jobPo : jobPos) {
+                map.put(jobPo.getJobId(), jobPo);
             }
-            // 从正在执行的队列中移除
-            appContext.getExecutingJobQueue().remove(jobPo.getJobId());
         }
+        return map;
     }
 }
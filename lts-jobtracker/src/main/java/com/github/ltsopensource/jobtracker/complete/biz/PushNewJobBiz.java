@@ -30,7 +30,13 @@ public class PushNewJobBiz implements JobCompletedBiz {
         if (request.isReceiveNewJob()) {
             try {
                 // 查看有没有其他可以执行的任务
-                JobPushRequest jobPushRequest = getNewJob(request.getNodeGroup(), request.getIdentity());
+                JobPushRequest jobPushRequest = getNewJob(request.getNodeGroup(), request.getIdentity(),
+                        Math.max(request.getNewJobNum(), 1));
+                if (jobPushRequest != null && appContext.getJobDispatcher() != null) {
+                    // 主动推送时, 直接返回的新任务也要占用线程
+                    appContext.getJobDispatcher().onJobSent(request.getNodeGroup(), request.getIdentity(),
+                            jobPushRequest.getJobMetaList().size());
+                }
                 // 返回 新的任务
                 return RemotingCommand.createResponseCommand(RemotingProtos.ResponseCode.SUCCESS.code(), jobPushRequest);
             } catch (Exception ignored) {
@@ -42,9 +48,9 @@ public class PushNewJobBiz implements JobCompletedBiz {
     /**
      * 获取新任务去执行
      */
-    private JobPushRequest getNewJob(String taskTrackerNodeGroup, String taskTrackerIdentity) {
+    private JobPushRequest getNewJob(String taskTrackerNodeGroup, String taskTrackerIdentity, int size) {
 
-        JobSender.SendResult sendResult = appContext.getJobSender().send(taskTrackerNodeGroup, taskTrackerIdentity, 1, new JobSender.SendInvoker() {
+        JobSender.SendResult sendResult = appContext.getJobSender().send(taskTrackerNodeGroup, taskTrackerIdentity, size, new JobSender.SendInvoker() {
             @Override
             public JobSender.SendResult invoke(List<JobPo> jobPos) {
 
@@ -5,6 +5,9 @@ import com.github.ltsopensource.core.AppContext;
 import com.github.ltsopensource.core.remoting.RemotingServerDelegate;
 import com.github.ltsopensource.jobtracker.channel.ChannelManager;
 import com.github.ltsopensource.jobtracker.sender.JobSender;
+import com.github.ltsopensource.jobtracker.support.JobDispatcher;
+import com.github.ltsopensource.jobtracker.support.JobPullLongPoller;
+import com.github.ltsopensource.jobtracker.support.JobPusher;
 import com.github.ltsopensource.jobtracker.support.JobReceiver;
 import com.github.ltsopensource.jobtracker.support.NonRelyOnPrevCycleJobScheduler;
 import com.github.ltsopensource.jobtracker.support.OldDataHandler;
@@ -55,6 +58,10 @@ public class JobTrackerAppContext extends AppContext {
     private PreLoader preLoader;
     private JobReceiver jobReceiver;
     private JobSender jobSender;
+    private JobPusher jobPusher;
+    private JobPullLongPoller jobPullLongPoller;
+    // 为null表示没有启用主动推送
+    private JobDispatcher jobDispatcher;
 
     private NonRelyOnPrevCycleJobScheduler nonRelyOnPrevCycleJobScheduler;
 
@@ -66,6 +73,30 @@ public class JobTrackerAppContext extends AppContext {
         this.jobSender = jobSender;
     }
 
+    public JobPusher getJobPusher() {
+        return jobPusher;
+    }
+
+    public void setJobPusher(JobPusher jobPusher) {
+        this.jobPusher = jobPusher;
+    }
+
+    public JobPullLongPoller getJobPullLongPoller() {
+        return jobPullLongPoller;
+    }
+
+    public void setJobPullLongPoller(JobPullLongPoller jobPullLongPoller) {
+        this.jobPullLongPoller = jobPullLongPoller;
+    }
+
+    public JobDispatcher getJobDispatcher() {
+        return jobDispatcher;
+    }
+
+    public void setJobDispatcher(JobDispatcher jobDispatcher) {
+        this.jobDispatcher = jobDispatcher;
+    }
+
     public JobReceiver getJobReceiver() {
         return jobReceiver;
     }
@@ -3,26 +3,35 @@ package com.github.ltsopensource.jobtracker.domain;
 
 import com.github.ltsopensource.jobtracker.channel.ChannelWrapper;
 
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * TaskTracker状态对象
  */
 public class TaskTrackerNode {
+
+    // 低位存可用线程数, 高位存上次更新可用线程数的时间戳, 一次CAS同时比较和更新
+    private static final int THREAD_BITS = 20;
+    private static final long THREAD_MASK = (1L << THREAD_BITS) - 1;
+    // 时间戳43位, 到2248年都够
+    private static final long MAX_TIMESTAMP = (1L << (Long.SIZE - 1 - THREAD_BITS)) - 1;
+
     // 节点组名称
     public String nodeGroup;
-    // 可用线程数
-    public AtomicInteger availableThread;
+    // 总线程数
+    public int threads;
     // 唯一标识
     public String identity;
     // 该节点的channel
     public ChannelWrapper channel;
 
-    public Long timestamp = null;
+    // (上次更新的时间戳 << THREAD_BITS) | 可用线程数, 时间戳为0表示还没有更新过
+    private final AtomicLong state = new AtomicLong(0);
 
     public TaskTrackerNode(String nodeGroup, int availableThread, String identity, ChannelWrapper channel) {
         this.nodeGroup = nodeGroup;
-        this.availableThread = new AtomicInteger(availableThread);
+        this.state.set(toThread(availableThread));
+        this.threads = availableThread;
         this.identity = identity;
         this.channel = channel;
     }
@@ -44,12 +53,77 @@ public class TaskTrackerNode {
         this.nodeGroup = nodeGroup;
     }
 
-    public AtomicInteger getAvailableThread() {
-        return availableThread;
+    public int getAvailableThread() {
+        return (int) (state.get() & THREAD_MASK);
     }
 
     public void setAvailableThread(int availableThread) {
-        this.availableThread = new AtomicInteger(availableThread);
+        long thread = toThread(availableThread);
+        while (true) {
+            long current = state.get();
+            if (state.compareAndSet(current, (current & ~THREAD_MASK) | thread)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 只有当 时间戳不小于上次更新的时间 才更新可用线程数, 时间戳的比较和更新要一起做, 否则旧的值可能覆盖新的
+     *
+     * @return 是否更新了
+     */
+    public boolean updateAvailableThread(int availableThread, Long timestamp) {
+        long thread = toThread(availableThread);
+        long newTimestamp = timestamp == null ? 0 : Math.min(Math.max(timestamp, 0), MAX_TIMESTAMP);
+        while (true) {
+            long current = state.get();
+            long currentTimestamp = current >>> THREAD_BITS;
+            if (timestamp != null && currentTimestamp > newTimestamp) {
+                return false;
+            }
+            long update = timestamp == null ? (current & ~THREAD_MASK) | thread : (newTimestamp << THREAD_BITS) | thread;
+            if (state.compareAndSet(current, update)) {
+                return true;
+            }
+        }
+    }
+
+    private static long toThread(int availableThread) {
+        return Math.min(Math.max(availableThread, 0), THREAD_MASK);
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * 占用最多 size 个可用线程, 返回实际占用的个数
+     */
+    public int acquireAvailableThread(int size) {
+        while (true) {
+            long current = state.get();
+            int acquired = (int) Math.min(current & THREAD_MASK, size);
+            if (acquired <= 0) {
+                return 0;
+            }
+            if (state.compareAndSet(current, current - acquired)) {
+                return acquired;
+            }
+        }
+    }
+
+    /**
+     * 归还可用线程, 不超过总线程数
+     */
+    public void releaseAvailableThread(int size) {
+        while (true) {
+            long current = state.get();
+            long thread = current & THREAD_MASK;
+            long released = Math.min(threads > 0 ? Math.min(thread + size, threads) : thread + size, THREAD_MASK);
+            if (released <= thread || state.compareAndSet(current, (current & ~THREAD_MASK) | released)) {
+                return;
+            }
+        }
     }
 
     public String getIdentity() {
@@ -69,11 +143,18 @@ public class TaskTrackerNode {
     }
 
     public Long getTimestamp() {
-        return timestamp;
+        long timestamp = state.get() >>> THREAD_BITS;
+        return timestamp == 0 ? null : timestamp;
     }
 
     public void setTimestamp(Long timestamp) {
-        this.timestamp = timestamp;
+        long newTimestamp = timestamp == null ? 0 : Math.min(Math.max(timestamp, 0), MAX_TIMESTAMP);
+        while (true) {
+            long current = state.get();
+            if (state.compareAndSet(current, (newTimestamp << THREAD_BITS) | (current & THREAD_MASK))) {
+                return;
+            }
+        }
     }
 
     @Override
@@ -97,7 +178,7 @@ public class TaskTrackerNode {
     public String toString() {
         return "TaskTrackerNode{" +
                 "nodeGroup='" + nodeGroup + '\'' +
-                ", availableThread=" + (availableThread == null ? 0 : availableThread.get()) +
+                ", availableThread=" + getAvailableThread() +
                 ", identity='" + identity + '\'' +
                 ", channel=" + channel +
                 '}';
@@ -5,6 +5,7 @@ import com.github.ltsopensource.core.domain.monitor.JobTrackerMData;
 import com.github.ltsopensource.core.domain.monitor.MData;
 import com.github.ltsopensource.core.monitor.AbstractMStatReporter;
 import com.github.ltsopensource.jobtracker.domain.JobTrackerAppContext;
+import com.github.ltsopensource.queue.PreLoader;
 
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -66,6 +67,10 @@ public class JobTrackerMStatReporter extends AbstractMStatReporter {
         fixExecutingJobNum.incrementAndGet();
     }
 
+    public void incFixExecutingJobNum(int num) {
+        fixExecutingJobNum.addAndGet(num);
+    }
+
     @Override
     protected MData collectMData() {
         JobTrackerMData mData = new JobTrackerMData();
@@ -76,6 +81,10 @@ public class JobTrackerMStatReporter extends AbstractMStatReporter {
         mData.setExeLaterNum(exeLaterNum.getAndSet(0));
         mData.setFixExecutingJobNum(fixExecutingJobNum.getAndSet(0));
         mData.setPushJobNum(pushJobNum.getAndSet(0));
+        PreLoader preLoader = ((JobTrackerAppContext) appContext).getPreLoader();
+        if (preLoader != null) {
+            mData.setPreLoaderMDatas(preLoader.collectMData());
+        }
         return mData;
     }
 
@@ -12,6 +12,7 @@ import com.github.ltsopensource.remoting.Channel;
 import com.github.ltsopensource.remoting.exception.RemotingCommandException;
 import com.github.ltsopensource.remoting.protocol.RemotingCommand;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -30,9 +31,12 @@ public class JobBizLogProcessor extends AbstractRemotingProcessor {
 
         List<BizLog> bizLogs = requestBody.getBizLogs();
         if (CollectionUtils.isNotEmpty(bizLogs)) {
+            // 整个请求一次批量写入
+            List<JobLogPo> jobLogPos = new ArrayList<JobLogPo>(bizLogs.size());
+            long now = SystemClock.now();
             for (BizLog bizLog : bizLogs) {
                 JobLogPo jobLogPo = new JobLogPo();
-                jobLogPo.setGmtCreated(SystemClock.now());
+                jobLogPo.setGmtCreated(now);
                 jobLogPo.setLogTime(bizLog.getLogTime());
                 jobLogPo.setTaskTrackerNodeGroup(bizLog.getTaskTrackerNodeGroup());
                 jobLogPo.setTaskTrackerIdentity(bizLog.getTaskTrackerIdentity());
@@ -44,8 +48,9 @@ public class JobBizLogProcessor extends AbstractRemotingProcessor {
                 jobLogPo.setSuccess(true);
                 jobLogPo.setLevel(bizLog.getLevel());
                 jobLogPo.setLogType(LogType.BIZ);
-                appContext.getJobLogger().log(jobLogPo);
+                jobLogPos.add(jobLogPo);
             }
+            appContext.getJobLogger().log(jobLogPos);
         }
 
         return RemotingCommand.createResponseCommand(JobProtos.ResponseCode.BIZ_LOG_SEND_SUCCESS.code(), "");
@@ -38,6 +38,13 @@ public class JobCompletedProcessor extends AbstractRemotingProcessor {
 
         JobCompletedRequest requestBody = request.getBody();
 
+        if (appContext.getJobDispatcher() != null && !requestBody.isReSend()
+                && requestBody.getJobRunResults() != null) {
+            // 主动推送时, 执行完的任务归还线程 (重发的早就归还过了)
+            appContext.getJobDispatcher().onJobCompleted(requestBody.getNodeGroup(),
+                    requestBody.getIdentity(), requestBody.getJobRunResults().size());
+        }
+
         for (JobCompletedBiz biz : bizChain) {
             RemotingCommand remotingCommand = biz.doBiz(requestBody);
             if (remotingCommand != null) {
@@ -5,7 +5,6 @@ import com.github.ltsopensource.core.logger.LoggerFactory;
 import com.github.ltsopensource.core.protocol.JobProtos;
 import com.github.ltsopensource.core.protocol.command.JobPullRequest;
 import com.github.ltsopensource.jobtracker.domain.JobTrackerAppContext;
-import com.github.ltsopensource.jobtracker.support.JobPusher;
 import com.github.ltsopensource.remoting.Channel;
 import com.github.ltsopensource.remoting.exception.RemotingCommandException;
 import com.github.ltsopensource.remoting.protocol.RemotingCommand;
@@ -16,14 +15,10 @@ import com.github.ltsopensource.remoting.protocol.RemotingCommand;
  */
 public class JobPullProcessor extends AbstractRemotingProcessor {
 
-    private JobPusher jobPusher;
-
     private static final Logger LOGGER = LoggerFactory.getLogger(JobPullProcessor.class);
 
     public JobPullProcessor(JobTrackerAppContext appContext) {  //用于当前节点下,创建全局的job pull processer,可以重复利用的
         super(appContext);
-
-        jobPusher = new JobPusher(appContext);  //lts里面各个节点对象 都会持有appContext的引用,方便获取各种配置文件,或者访问全局的对象
     }
 
     //处理job pull 请求,无状态的
@@ -35,7 +30,14 @@ public class JobPullProcessor extends AbstractRemotingProcessor {
         if (LOGGER.isDebugEnabled()) {
             LOGGER.debug("taskTrackerNodeGroup:{}, taskTrackerIdentity:{} , availableThreads:{}", requestBody.getNodeGroup(), requestBody.getIdentity(), requestBody.getAvailableThreads());
         }
-        jobPusher.push(requestBody);  //异步并发的处理,分发任务到请求任务的taskTracker节点
+        if (requestBody.getLongPollTimeoutMillis() != null && requestBody.getLongPollTimeoutMillis() > 0
+                && appContext.getJobPullLongPoller() != null) {
+            // 长轮询: 挂起请求, 推送了任务或者超时之后再应答, 没有开启时按普通pull处理
+            appContext.getJobPullLongPoller().park(ctx, request, requestBody);
+            return null;
+        }
+
+        appContext.getJobPusher().push(requestBody);  //异步并发的处理,分发任务到请求任务的taskTracker节点
 
         return RemotingCommand.createResponseCommand(JobProtos.ResponseCode.JOB_PULL_SUCCESS.code(), "");   //返回任务pull成功
     }
@@ -40,34 +40,59 @@ public class JobSender {
         SendResult sendResult = invoker.invoke(jobPos);
 
         if (sendResult.isSuccess()) {
-            List<JobLogPo> jobLogPos = new ArrayList<JobLogPo>(jobPos.size());
-            for (JobPo jobPo : jobPos) {
-                // 记录日志
-                JobLogPo jobLogPo = JobDomainConverter.convertJobLog(jobPo);
-                jobLogPo.setSuccess(true);
-                jobLogPo.setLogType(LogType.SENT);
-                jobLogPo.setLogTime(SystemClock.now());
-                jobLogPo.setLevel(Level.INFO);
-                jobLogPos.add(jobLogPo);
-            }
-            appContext.getJobLogger().log(jobLogPos);
+            logSent(jobPos);
         }
         return sendResult;
     }
 
-    private List<JobPo> fetchJob(String taskTrackerNodeGroup, String taskTrackerIdentity, int size) {
-        List<JobPo> jobPos = new ArrayList<JobPo>(size);
-
-        for (int i = 0; i < size; i++) {
-            // 从mongo 中取一个可运行的job
-            final JobPo jobPo = appContext.getPreLoader().take(taskTrackerNodeGroup, taskTrackerIdentity);
-            if (jobPo == null) {
-                if (LOGGER.isDebugEnabled()) {
-                    LOGGER.debug("Job push failed: no job! nodeGroup=" + taskTrackerNodeGroup + ", identity=" + taskTrackerIdentity);
+    /**
+     * 异步发送, 调用线程不等待发送结果, invoker 在发送完成时回调 callback
+     *
+     * @return 是否取到了任务并交给了 invoker
+     */
+    public boolean sendAsync(String taskTrackerNodeGroup, String taskTrackerIdentity, int size, AsyncSendInvoker invoker) {
+        final List<JobPo> jobPos = fetchJob(taskTrackerNodeGroup, taskTrackerIdentity, size);
+        if (jobPos.size() == 0) {
+            return false;
+        }
+
+        invoker.invoke(jobPos, new SendCallback() {
+            @Override
+            public void onComplete(SendResult sendResult) {
+                if (sendResult.isSuccess()) {
+                    logSent(jobPos);
                 }
-                break;
             }
+        });
+        return true;
+    }
+
+    private void logSent(List<JobPo> jobPos) {
+        List<JobLogPo> jobLogPos = new ArrayList<JobLogPo>(jobPos.size());
+        for (JobPo jobPo : jobPos) {
+            // 记录日志
+            JobLogPo jobLogPo = JobDomainConverter.convertJobLog(jobPo);
+            jobLogPo.setSuccess(true);
+            jobLogPo.setLogType(LogType.SENT);
+            jobLogPo.setLogTime(SystemClock.now());
+            jobLogPo.setLevel(Level.INFO);
+            jobLogPos.add(jobLogPo);
+        }
+        appContext.getJobLogger().log(jobLogPos);
+    }
 
+    private List<JobPo> fetchJob(String taskTrackerNodeGroup, String taskTrackerIdentity, int size) {
+        // 从preLoader 中一次取一批可运行的job, 批量锁定
+        List<JobPo> takenJobPos = appContext.getPreLoader().takeBatch(taskTrackerNodeGroup, taskTrackerIdentity, size);
+        if (takenJobPos.size() == 0) {
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Job push failed: no job! nodeGroup=" + taskTrackerNodeGroup + ", identity=" + taskTrackerIdentity);
+            }
+            return takenJobPos;
+        }
+
+        List<JobPo> jobPos = new ArrayList<JobPo>(takenJobPos.size());
+        for (JobPo jobPo : takenJobPos) {
             // IMPORTANT: 这里要先切换队列
             try {
                 appContext.getExecutingJobQueue().add(jobPo);
@@ -87,6 +112,17 @@ public class JobSender {
         SendResult invoke(List<JobPo> jobPos);
     }
 
+    public interface AsyncSendInvoker {
+        /**
+         * 发送完成(成功,失败或超时)时必须调用一次 callback
+         */
+        void invoke(List<JobPo> jobPos, SendCallback callback);
+    }
+
+    public interface SendCallback {
+        void onComplete(SendResult sendResult);
+    }
+
     public static class SendResult {
         private boolean success;
         private Object returnValue;
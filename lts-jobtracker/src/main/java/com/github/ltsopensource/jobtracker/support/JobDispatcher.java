@@ -0,0 +1,284 @@
+package com.github.ltsopensource.jobtracker.support;
+
+import com.github.ltsopensource.core.commons.concurrent.ConcurrentHashSet;
+import com.github.ltsopensource.core.commons.utils.StringUtils;
+import com.github.ltsopensource.core.constant.Constants;
+import com.github.ltsopensource.core.constant.ExtConfig;
+import com.github.ltsopensource.core.logger.Logger;
+import com.github.ltsopensource.core.logger.LoggerFactory;
+import com.github.ltsopensource.jobtracker.domain.JobTrackerAppContext;
+import com.github.ltsopensource.jobtracker.domain.TaskTrackerNode;
+import com.github.ltsopensource.jobtracker.support.cluster.TaskTrackerManager;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * JobTracker 主动推送任务, 不等 TaskTracker 的 pull 请求
+ * 1. TaskTracker 的可用线程数由 pull 请求(上报的值)和任务完成(归还)更新, 推送前先占用, 推送结束后归还没有被接收的
+ * 2. 有可用线程并且有任务就推送, 新任务, pull请求, 任务完成, 推送结束时唤醒, 没有唤醒时每 intervalMillis 检查一次
+ * 3. 节点组之间按权重轮询, 每一轮每个节点组最多推送 权重*batchSize 个, 节点组内按 PreLoader 的顺序(priority)
+ * 4. 每个 TaskTracker 正在推送(还没有应答)的任务数不超过 maxInFlight
+ */
+public class JobDispatcher {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JobDispatcher.class);
+
+    private final JobTrackerAppContext appContext;
+    private final int batchSize;
+    private final int maxInFlight;
+    private final long intervalMillis;
+    private final Map<String, Integer> groupWeights;
+    // taskTrackerIdentity -> 正在推送的任务数
+    private final ConcurrentHashMap<String, AtomicInteger> IN_FLIGHT = new ConcurrentHashMap<String, AtomicInteger>();
+    // 上次推送没有取到任务的节点组, 到下次唤醒或者定时检查前不再推送
+    private final Set<String> noJobGroups = new ConcurrentHashSet<String>();
+    // taskTrackerNodeGroup -> 唤醒次数, 推送前记下, 推送结束时变了说明中间有新任务
+    private final ConcurrentHashMap<String, AtomicLong> WAKEUP_VERSIONS = new ConcurrentHashMap<String, AtomicLong>();
+    private final Semaphore signal = new Semaphore(0);
+    private final AtomicBoolean start = new AtomicBoolean(false);
+    private volatile boolean stopped = false;
+    private final Thread dispatchThread;
+
+    public JobDispatcher(JobTrackerAppContext appContext) {
+        this.appContext = appContext;
+        this.batchSize = Math.max(1, appContext.getConfig().getParameter(ExtConfig.JOB_TRACKER_PUSH_BATCH_SIZE,
+                Constants.DEFAULT_JOB_TRACKER_PUSH_BATCH_SIZE));
+        this.maxInFlight = Math.max(1, appContext.getConfig().getParameter(ExtConfig.JOB_TRACKER_DISPATCHER_NODE_MAX_IN_FLIGHT, 50));
+        this.intervalMillis = Math.max(1, appContext.getConfig().getParameter(ExtConfig.JOB_TRACKER_DISPATCHER_INTERVAL_MILLIS, 100L));
+        this.groupWeights = parseGroupWeights(appContext.getConfig().getParameter(ExtConfig.JOB_TRACKER_DISPATCHER_GROUP_WEIGHTS));
+        this.dispatchThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                runDispatch();
+            }
+        }, "LTS-JobDispatcher");
+        this.dispatchThread.setDaemon(true);
+    }
+
+    public void start() {
+        if (start.compareAndSet(false, true)) {
+            dispatchThread.start();
+            LOGGER.info("JobDispatcher started, batchSize={}, maxInFlight={}, groupWeights={}", batchSize, maxInFlight, groupWeights);
+        }
+    }
+
+    public void stop() {
+        stopped = true;
+        dispatchThread.interrupt();
+    }
+
+    /**
+     * 可用线程数有变化了
+     */
+    public void wakeup() {
+        signal.release();
+    }
+
+    /**
+     * 节点组有新的可执行任务了
+     */
+    public void wakeup(String taskTrackerNodeGroup) {
+        // 先改版本再清标记, 和 PushDone 中先加标记再检查版本对应
+        getWakeupVersion(taskTrackerNodeGroup).incrementAndGet();
+        noJobGroups.remove(taskTrackerNodeGroup);
+        signal.release();
+    }
+
+    /**
+     * TaskTracker 反馈了任务执行结果, 归还线程
+     */
+    public void onJobCompleted(String taskTrackerNodeGroup, String taskTrackerIdentity, int completedNum) {
+        TaskTrackerNode taskTrackerNode = appContext.getTaskTrackerManager().getTaskTrackerNode(taskTrackerNodeGroup, taskTrackerIdentity);
+        if (taskTrackerNode == null || completedNum <= 0) {
+            return;
+        }
+        taskTrackerNode.releaseAvailableThread(completedNum);
+        appContext.getTaskTrackerManager().refreshAvailable(taskTrackerNode);
+        signal.release();
+    }
+
+    /**
+     * 在任务完成的应答中直接给 TaskTracker 返回了新任务, 占用线程
+     */
+    public void onJobSent(String taskTrackerNodeGroup, String taskTrackerIdentity, int sentNum) {
+        TaskTrackerNode taskTrackerNode = appContext.getTaskTrackerManager().getTaskTrackerNode(taskTrackerNodeGroup, taskTrackerIdentity);
+        if (taskTrackerNode == null || sentNum <= 0) {
+            return;
+        }
+        taskTrackerNode.acquireAvailableThread(sentNum);
+        appContext.getTaskTrackerManager().refreshAvailable(taskTrackerNode);
+    }
+
+    private void runDispatch() {
+        while (!stopped) {
+            try {
+                if (!signal.tryAcquire(intervalMillis, TimeUnit.MILLISECONDS)) {
+                    // 定时检查, 之前没有任务的节点组可能有到期的任务了
+                    noJobGroups.clear();
+                }
+                // 合并多次唤醒
+                signal.drainPermits();
+            } catch (InterruptedException e) {
+                continue;
+            }
+            try {
+                dispatch();
+            } catch (Throwable t) {
+                LOGGER.error("Dispatch job error", t);
+            }
+        }
+    }
+
+    /**
+     * 一轮一轮推送, 直到没有可用线程或者没有任务
+     */
+    private void dispatch() {
+        TaskTrackerManager taskTrackerManager = appContext.getTaskTrackerManager();
+        boolean progress = true;
+        while (progress && !stopped) {
+            progress = false;
+            for (String nodeGroup : taskTrackerManager.getNodeGroups()) {
+                if (noJobGroups.contains(nodeGroup)) {
+                    continue;
+                }
+                int quota = getWeight(nodeGroup) * batchSize;
+                AtomicLong wakeupVersion = getWakeupVersion(nodeGroup);
+                while (quota > 0) {
+                    TaskTrackerNode taskTrackerNode = selectNode(taskTrackerManager, nodeGroup);
+                    if (taskTrackerNode == null) {
+                        break;
+                    }
+                    AtomicInteger inFlight = getInFlight(taskTrackerNode.getIdentity());
+                    int size = Math.min(Math.min(quota, batchSize), maxInFlight - inFlight.get());
+                    size = taskTrackerNode.acquireAvailableThread(size);
+                    if (size <= 0) {
+                        break;
+                    }
+                    inFlight.addAndGet(size);
+                    taskTrackerManager.refreshAvailable(taskTrackerNode);
+                    quota -= size;
+                    progress = true;
+                    appContext.getJobPusher().pushAsync(taskTrackerNode, size,
+                            new PushDone(taskTrackerNode, size, inFlight, wakeupVersion, wakeupVersion.get()));
+                }
+            }
+        }
+    }
+
+    /**
+     * 节点组中 可用线程数 和 还能推送的任务数 较小值最大的节点
+     */
+    private TaskTrackerNode selectNode(TaskTrackerManager taskTrackerManager, String nodeGroup) {
+        Collection<TaskTrackerNode> availableNodes = taskTrackerManager.getAvailableTaskTrackerNodes(nodeGroup);
+        TaskTrackerNode selected = null;
+        int maxFree = 0;
+        for (TaskTrackerNode taskTrackerNode : availableNodes) {
+            int free = Math.min(taskTrackerNode.getAvailableThread(),
+                    maxInFlight - getInFlight(taskTrackerNode.getIdentity()).get());
+            if (free > maxFree) {
+                maxFree = free;
+                selected = taskTrackerNode;
+            }
+        }
+        if (selected == null) {
+            return null;
+        }
+        // channel 不可用的返回null
+        return taskTrackerManager.getTaskTrackerNode(nodeGroup, selected.getIdentity());
+    }
+
+    private AtomicInteger getInFlight(String identity) {
+        AtomicInteger inFlight = IN_FLIGHT.get(identity);
+        if (inFlight == null) {
+            inFlight = new AtomicInteger(0);
+            AtomicInteger exist = IN_FLIGHT.putIfAbsent(identity, inFlight);
+            if (exist != null) {
+                inFlight = exist;
+            }
+        }
+        return inFlight;
+    }
+
+    private AtomicLong getWakeupVersion(String nodeGroup) {
+        AtomicLong version = WAKEUP_VERSIONS.get(nodeGroup);
+        if (version == null) {
+            version = new AtomicLong(0);
+            AtomicLong exist = WAKEUP_VERSIONS.putIfAbsent(nodeGroup, version);
+            if (exist != null) {
+                version = exist;
+            }
+        }
+        return version;
+    }
+
+    private int getWeight(String nodeGroup) {
+        Integer weight = groupWeights.get(nodeGroup);
+        return weight == null ? 1 : weight;
+    }
+
+    private static Map<String, Integer> parseGroupWeights(String value) {
+        Map<String, Integer> groupWeights = new HashMap<String, Integer>();
+        if (StringUtils.isEmpty(value)) {
+            return groupWeights;
+        }
+        for (String groupWeight : value.split(",")) {
+            String[] kv = groupWeight.trim().split(":");
+            if (kv.length != 2) {
+                LOGGER.warn("Illegal group weight: {}", groupWeight);
+                continue;
+            }
+            try {
+                groupWeights.put(kv[0].trim(), Math.max(1, Integer.parseInt(kv[1].trim())));
+            } catch (NumberFormatException e) {
+                LOGGER.warn("Illegal group weight: {}", groupWeight);
+            }
+        }
+        return groupWeights;
+    }
+
+    private class PushDone implements JobPusher.PushCallback {
+
+        private final TaskTrackerNode taskTrackerNode;
+        private final int size;
+        private final AtomicInteger inFlight;
+        private final AtomicLong wakeupVersion;
+        // 推送(加载任务)之前的唤醒版本
+        private final long version;
+
+        PushDone(TaskTrackerNode taskTrackerNode, int size, AtomicInteger inFlight, AtomicLong wakeupVersion, long version) {
+            this.taskTrackerNode = taskTrackerNode;
+            this.size = size;
+            this.inFlight = inFlight;
+            this.wakeupVersion = wakeupVersion;
+            this.version = version;
+        }
+
+        @Override
+        public void onComplete(int accepted) {
+            inFlight.addAndGet(-size);
+            if (accepted < size) {
+                // 没有被接收的线程还回去
+                taskTrackerNode.releaseAvailableThread(size - accepted);
+                appContext.getTaskTrackerManager().refreshAvailable(taskTrackerNode);
+            }
+            if (accepted == 0) {
+                // 没有任务或者推送失败, 等下一次唤醒或者定时检查
+                noJobGroups.add(taskTrackerNode.getNodeGroup());
+                if (wakeupVersion.get() != version) {
+                    // 加载之后有新任务唤醒过, 那次唤醒可能在加标记之前清的标记, 不能丢掉
+                    noJobGroups.remove(taskTrackerNode.getNodeGroup());
+                }
+            }
+            signal.release();
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.github.ltsopensource.jobtracker.support;
+
+import com.github.ltsopensource.core.constant.Constants;
+import com.github.ltsopensource.core.factory.NamedThreadFactory;
+import com.github.ltsopensource.core.logger.Logger;
+import com.github.ltsopensource.core.logger.LoggerFactory;
+import com.github.ltsopensource.core.protocol.JobProtos;
+import com.github.ltsopensource.core.protocol.command.JobPullRequest;
+import com.github.ltsopensource.jobtracker.domain.JobTrackerAppContext;
+import com.github.ltsopensource.queue.PreLoader;
+import com.github.ltsopensource.remoting.Channel;
+import com.github.ltsopensource.remoting.protocol.RemotingCommand;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 长轮询的pull请求
+ * 1. pull请求先挂起, 并立即尝试推送一次
+ * 2. 节点组有新任务进来或者内存队列补充了任务时(wakeup), 对该节点组挂起的请求重新推送, 同一个节点组的多次唤醒合并成一次
+ * 3. 任务推送成功后返回挂起的请求, TaskTracker收到后立即发起下一次pull
+ * 4. 每个请求到期时直接返回, 不定时扫描, TaskTracker收到后重新发起pull
+ * 5. 重新推送时按 TaskTrackerManager 中当前的可用线程数, 不用挂起请求中上报的值
+ */
+public class JobPullLongPoller {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JobPullLongPoller.class);
+
+    private final ScheduledExecutorService scheduledExecutorService = Executors.newScheduledThreadPool(1,
+            new NamedThreadFactory("LTS-JobPullLongPoller", true));
+
+    private JobTrackerAppContext appContext;
+    // Key: taskTrackerNodeGroup, Key: taskTrackerIdentity
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, ParkedPull>> PARKED_MAP
+            = new ConcurrentHashMap<String, ConcurrentHashMap<String, ParkedPull>>();
+    // 已经提交了重新推送还没有执行的节点组
+    private final ConcurrentHashMap<String, AtomicBoolean> WAKEUP_PENDING = new ConcurrentHashMap<String, AtomicBoolean>();
+
+    public JobPullLongPoller(JobTrackerAppContext appContext) {
+        this.appContext = appContext;
+        appContext.getPreLoader().setRefillListener(new PreLoader.RefillListener() {
+            @Override
+            public void onRefilled(String taskTrackerNodeGroup) {
+                wakeup(taskTrackerNodeGroup);
+            }
+        });
+    }
+
+    /**
+     * 挂起pull请求, 同一个TaskTracker之前挂起的请求直接返回
+     */
+    public void park(Channel channel, RemotingCommand request, JobPullRequest body) {
+
+        long timeout = Math.min(body.getLongPollTimeoutMillis(), Constants.MAX_JOB_PULL_LONG_POLL_TIMEOUT_MILLIS);
+        final ParkedPull parkedPull = new ParkedPull(channel, request.getOpaque(), body);
+
+        final ConcurrentHashMap<String, ParkedPull> groupParked = getGroupParked(body.getNodeGroup());
+        ParkedPull old = groupParked.put(body.getIdentity(), parkedPull);
+        if (old != null) {
+            old.response();
+        }
+        try {
+            scheduledExecutorService.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    // 到期还没有推送, 直接返回
+                    if (groupParked.remove(parkedPull.body.getIdentity(), parkedPull)) {
+                        parkedPull.response();
+                    }
+                }
+            }, timeout, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // 已经停止
+            if (groupParked.remove(body.getIdentity(), parkedPull)) {
+                parkedPull.response();
+            }
+            return;
+        }
+        appContext.getJobPusher().push(body);
+    }
+
+    /**
+     * 节点组有新的可执行任务了
+     */
+    public void wakeup(final String taskTrackerNodeGroup) {
+        ConcurrentHashMap<String, ParkedPull> groupParked = PARKED_MAP.get(taskTrackerNodeGroup);
+        if (groupParked == null || groupParked.isEmpty()) {
+            return;
+        }
+        final AtomicBoolean pending = getWakeupPending(taskTrackerNodeGroup);
+        if (!pending.compareAndSet(false, true)) {
+            // 还没有执行的那次会推送
+            return;
+        }
+        try {
+            scheduledExecutorService.execute(new Runnable() {
+                @Override
+                public void run() {
+                    // 先清除, 执行过程中再来的唤醒再提交一次
+                    pending.set(false);
+                    repush(taskTrackerNodeGroup);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pending.set(false);
+        }
+    }
+
+    private void repush(String taskTrackerNodeGroup) {
+        ConcurrentHashMap<String, ParkedPull> groupParked = PARKED_MAP.get(taskTrackerNodeGroup);
+        if (groupParked == null) {
+            return;
+        }
+        for (Map.Entry<String, ParkedPull> entry : groupParked.entrySet()) {
+            ParkedPull parkedPull = entry.getValue();
+            if (!parkedPull.channel.isOpen()) {
+                groupParked.remove(entry.getKey(), parkedPull);
+                continue;
+            }
+            appContext.getJobPusher().repush(taskTrackerNodeGroup, parkedPull.body.getIdentity());
+        }
+    }
+
+    /**
+     * 已经给该TaskTracker推送了任务, 返回挂起的请求
+     */
+    public void onPushed(String taskTrackerNodeGroup, String taskTrackerIdentity) {
+        ConcurrentHashMap<String, ParkedPull> groupParked = PARKED_MAP.get(taskTrackerNodeGroup);
+        if (groupParked == null) {
+            return;
+        }
+        ParkedPull parkedPull = groupParked.remove(taskTrackerIdentity);
+        if (parkedPull != null) {
+            parkedPull.response();
+        }
+    }
+
+    private AtomicBoolean getWakeupPending(String taskTrackerNodeGroup) {
+        AtomicBoolean pending = WAKEUP_PENDING.get(taskTrackerNodeGroup);
+        if (pending == null) {
+            pending = new AtomicBoolean(false);
+            AtomicBoolean exist = WAKEUP_PENDING.putIfAbsent(taskTrackerNodeGroup, pending);
+            if (exist != null) {
+                pending = exist;
+            }
+        }
+        return pending;
+    }
+
+    private ConcurrentHashMap<String, ParkedPull> getGroupParked(String taskTrackerNodeGroup) {
+        ConcurrentHashMap<String, ParkedPull> groupParked = PARKED_MAP.get(taskTrackerNodeGroup);
+        if (groupParked == null) {
+            groupParked = new ConcurrentHashMap<String, ParkedPull>();
+            ConcurrentHashMap<String, ParkedPull> exist = PARKED_MAP.putIfAbsent(taskTrackerNodeGroup, groupParked);
+            if (exist != null) {
+                groupParked = exist;
+            }
+        }
+        return groupParked;
+    }
+
+    public void stop() {
+        scheduledExecutorService.shutdownNow();
+        for (ConcurrentHashMap<String, ParkedPull> groupParked : PARKED_MAP.values()) {
+            for (String identity : groupParked.keySet()) {
+                ParkedPull parkedPull = groupParked.remove(identity);
+                if (parkedPull != null) {
+                    parkedPull.response();
+                }
+            }
+        }
+    }
+
+    private static class ParkedPull {
+
+        private final Channel channel;
+        private final int opaque;
+        private final JobPullRequest body;
+
+        ParkedPull(Channel channel, int opaque, JobPullRequest body) {
+            this.channel = channel;
+            this.opaque = opaque;
+            this.body = body;
+        }
+
+        void response() {
+            if (!channel.isOpen()) {
+                return;
+            }
+            RemotingCommand response = RemotingCommand.createResponseCommand(
+                    JobProtos.ResponseCode.JOB_PULL_LONG_POLL_RETURN.code(), "");
+            response.setOpaque(opaque);
+            channel.writeAndFlush(response);
+        }
+    }
+}
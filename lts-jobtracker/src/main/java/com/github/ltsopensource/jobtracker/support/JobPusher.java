@@ -2,11 +2,9 @@ package com.github.ltsopensource.jobtracker.support;
 
 import com.github.ltsopensource.core.commons.utils.CollectionUtils;
 import com.github.ltsopensource.core.commons.utils.DotLogUtils;
-import com.github.ltsopensource.core.commons.utils.Holder;
 import com.github.ltsopensource.core.constant.Constants;
 import com.github.ltsopensource.core.constant.ExtConfig;
 import com.github.ltsopensource.core.exception.RemotingSendException;
-import com.github.ltsopensource.core.exception.RequestTimeoutException;
 import com.github.ltsopensource.core.factory.NamedThreadFactory;
 import com.github.ltsopensource.core.json.JSON;
 import com.github.ltsopensource.core.logger.Logger;
@@ -32,6 +30,7 @@ import com.github.ltsopensource.store.jdbc.exception.DupEntryException;
 import java.util.List;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @author Robert HG (254963746@qq.com) on 8/18/14.
@@ -75,6 +74,23 @@ public class JobPusher {
         });
     }
 
+    /**
+     * 按 TaskTrackerManager 中当前的可用线程数重新推送, 不更新可用线程数
+     */
+    public void repush(final String nodeGroup, final String identity) {
+
+        this.executorService.submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    push1(nodeGroup, identity);
+                } catch (Exception e) {
+                    LOGGER.error("Job push failed!", e);
+                }
+            }
+        });
+    }
+
     /**
      * 是否正在推送
      */
@@ -98,6 +114,17 @@ public class JobPusher {
         appContext.getTaskTrackerManager().updateTaskTrackerAvailableThreads(nodeGroup,
                 identity, request.getAvailableThreads(), request.getTimestamp());
 
+        push1(nodeGroup, identity);
+    }
+
+    private void push1(final String nodeGroup, final String identity) {
+
+        if (appContext.getJobDispatcher() != null) {
+            // 由 JobDispatcher 统一推送, pull 请求只更新可用线程数
+            appContext.getJobDispatcher().wakeup();
+            return;
+        }
+
         final TaskTrackerNode taskTrackerNode = appContext.getTaskTrackerManager().
                 getTaskTrackerNode(nodeGroup, identity);
 
@@ -108,141 +135,185 @@ public class JobPusher {
             return;
         }
 
-        int availableThread = taskTrackerNode.getAvailableThread().get();
+        final int availableThread = taskTrackerNode.getAvailableThread();
         if (availableThread <= 0) {
             return;
         }
 
-        AtomicBoolean pushingFlag = getPushingFlag(taskTrackerNode);
+        final AtomicBoolean pushingFlag = getPushingFlag(taskTrackerNode);
         if (pushingFlag.compareAndSet(false, true)) {
-            try {
-                final int batchSize = jobPushBatchSize;
-
-                int it = availableThread % batchSize == 0 ? availableThread / batchSize : availableThread / batchSize + 1;
-
-                final CountDownLatch latch = new CountDownLatch(it);
-
-                for (int i = 1; i <= it; i++) {
-                    int size = batchSize;
-                    if (i == it) {
-                        size = availableThread - batchSize * (it - 1);
+            final int batchSize = jobPushBatchSize;
+
+            final int it = availableThread % batchSize == 0 ? availableThread / batchSize : availableThread / batchSize + 1;
+
+            // 所有批次都完成(收到应答,失败或超时)之后才允许下一次推送, 不占用线程等待
+            final AtomicInteger remainBatch = new AtomicInteger(it);
+            final PushCallback batchDone = new PushCallback() {
+                @Override
+                public void onComplete(int accepted) {
+                    if (remainBatch.decrementAndGet() == 0) {
+                        pushingFlag.compareAndSet(true, false);
+                        DotLogUtils.dot("taskTrackerNodeGroup:{}, taskTrackerIdentity:{} , pushing finished. batchTimes:{}, size:{}",
+                                taskTrackerNode.getNodeGroup(), taskTrackerNode.getIdentity(), it, availableThread);
                     }
-                    final int finalSize = size;
+                }
+            };
+
+            for (int i = 1; i <= it; i++) {
+                int size = batchSize;
+                if (i == it) {
+                    size = availableThread - batchSize * (it - 1);
+                }
+                final int finalSize = size;
+                try {
                     pushExecutorService.execute(new Runnable() {
                         @Override
                         public void run() {
+                            boolean inFlight = false;
                             try {
                                 // 推送任务
-                                send(remotingServer, finalSize, taskTrackerNode);
+                                inFlight = send(remotingServer, finalSize, taskTrackerNode, batchDone);
                             } catch (Throwable t) {
                                 LOGGER.error("Error on Push Job to {}", taskTrackerNode, t);
                             } finally {
-                                latch.countDown();
+                                if (!inFlight) {
+                                    batchDone.onComplete(0);
+                                }
                             }
                         }
                     });
+                } catch (RejectedExecutionException e) {
+                    LOGGER.error("Push executor rejected, taskTrackerNodeGroup:{}, taskTrackerIdentity:{}", nodeGroup, identity, e);
+                    batchDone.onComplete(0);
                 }
+            }
+        }
+    }
 
-                try {
-                    latch.await();
-                } catch (InterruptedException e) {
-                    throw new RuntimeException(e);
+    /**
+     * 由 JobDispatcher 主动推送, 不等 TaskTracker 的pull请求, 推送结束(没有任务,成功,失败或超时)时回调 callback
+     */
+    public void pushAsync(final TaskTrackerNode taskTrackerNode, final int size, final PushCallback callback) {
+        try {
+            pushExecutorService.execute(new Runnable() {
+                @Override
+                public void run() {
+                    boolean inFlight = false;
+                    try {
+                        inFlight = send(remotingServer, size, taskTrackerNode, callback);
+                    } catch (Throwable t) {
+                        LOGGER.error("Error on Push Job to {}", taskTrackerNode, t);
+                    } finally {
+                        if (!inFlight) {
+                            callback.onComplete(0);
+                        }
+                    }
                 }
-                DotLogUtils.dot("taskTrackerNodeGroup:{}, taskTrackerIdentity:{} , pushing finished. batchTimes:{}, size:{}", nodeGroup, identity, it, availableThread);
-            } finally {
-                pushingFlag.compareAndSet(true, false);
-            }
+            });
+        } catch (RejectedExecutionException e) {
+            LOGGER.error("Push executor rejected, taskTrackerNodeGroup:{}, taskTrackerIdentity:{}",
+                    taskTrackerNode.getNodeGroup(), taskTrackerNode.getIdentity(), e);
+            callback.onComplete(0);
         }
     }
 
     /**
-     * 是否推送成功
+     * 取出任务并异步推送, 应答在网络回调线程中处理
+     *
+     * @return 是否有任务发出, 为true时 batchDone 会在回调中执行
      */
-    private JobPushResult send(final RemotingServerDelegate remotingServer, int size, final TaskTrackerNode taskTrackerNode) {
+    private boolean send(final RemotingServerDelegate remotingServer, int size, final TaskTrackerNode taskTrackerNode, final PushCallback batchDone) {
 
         final String nodeGroup = taskTrackerNode.getNodeGroup();
         final String identity = taskTrackerNode.getIdentity();
 
-        JobSender.SendResult sendResult = appContext.getJobSender().send(nodeGroup, identity, size, new JobSender.SendInvoker() {
+        return appContext.getJobSender().sendAsync(nodeGroup, identity, size, new JobSender.AsyncSendInvoker() {
             @Override
-            public JobSender.SendResult invoke(final List<JobPo> jobPos) {
+            public void invoke(final List<JobPo> jobPos, final JobSender.SendCallback callback) {
 
                 // 发送给TaskTracker执行
                 JobPushRequest body = appContext.getCommandBodyWrapper().wrapper(new JobPushRequest());
                 body.setJobMetaList(JobDomainConverter.convert(jobPos));
                 RemotingCommand commandRequest = RemotingCommand.createRequestCommand(JobProtos.RequestCode.PUSH_JOB.code(), body);
 
-                // 是否分发推送任务成功
-                final Holder<Boolean> pushSuccess = new Holder<Boolean>(false);
-
-                final CountDownLatch latch = new CountDownLatch(1);
+                // 应答回调和发送异常只有一个能够处理结果
+                final AtomicBoolean completed = new AtomicBoolean(false);
                 try {
                     remotingServer.invokeAsync(taskTrackerNode.getChannel().getChannel(), commandRequest, new AsyncCallback() {
                         @Override
                         public void operationComplete(ResponseFuture responseFuture) {
-                            try {
-                                RemotingCommand responseCommand = responseFuture.getResponseCommand();
-                                if (responseCommand == null) {
-                                    LOGGER.warn("Job push failed! response command is null!");
-                                    return;
-                                }
-                                if (responseCommand.getCode() == JobProtos.ResponseCode.JOB_PUSH_SUCCESS.code()) {
-                                    if (LOGGER.isDebugEnabled()) {
-                                        LOGGER.debug("Job push success! nodeGroup=" + nodeGroup + ", identity=" + identity + ", jobList=" + JSON.toJSONString(jobPos));
-                                    }
-                                    pushSuccess.set(true);
-                                    stat.incPushJobNum(jobPos.size());
-                                } else if (responseCommand.getCode() == JobProtos.ResponseCode.NO_AVAILABLE_JOB_RUNNER.code()) {
-                                    JobPushResponse jobPushResponse = responseCommand.getBody();
-                                    if (jobPushResponse != null && CollectionUtils.isNotEmpty(jobPushResponse.getFailedJobIds())) {
-                                        // 修复任务
-                                        for (String jobId : jobPushResponse.getFailedJobIds()) {
-                                            for (JobPo jobPo : jobPos) {
-                                                if (jobId.equals(jobPo.getJobId())) {
-                                                    resumeJob(jobPo);
-                                                    break;
-                                                }
-                                            }
-                                        }
-                                        stat.incPushJobNum(jobPos.size() - jobPushResponse.getFailedJobIds().size());
-                                    } else {
-                                        stat.incPushJobNum(jobPos.size());
-                                    }
-                                    pushSuccess.set(true);
-                                }
-
-                            } finally {
-                                latch.countDown();
+                            if (completed.compareAndSet(false, true)) {
+                                onPushComplete(responseFuture.getResponseCommand(), nodeGroup, identity, jobPos, callback, batchDone);
                             }
                         }
                     });
-
                 } catch (RemotingSendException e) {
-                    LOGGER.error("Remoting send error, jobPos={}", JSON.toJSONObject(jobPos), e);
-                    return new JobSender.SendResult(false, JobPushResult.SENT_ERROR);
+                    LOGGER.error("Remoting send error, jobPos={}", JSON.toJSONString(jobPos), e);
+                    if (completed.compareAndSet(false, true)) {
+                        onPushComplete(null, nodeGroup, identity, jobPos, callback, batchDone);
+                    }
                 }
+            }
+        });
+    }
 
-                try {
-                    latch.await(Constants.LATCH_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
-                } catch (InterruptedException e) {
-                    throw new RequestTimeoutException(e);
+    private void onPushComplete(RemotingCommand responseCommand, String nodeGroup, String identity,
+                                List<JobPo> jobPos, JobSender.SendCallback callback, PushCallback batchDone) {
+        // TaskTracker 接收的任务数
+        int accepted = 0;
+        try {
+            // 是否分发推送任务成功
+            boolean pushSuccess = false;
+            if (responseCommand == null) {
+                LOGGER.warn("Job push failed! response command is null!");
+            } else if (responseCommand.getCode() == JobProtos.ResponseCode.JOB_PUSH_SUCCESS.code()) {
+                if (LOGGER.isDebugEnabled()) {
+                    LOGGER.debug("Job push success! nodeGroup=" + nodeGroup + ", identity=" + identity + ", jobList=" + JSON.toJSONString(jobPos));
                 }
-
-                if (!pushSuccess.get()) {
-                    if (LOGGER.isDebugEnabled()) {
-                        LOGGER.debug("Job push failed! nodeGroup=" + nodeGroup + ", identity=" + identity + ", jobs=" + JSON.toJSONObject(jobPos));
-                    }
-                    for (JobPo jobPo : jobPos) {
-                        resumeJob(jobPo);
+                pushSuccess = true;
+                accepted = jobPos.size();
+                stat.incPushJobNum(jobPos.size());
+            } else if (responseCommand.getCode() == JobProtos.ResponseCode.NO_AVAILABLE_JOB_RUNNER.code()) {
+                JobPushResponse jobPushResponse = responseCommand.getBody();
+                if (jobPushResponse != null && CollectionUtils.isNotEmpty(jobPushResponse.getFailedJobIds())) {
+                    // 修复任务
+                    for (String jobId : jobPushResponse.getFailedJobIds()) {
+                        for (JobPo jobPo : jobPos) {
+                            if (jobId.equals(jobPo.getJobId())) {
+                                resumeJob(jobPo);
+                                break;
+                            }
+                        }
                     }
-                    return new JobSender.SendResult(false, JobPushResult.SENT_ERROR);
+                    accepted = jobPos.size() - jobPushResponse.getFailedJobIds().size();
+                    stat.incPushJobNum(accepted);
+                } else {
+                    accepted = jobPos.size();
+                    stat.incPushJobNum(jobPos.size());
                 }
-
-                return new JobSender.SendResult(true, JobPushResult.SUCCESS);
+                pushSuccess = true;
             }
-        });
 
-        return (JobPushResult) sendResult.getReturnValue();
+            if (!pushSuccess) {
+                if (LOGGER.isDebugEnabled()) {
+                    LOGGER.debug("Job push failed! nodeGroup=" + nodeGroup + ", identity=" + identity + ", jobs=" + JSON.toJSONString(jobPos));
+                }
+                for (JobPo jobPo : jobPos) {
+                    resumeJob(jobPo);
+                }
+                callback.onComplete(new JobSender.SendResult(false, JobPushResult.SENT_ERROR));
+            } else {
+                callback.onComplete(new JobSender.SendResult(true, JobPushResult.SUCCESS));
+                if (appContext.getJobPullLongPoller() != null) {
+                    // 返回该TaskTracker挂起的长轮询pull请求
+                    appContext.getJobPullLongPoller().onPushed(nodeGroup, identity);
+                }
+            }
+        } catch (Throwable t) {
+            LOGGER.error("Error on handle push response, nodeGroup={}, identity={}", nodeGroup, identity, t);
+        } finally {
+            batchDone.onComplete(accepted);
+        }
     }
 
     private void resumeJob(JobPo jobPo) {
@@ -261,4 +332,14 @@ public class JobPusher {
             appContext.getExecutableJobQueue().resume(jobPo);
         }
     }
+
+    /**
+     * 一次推送结束(没有任务,成功,失败或超时)的回调
+     */
+    public interface PushCallback {
+        /**
+         * @param accepted TaskTracker 接收的任务数
+         */
+        void onComplete(int accepted);
+    }
 }
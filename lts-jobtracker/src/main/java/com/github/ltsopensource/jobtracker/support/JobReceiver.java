@@ -138,6 +138,20 @@ public class JobReceiver {
         if (needAdd2ExecutableJobQueue) {
             jobPo.setInternalExtParam(Constants.EXE_SEQ_ID, JobUtils.generateExeSeqId(jobPo));
             appContext.getExecutableJobQueue().add(jobPo);
+            if (jobPo.getTriggerTime() != null && jobPo.getTriggerTime() <= SystemClock.now()
+                    && (appContext.getJobPullLongPoller() != null || appContext.getJobDispatcher() != null)) {
+                // 立即可执行的任务直接放入预加载队列, 并唤醒挂起的长轮询pull和主动推送
+                appContext.getPreLoader().offer(jobPo);
+                if (appContext.getJobPullLongPoller() != null) {
+                    appContext.getJobPullLongPoller().wakeup(jobPo.getTaskTrackerNodeGroup());
+                }
+                if (appContext.getJobDispatcher() != null) {
+                    appContext.getJobDispatcher().wakeup(jobPo.getTaskTrackerNodeGroup());
+                }
+            } else if (jobPo.getTriggerTime() != null && appContext.getPreLoader() != null) {
+                // 还没到执行时间的, 开启时间轮之后到期时放入预加载队列
+                appContext.getPreLoader().offer(jobPo);
+            }
         }
     }
 
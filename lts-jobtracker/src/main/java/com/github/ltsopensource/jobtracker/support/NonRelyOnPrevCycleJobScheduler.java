@@ -3,6 +3,7 @@ package com.github.ltsopensource.jobtracker.support;
 import com.github.ltsopensource.core.commons.utils.Callable;
 import com.github.ltsopensource.core.commons.utils.CollectionUtils;
 import com.github.ltsopensource.core.commons.utils.DateUtils;
+import com.github.ltsopensource.core.constant.Constants;
 import com.github.ltsopensource.core.constant.ExtConfig;
 import com.github.ltsopensource.core.exception.LtsRuntimeException;
 import com.github.ltsopensource.core.factory.NamedThreadFactory;
@@ -10,11 +11,17 @@ import com.github.ltsopensource.core.logger.Logger;
 import com.github.ltsopensource.core.logger.LoggerFactory;
 import com.github.ltsopensource.core.support.NodeShutdownHook;
 import com.github.ltsopensource.jobtracker.domain.JobTrackerAppContext;
+import com.github.ltsopensource.queue.SchedulerJobQueue;
 import com.github.ltsopensource.queue.domain.JobPo;
 import com.github.ltsopensource.queue.support.NonRelyJobUtils;
 
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
@@ -30,6 +37,10 @@ public class NonRelyOnPrevCycleJobScheduler {
     private static final Logger LOGGER = LoggerFactory.getLogger(NonRelyOnPrevCycleJobScheduler.class);
     private JobTrackerAppContext appContext;
     private int scheduleIntervalMinute;
+    // 每次从cron/repeat队列中取出的任务数
+    private int batchSize;
+    private int generateThreads;
+    private ExecutorService generateExecutor;
     private ScheduledExecutorService executorService;
     private ScheduledFuture<?> scheduledFuture;
     private AtomicBoolean running = new AtomicBoolean(false);
@@ -39,6 +50,8 @@ public class NonRelyOnPrevCycleJobScheduler {
     public NonRelyOnPrevCycleJobScheduler(JobTrackerAppContext appContext) {
         this.appContext = appContext;
         this.scheduleIntervalMinute = this.appContext.getConfig().getParameter(ExtConfig.JOB_TRACKER_NON_RELYON_PREV_CYCLE_JOB_SCHEDULER_INTERVAL_MINUTE, 10);
+        this.batchSize = this.appContext.getConfig().getParameter(ExtConfig.JOB_TRACKER_NON_RELYON_PREV_CYCLE_JOB_SCHEDULER_BATCH_SIZE, Constants.DEFAULT_NON_RELYON_PREV_CYCLE_JOB_SCHEDULER_BATCH_SIZE);
+        this.generateThreads = this.appContext.getConfig().getParameter(ExtConfig.JOB_TRACKER_NON_RELYON_PREV_CYCLE_JOB_SCHEDULER_THREADS, Constants.DEFAULT_NON_RELYON_PREV_CYCLE_JOB_SCHEDULER_THREADS);
 
         NodeShutdownHook.registerHook(appContext, this.getClass().getSimpleName(), new Callable() {
             @Override
@@ -54,6 +67,8 @@ public class NonRelyOnPrevCycleJobScheduler {
         }
         try {
             executorService = Executors.newScheduledThreadPool(1, new NamedThreadFactory(NonRelyOnPrevCycleJobScheduler.class.getSimpleName(), true));
+            generateExecutor = Executors.newFixedThreadPool(Math.max(1, generateThreads),
+                    new NamedThreadFactory(NonRelyOnPrevCycleJobScheduler.class.getSimpleName() + "-Generator", true));
             this.scheduledFuture = executorService.scheduleAtFixedRate(new Runnable() {
                 @Override
                 public void run() {
@@ -87,6 +102,10 @@ public class NonRelyOnPrevCycleJobScheduler {
                 executorService.shutdownNow();
                 executorService = null;
             }
+            if (generateExecutor != null) {
+                generateExecutor.shutdownNow();
+                generateExecutor = null;
+            }
         } catch (Throwable t) {
             LOGGER.error("Scheduler Stop Error", t);
         }
@@ -97,46 +116,96 @@ public class NonRelyOnPrevCycleJobScheduler {
             LOGGER.debug("========= Scheduler start =========");
         }
 
-        Date now = new Date();
-        Date checkTime = DateUtils.addMinute(now, 10);
+        long checkTime = DateUtils.addMinute(new Date(), 10).getTime();
         //  cron任务
-        while (true) {
-            List<JobPo> jobPos = appContext.getCronJobQueue().getNeedGenerateJobPos(checkTime.getTime(), 10);
+        schedule(appContext.getCronJobQueue(), checkTime);
+        // repeat 任务
+        schedule(appContext.getRepeatJobQueue(), checkTime);
+
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("========= Scheduler End =========");
+        }
+    }
+
+    private void schedule(SchedulerJobQueue jobQueue, long checkTime) {
+        while (start.get()) {
+            List<JobPo> jobPos = jobQueue.getNeedGenerateJobPos(checkTime, batchSize);
             if (CollectionUtils.sizeOf(jobPos) == 0) {
                 break;
             }
             if (LOGGER.isDebugEnabled()) {
-                LOGGER.debug("========= CronJob size[{}] =========", CollectionUtils.sizeOf(jobPos));
+                LOGGER.debug("========= {} size[{}] =========", jobQueue.getClass().getSimpleName(), CollectionUtils.sizeOf(jobPos));
             }
-            for (JobPo jobPo : jobPos) {
-                Long lastGenerateTriggerTime = jobPo.getLastGenerateTriggerTime();
-                if (lastGenerateTriggerTime == null || lastGenerateTriggerTime == 0) {
-                    lastGenerateTriggerTime = new Date().getTime();
-                }
-                addCronJobForInterval(jobPo, new Date(lastGenerateTriggerTime));
+            if (!generate(jobQueue, jobPos)) {
+                // 有失败的, 下次调度再试, 避免一直取到相同的任务
+                break;
             }
         }
+    }
 
-        // repeat 任务
-        while (true) {
-            List<JobPo> jobPos = appContext.getRepeatJobQueue().getNeedGenerateJobPos(checkTime.getTime(), 10);
-            if (CollectionUtils.sizeOf(jobPos) == 0) {
-                break;
-            }
-            if (LOGGER.isDebugEnabled()) {
-                LOGGER.debug("========= Repeat size[{}] =========", CollectionUtils.sizeOf(jobPos));
+    /**
+     * 按 taskTrackerNodeGroup 分给不同的线程, 每组在内存中生成之后批量写入
+     */
+    private boolean generate(final SchedulerJobQueue jobQueue, List<JobPo> jobPos) {
+        Map<String, List<JobPo>> groupJobPos = new HashMap<String, List<JobPo>>();
+        for (JobPo jobPo : jobPos) {
+            List<JobPo> list = groupJobPos.get(jobPo.getTaskTrackerNodeGroup());
+            if (list == null) {
+                list = new ArrayList<JobPo>();
+                groupJobPos.put(jobPo.getTaskTrackerNodeGroup(), list);
             }
-            for (JobPo jobPo : jobPos) {
-                Long lastGenerateTriggerTime = jobPo.getLastGenerateTriggerTime();
-                if (lastGenerateTriggerTime == null || lastGenerateTriggerTime == 0) {
-                    lastGenerateTriggerTime = new Date().getTime();
+            list.add(jobPo);
+        }
+
+        final CountDownLatch latch = new CountDownLatch(groupJobPos.size());
+        final AtomicBoolean success = new AtomicBoolean(true);
+        for (final Map.Entry<String, List<JobPo>> entry : groupJobPos.entrySet()) {
+            generateExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        generate(jobQueue, entry.getValue(), new Date());
+                    } catch (Throwable t) {
+                        success.set(false);
+                        LOGGER.error("Generate Non-Rely Job error, taskTrackerNodeGroup={}", entry.getKey(), t);
+                    } finally {
+                        latch.countDown();
+                    }
                 }
-                addRepeatJobForInterval(jobPo, new Date(lastGenerateTriggerTime));
+            });
+        }
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return success.get();
+    }
+
+    private void generate(SchedulerJobQueue jobQueue, List<JobPo> jobPos, Date now) {
+        List<JobPo> triggerJobPos = new ArrayList<JobPo>();
+        Map<String, Long> lastGenerateTriggerTimes = new HashMap<String, Long>(jobPos.size());
+        for (JobPo jobPo : jobPos) {
+            Long lastGenerateTriggerTime = jobPo.getLastGenerateTriggerTime();
+            if (lastGenerateTriggerTime == null || lastGenerateTriggerTime == 0) {
+                lastGenerateTriggerTime = now.getTime();
             }
+            long endTime;
+            if (jobPo.isCron()) {
+                endTime = NonRelyJobUtils.generateCronJobForInterval(scheduleIntervalMinute, jobPo,
+                        new Date(lastGenerateTriggerTime), triggerJobPos);
+            } else {
+                endTime = NonRelyJobUtils.generateRepeatJobForInterval(scheduleIntervalMinute, jobPo,
+                        new Date(lastGenerateTriggerTime), triggerJobPos);
+            }
+            lastGenerateTriggerTimes.put(jobPo.getJobId(), endTime);
         }
-        if (LOGGER.isDebugEnabled()) {
-            LOGGER.debug("========= Scheduler End =========");
+        if (triggerJobPos.size() > 0) {
+            // 已经存在的会被忽略, 所以失败之后重新生成也没问题
+            appContext.getExecutableJobQueue().addBatch(triggerJobPos);
         }
+        jobQueue.updateLastGenerateTriggerTime(lastGenerateTriggerTimes);
     }
 
     public void addScheduleJobForOneHour(JobPo jobPo) {
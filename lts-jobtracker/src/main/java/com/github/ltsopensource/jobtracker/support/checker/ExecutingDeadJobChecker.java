@@ -4,13 +4,11 @@ import com.github.ltsopensource.biz.logger.domain.JobLogPo;
 import com.github.ltsopensource.biz.logger.domain.LogType;
 import com.github.ltsopensource.core.cluster.NodeType;
 import com.github.ltsopensource.core.commons.utils.CollectionUtils;
-import com.github.ltsopensource.core.commons.utils.QuietUtils;
 import com.github.ltsopensource.core.constant.Constants;
 import com.github.ltsopensource.core.constant.ExtConfig;
 import com.github.ltsopensource.core.constant.Level;
 import com.github.ltsopensource.core.exception.RemotingSendException;
 import com.github.ltsopensource.core.factory.NamedThreadFactory;
-import com.github.ltsopensource.core.json.JSON;
 import com.github.ltsopensource.core.logger.Logger;
 import com.github.ltsopensource.core.logger.LoggerFactory;
 import com.github.ltsopensource.core.protocol.JobProtos;
@@ -28,15 +26,18 @@ import com.github.ltsopensource.remoting.Channel;
 import com.github.ltsopensource.remoting.ResponseFuture;
 import com.github.ltsopensource.remoting.protocol.RemotingCommand;
 import com.github.ltsopensource.remoting.protocol.RemotingProtos;
-import com.github.ltsopensource.store.jdbc.exception.DupEntryException;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -45,15 +46,22 @@ import java.util.concurrent.atomic.AtomicBoolean;
  *         死掉的任务
  *         1. 分发出去的，并且执行节点不存在的任务
  *         2. 分发出去，执行节点还在, 但是没有在执行的任务
+ *         按 jobId 分页查询, 按 TaskTracker 并行检查(并发数有上限), 询问之后延迟批量修复, 不在回调线程中等待
  */
 public class ExecutingDeadJobChecker {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ExecutingDeadJobChecker.class);
 
     private final ScheduledExecutorService FIXED_EXECUTOR_SERVICE = Executors.newScheduledThreadPool(1, new NamedThreadFactory("LTS-ExecutingJobQueue-Fix-Executor", true));
+    // 询问和修复, 以及询问之后的延迟修复
+    private ScheduledExecutorService FIX_WORKER_SERVICE;
 
     private JobTrackerAppContext appContext;
     private JobTrackerMStatReporter stat;
+    private int pageSize;
+    private int parallelism;
+    private long fixWaitingMillis;
+    private Semaphore fixPermits;
 
     public ExecutingDeadJobChecker(JobTrackerAppContext appContext) {
         this.appContext = appContext;
@@ -66,6 +74,12 @@ public class ExecutingDeadJobChecker {
     public void start() {
         try {
             if (start.compareAndSet(false, true)) {
+                pageSize = Math.max(1, appContext.getConfig().getParameter(ExtConfig.JOB_TRACKER_EXECUTING_JOB_FIX_PAGE_SIZE, 1000));
+                parallelism = Math.max(1, appContext.getConfig().getParameter(ExtConfig.JOB_TRACKER_EXECUTING_JOB_FIX_PARALLELISM, 4));
+                fixWaitingMillis = appContext.getConfig().getParameter(ExtConfig.JOB_TRACKER_FIX_EXECUTING_JOB_WAITING_MILLS, 1000L);
+                fixPermits = new Semaphore(parallelism);
+                FIX_WORKER_SERVICE = Executors.newScheduledThreadPool(parallelism, new NamedThreadFactory("LTS-ExecutingJobQueue-Fix-Worker", true));
+
                 int fixCheckPeriodSeconds = appContext.getConfig().getParameter(ExtConfig.JOB_TRACKER_EXECUTING_JOB_FIX_CHECK_INTERVAL_SECONDS, 30);
                 if (fixCheckPeriodSeconds < 5) {
                     fixCheckPeriodSeconds = 5;
@@ -82,6 +96,8 @@ public class ExecutingDeadJobChecker {
                                 return;
                             }
                             checkAndFix();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
                         } catch (Throwable t) {
                             LOGGER.error("Check executing dead job error ", t);
                         }
@@ -94,7 +110,7 @@ public class ExecutingDeadJobChecker {
         }
     }
 
-    private void checkAndFix() throws RemotingSendException {
+    private void checkAndFix() throws InterruptedException {
 
         // 30s没有收到反馈信息，需要去检查这个任务是否还在执行
         int maxDeadCheckTime = appContext.getConfig().getParameter(ExtConfig.JOB_TRACKER_EXECUTING_JOB_FIX_DEADLINE_SECONDS, 20);
@@ -103,12 +119,16 @@ public class ExecutingDeadJobChecker {
         } else if (maxDeadCheckTime > 5 * 60) {
             maxDeadCheckTime = 5 * 60;
         }
+        long deadline = SystemClock.now() - maxDeadCheckTime * 1000;
 
-        // 查询出所有死掉的任务 (其实可以直接在数据库中fix的, 查询出来主要是为了日志打印)
-        // 一般来说这个是没有多大的，我就不分页去查询了
-        List<JobPo> maybeDeadJobPos = appContext.getExecutingJobQueue().getDeadJobs(
-                SystemClock.now() - maxDeadCheckTime * 1000);
-        if (CollectionUtils.isNotEmpty(maybeDeadJobPos)) {
+        // 按 jobId 分页查询可能死掉的任务, 每页按 TaskTracker 分组后并行检查, 同时检查的个数不超过 parallelism
+        String lastJobId = null;
+        while (start.get()) {
+            List<JobPo> maybeDeadJobPos = appContext.getExecutingJobQueue().getDeadJobs(deadline, lastJobId, pageSize);
+            if (CollectionUtils.isEmpty(maybeDeadJobPos)) {
+                break;
+            }
+            lastJobId = maybeDeadJobPos.get(maybeDeadJobPos.size() - 1).getJobId();
 
             Map<String/*taskTrackerIdentity*/, List<JobPo>> jobMap = new HashMap<String, List<JobPo>>();
             for (JobPo jobPo : maybeDeadJobPos) {
@@ -121,31 +141,79 @@ public class ExecutingDeadJobChecker {
             }
 
             for (Map.Entry<String, List<JobPo>> entry : jobMap.entrySet()) {
-                String taskTrackerNodeGroup = entry.getValue().get(0).getTaskTrackerNodeGroup();
-                String taskTrackerIdentity = entry.getKey();
+                fixPermits.acquire();
+                TaskTrackerCheck check = new TaskTrackerCheck(entry.getKey(), entry.getValue());
+                try {
+                    FIX_WORKER_SERVICE.execute(check);
+                } catch (RejectedExecutionException e) {
+                    check.done();
+                }
+            }
+            if (maybeDeadJobPos.size() < pageSize) {
+                break;
+            }
+        }
+        // 等这一轮的检查(包括延迟修复)都结束, 避免下一轮重复询问
+        fixPermits.acquire(parallelism);
+        fixPermits.release(parallelism);
+    }
+
+    /**
+     * 检查一个 TaskTracker 上可能死掉的任务, 结束(包括异步询问和延迟修复)时归还 fixPermits
+     */
+    private class TaskTrackerCheck implements Runnable {
+
+        private final String taskTrackerIdentity;
+        private final List<JobPo> jobPos;
+        private final AtomicBoolean done = new AtomicBoolean(false);
+
+        TaskTrackerCheck(String taskTrackerIdentity, List<JobPo> jobPos) {
+            this.taskTrackerIdentity = taskTrackerIdentity;
+            this.jobPos = jobPos;
+        }
+
+        @Override
+        public void run() {
+            boolean async = false;
+            try {
+                String taskTrackerNodeGroup = jobPos.get(0).getTaskTrackerNodeGroup();
                 // 去查看这个TaskTrackerIdentity是否存活
                 ChannelWrapper channelWrapper = appContext.getChannelManager().getChannel(taskTrackerNodeGroup, NodeType.TASK_TRACKER, taskTrackerIdentity);
                 if (channelWrapper == null && taskTrackerIdentity != null) {
                     Long offlineTimestamp = appContext.getChannelManager().getOfflineTimestamp(taskTrackerIdentity);
                     // 已经离线太久，直接修复
                     if (offlineTimestamp == null || SystemClock.now() - offlineTimestamp > Constants.DEFAULT_TASK_TRACKER_OFFLINE_LIMIT_MILLIS) {
-                        // fixDeadJob
-                        fixDeadJob(entry.getValue());
+                        fixDeadJobs(jobPos);
                     }
                 } else {
                     // 去询问是否在执行该任务
                     if (channelWrapper != null && channelWrapper.getChannel() != null && channelWrapper.isOpen()) {
-                        askTimeoutJob(channelWrapper.getChannel(), entry.getValue());
+                        async = askTimeoutJob(channelWrapper.getChannel(), this);
                     }
                 }
+            } catch (Throwable t) {
+                LOGGER.error("Check executing dead job error, taskTrackerIdentity={}", taskTrackerIdentity, t);
+            } finally {
+                if (!async) {
+                    done();
+                }
+            }
+        }
+
+        void done() {
+            if (done.compareAndSet(false, true)) {
+                fixPermits.release();
             }
         }
     }
 
     /**
      * 向taskTracker询问执行中的任务
+     *
+     * @return 是否已经发出询问, 为true时由回调结束 check
      */
-    private void askTimeoutJob(Channel channel, final List<JobPo> jobPos) {
+    private boolean askTimeoutJob(Channel channel, final TaskTrackerCheck check) {
+        final List<JobPo> jobPos = check.jobPos;
         try {
             RemotingServerDelegate remotingServer = appContext.getRemotingServer();
             List<String> jobIds = new ArrayList<String>(jobPos.size());
@@ -158,70 +226,112 @@ public class ExecutingDeadJobChecker {
             remotingServer.invokeAsync(channel, request, new AsyncCallback() {
                 @Override
                 public void operationComplete(ResponseFuture responseFuture) {
-                    RemotingCommand response = responseFuture.getResponseCommand();
-                    if (response != null && RemotingProtos.ResponseCode.SUCCESS.code() == response.getCode()) {
-                        JobAskResponse responseBody = response.getBody();
-                        List<String> deadJobIds = responseBody.getJobIds();
-                        if (CollectionUtils.isNotEmpty(deadJobIds)) {
-
-                            // 睡了1秒再修复, 防止任务刚好执行完正在传输中. 1s可以让完成的正常完成
-                            QuietUtils.sleep(appContext.getConfig().getParameter(ExtConfig.JOB_TRACKER_FIX_EXECUTING_JOB_WAITING_MILLS, 1000L));
-
-                            for (JobPo jobPo : jobPos) {
-                                if (deadJobIds.contains(jobPo.getJobId())) {
-                                    fixDeadJob(jobPo);
+                    boolean scheduled = false;
+                    try {
+                        RemotingCommand response = responseFuture.getResponseCommand();
+                        if (response != null && RemotingProtos.ResponseCode.SUCCESS.code() == response.getCode()) {
+                            JobAskResponse responseBody = response.getBody();
+                            List<String> deadJobIds = responseBody.getJobIds();
+                            if (CollectionUtils.isNotEmpty(deadJobIds)) {
+                                Set<String> deadJobIdSet = new HashSet<String>(deadJobIds);
+                                final List<JobPo> deadJobPos = new ArrayList<JobPo>(deadJobIdSet.size());
+                                for (JobPo jobPo : jobPos) {
+                                    if (deadJobIdSet.contains(jobPo.getJobId())) {
+                                        deadJobPos.add(jobPo);
+                                    }
                                 }
+                                // 等一会再修复, 防止任务刚好执行完正在传输中, 不占用回调线程
+                                FIX_WORKER_SERVICE.schedule(new Runnable() {
+                                    @Override
+                                    public void run() {
+                                        try {
+                                            fixDeadJobs(deadJobPos);
+                                        } catch (Throwable t) {
+                                            LOGGER.error("Fix executing dead job error", t);
+                                        } finally {
+                                            check.done();
+                                        }
+                                    }
+                                }, fixWaitingMillis, TimeUnit.MILLISECONDS);
+                                scheduled = true;
                             }
                         }
+                    } catch (Throwable t) {
+                        LOGGER.error("Handle job ask response error", t);
+                    } finally {
+                        if (!scheduled) {
+                            check.done();
+                        }
                     }
                 }
             });
+            return true;
         } catch (RemotingSendException e) {
             LOGGER.error("Ask timeout Job error, ", e);
         }
-
+        return false;
     }
 
-    private void fixDeadJob(List<JobPo> jobPos) {
+    /**
+     * 批量修复: 从 executing 队列批量移到 executable 队列
+     */
+    private void fixDeadJobs(List<JobPo> jobPos) {
+        if (CollectionUtils.isEmpty(jobPos)) {
+            return;
+        }
+        Map<String, JobPo> checkedJobPoMap = new HashMap<String, JobPo>(jobPos.size() * 2);
         for (JobPo jobPo : jobPos) {
-            fixDeadJob(jobPo);
+            checkedJobPoMap.put(jobPo.getJobId(), jobPo);
         }
-    }
-
-    private void fixDeadJob(JobPo jobPo) {
-        try {
-
-            // 已经被移除了
-            if (appContext.getExecutingJobQueue().getJob(jobPo.getJobId()) == null) {
-                return;
+        // 重新查询, 已经被移除了或者已经分发给其他节点的不修复
+        List<JobPo> executingJobPos = appContext.getExecutingJobQueue().getJobsByJobIds(new ArrayList<String>(checkedJobPoMap.keySet()));
+        List<JobPo> deadJobPos = new ArrayList<JobPo>(executingJobPos.size());
+        List<String> deadJobIds = new ArrayList<String>(executingJobPos.size());
+        long now = SystemClock.now();
+        for (JobPo jobPo : executingJobPos) {
+            JobPo checked = checkedJobPoMap.get(jobPo.getJobId());
+            if (checked == null || !equals(checked.getTaskTrackerIdentity(), jobPo.getTaskTrackerIdentity())
+                    || !equals(checked.getGmtModified(), jobPo.getGmtModified())) {
+                // 检查之后又被修改过(例如重新分发到同一个节点), 不是检查时的那次执行了
+                continue;
             }
-
-            jobPo.setGmtModified(SystemClock.now());
+            jobPo.setGmtModified(now);
             jobPo.setTaskTrackerIdentity(null);
             jobPo.setIsRunning(false);
-            // 1. add to executable queue
-            try {
-                appContext.getExecutableJobQueue().add(jobPo);
-            } catch (DupEntryException e) {
-                LOGGER.warn("ExecutableJobQueue already exist:" + JSON.toJSONString(jobPo));
-            }
+            deadJobPos.add(jobPo);
+            deadJobIds.add(jobPo.getJobId());
+        }
+        if (deadJobPos.isEmpty()) {
+            return;
+        }
+
+        // 1. add to executable queue
+        int addNum = appContext.getExecutableJobQueue().addBatch(deadJobPos);
+        if (addNum < deadJobPos.size()) {
+            LOGGER.warn("ExecutableJobQueue already exist, ignored num:{}", deadJobPos.size() - addNum);
+        }
 
-            // 2. remove from executing queue
-            appContext.getExecutingJobQueue().remove(jobPo.getJobId());
+        // 2. remove from executing queue
+        appContext.getExecutingJobQueue().removeBatch(deadJobIds);
 
+        List<JobLogPo> jobLogPos = new ArrayList<JobLogPo>(deadJobPos.size());
+        for (JobPo jobPo : deadJobPos) {
             JobLogPo jobLogPo = JobDomainConverter.convertJobLog(jobPo);
-            jobLogPo.setLogTime(SystemClock.now());
+            jobLogPo.setLogTime(now);
             jobLogPo.setSuccess(true);
             jobLogPo.setLevel(Level.WARN);
             jobLogPo.setLogType(LogType.FIXED_DEAD);
-            appContext.getJobLogger().log(jobLogPo);
+            jobLogPos.add(jobLogPo);
+        }
+        appContext.getJobLogger().log(jobLogPos);
 
-            stat.incFixExecutingJobNum();
+        stat.incFixExecutingJobNum(deadJobPos.size());
 
-        } catch (Throwable t) {
-            LOGGER.error(t.getMessage(), t);
-        }
-        LOGGER.info("checkAndFix dead job ! {}", JSON.toJSONString(jobPo));
+        LOGGER.info("checkAndFix dead job ! num:{}, jobIds:{}", deadJobIds.size(), deadJobIds);
+    }
+
+    private static boolean equals(Object a, Object b) {
+        return a == null ? b == null : a.equals(b);
     }
 
     public void stop() {
@@ -229,6 +339,7 @@ public class ExecutingDeadJobChecker {
             if (start.compareAndSet(true, false)) {
                 scheduledFuture.cancel(true);
                 FIXED_EXECUTOR_SERVICE.shutdown();
+                FIX_WORKER_SERVICE.shutdown();
             }
             LOGGER.info("Executing dead job checker stopped!");
         } catch (Throwable t) {
@@ -3,25 +3,27 @@ package com.github.ltsopensource.jobtracker.support.cluster;
 
 import com.github.ltsopensource.core.cluster.Node;
 import com.github.ltsopensource.core.cluster.NodeType;
-import com.github.ltsopensource.core.commons.concurrent.ConcurrentHashSet;
 import com.github.ltsopensource.core.logger.Logger;
 import com.github.ltsopensource.core.logger.LoggerFactory;
 import com.github.ltsopensource.jobtracker.channel.ChannelWrapper;
 import com.github.ltsopensource.jobtracker.domain.JobTrackerAppContext;
 import com.github.ltsopensource.jobtracker.domain.TaskTrackerNode;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author Robert HG (254963746@qq.com) on 8/16/14.
  *         Task Tracker 管理器 (对 TaskTracker 节点的记录 和 可用线程的记录)
+ *         按 nodeGroup -> identity 两级索引, 查找和更新都不用遍历节点组
  */
 public class TaskTrackerManager {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(TaskTrackerManager.class);
     // 单例
-    private final ConcurrentHashMap<String/*nodeGroup*/, Set<TaskTrackerNode>> NODE_MAP = new ConcurrentHashMap<String, Set<TaskTrackerNode>>();
+    private final ConcurrentHashMap<String/*nodeGroup*/, TaskTrackerGroup> NODE_MAP = new ConcurrentHashMap<String, TaskTrackerGroup>();
     private JobTrackerAppContext appContext;
 
     public TaskTrackerManager(JobTrackerAppContext appContext) {
@@ -42,20 +44,23 @@ public class TaskTrackerManager {
         //  channel 可能为 null
         ChannelWrapper channel = appContext.getChannelManager().getChannel(node.getGroup(),
                 node.getNodeType(), node.getIdentity());
-        Set<TaskTrackerNode> taskTrackerNodes = NODE_MAP.get(node.getGroup());
+        TaskTrackerGroup group = NODE_MAP.get(node.getGroup());
 
-        if (taskTrackerNodes == null) {
-            taskTrackerNodes = new ConcurrentHashSet<TaskTrackerNode>();
-            Set<TaskTrackerNode> oldSet = NODE_MAP.putIfAbsent(node.getGroup(), taskTrackerNodes);
-            if (oldSet != null) {
-                taskTrackerNodes = oldSet;
+        if (group == null) {
+            group = new TaskTrackerGroup();
+            TaskTrackerGroup oldGroup = NODE_MAP.putIfAbsent(node.getGroup(), group);
+            if (oldGroup != null) {
+                group = oldGroup;
             }
         }
 
         TaskTrackerNode taskTrackerNode = new TaskTrackerNode(node.getGroup(),
                 node.getThreads(), node.getIdentity(), channel);
         LOGGER.info("Add TaskTracker node:{}", taskTrackerNode);
-        taskTrackerNodes.add(taskTrackerNode);
+        // 已经存在的保留原来的
+        if (group.nodes.putIfAbsent(taskTrackerNode.getIdentity(), taskTrackerNode) == null) {
+            group.refreshAvailable(taskTrackerNode);
+        }
 
         // create executable queue
         appContext.getExecutableJobQueue().createQueue(node.getGroup());
@@ -68,40 +73,40 @@ public class TaskTrackerManager {
      * @param node
      */
     public void removeNode(Node node) {
-        Set<TaskTrackerNode> taskTrackerNodes = NODE_MAP.get(node.getGroup());
-        if (taskTrackerNodes != null && taskTrackerNodes.size() != 0) {
-            TaskTrackerNode taskTrackerNode = new TaskTrackerNode(node.getIdentity());
-            taskTrackerNode.setNodeGroup(node.getGroup());
-            LOGGER.info("Remove TaskTracker node:{}", taskTrackerNode);
-            taskTrackerNodes.remove(taskTrackerNode);
+        TaskTrackerGroup group = NODE_MAP.get(node.getGroup());
+        if (group != null) {
+            TaskTrackerNode taskTrackerNode = group.nodes.remove(node.getIdentity());
+            if (taskTrackerNode != null) {
+                LOGGER.info("Remove TaskTracker node:{}", taskTrackerNode);
+                group.availableNodes.remove(node.getIdentity(), taskTrackerNode);
+            }
         }
     }
 
     public TaskTrackerNode getTaskTrackerNode(String nodeGroup, String identity) {
-        Set<TaskTrackerNode> taskTrackerNodes = NODE_MAP.get(nodeGroup);
-        if (taskTrackerNodes == null || taskTrackerNodes.size() == 0) {
+        TaskTrackerGroup group = NODE_MAP.get(nodeGroup);
+        if (group == null) {
+            return null;
+        }
+        TaskTrackerNode taskTrackerNode = group.nodes.get(identity);
+        if (taskTrackerNode == null) {
             return null;
         }
 
-        for (TaskTrackerNode taskTrackerNode : taskTrackerNodes) {
-            if (taskTrackerNode.getIdentity().equals(identity)) {
-                if (taskTrackerNode.getChannel() == null || taskTrackerNode.getChannel().isClosed()) {
-                    // 如果 channel 已经关闭, 更新channel, 如果没有channel, 略过
-                    ChannelWrapper channel = appContext.getChannelManager().getChannel(
-                            taskTrackerNode.getNodeGroup(), NodeType.TASK_TRACKER, taskTrackerNode.getIdentity());
-                    if (channel != null) {
-                        // 更新channel
-                        taskTrackerNode.setChannel(channel);
-                        LOGGER.info("update node channel , taskTackerNode={}", taskTrackerNode);
-                        return taskTrackerNode;
-                    }
-                } else {
-                    // 只有当channel正常的时候才返回
-                    return taskTrackerNode;
-                }
+        if (taskTrackerNode.getChannel() == null || taskTrackerNode.getChannel().isClosed()) {
+            // 如果 channel 已经关闭, 更新channel, 如果没有channel, 略过
+            ChannelWrapper channel = appContext.getChannelManager().getChannel(
+                    taskTrackerNode.getNodeGroup(), NodeType.TASK_TRACKER, taskTrackerNode.getIdentity());
+            if (channel != null) {
+                // 更新channel
+                taskTrackerNode.setChannel(channel);
+                LOGGER.info("update node channel , taskTackerNode={}", taskTrackerNode);
+                return taskTrackerNode;
             }
+            return null;
         }
-        return null;
+        // 只有当channel正常的时候才返回
+        return taskTrackerNode;
     }
 
     /**
@@ -114,17 +119,57 @@ public class TaskTrackerManager {
             Integer availableThreads,
             Long timestamp) {
 
-        Set<TaskTrackerNode> taskTrackerNodes = NODE_MAP.get(nodeGroup);
+        TaskTrackerGroup group = NODE_MAP.get(nodeGroup);
+        if (group == null) {
+            return;
+        }
+        TaskTrackerNode trackerNode = group.nodes.get(identity);
+        if (trackerNode != null && trackerNode.updateAvailableThread(availableThreads, timestamp)) {
+            group.refreshAvailable(trackerNode);
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("更新节点线程数: {}", trackerNode);
+            }
+        }
+    }
+
+    /**
+     * 可用线程数变化之后(例如推送了任务), 更新节点在有空闲线程的节点中的状态
+     */
+    public void refreshAvailable(TaskTrackerNode taskTrackerNode) {
+        TaskTrackerGroup group = NODE_MAP.get(taskTrackerNode.getNodeGroup());
+        if (group != null) {
+            group.refreshAvailable(taskTrackerNode);
+        }
+    }
+
+    /**
+     * 节点组中有空闲线程的节点, 是实时的只读视图, 不复制
+     * 并发更新时可能包含刚好用完线程的节点, 使用时再检查可用线程数
+     */
+    public Collection<TaskTrackerNode> getAvailableTaskTrackerNodes(String nodeGroup) {
+        TaskTrackerGroup group = NODE_MAP.get(nodeGroup);
+        if (group == null) {
+            return Collections.emptyList();
+        }
+        return group.availableNodesView;
+    }
 
-        if (taskTrackerNodes != null && taskTrackerNodes.size() != 0) {
-            for (TaskTrackerNode trackerNode : taskTrackerNodes) {
-                if (trackerNode.getIdentity().equals(identity) && (trackerNode.getTimestamp() == null || trackerNode.getTimestamp() <= timestamp)) {
-                    trackerNode.setAvailableThread(availableThreads);   //todo 是否有并发问题? 是由后台JobPullMachine单线程调用的,应该没有现成安全问题
-                    trackerNode.setTimestamp(timestamp);
-                    if (LOGGER.isDebugEnabled()) {
-                        LOGGER.debug("更新节点线程数: {}", trackerNode);
-                    }
+    private static class TaskTrackerGroup {
+        // identity -> node
+        private final ConcurrentHashMap<String, TaskTrackerNode> nodes = new ConcurrentHashMap<String, TaskTrackerNode>();
+        // 有空闲线程的节点, identity -> node
+        private final ConcurrentHashMap<String, TaskTrackerNode> availableNodes = new ConcurrentHashMap<String, TaskTrackerNode>();
+        private final Collection<TaskTrackerNode> availableNodesView = Collections.unmodifiableCollection(availableNodes.values());
+
+        private void refreshAvailable(TaskTrackerNode node) {
+            if (nodes.get(node.getIdentity()) == node && node.getAvailableThread() > 0) {
+                availableNodes.put(node.getIdentity(), node);
+                if (nodes.get(node.getIdentity()) != node) {
+                    // 同时被删除了
+                    availableNodes.remove(node.getIdentity(), node);
                 }
+            } else {
+                availableNodes.remove(node.getIdentity(), node);
             }
         }
     }
@@ -30,6 +30,9 @@ public class JobNodeChangeListener implements NodeChangeListener {
                 appContext.getTaskTrackerManager().addNode(node);
             } else if (node.getNodeType().equals(NodeType.JOB_CLIENT)) {
                 appContext.getJobClientManager().addNode(node);
+            } else if (node.getNodeType().equals(NodeType.JOB_TRACKER)) {
+                // 重新分配每个JobTracker负责的任务分区
+                appContext.getPreLoader().addJobTracker(node.getIdentity());
             }
         }
     }
@@ -44,6 +47,8 @@ public class JobNodeChangeListener implements NodeChangeListener {
                 appContext.getTaskTrackerManager().removeNode(node);
             } else if (node.getNodeType().equals(NodeType.JOB_CLIENT)) {
                 appContext.getJobClientManager().removeNode(node);
+            } else if (node.getNodeType().equals(NodeType.JOB_TRACKER)) {
+                appContext.getPreLoader().removeJobTracker(node.getIdentity());
             }
         }
     }
@@ -0,0 +1,244 @@
+package com.github.ltsopensource.jobtracker.support;
+
+import com.github.ltsopensource.core.cluster.Config;
+import com.github.ltsopensource.core.cluster.Node;
+import com.github.ltsopensource.core.cluster.NodeType;
+import com.github.ltsopensource.core.constant.ExtConfig;
+import com.github.ltsopensource.core.support.SystemClock;
+import com.github.ltsopensource.jobtracker.channel.ChannelManager;
+import com.github.ltsopensource.jobtracker.channel.ChannelWrapper;
+import com.github.ltsopensource.jobtracker.domain.JobTrackerAppContext;
+import com.github.ltsopensource.jobtracker.domain.TaskTrackerNode;
+import com.github.ltsopensource.jobtracker.support.cluster.TaskTrackerManager;
+import com.github.ltsopensource.queue.memory.MemoryJobQueueFactory;
+import com.github.ltsopensource.remoting.Channel;
+import com.github.ltsopensource.remoting.ChannelHandler;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.SocketAddress;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * JobDispatcher 按可用线程数和 maxInFlight 推送, 没有任务的节点组被唤醒后继续推送
+ */
+public class JobDispatcherTest {
+
+    private static final String NODE_GROUP = "test_trade_TaskTracker";
+
+    private JobTrackerAppContext createAppContext(Config config) {
+        config.setIdentity("job_dispatcher_test");
+        config.setNodeType(NodeType.JOB_TRACKER);
+        config.setClusterName("job_dispatcher_test_" + System.nanoTime());
+        config.setDataPath(System.getProperty("java.io.tmpdir"));
+
+        JobTrackerAppContext appContext = new JobTrackerAppContext();
+        appContext.setConfig(config);
+        appContext.setChannelManager(new ChannelManager());
+        MemoryJobQueueFactory factory = new MemoryJobQueueFactory();
+        appContext.setExecutableJobQueue(factory.getExecutableJobQueue(config));
+        appContext.setNodeGroupStore(factory.getNodeGroupStore(config));
+        appContext.setTaskTrackerManager(new TaskTrackerManager(appContext));
+        return appContext;
+    }
+
+    private TaskTrackerNode addNode(JobTrackerAppContext appContext, String identity, int threads) {
+        appContext.getChannelManager().offerChannel(new ChannelWrapper(new MockChannel(), NodeType.TASK_TRACKER, NODE_GROUP, identity));
+        Node node = new Node();
+        node.setNodeType(NodeType.TASK_TRACKER);
+        node.setGroup(NODE_GROUP);
+        node.setIdentity(identity);
+        node.setThreads(threads);
+        appContext.getTaskTrackerManager().addNode(node);
+        return appContext.getTaskTrackerManager().getTaskTrackerNode(NODE_GROUP, identity);
+    }
+
+    private JobDispatcher start(JobTrackerAppContext appContext, MockJobPusher jobPusher) {
+        appContext.setJobPusher(jobPusher);
+        JobDispatcher jobDispatcher = new JobDispatcher(appContext);
+        appContext.setJobDispatcher(jobDispatcher);
+        jobDispatcher.start();
+        return jobDispatcher;
+    }
+
+    private void waitPushed(MockJobPusher jobPusher, int expect) throws InterruptedException {
+        long deadline = SystemClock.now() + 5000;
+        while (jobPusher.pushedNum.get() < expect && SystemClock.now() < deadline) {
+            Thread.sleep(5);
+        }
+        // 再等一下, 确认没有多推
+        Thread.sleep(100);
+        Assert.assertEquals(expect, jobPusher.pushedNum.get());
+    }
+
+    /**
+     * 推送的个数等于可用线程数, 任务完成归还线程之后继续推送
+     */
+    @Test
+    public void testDispatchAvailableThreads() throws InterruptedException {
+        Config config = new Config();
+        config.setParameter(ExtConfig.JOB_TRACKER_PUSH_BATCH_SIZE, "2");
+        JobTrackerAppContext appContext = createAppContext(config);
+        TaskTrackerNode tt1 = addNode(appContext, "tt_1", 5);
+        TaskTrackerNode tt2 = addNode(appContext, "tt_2", 3);
+        MockJobPusher jobPusher = new MockJobPusher(appContext) {
+            @Override
+            protected void doPush(TaskTrackerNode taskTrackerNode, int size, PushCallback callback) {
+                callback.onComplete(size);
+            }
+        };
+        JobDispatcher jobDispatcher = start(appContext, jobPusher);
+        try {
+            jobDispatcher.wakeup(NODE_GROUP);
+            waitPushed(jobPusher, 8);
+            Assert.assertEquals(5, jobPusher.getPushed("tt_1"));
+            Assert.assertEquals(3, jobPusher.getPushed("tt_2"));
+            Assert.assertEquals(0, tt1.getAvailableThread());
+            Assert.assertEquals(0, tt2.getAvailableThread());
+            Assert.assertTrue(appContext.getTaskTrackerManager().getAvailableTaskTrackerNodes(NODE_GROUP).isEmpty());
+
+            jobDispatcher.onJobCompleted(NODE_GROUP, "tt_1", 2);
+            waitPushed(jobPusher, 10);
+            Assert.assertEquals(7, jobPusher.getPushed("tt_1"));
+        } finally {
+            jobDispatcher.stop();
+        }
+    }
+
+    /**
+     * 还没有应答的推送不超过 maxInFlight, 应答之后继续推送
+     */
+    @Test
+    public void testMaxInFlight() throws InterruptedException {
+        Config config = new Config();
+        config.setParameter(ExtConfig.JOB_TRACKER_PUSH_BATCH_SIZE, "1");
+        config.setParameter(ExtConfig.JOB_TRACKER_DISPATCHER_NODE_MAX_IN_FLIGHT, "3");
+        JobTrackerAppContext appContext = createAppContext(config);
+        addNode(appContext, "tt_1", 10);
+        final List<JobPusher.PushCallback> pending = new CopyOnWriteArrayList<JobPusher.PushCallback>();
+        MockJobPusher jobPusher = new MockJobPusher(appContext) {
+            @Override
+            protected void doPush(TaskTrackerNode taskTrackerNode, int size, PushCallback callback) {
+                // 不应答
+                pending.add(callback);
+            }
+        };
+        JobDispatcher jobDispatcher = start(appContext, jobPusher);
+        try {
+            jobDispatcher.wakeup(NODE_GROUP);
+            waitPushed(jobPusher, 3);
+
+            pending.remove(0).onComplete(1);
+            waitPushed(jobPusher, 4);
+        } finally {
+            jobDispatcher.stop();
+        }
+    }
+
+    /**
+     * 加载到空之后, 标记没有任务之前来了新任务的唤醒, 不能被标记覆盖掉
+     */
+    @Test
+    public void testWakeupDuringEmptyLoad() throws InterruptedException {
+        Config config = new Config();
+        // 不靠定时检查
+        config.setParameter(ExtConfig.JOB_TRACKER_DISPATCHER_INTERVAL_MILLIS, "60000");
+        final JobTrackerAppContext appContext = createAppContext(config);
+        addNode(appContext, "tt_1", 1);
+        final AtomicInteger pushNum = new AtomicInteger(0);
+        MockJobPusher jobPusher = new MockJobPusher(appContext) {
+            @Override
+            protected void doPush(TaskTrackerNode taskTrackerNode, final int size, final PushCallback callback) {
+                if (pushNum.incrementAndGet() == 1) {
+                    // 第一次加载到空, 回调之前有新任务唤醒
+                    new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            appContext.getJobDispatcher().wakeup(NODE_GROUP);
+                            callback.onComplete(0);
+                        }
+                    }).start();
+                } else {
+                    callback.onComplete(size);
+                }
+            }
+        };
+        JobDispatcher jobDispatcher = start(appContext, jobPusher);
+        try {
+            jobDispatcher.wakeup(NODE_GROUP);
+            long deadline = SystemClock.now() + 5000;
+            while (pushNum.get() < 2 && SystemClock.now() < deadline) {
+                Thread.sleep(5);
+            }
+            Assert.assertEquals(2, pushNum.get());
+        } finally {
+            jobDispatcher.stop();
+        }
+    }
+
+    private static abstract class MockJobPusher extends JobPusher {
+
+        private final AtomicInteger pushedNum = new AtomicInteger(0);
+        private final ConcurrentHashMap<String, AtomicInteger> pushed = new ConcurrentHashMap<String, AtomicInteger>();
+
+        MockJobPusher(JobTrackerAppContext appContext) {
+            super(appContext);
+        }
+
+        @Override
+        public void pushAsync(TaskTrackerNode taskTrackerNode, int size, PushCallback callback) {
+            pushedNum.addAndGet(size);
+            pushed.putIfAbsent(taskTrackerNode.getIdentity(), new AtomicInteger(0));
+            pushed.get(taskTrackerNode.getIdentity()).addAndGet(size);
+            doPush(taskTrackerNode, size, callback);
+        }
+
+        protected abstract void doPush(TaskTrackerNode taskTrackerNode, int size, PushCallback callback);
+
+        int getPushed(String identity) {
+            AtomicInteger num = pushed.get(identity);
+            return num == null ? 0 : num.get();
+        }
+    }
+
+    private static class MockChannel implements Channel {
+
+        @Override
+        public SocketAddress localAddress() {
+            return null;
+        }
+
+        @Override
+        public SocketAddress remoteAddress() {
+            return null;
+        }
+
+        @Override
+        public ChannelHandler writeAndFlush(Object msg) {
+            return null;
+        }
+
+        @Override
+        public ChannelHandler close() {
+            return null;
+        }
+
+        @Override
+        public boolean isConnected() {
+            return true;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public boolean isClosed() {
+            return false;
+        }
+    }
+}
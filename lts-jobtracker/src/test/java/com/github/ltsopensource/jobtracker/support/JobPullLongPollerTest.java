@@ -0,0 +1,202 @@
+package com.github.ltsopensource.jobtracker.support;
+
+import com.github.ltsopensource.core.cluster.Config;
+import com.github.ltsopensource.core.cluster.NodeType;
+import com.github.ltsopensource.core.protocol.JobProtos;
+import com.github.ltsopensource.core.protocol.command.JobPullRequest;
+import com.github.ltsopensource.core.support.SystemClock;
+import com.github.ltsopensource.ec.injvm.InjvmEventCenter;
+import com.github.ltsopensource.jobtracker.domain.JobTrackerAppContext;
+import com.github.ltsopensource.queue.domain.JobPo;
+import com.github.ltsopensource.queue.memory.MemoryJobQueueFactory;
+import com.github.ltsopensource.remoting.Channel;
+import com.github.ltsopensource.remoting.ChannelHandler;
+import com.github.ltsopensource.remoting.protocol.RemotingCommand;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.SocketAddress;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 挂起的pull请求只在节点组被唤醒(新任务, 内存队列补充了任务)时重新推送, 到期时返回, 不定时重新推送
+ */
+public class JobPullLongPollerTest {
+
+    private static final String NODE_GROUP = "test_trade_TaskTracker";
+    private static final String IDENTITY = "test_task_tracker";
+
+    private JobTrackerAppContext createAppContext() {
+        Config config = new Config();
+        config.setIdentity("job_pull_long_poller_test");
+        config.setNodeType(NodeType.JOB_TRACKER);
+        config.setClusterName("job_pull_long_poller_test_" + System.nanoTime());
+        config.setDataPath(System.getProperty("java.io.tmpdir"));
+
+        JobTrackerAppContext appContext = new JobTrackerAppContext();
+        appContext.setConfig(config);
+        appContext.setEventCenter(new InjvmEventCenter());
+        MemoryJobQueueFactory factory = new MemoryJobQueueFactory();
+        appContext.setExecutableJobQueue(factory.getExecutableJobQueue(config));
+        appContext.setPreLoader(factory.getPreLoader(appContext));
+        return appContext;
+    }
+
+    private void park(JobPullLongPoller poller, Channel channel, long timeoutMillis) {
+        JobPullRequest body = new JobPullRequest();
+        body.setNodeGroup(NODE_GROUP);
+        body.setIdentity(IDENTITY);
+        body.setAvailableThreads(10);
+        body.setLongPollTimeoutMillis(timeoutMillis);
+        RemotingCommand request = RemotingCommand.createRequestCommand(JobProtos.RequestCode.JOB_PULL.code(), body);
+        poller.park(channel, request, body);
+    }
+
+    private void waitFor(AtomicInteger num, int expect) throws InterruptedException {
+        long deadline = SystemClock.now() + 5000;
+        while (num.get() < expect && SystemClock.now() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    public void testRepushOnWakeupAndTimeout() throws InterruptedException {
+        JobTrackerAppContext appContext = createAppContext();
+        MockJobPusher jobPusher = new MockJobPusher(appContext);
+        appContext.setJobPusher(jobPusher);
+        JobPullLongPoller poller = new JobPullLongPoller(appContext);
+        MockChannel channel = new MockChannel();
+        try {
+            park(poller, channel, 2000);
+            Assert.assertEquals(1, jobPusher.pushNum.get());
+
+            // 没有唤醒, 挂起期间不重新推送
+            Thread.sleep(1000);
+            Assert.assertEquals(0, jobPusher.repushNum.get());
+            Assert.assertEquals(0, channel.responses.size());
+
+            // 连续多次唤醒合并
+            for (int i = 0; i < 100; i++) {
+                poller.wakeup(NODE_GROUP);
+            }
+            waitFor(jobPusher.repushNum, 1);
+            Thread.sleep(100);
+            int repushNum = jobPusher.repushNum.get();
+            Assert.assertTrue("repushNum:" + repushNum, repushNum >= 1 && repushNum < 100);
+
+            // 到期返回, 之后的唤醒不再推送
+            long deadline = SystemClock.now() + 5000;
+            while (channel.responses.isEmpty() && SystemClock.now() < deadline) {
+                Thread.sleep(5);
+            }
+            Assert.assertEquals(1, channel.responses.size());
+            Assert.assertEquals(JobProtos.ResponseCode.JOB_PULL_LONG_POLL_RETURN.code(), channel.responses.get(0).getCode());
+            poller.wakeup(NODE_GROUP);
+            Thread.sleep(100);
+            Assert.assertEquals(repushNum, jobPusher.repushNum.get());
+        } finally {
+            poller.stop();
+        }
+    }
+
+    @Test
+    public void testRepushOnRefill() throws InterruptedException {
+        JobTrackerAppContext appContext = createAppContext();
+        MockJobPusher jobPusher = new MockJobPusher(appContext);
+        appContext.setJobPusher(jobPusher);
+        JobPullLongPoller poller = new JobPullLongPoller(appContext);
+        MockChannel channel = new MockChannel();
+        try {
+            park(poller, channel, 10000);
+            // 队列是空的
+            Assert.assertNull(appContext.getPreLoader().take(NODE_GROUP, IDENTITY));
+            Thread.sleep(100);
+            Assert.assertEquals(0, jobPusher.repushNum.get());
+
+            // 加载到了任务
+            JobPo jobPo = new JobPo();
+            jobPo.setJobId("job_1");
+            jobPo.setTaskId("task_1");
+            jobPo.setRealTaskId("task_1");
+            jobPo.setPriority(100);
+            jobPo.setTaskTrackerNodeGroup(NODE_GROUP);
+            jobPo.setGmtCreated(SystemClock.now());
+            jobPo.setTriggerTime(SystemClock.now() - 1000);
+            jobPo.setIsRunning(false);
+            appContext.getExecutableJobQueue().createQueue(NODE_GROUP);
+            appContext.getExecutableJobQueue().add(jobPo);
+            appContext.getPreLoader().load(NODE_GROUP);
+
+            waitFor(jobPusher.repushNum, 1);
+            Assert.assertTrue(jobPusher.repushNum.get() >= 1);
+            Assert.assertEquals(0, channel.responses.size());
+        } finally {
+            poller.stop();
+        }
+        // 停止时返回挂起的请求
+        Assert.assertEquals(1, channel.responses.size());
+    }
+
+    private static class MockJobPusher extends JobPusher {
+
+        private final AtomicInteger pushNum = new AtomicInteger(0);
+        private final AtomicInteger repushNum = new AtomicInteger(0);
+
+        MockJobPusher(JobTrackerAppContext appContext) {
+            super(appContext);
+        }
+
+        @Override
+        public void push(JobPullRequest request) {
+            pushNum.incrementAndGet();
+        }
+
+        @Override
+        public void repush(String nodeGroup, String identity) {
+            repushNum.incrementAndGet();
+        }
+    }
+
+    private static class MockChannel implements Channel {
+
+        private final List<RemotingCommand> responses = new CopyOnWriteArrayList<RemotingCommand>();
+
+        @Override
+        public SocketAddress localAddress() {
+            return null;
+        }
+
+        @Override
+        public SocketAddress remoteAddress() {
+            return null;
+        }
+
+        @Override
+        public ChannelHandler writeAndFlush(Object msg) {
+            responses.add((RemotingCommand) msg);
+            return null;
+        }
+
+        @Override
+        public ChannelHandler close() {
+            return null;
+        }
+
+        @Override
+        public boolean isConnected() {
+            return true;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public boolean isClosed() {
+            return false;
+        }
+    }
+}
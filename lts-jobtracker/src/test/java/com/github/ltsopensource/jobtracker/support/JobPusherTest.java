@@ -0,0 +1,424 @@
+package com.github.ltsopensource.jobtracker.support;
+
+import com.github.ltsopensource.admin.response.PaginationRsp;
+import com.github.ltsopensource.biz.logger.JobLogger;
+import com.github.ltsopensource.biz.logger.console.ConsoleJobLogger;
+import com.github.ltsopensource.biz.logger.domain.JobLogPo;
+import com.github.ltsopensource.biz.logger.domain.JobLoggerRequest;
+import com.github.ltsopensource.core.cluster.Config;
+import com.github.ltsopensource.core.cluster.Node;
+import com.github.ltsopensource.core.cluster.NodeType;
+import com.github.ltsopensource.core.constant.ExtConfig;
+import com.github.ltsopensource.core.protocol.JobProtos;
+import com.github.ltsopensource.core.protocol.command.CommandBodyWrapper;
+import com.github.ltsopensource.core.protocol.command.JobPullRequest;
+import com.github.ltsopensource.core.remoting.RemotingServerDelegate;
+import com.github.ltsopensource.core.support.SystemClock;
+import com.github.ltsopensource.ec.injvm.InjvmEventCenter;
+import com.github.ltsopensource.jobtracker.channel.ChannelManager;
+import com.github.ltsopensource.jobtracker.channel.ChannelWrapper;
+import com.github.ltsopensource.jobtracker.domain.JobTrackerAppContext;
+import com.github.ltsopensource.jobtracker.domain.TaskTrackerNode;
+import com.github.ltsopensource.jobtracker.monitor.JobTrackerMStatReporter;
+import com.github.ltsopensource.jobtracker.sender.JobSender;
+import com.github.ltsopensource.jobtracker.support.cluster.TaskTrackerManager;
+import com.github.ltsopensource.queue.domain.JobPo;
+import com.github.ltsopensource.queue.memory.MemoryJobQueueFactory;
+import com.github.ltsopensource.remoting.AsyncCallback;
+import com.github.ltsopensource.remoting.Channel;
+import com.github.ltsopensource.remoting.ChannelHandler;
+import com.github.ltsopensource.remoting.RemotingProcessor;
+import com.github.ltsopensource.remoting.RemotingServer;
+import com.github.ltsopensource.remoting.ResponseFuture;
+import com.github.ltsopensource.remoting.protocol.RemotingCommand;
+import com.github.ltsopensource.remoting.protocol.RemotingProtos;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.SocketAddress;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 异步推送失败(发送异常, 超时没有应答)时任务要切回可执行队列, 并且回调 accepted=0
+ * 以及大量并发pull时推送线程不等待应答
+ */
+public class JobPusherTest {
+
+    private static final String NODE_GROUP = "test_trade_TaskTracker";
+    private static final String IDENTITY = "test_task_tracker";
+
+    private JobTrackerAppContext createAppContext(MockRemotingServer remotingServer) {
+        return createAppContext(remotingServer, new Config(), new ConsoleJobLogger());
+    }
+
+    private JobTrackerAppContext createAppContext(MockRemotingServer remotingServer, Config config, JobLogger jobLogger) {
+        config.setIdentity("job_pusher_test");
+        config.setNodeType(NodeType.JOB_TRACKER);
+        config.setClusterName("job_pusher_test_" + System.nanoTime());
+        config.setDataPath(System.getProperty("java.io.tmpdir"));
+        config.setInvokeTimeoutMillis(1000);
+
+        JobTrackerAppContext appContext = new JobTrackerAppContext();
+        appContext.setConfig(config);
+        appContext.setEventCenter(new InjvmEventCenter());
+        appContext.setCommandBodyWrapper(new CommandBodyWrapper(config));
+        appContext.setMStatReporter(new JobTrackerMStatReporter(appContext));
+        appContext.setJobLogger(jobLogger);
+        MemoryJobQueueFactory factory = new MemoryJobQueueFactory();
+        appContext.setExecutableJobQueue(factory.getExecutableJobQueue(config));
+        appContext.setExecutingJobQueue(factory.getExecutingJobQueue(config));
+        appContext.setNodeGroupStore(factory.getNodeGroupStore(config));
+        appContext.setChannelManager(new ChannelManager());
+        appContext.setTaskTrackerManager(new TaskTrackerManager(appContext));
+        appContext.setPreLoader(factory.getPreLoader(appContext));
+        appContext.setRemotingServer(new RemotingServerDelegate(remotingServer, appContext));
+        appContext.setJobSender(new JobSender(appContext));
+        appContext.setJobPusher(new JobPusher(appContext));
+        return appContext;
+    }
+
+    private JobPo addJob(JobTrackerAppContext appContext) {
+        JobPo jobPo = new JobPo();
+        jobPo.setJobId("job_1");
+        jobPo.setTaskId("task_1");
+        jobPo.setRealTaskId("task_1");
+        jobPo.setPriority(100);
+        jobPo.setTaskTrackerNodeGroup(NODE_GROUP);
+        jobPo.setGmtCreated(SystemClock.now());
+        jobPo.setTriggerTime(SystemClock.now() - 1000);
+        jobPo.setIsRunning(false);
+        appContext.getExecutableJobQueue().createQueue(NODE_GROUP);
+        appContext.getExecutableJobQueue().add(jobPo);
+        // 直接放入 PreLoader 的内存队列, 不等异步加载
+        Assert.assertTrue(appContext.getPreLoader().offer(appContext.getExecutableJobQueue().getJob(NODE_GROUP, "task_1")));
+        return jobPo;
+    }
+
+    private int pushAndWait(JobTrackerAppContext appContext) throws InterruptedException {
+        TaskTrackerNode taskTrackerNode = new TaskTrackerNode(NODE_GROUP, 1, IDENTITY,
+                new ChannelWrapper(null, NodeType.TASK_TRACKER, NODE_GROUP, IDENTITY));
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicInteger accepted = new AtomicInteger(-1);
+        final AtomicInteger callbackNum = new AtomicInteger(0);
+        appContext.getJobPusher().pushAsync(taskTrackerNode, 1, new JobPusher.PushCallback() {
+            @Override
+            public void onComplete(int acceptedNum) {
+                callbackNum.incrementAndGet();
+                accepted.set(acceptedNum);
+                latch.countDown();
+            }
+        });
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        // 等一下, 确认回调只执行一次
+        Thread.sleep(100);
+        Assert.assertEquals(1, callbackNum.get());
+        return accepted.get();
+    }
+
+    private void assertResumed(JobTrackerAppContext appContext) throws InterruptedException {
+        // 从执行中队列移除, 切回可执行队列并解锁
+        Assert.assertNull(appContext.getExecutingJobQueue().getJob("job_1"));
+        JobPo resumed = appContext.getExecutableJobQueue().getJob(NODE_GROUP, "task_1");
+        Assert.assertNotNull(resumed);
+        Assert.assertFalse(resumed.isRunning());
+        Assert.assertNull(resumed.getTaskTrackerIdentity());
+
+        // 重新加载之后可以再次推送
+        appContext.getPreLoader().load(NODE_GROUP);
+        JobPo retaken = null;
+        long deadline = SystemClock.now() + 5000;
+        while (retaken == null && SystemClock.now() < deadline) {
+            Thread.sleep(10);
+            retaken = appContext.getPreLoader().take(NODE_GROUP, IDENTITY);
+        }
+        Assert.assertNotNull(retaken);
+        Assert.assertEquals("job_1", retaken.getJobId());
+    }
+
+    @Test
+    public void testSendErrorResumeJob() throws InterruptedException {
+        MockRemotingServer remotingServer = new MockRemotingServer() {
+            @Override
+            protected void doInvokeAsync(AsyncCallback asyncCallback) {
+                throw new IllegalStateException("channel closed");
+            }
+        };
+        JobTrackerAppContext appContext = createAppContext(remotingServer);
+        addJob(appContext);
+
+        Assert.assertEquals(0, pushAndWait(appContext));
+        Assert.assertEquals(1, remotingServer.invokeNum.get());
+        assertResumed(appContext);
+    }
+
+    @Test
+    public void testNoResponseResumeJob() throws InterruptedException {
+        MockRemotingServer remotingServer = new MockRemotingServer() {
+            @Override
+            protected void doInvokeAsync(final AsyncCallback asyncCallback) {
+                // 超时, 在另一个线程中回调, 没有应答
+                new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        asyncCallback.operationComplete(new ResponseFuture(1, 1000, asyncCallback, null));
+                    }
+                }).start();
+            }
+        };
+        JobTrackerAppContext appContext = createAppContext(remotingServer);
+        addJob(appContext);
+
+        Assert.assertEquals(0, pushAndWait(appContext));
+        Assert.assertEquals(1, remotingServer.invokeNum.get());
+        assertResumed(appContext);
+    }
+
+    @Test
+    public void testFailedResponseResumeJob() throws InterruptedException {
+        MockRemotingServer remotingServer = new MockRemotingServer() {
+            @Override
+            protected void doInvokeAsync(AsyncCallback asyncCallback) {
+                ResponseFuture responseFuture = new ResponseFuture(1, 1000, asyncCallback, null);
+                responseFuture.setResponseCommand(RemotingCommand.createResponseCommand(
+                        RemotingProtos.ResponseCode.SYSTEM_ERROR.code(), "error"));
+                asyncCallback.operationComplete(responseFuture);
+            }
+        };
+        JobTrackerAppContext appContext = createAppContext(remotingServer);
+        addJob(appContext);
+
+        Assert.assertEquals(0, pushAndWait(appContext));
+        Assert.assertEquals(1, remotingServer.invokeNum.get());
+        assertResumed(appContext);
+    }
+
+    @Test
+    public void testPushSuccess() throws InterruptedException {
+        MockRemotingServer remotingServer = new MockRemotingServer() {
+            @Override
+            protected void doInvokeAsync(AsyncCallback asyncCallback) {
+                ResponseFuture responseFuture = new ResponseFuture(1, 1000, asyncCallback, null);
+                responseFuture.setResponseCommand(RemotingCommand.createResponseCommand(
+                        JobProtos.ResponseCode.JOB_PUSH_SUCCESS.code()));
+                asyncCallback.operationComplete(responseFuture);
+            }
+        };
+        JobTrackerAppContext appContext = createAppContext(remotingServer);
+        addJob(appContext);
+
+        Assert.assertEquals(1, pushAndWait(appContext));
+        Assert.assertEquals(1, remotingServer.invokeNum.get());
+        JobPo executing = appContext.getExecutingJobQueue().getJob("job_1");
+        Assert.assertNotNull(executing);
+        Assert.assertEquals(IDENTITY, executing.getTaskTrackerIdentity());
+        Assert.assertNull(appContext.getExecutableJobQueue().getJob(NODE_GROUP, "task_1"));
+    }
+
+    /**
+     * 大量TaskTracker并发pull, TaskTracker延迟应答, 推送线程不等应答, 同时在路上的批次远多于推送线程数
+     */
+    @Test
+    public void testConcurrentPullLoad() throws Exception {
+        final int pusherThreads = 4;
+        final int taskTrackerNum = 200;
+        final int jobNum = 20000;
+        final long responseDelayMillis = 20;
+
+        final ScheduledExecutorService responder = Executors.newScheduledThreadPool(2);
+        final AtomicInteger inFlight = new AtomicInteger(0);
+        final AtomicInteger maxInFlight = new AtomicInteger(0);
+        MockRemotingServer remotingServer = new MockRemotingServer() {
+            @Override
+            protected void doInvokeAsync(final AsyncCallback asyncCallback) {
+                int num = inFlight.incrementAndGet();
+                int max;
+                while (num > (max = maxInFlight.get()) && !maxInFlight.compareAndSet(max, num)) {
+                }
+                responder.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        inFlight.decrementAndGet();
+                        ResponseFuture responseFuture = new ResponseFuture(1, 1000, asyncCallback, null);
+                        responseFuture.setResponseCommand(RemotingCommand.createResponseCommand(
+                                JobProtos.ResponseCode.JOB_PUSH_SUCCESS.code()));
+                        asyncCallback.operationComplete(responseFuture);
+                    }
+                }, responseDelayMillis, TimeUnit.MILLISECONDS);
+            }
+        };
+        final AtomicInteger sentNum = new AtomicInteger(0);
+        JobLogger jobLogger = new JobLogger() {
+            @Override
+            public void log(JobLogPo jobLogPo) {
+                sentNum.incrementAndGet();
+            }
+
+            @Override
+            public void log(List<JobLogPo> jobLogPos) {
+                sentNum.addAndGet(jobLogPos.size());
+            }
+
+            @Override
+            public PaginationRsp<JobLogPo> search(JobLoggerRequest request) {
+                return null;
+            }
+        };
+        Config config = new Config();
+        config.setParameter(ExtConfig.JOB_TRACKER_PUSHER_THREAD_NUM, String.valueOf(pusherThreads));
+        final JobTrackerAppContext appContext = createAppContext(remotingServer, config, jobLogger);
+
+        appContext.getExecutableJobQueue().createQueue(NODE_GROUP);
+        for (int i = 0; i < jobNum; i++) {
+            JobPo jobPo = new JobPo();
+            jobPo.setJobId("job_" + i);
+            jobPo.setTaskId("task_" + i);
+            jobPo.setRealTaskId("task_" + i);
+            jobPo.setPriority(100);
+            jobPo.setTaskTrackerNodeGroup(NODE_GROUP);
+            jobPo.setGmtCreated(SystemClock.now());
+            jobPo.setTriggerTime(SystemClock.now() - 1000);
+            jobPo.setIsRunning(false);
+            appContext.getExecutableJobQueue().add(jobPo);
+        }
+        for (int i = 0; i < taskTrackerNum; i++) {
+            String identity = "task_tracker_" + i;
+            appContext.getChannelManager().offerChannel(new ChannelWrapper(new MockChannel(), NodeType.TASK_TRACKER, NODE_GROUP, identity));
+            Node node = new Node();
+            node.setNodeType(NodeType.TASK_TRACKER);
+            node.setGroup(NODE_GROUP);
+            node.setIdentity(identity);
+            node.setThreads(10);
+            appContext.getTaskTrackerManager().addNode(node);
+        }
+
+        // 多个线程模拟所有TaskTracker不停的pull, 直到任务都推送完
+        final AtomicLong timestamp = new AtomicLong(SystemClock.now());
+        final AtomicInteger pullNum = new AtomicInteger(0);
+        final long deadline = SystemClock.now() + 30000;
+        final int pullThreads = 8;
+        final CountDownLatch latch = new CountDownLatch(pullThreads);
+        long start = System.nanoTime();
+        for (int t = 0; t < pullThreads; t++) {
+            final int offset = t;
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        int i = offset;
+                        while (sentNum.get() < jobNum && SystemClock.now() < deadline) {
+                            JobPullRequest request = new JobPullRequest();
+                            request.setNodeGroup(NODE_GROUP);
+                            request.setIdentity("task_tracker_" + (i % taskTrackerNum));
+                            request.setAvailableThreads(10);
+                            request.setTimestamp(timestamp.incrementAndGet());
+                            appContext.getJobPusher().push(request);
+                            pullNum.incrementAndGet();
+                            i += pullThreads;
+                            Thread.sleep(1);
+                        }
+                    } catch (InterruptedException ignored) {
+                    } finally {
+                        latch.countDown();
+                    }
+                }
+            }).start();
+        }
+        Assert.assertTrue(latch.await(40, TimeUnit.SECONDS));
+        long cost = System.nanoTime() - start;
+        responder.shutdown();
+
+        Assert.assertEquals(jobNum, sentNum.get());
+        int pushNum = remotingServer.invokeNum.get();
+        // 每个批次一个推送线程等应答时, 最多 pusherThreads 个批次在路上, 推完至少需要 pushNum * delay / pusherThreads
+        long blockingCostMillis = pushNum * responseDelayMillis / pusherThreads;
+        System.out.println("concurrent pull load, pulls:" + pullNum.get() + ", pushes:" + pushNum
+                + ", jobs:" + jobNum + ", cost(ms):" + cost / 1000000 + ", maxInFlight:" + maxInFlight.get()
+                + ", blocking pusher lower bound(ms):" + blockingCostMillis);
+        Assert.assertTrue("maxInFlight:" + maxInFlight.get(), maxInFlight.get() > pusherThreads * 4);
+        Assert.assertTrue(cost / 1000000 < blockingCostMillis);
+    }
+
+    private static abstract class MockRemotingServer implements RemotingServer {
+
+        private final AtomicInteger invokeNum = new AtomicInteger(0);
+
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public void registerProcessor(int requestCode, RemotingProcessor processor, ExecutorService executor) {
+        }
+
+        @Override
+        public void registerDefaultProcessor(RemotingProcessor processor, ExecutorService executor) {
+        }
+
+        @Override
+        public RemotingCommand invokeSync(Channel channel, RemotingCommand request, long timeoutMillis) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void invokeAsync(Channel channel, RemotingCommand request, long timeoutMillis, AsyncCallback asyncCallback) {
+            invokeNum.incrementAndGet();
+            doInvokeAsync(asyncCallback);
+        }
+
+        protected abstract void doInvokeAsync(AsyncCallback asyncCallback);
+
+        @Override
+        public void invokeOneway(Channel channel, RemotingCommand request, long timeoutMillis) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void shutdown() {
+        }
+    }
+
+    private static class MockChannel implements Channel {
+
+        @Override
+        public SocketAddress localAddress() {
+            return null;
+        }
+
+        @Override
+        public SocketAddress remoteAddress() {
+            return null;
+        }
+
+        @Override
+        public ChannelHandler writeAndFlush(Object msg) {
+            return null;
+        }
+
+        @Override
+        public ChannelHandler close() {
+            return null;
+        }
+
+        @Override
+        public boolean isConnected() {
+            return true;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public boolean isClosed() {
+            return false;
+        }
+    }
+}
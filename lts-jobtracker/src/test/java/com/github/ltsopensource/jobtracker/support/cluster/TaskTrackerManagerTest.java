@@ -0,0 +1,222 @@
+package com.github.ltsopensource.jobtracker.support.cluster;
+
+import com.github.ltsopensource.core.cluster.Config;
+import com.github.ltsopensource.core.cluster.Node;
+import com.github.ltsopensource.core.cluster.NodeType;
+import com.github.ltsopensource.jobtracker.channel.ChannelManager;
+import com.github.ltsopensource.jobtracker.channel.ChannelWrapper;
+import com.github.ltsopensource.jobtracker.domain.JobTrackerAppContext;
+import com.github.ltsopensource.jobtracker.domain.TaskTrackerNode;
+import com.github.ltsopensource.queue.memory.MemoryJobQueueFactory;
+import com.github.ltsopensource.remoting.Channel;
+import com.github.ltsopensource.remoting.ChannelHandler;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 节点的添加, 删除, 查找, 以及并发更新可用线程数
+ */
+public class TaskTrackerManagerTest {
+
+    private static final String NODE_GROUP = "test_trade_TaskTracker";
+
+    private JobTrackerAppContext createAppContext() {
+        Config config = new Config();
+        config.setIdentity("task_tracker_manager_test");
+        config.setNodeType(NodeType.JOB_TRACKER);
+        config.setClusterName("task_tracker_manager_test_" + System.nanoTime());
+        config.setDataPath(System.getProperty("java.io.tmpdir"));
+
+        JobTrackerAppContext appContext = new JobTrackerAppContext();
+        appContext.setConfig(config);
+        appContext.setChannelManager(new ChannelManager());
+        MemoryJobQueueFactory factory = new MemoryJobQueueFactory();
+        appContext.setExecutableJobQueue(factory.getExecutableJobQueue(config));
+        appContext.setNodeGroupStore(factory.getNodeGroupStore(config));
+        return appContext;
+    }
+
+    private Node newNode(String identity, int threads) {
+        Node node = new Node();
+        node.setNodeType(NodeType.TASK_TRACKER);
+        node.setGroup(NODE_GROUP);
+        node.setIdentity(identity);
+        node.setThreads(threads);
+        return node;
+    }
+
+    private List<String> availableIdentities(TaskTrackerManager manager) {
+        List<String> identities = new ArrayList<String>();
+        for (TaskTrackerNode node : manager.getAvailableTaskTrackerNodes(NODE_GROUP)) {
+            identities.add(node.getIdentity());
+        }
+        Collections.sort(identities);
+        return identities;
+    }
+
+    @Test
+    public void testAddRemoveLookup() {
+        JobTrackerAppContext appContext = createAppContext();
+        TaskTrackerManager manager = new TaskTrackerManager(appContext);
+        appContext.getChannelManager().offerChannel(new ChannelWrapper(new MockChannel(), NodeType.TASK_TRACKER, NODE_GROUP, "tt_1"));
+
+        manager.addNode(newNode("tt_1", 10));
+        manager.addNode(newNode("tt_2", 10));
+        manager.addNode(newNode("tt_3", 0));
+        Assert.assertTrue(manager.getNodeGroups().contains(NODE_GROUP));
+
+        // 只有有channel的才能查到
+        TaskTrackerNode tt1 = manager.getTaskTrackerNode(NODE_GROUP, "tt_1");
+        Assert.assertNotNull(tt1);
+        Assert.assertEquals(10, tt1.getAvailableThread());
+        Assert.assertNull(manager.getTaskTrackerNode(NODE_GROUP, "tt_2"));
+        Assert.assertNull(manager.getTaskTrackerNode(NODE_GROUP, "not_exist"));
+        Assert.assertNull(manager.getTaskTrackerNode("not_exist", "tt_1"));
+        // 之后连上来的更新channel
+        appContext.getChannelManager().offerChannel(new ChannelWrapper(new MockChannel(), NodeType.TASK_TRACKER, NODE_GROUP, "tt_2"));
+        Assert.assertNotNull(manager.getTaskTrackerNode(NODE_GROUP, "tt_2"));
+
+        // 没有可用线程的不在有空闲线程的节点中
+        Assert.assertEquals(Arrays.asList("tt_1", "tt_2"), availableIdentities(manager));
+
+        // 已经存在的保留原来的
+        tt1.acquireAvailableThread(4);
+        manager.addNode(newNode("tt_1", 10));
+        Assert.assertSame(tt1, manager.getTaskTrackerNode(NODE_GROUP, "tt_1"));
+        Assert.assertEquals(6, tt1.getAvailableThread());
+
+        // 旧的时间戳不覆盖新的
+        manager.updateTaskTrackerAvailableThreads(NODE_GROUP, "tt_1", 0, 200L);
+        Assert.assertEquals(Long.valueOf(200L), tt1.getTimestamp());
+        Assert.assertEquals(Arrays.asList("tt_2"), availableIdentities(manager));
+        manager.updateTaskTrackerAvailableThreads(NODE_GROUP, "tt_1", 8, 100L);
+        Assert.assertEquals(0, tt1.getAvailableThread());
+        manager.updateTaskTrackerAvailableThreads(NODE_GROUP, "tt_1", 8, 300L);
+        Assert.assertEquals(8, tt1.getAvailableThread());
+        Assert.assertEquals(Arrays.asList("tt_1", "tt_2"), availableIdentities(manager));
+
+        manager.removeNode(newNode("tt_1", 10));
+        Assert.assertNull(manager.getTaskTrackerNode(NODE_GROUP, "tt_1"));
+        Assert.assertEquals(Arrays.asList("tt_2"), availableIdentities(manager));
+        // 删除之后的更新忽略
+        manager.updateTaskTrackerAvailableThreads(NODE_GROUP, "tt_1", 8, 400L);
+        manager.refreshAvailable(tt1);
+        Assert.assertEquals(Arrays.asList("tt_2"), availableIdentities(manager));
+        manager.removeNode(newNode("not_exist", 1));
+    }
+
+    /**
+     * 乱序到达的更新, 最后是时间戳最大的那个
+     */
+    @Test
+    public void testConcurrentUpdate() throws InterruptedException {
+        final TaskTrackerNode node = new TaskTrackerNode(NODE_GROUP, 100, "tt_1", null);
+        final int threadNum = 8;
+        final int updateNum = 20000;
+        final CountDownLatch latch = new CountDownLatch(threadNum);
+        for (int t = 0; t < threadNum; t++) {
+            final int offset = t;
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = offset; i < updateNum; i += threadNum) {
+                        // 时间戳越大线程数越大, 倒着发, 模拟乱序
+                        long timestamp = 1000000L + (updateNum - i);
+                        node.updateAvailableThread((updateNum - i) % 1000, timestamp);
+                    }
+                    latch.countDown();
+                }
+            }).start();
+        }
+        latch.await();
+        Assert.assertEquals(Long.valueOf(1000000L + updateNum), node.getTimestamp());
+        Assert.assertEquals(updateNum % 1000, node.getAvailableThread());
+    }
+
+    /**
+     * 占用和归还可用线程与按时间戳更新并发, 不会互相覆盖掉时间戳
+     */
+    @Test
+    public void testConcurrentAcquireRelease() throws InterruptedException {
+        final TaskTrackerNode node = new TaskTrackerNode(NODE_GROUP, 64, "tt_1", null);
+        node.updateAvailableThread(64, 1000L);
+        final int threadNum = 8;
+        final CountDownLatch latch = new CountDownLatch(threadNum);
+        final AtomicInteger acquiredNum = new AtomicInteger(0);
+        final AtomicInteger errorNum = new AtomicInteger(0);
+        for (int t = 0; t < threadNum; t++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 20000; i++) {
+                        int acquired = node.acquireAvailableThread(3);
+                        if (acquired < 0 || acquired > 3) {
+                            errorNum.incrementAndGet();
+                        }
+                        acquiredNum.addAndGet(acquired);
+                        node.releaseAvailableThread(acquired);
+                        // 旧的时间戳, 不生效
+                        if (node.updateAvailableThread(0, 999L)) {
+                            errorNum.incrementAndGet();
+                        }
+                    }
+                    latch.countDown();
+                }
+            }).start();
+        }
+        latch.await();
+        Assert.assertEquals(0, errorNum.get());
+        Assert.assertTrue(acquiredNum.get() > 0);
+        Assert.assertEquals(64, node.getAvailableThread());
+        Assert.assertEquals(Long.valueOf(1000L), node.getTimestamp());
+        // 不超过总线程数
+        node.releaseAvailableThread(10);
+        Assert.assertEquals(64, node.getAvailableThread());
+    }
+
+    private static class MockChannel implements Channel {
+
+        @Override
+        public SocketAddress localAddress() {
+            return null;
+        }
+
+        @Override
+        public SocketAddress remoteAddress() {
+            return null;
+        }
+
+        @Override
+        public ChannelHandler writeAndFlush(Object msg) {
+            return null;
+        }
+
+        @Override
+        public ChannelHandler close() {
+            return null;
+        }
+
+        @Override
+        public boolean isConnected() {
+            return true;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public boolean isClosed() {
+            return false;
+        }
+    }
+}
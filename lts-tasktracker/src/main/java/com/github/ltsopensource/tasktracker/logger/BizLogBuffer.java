@@ -0,0 +1,149 @@
+package com.github.ltsopensource.tasktracker.logger;
+
+import com.github.ltsopensource.core.domain.BizLog;
+import com.github.ltsopensource.core.logger.Logger;
+import com.github.ltsopensource.core.logger.LoggerFactory;
+import com.github.ltsopensource.core.support.SystemClock;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 业务日志的有界缓冲区, 按条数和等待时间合并成批
+ * 1. 任务线程只入队, 不阻塞, 缓冲区满了直接交给 {@link #overflow(List)}
+ * 2. 发送线程取到第一条之后最多等 lingerMillis, 凑够 batchSize 条或者到时间就交给 {@link #flush(List)}
+ * 3. 停止时把剩下的都 flush 掉
+ */
+public abstract class BizLogBuffer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BizLogBuffer.class);
+
+    private final BlockingQueue<BizLog> queue;
+    private final int batchSize;
+    private final long lingerMillis;
+    private final AtomicBoolean start = new AtomicBoolean(false);
+    private volatile boolean stopped = false;
+    private Thread flushThread;
+
+    public BizLogBuffer(String name, int bufferSize, int batchSize, long lingerMillis) {
+        this.queue = new ArrayBlockingQueue<BizLog>(bufferSize);
+        this.batchSize = batchSize;
+        this.lingerMillis = lingerMillis;
+        this.flushThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                runFlush();
+            }
+        }, name + "-BizLogBuffer-Flusher");
+        this.flushThread.setDaemon(true);
+    }
+
+    public void start() {
+        if (start.compareAndSet(false, true)) {
+            flushThread.start();
+        }
+    }
+
+    /**
+     * 停止, 等待缓冲区中剩下的日志都 flush 掉
+     */
+    public void stop() {
+        if (!start.get() || stopped) {
+            return;
+        }
+        stopped = true;
+        flushThread.interrupt();
+        try {
+            flushThread.join(5000);
+        } catch (InterruptedException e) {
+            LOGGER.warn("Stop BizLogBuffer interrupted");
+        }
+    }
+
+    /**
+     * 入队, 不阻塞
+     */
+    public void offer(BizLog bizLog) {
+        if (stopped || !queue.offer(bizLog)) {
+            overflow(Collections.singletonList(bizLog));
+        } else if (stopped && queue.remove(bizLog)) {
+            // 停止之后入队的不会再被 flush
+            overflow(Collections.singletonList(bizLog));
+        }
+    }
+
+    public int size() {
+        return queue.size();
+    }
+
+    private void runFlush() {
+        List<BizLog> batch = new ArrayList<BizLog>(batchSize);
+        while (!stopped) {
+            try {
+                collect(batch);
+            } catch (InterruptedException ignored) {
+            }
+            if (batch.size() > 0) {
+                doFlush(batch);
+                batch = new ArrayList<BizLog>(batchSize);
+            }
+        }
+
+        // 停止之后把剩下的都 flush 掉
+        while (queue.drainTo(batch, batchSize) > 0) {
+            doFlush(batch);
+            batch = new ArrayList<BizLog>(batchSize);
+        }
+    }
+
+    /**
+     * 凑够 batchSize 条, 或者第一条之后等了 lingerMillis
+     */
+    private void collect(List<BizLog> batch) throws InterruptedException {
+        BizLog first = queue.poll(1, TimeUnit.SECONDS);
+        if (first == null) {
+            return;
+        }
+        batch.add(first);
+        long deadline = SystemClock.now() + lingerMillis;
+        while (batch.size() < batchSize) {
+            if (queue.drainTo(batch, batchSize - batch.size()) > 0) {
+                continue;
+            }
+            long wait = deadline - SystemClock.now();
+            if (wait <= 0) {
+                return;
+            }
+            BizLog next = queue.poll(wait, TimeUnit.MILLISECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void doFlush(List<BizLog> batch) {
+        try {
+            flush(batch);
+        } catch (Throwable t) {
+            LOGGER.error("Flush biz logs error, size={}", batch.size(), t);
+            overflow(batch);
+        }
+    }
+
+    /**
+     * 发送一批日志, 在发送线程中调用, 阻塞会导致缓冲区积压
+     */
+    protected abstract void flush(List<BizLog> bizLogs);
+
+    /**
+     * 缓冲区满了或者发送失败
+     */
+    protected abstract void overflow(List<BizLog> bizLogs);
+
+}
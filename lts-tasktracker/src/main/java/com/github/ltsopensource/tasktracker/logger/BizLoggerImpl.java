@@ -3,6 +3,7 @@ package com.github.ltsopensource.tasktracker.logger;
 import com.github.ltsopensource.core.commons.utils.Callable;
 import com.github.ltsopensource.core.commons.utils.CollectionUtils;
 import com.github.ltsopensource.core.commons.utils.StringUtils;
+import com.github.ltsopensource.core.constant.Constants;
 import com.github.ltsopensource.core.constant.ExtConfig;
 import com.github.ltsopensource.core.constant.Level;
 import com.github.ltsopensource.core.domain.BizLog;
@@ -24,13 +25,14 @@ import com.github.ltsopensource.remoting.ResponseFuture;
 import com.github.ltsopensource.remoting.protocol.RemotingCommand;
 import com.github.ltsopensource.tasktracker.domain.TaskTrackerAppContext;
 
-import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Semaphore;
 
 /**
  * 业务日志记录器实现
  * 1. 业务日志会发送给JobTracker
  * 2. 也会采取Fail And Store 的方式
+ * 3. 先放到缓冲区, 按批异步发送, 不阻塞任务线程
  *
  * @author Robert HG (254963746@qq.com) on 3/27/15.
  */
@@ -41,6 +43,9 @@ public class BizLoggerImpl extends BizLoggerAdapter implements BizLogger {
     private RemotingClientDelegate remotingClient;
     private TaskTrackerAppContext appContext;
     private RetryScheduler<BizLog> retryScheduler;
+    private BizLogBuffer buffer;
+    // 控制同时在发送中的批次, 避免JobTracker慢的时候请求堆积
+    private final Semaphore inFlightSemaphore = new Semaphore(Constants.TASK_TRACKER_BIZ_LOGGER_MAX_INFLIGHT_BATCH);
 
     public BizLoggerImpl(Level level, final RemotingClientDelegate remotingClient, TaskTrackerAppContext appContext) {
         this.level = level;
@@ -65,15 +70,35 @@ public class BizLoggerImpl extends BizLoggerAdapter implements BizLogger {
             };
 
             this.retryScheduler.start();
+        }
 
-            NodeShutdownHook.registerHook(appContext, this.getClass().getName(), new Callable() {
-                @Override
-                public void call() throws Exception {
+        int bufferSize = appContext.getConfig().getParameter(ExtConfig.TASK_TRACKER_BIZ_LOGGER_BUFFER_SIZE, Constants.DEFAULT_TASK_TRACKER_BIZ_LOGGER_BUFFER_SIZE);
+        int batchSize = appContext.getConfig().getParameter(ExtConfig.TASK_TRACKER_BIZ_LOGGER_BATCH_SIZE, Constants.DEFAULT_TASK_TRACKER_BIZ_LOGGER_BATCH_SIZE);
+        long lingerMillis = appContext.getConfig().getParameter(ExtConfig.TASK_TRACKER_BIZ_LOGGER_LINGER_MILLIS, Constants.DEFAULT_TASK_TRACKER_BIZ_LOGGER_LINGER_MILLIS);
+
+        this.buffer = new BizLogBuffer(BizLogger.class.getSimpleName(), bufferSize, batchSize, lingerMillis) {
+            @Override
+            protected void flush(List<BizLog> bizLogs) {
+                sendBizLogAsync(bizLogs);
+            }
+
+            @Override
+            protected void overflow(List<BizLog> bizLogs) {
+                failStore(bizLogs);
+            }
+        };
+        this.buffer.start();
+
+        NodeShutdownHook.registerHook(appContext, this.getClass().getName(), new Callable() {
+            @Override
+            public void call() throws Exception {
+                // 先把缓冲区中的发送出去, 再停止重试
+                buffer.stop();
+                if (retryScheduler != null) {
                     retryScheduler.stop();
                 }
-            });
-        }
-
+            }
+        });
     }
 
     @Override
@@ -99,11 +124,9 @@ public class BizLoggerImpl extends BizLoggerAdapter implements BizLogger {
 
     private void sendMsg(String msg, Level level) {
 
-        BizLogSendRequest requestBody = CommandBodyWrapper.wrapper(appContext, new BizLogSendRequest());
-
-        final BizLog bizLog = new BizLog();
-        bizLog.setTaskTrackerIdentity(requestBody.getIdentity());
-        bizLog.setTaskTrackerNodeGroup(requestBody.getNodeGroup());
+        BizLog bizLog = new BizLog();
+        bizLog.setTaskTrackerIdentity(appContext.getConfig().getIdentity());
+        bizLog.setTaskTrackerNodeGroup(appContext.getConfig().getNodeGroup());
         bizLog.setLogTime(SystemClock.now());
         JobMeta jobMeta = getJobMeta();
         bizLog.setJobId(jobMeta.getJobId());
@@ -113,39 +136,57 @@ public class BizLoggerImpl extends BizLoggerAdapter implements BizLogger {
         bizLog.setMsg(msg);
         bizLog.setLevel(level);
 
-        requestBody.setBizLogs(Collections.singletonList(bizLog));
+        buffer.offer(bizLog);
+    }
 
+    /**
+     * 在缓冲区的发送线程中调用, 一批日志一个请求
+     */
+    private void sendBizLogAsync(final List<BizLog> bizLogs) {
         if (!remotingClient.isServerEnable()) {
-            if(isEnableBizLoggerFailStore()){
-                retryScheduler.inSchedule(StringUtils.generateUUID(), bizLog);
-            }else{
-                logger.error("Send Biz Logger to JobTracker Error, server is down, bizLog={}", JSON.toJSONString(bizLog));
-            }
+            failStore(bizLogs);
             return;
         }
 
+        BizLogSendRequest requestBody = CommandBodyWrapper.wrapper(appContext, new BizLogSendRequest());
+        requestBody.setBizLogs(bizLogs);
         RemotingCommand request = RemotingCommand.createRequestCommand(JobProtos.RequestCode.BIZ_LOG_SEND.code(), requestBody);
+
+        try {
+            inFlightSemaphore.acquire();
+        } catch (InterruptedException e) {
+            // 停止中, 不再等待
+            failStore(bizLogs);
+            return;
+        }
         try {
             // 有可能down机，日志丢失
             remotingClient.invokeAsync(request, new AsyncCallback() {
                 @Override
                 public void operationComplete(ResponseFuture responseFuture) {
+                    inFlightSemaphore.release();
                     RemotingCommand response = responseFuture.getResponseCommand();
 
-                    if (response != null && response.getCode() == JobProtos.ResponseCode.BIZ_LOG_SEND_SUCCESS.code()) {
-                        // success
-                    } else {
-                        if (!isEnableBizLoggerFailStore()) {
-                            logger.error("Send Biz Logger to JobTracker Error, code={}, bizLog={}",
-                                    response != null ? response.getCode() : null, JSON.toJSONString(bizLog));
-                        } else {
-                            retryScheduler.inSchedule(StringUtils.generateUUID(), bizLog);
-                        }
+                    if (response == null || response.getCode() != JobProtos.ResponseCode.BIZ_LOG_SEND_SUCCESS.code()) {
+                        logger.warn("Send Biz Logger to JobTracker Error, code={}, size={}",
+                                response != null ? response.getCode() : null, bizLogs.size());
+                        failStore(bizLogs);
                     }
                 }
             });
         } catch (JobTrackerNotFoundException e) {
-            retryScheduler.inSchedule(StringUtils.generateUUID(), bizLog);
+            inFlightSemaphore.release();
+            failStore(bizLogs);
+        }
+    }
+
+    private void failStore(List<BizLog> bizLogs) {
+        if (isEnableBizLoggerFailStore()) {
+            for (BizLog bizLog : bizLogs) {
+                retryScheduler.inSchedule(StringUtils.generateUUID(), bizLog);
+            }
+        } else {
+            logger.error("Send Biz Logger to JobTracker Error, bizLogs={}", JSON.toJSONString(bizLogs));
         }
     }
 
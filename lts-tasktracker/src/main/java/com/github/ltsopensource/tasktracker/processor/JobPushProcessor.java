@@ -2,12 +2,10 @@ package com.github.ltsopensource.tasktracker.processor;
 
 import com.github.ltsopensource.core.commons.utils.Callable;
 import com.github.ltsopensource.core.commons.utils.CollectionUtils;
-import com.github.ltsopensource.core.constant.Constants;
 import com.github.ltsopensource.core.constant.ExtConfig;
 import com.github.ltsopensource.core.domain.JobMeta;
 import com.github.ltsopensource.core.domain.JobRunResult;
 import com.github.ltsopensource.core.exception.JobTrackerNotFoundException;
-import com.github.ltsopensource.core.exception.RequestTimeoutException;
 import com.github.ltsopensource.core.failstore.FailStorePathBuilder;
 import com.github.ltsopensource.core.json.JSON;
 import com.github.ltsopensource.core.logger.Logger;
@@ -20,9 +18,7 @@ import com.github.ltsopensource.core.remoting.RemotingClientDelegate;
 import com.github.ltsopensource.core.support.NodeShutdownHook;
 import com.github.ltsopensource.core.support.RetryScheduler;
 import com.github.ltsopensource.core.support.SystemClock;
-import com.github.ltsopensource.remoting.AsyncCallback;
 import com.github.ltsopensource.remoting.Channel;
-import com.github.ltsopensource.remoting.ResponseFuture;
 import com.github.ltsopensource.remoting.exception.RemotingCommandException;
 import com.github.ltsopensource.remoting.protocol.RemotingCommand;
 import com.github.ltsopensource.remoting.protocol.RemotingProtos;
@@ -30,11 +26,10 @@ import com.github.ltsopensource.tasktracker.domain.Response;
 import com.github.ltsopensource.tasktracker.domain.TaskTrackerAppContext;
 import com.github.ltsopensource.tasktracker.expcetion.NoAvailableJobRunnerException;
 import com.github.ltsopensource.tasktracker.runner.RunnerCallback;
+import com.github.ltsopensource.tasktracker.support.JobCompletedSender;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.TimeUnit;
 
 /**
  * @author Robert HG (254963746@qq.com) on 8/14/14.
@@ -46,6 +41,7 @@ public class JobPushProcessor extends AbstractProcessor {
 
     private RetryScheduler<JobRunResult> retryScheduler;
     private JobRunnerCallback jobRunnerCallback;
+    private JobCompletedSender jobCompletedSender;
     private RemotingClientDelegate remotingClient;
 
     protected JobPushProcessor(TaskTrackerAppContext appContext) {
@@ -53,7 +49,19 @@ public class JobPushProcessor extends AbstractProcessor {
         this.remotingClient = appContext.getRemotingClient();   //启动的时候,已经建立和远端的连接了
         // 线程安全的
         jobRunnerCallback = new JobRunnerCallback();    //todo 为什么?
-
+        jobCompletedSender = new JobCompletedSender(appContext, jobRunnerCallback) {
+            @Override
+            protected void onFailed(List<JobRunResult> jobRunResults) {
+                saveFailedJobResults(jobRunResults);
+            }
+        };
+        jobCompletedSender.start();
+        NodeShutdownHook.registerHook(appContext, JobCompletedSender.class.getName(), new Callable() {
+            @Override
+            public void call() throws Exception {
+                jobCompletedSender.stop();
+            }
+        });
 
         if (isEnableFailStore()) {
             retryScheduler = new RetryScheduler<JobRunResult>(JobPushProcessor.class.getSimpleName(), appContext,
@@ -113,90 +121,42 @@ public class JobPushProcessor extends AbstractProcessor {
 
     /**
      * 任务执行的回调(任务执行完之后线程回调这个函数)
+     * 结果交给 {@link JobCompletedSender} 合并之后异步反馈, 执行线程不等待网络
      */
     private class JobRunnerCallback implements RunnerCallback {
         @Override
         public JobMeta runComplete(Response response) {
-            // 发送消息给 JobTracker
-            final JobRunResult jobRunResult = new JobRunResult();
+            JobRunResult jobRunResult = new JobRunResult();
             jobRunResult.setTime(SystemClock.now());
             jobRunResult.setJobMeta(response.getJobMeta());
             jobRunResult.setAction(response.getAction());
             jobRunResult.setMsg(response.getMsg());
-            JobCompletedRequest requestBody = appContext.getCommandBodyWrapper().wrapper(new JobCompletedRequest());
-            requestBody.addJobResult(jobRunResult);
-            requestBody.setReceiveNewJob(response.isReceiveNewJob());     // 设置可以接受新任务
+            jobCompletedSender.offer(jobRunResult, response.isReceiveNewJob());
 
-            int requestCode = JobProtos.RequestCode.JOB_COMPLETED.code();
-
-            RemotingCommand request = RemotingCommand.createRequestCommand(requestCode, requestBody);
-
-            final Response returnResponse = new Response();
+            if (!response.isReceiveNewJob()) {
+                return null;
+            }
+            // JobTracker 之前返回的, 线程池满了还没执行的任务
+            return jobCompletedSender.pollPendingJob();
+        }
+    }
 
+    /**
+     * 反馈失败的暂存到本地, 等待重试
+     */
+    private void saveFailedJobResults(List<JobRunResult> jobRunResults) {
+        for (JobRunResult jobRunResult : jobRunResults) {
             try {
-                final CountDownLatch latch = new CountDownLatch(1);
-                remotingClient.invokeAsync(request, new AsyncCallback() {
-                    @Override
-                    public void operationComplete(ResponseFuture responseFuture) {
-                        try {
-                            RemotingCommand commandResponse = responseFuture.getResponseCommand();  //获取netty远程回调的结果
-
-                            if (commandResponse != null && commandResponse.getCode() == RemotingProtos.ResponseCode.SUCCESS.code()) {   //请求成功
-                                JobPushRequest jobPushRequest = commandResponse.getBody();
-                                if (jobPushRequest != null) {   //jobPushRequest不为空,表示获得新任务
-                                    if (LOGGER.isDebugEnabled()) {
-                                        LOGGER.debug("Get new job :{}", JSON.toJSONString(jobPushRequest.getJobMetaList()));
-                                    }
-                                    if (CollectionUtils.isNotEmpty(jobPushRequest.getJobMetaList())) {
-                                        returnResponse.setJobMeta(jobPushRequest.getJobMetaList().get(0));  //这里只会获得一个任务
-                                    }
-                                }
-                            } else {
-                                if (LOGGER.isInfoEnabled()) {
-                                    LOGGER.info("Job feedback failed, save local files。{}", jobRunResult);
-                                }
-                                try {
-                                    if (isEnableFailStore()) {  //开启本地暂存
-                                        retryScheduler.inSchedule(  //暂存到本地,等待重试
-                                                jobRunResult.getJobMeta().getJobId().concat("_") + SystemClock.now(),
-                                                jobRunResult);
-                                    } else {
-                                        LOGGER.error("Send Job Result to JobTracker Error, code={}, jobRunResult={}",
-                                                commandResponse != null ? commandResponse.getCode() : null, JSON.toJSONString(jobRunResult));
-                                    }
-
-                                } catch (Exception e) {
-                                    LOGGER.error("Job feedback failed", e);
-                                }
-                            }
-                        } finally {
-                            latch.countDown();
-                        }
-                    }
-                });
-
-                try {
-                    latch.await(Constants.LATCH_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
-                } catch (InterruptedException e) {
-                    throw new RequestTimeoutException(e);
-                }
-            } catch (JobTrackerNotFoundException e) {
-                try {
-                    LOGGER.warn("No job tracker available! save local files.");
-
-                    if (isEnableFailStore()) {
-                        retryScheduler.inSchedule(
-                                jobRunResult.getJobMeta().getJobId().concat("_") + SystemClock.now(),
-                                jobRunResult);
-                    } else {
-                        LOGGER.error("Send Job Result to JobTracker Error, server is down, jobRunResult={}", JSON.toJSONString(jobRunResult));
-                    }
-                } catch (Exception e1) {
-                    LOGGER.error("Save files failed, {}", jobRunResult.getJobMeta(), e1);
+                if (isEnableFailStore()) {
+                    retryScheduler.inSchedule(
+                            jobRunResult.getJobMeta().getJobId().concat("_") + SystemClock.now(),
+                            jobRunResult);
+                } else {
+                    LOGGER.error("Send Job Result to JobTracker Error, jobRunResult={}", JSON.toJSONString(jobRunResult));
                 }
+            } catch (Exception e) {
+                LOGGER.error("Save files failed, {}", jobRunResult.getJobMeta(), e);
             }
-
-            return returnResponse.getJobMeta();
         }
     }
 
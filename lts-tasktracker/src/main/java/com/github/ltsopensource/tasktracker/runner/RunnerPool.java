@@ -1,5 +1,6 @@
 package com.github.ltsopensource.tasktracker.runner;
 
+import com.github.ltsopensource.core.commons.concurrent.ConcurrentHashSet;
 import com.github.ltsopensource.core.constant.EcTopic;
 import com.github.ltsopensource.core.domain.JobMeta;
 import com.github.ltsopensource.core.factory.NamedThreadFactory;
@@ -13,6 +14,7 @@ import com.github.ltsopensource.tasktracker.expcetion.NoAvailableJobRunnerExcept
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.*;
 
 /**
@@ -133,17 +135,34 @@ public class RunnerPool {
     public class RunningJobManager {
 
         private final ConcurrentMap<String/*jobId*/, JobRunnerDelegate> JOBS = new ConcurrentHashMap<String, JobRunnerDelegate>();
+        // 已经收到还没有开始执行的任务, JobTracker询问时也算在执行, 否则会被当成死任务重新分发
+        private final Set<String/*jobId*/> PENDING_JOBS = new ConcurrentHashSet<String>();
 
         public void in(String jobId, JobRunnerDelegate jobRunnerDelegate) {
             JOBS.putIfAbsent(jobId, jobRunnerDelegate);
+            PENDING_JOBS.remove(jobId);
         }
 
         public void out(String jobId) {
             JOBS.remove(jobId);
         }
 
+        /**
+         * 收到任务, 还没有开始执行
+         */
+        public void pending(String jobId) {
+            PENDING_JOBS.add(jobId);
+        }
+
+        /**
+         * 不会再执行了(例如停止时还没执行的), 之后询问时返回不存在
+         */
+        public void unPending(String jobId) {
+            PENDING_JOBS.remove(jobId);
+        }
+
         public boolean running(String jobId) {
-            return JOBS.containsKey(jobId);
+            return JOBS.containsKey(jobId) || PENDING_JOBS.contains(jobId);
         }
 
         /**
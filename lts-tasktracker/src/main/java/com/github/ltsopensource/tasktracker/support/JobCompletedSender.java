@@ -0,0 +1,301 @@
+package com.github.ltsopensource.tasktracker.support;
+
+import com.github.ltsopensource.core.commons.utils.CollectionUtils;
+import com.github.ltsopensource.core.constant.ExtConfig;
+import com.github.ltsopensource.core.domain.JobMeta;
+import com.github.ltsopensource.core.domain.JobRunResult;
+import com.github.ltsopensource.core.exception.JobTrackerNotFoundException;
+import com.github.ltsopensource.core.json.JSON;
+import com.github.ltsopensource.core.logger.Logger;
+import com.github.ltsopensource.core.logger.LoggerFactory;
+import com.github.ltsopensource.core.protocol.JobProtos;
+import com.github.ltsopensource.core.protocol.command.JobCompletedRequest;
+import com.github.ltsopensource.core.protocol.command.JobPushRequest;
+import com.github.ltsopensource.core.support.SystemClock;
+import com.github.ltsopensource.remoting.AsyncCallback;
+import com.github.ltsopensource.remoting.ResponseFuture;
+import com.github.ltsopensource.remoting.protocol.RemotingCommand;
+import com.github.ltsopensource.remoting.protocol.RemotingProtos;
+import com.github.ltsopensource.tasktracker.domain.TaskTrackerAppContext;
+import com.github.ltsopensource.tasktracker.expcetion.NoAvailableJobRunnerException;
+import com.github.ltsopensource.tasktracker.runner.RunnerCallback;
+import com.github.ltsopensource.tasktracker.runner.RunnerPool;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 任务执行结果的异步反馈通道
+ * 1. 执行线程只把结果入队, 不等待网络
+ * 2. 发送线程取到第一条之后最多等 lingerMillis, 把所有执行线程的结果合并成一个 JobCompletedRequest 异步发送
+ * 3. JobTracker 返回的新任务交给线程池执行, 线程池满了的放到待执行队列, 由下一个执行完的线程取走
+ * 4. 只按空闲线程和这一批中要新任务的执行线程要, 不多要; 待执行队列中的任务在 RunningJobManager 中登记,
+ *    JobTracker 询问(JOB_ASK)时算在执行, 不会被当成死任务重新分发
+ */
+public abstract class JobCompletedSender {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JobCompletedSender.class);
+
+    private final TaskTrackerAppContext appContext;
+    private final RunnerCallback callback;
+    // 每个在执行的任务最多一条, 不用限制大小
+    private final BlockingQueue<Completed> queue = new LinkedBlockingQueue<Completed>();
+    // JobTracker 返回的, 线程池满了还没有执行的任务
+    private final BlockingDeque<JobMeta> pendingJobs = new LinkedBlockingDeque<JobMeta>();
+    private final int batchSize;
+    private final long lingerMillis;
+    // 已经发出去还没有返回的新任务个数
+    private final AtomicInteger inFlightNewJobNum = new AtomicInteger(0);
+    private final AtomicBoolean start = new AtomicBoolean(false);
+    private volatile boolean stopped = false;
+    private Thread sendThread;
+
+    public JobCompletedSender(TaskTrackerAppContext appContext, RunnerCallback callback) {
+        this.appContext = appContext;
+        this.callback = callback;
+        this.batchSize = Math.max(1, appContext.getConfig().getParameter(ExtConfig.TASK_TRACKER_JOB_COMPLETED_BATCH_SIZE, 100));
+        this.lingerMillis = appContext.getConfig().getParameter(ExtConfig.TASK_TRACKER_JOB_COMPLETED_LINGER_MILLIS, 5L);
+        this.sendThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                runSend();
+            }
+        }, "LTS-JobCompleted-Sender");
+        this.sendThread.setDaemon(true);
+    }
+
+    public void start() {
+        if (start.compareAndSet(false, true)) {
+            sendThread.start();
+        }
+    }
+
+    /**
+     * 停止, 把队列中剩下的都发出去
+     */
+    public void stop() {
+        if (!start.get() || stopped) {
+            return;
+        }
+        stopped = true;
+        releasePending();
+        sendThread.interrupt();
+        try {
+            sendThread.join(5000);
+        } catch (InterruptedException e) {
+            LOGGER.warn("Stop JobCompletedSender interrupted");
+        }
+    }
+
+    /**
+     * 入队, 不阻塞
+     */
+    public void offer(JobRunResult jobRunResult, boolean receiveNewJob) {
+        queue.offer(new Completed(jobRunResult, receiveNewJob));
+        if (stopped) {
+            // 停止之后入队的直接按失败处理
+            List<Completed> left = new ArrayList<Completed>();
+            queue.drainTo(left);
+            if (left.size() > 0) {
+                onFailed(getResults(left));
+            }
+        }
+    }
+
+    /**
+     * 取一个待执行的任务, 没有返回null
+     */
+    public JobMeta pollPendingJob() {
+        return pendingJobs.poll();
+    }
+
+    private void runSend() {
+        List<Completed> batch = new ArrayList<Completed>(batchSize);
+        while (!stopped) {
+            // 执行线程刚好都退出了的时候, 待执行的任务没有线程来取
+            executePending();
+            try {
+                collect(batch);
+            } catch (InterruptedException ignored) {
+            }
+            if (batch.size() > 0) {
+                send(batch);
+                batch = new ArrayList<Completed>(batchSize);
+            }
+        }
+        while (queue.drainTo(batch, batchSize) > 0) {
+            send(batch);
+            batch = new ArrayList<Completed>(batchSize);
+        }
+    }
+
+    /**
+     * 凑够 batchSize 条, 或者第一条之后等了 lingerMillis
+     */
+    private void collect(List<Completed> batch) throws InterruptedException {
+        Completed first = queue.poll(1, TimeUnit.SECONDS);
+        if (first == null) {
+            return;
+        }
+        batch.add(first);
+        long deadline = SystemClock.now() + lingerMillis;
+        while (batch.size() < batchSize) {
+            if (queue.drainTo(batch, batchSize - batch.size()) > 0) {
+                continue;
+            }
+            long wait = deadline - SystemClock.now();
+            if (wait <= 0) {
+                return;
+            }
+            Completed next = queue.poll(wait, TimeUnit.MILLISECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void send(List<Completed> batch) {
+        final List<JobRunResult> results = getResults(batch);
+
+        JobCompletedRequest requestBody = appContext.getCommandBodyWrapper().wrapper(new JobCompletedRequest());
+        requestBody.setJobRunResults(results);
+        final int newJobNum = getNewJobNum(batch);
+        inFlightNewJobNum.addAndGet(newJobNum);
+        if (newJobNum > 0) {
+            requestBody.setReceiveNewJob(true);
+            requestBody.setNewJobNum(newJobNum);
+        }
+        RemotingCommand request = RemotingCommand.createRequestCommand(JobProtos.RequestCode.JOB_COMPLETED.code(), requestBody);
+
+        try {
+            appContext.getRemotingClient().invokeAsync(request, new AsyncCallback() {
+                @Override
+                public void operationComplete(ResponseFuture responseFuture) {
+                    inFlightNewJobNum.addAndGet(-newJobNum);
+                    RemotingCommand commandResponse = responseFuture.getResponseCommand();
+                    if (commandResponse != null && commandResponse.getCode() == RemotingProtos.ResponseCode.SUCCESS.code()) {
+                        JobPushRequest jobPushRequest = commandResponse.getBody();
+                        if (jobPushRequest != null && CollectionUtils.isNotEmpty(jobPushRequest.getJobMetaList())) {
+                            if (LOGGER.isDebugEnabled()) {
+                                LOGGER.debug("Get new job :{}", JSON.toJSONString(jobPushRequest.getJobMetaList()));
+                            }
+                            execute(jobPushRequest.getJobMetaList());
+                        }
+                    } else {
+                        LOGGER.info("Job feedback failed, code={}, size={}", commandResponse != null ? commandResponse.getCode() : null, results.size());
+                        onFailed(results);
+                    }
+                }
+            });
+        } catch (JobTrackerNotFoundException e) {
+            inFlightNewJobNum.addAndGet(-newJobNum);
+            LOGGER.warn("No job tracker available! size={}", results.size());
+            onFailed(results);
+        } catch (Throwable t) {
+            inFlightNewJobNum.addAndGet(-newJobNum);
+            LOGGER.error("Send job results error, size={}", results.size(), t);
+            onFailed(results);
+        }
+    }
+
+    /**
+     * 有执行线程要新任务的时候, 按空闲线程数加上这一批中要新任务的执行线程数(执行完就空闲了)要,
+     * 减去还没执行的和已经在路上的; 不多要, 否则线程都忙的时候任务在待执行队列中等太久
+     */
+    private int getNewJobNum(List<Completed> batch) {
+        int receiveNewJobNum = 0;
+        for (Completed completed : batch) {
+            if (completed.receiveNewJob) {
+                receiveNewJobNum++;
+            }
+        }
+        if (receiveNewJobNum == 0) {
+            return 0;
+        }
+        RunnerPool runnerPool = appContext.getRunnerPool();
+        int capacity = Math.min(runnerPool.getAvailablePoolSize() + receiveNewJobNum, runnerPool.getWorkThread());
+        return Math.max(0, capacity - pendingJobs.size() - inFlightNewJobNum.get());
+    }
+
+    private void execute(List<JobMeta> jobMetas) {
+        RunnerPool.RunningJobManager runningJobManager = appContext.getRunnerPool().getRunningJobManager();
+        for (JobMeta jobMeta : jobMetas) {
+            // 先登记, 开始执行时移除, 中间JobTracker询问也算在执行
+            runningJobManager.pending(jobMeta.getJobId());
+            try {
+                appContext.getRunnerPool().execute(jobMeta, callback);
+            } catch (NoAvailableJobRunnerException e) {
+                // 已经在JobTracker上标记为这个节点执行了, 不能丢
+                pendingJobs.offer(jobMeta);
+                if (stopped) {
+                    // 停止之后才返回的
+                    releasePending();
+                }
+            }
+        }
+    }
+
+    /**
+     * 停止时还没执行的任务不再执行, 取消登记, JobTracker 询问时返回不存在, 由 JobTracker 的死任务检查放回可执行队列
+     */
+    private void releasePending() {
+        List<JobMeta> left = new ArrayList<JobMeta>();
+        pendingJobs.drainTo(left);
+        if (left.isEmpty()) {
+            return;
+        }
+        List<String> jobIds = new ArrayList<String>(left.size());
+        for (JobMeta jobMeta : left) {
+            appContext.getRunnerPool().getRunningJobManager().unPending(jobMeta.getJobId());
+            jobIds.add(jobMeta.getJobId());
+        }
+        LOGGER.warn("JobCompletedSender stopped, release {} pending jobs to JobTracker, jobIds:{}", jobIds.size(), jobIds);
+    }
+
+    private void executePending() {
+        JobMeta jobMeta;
+        while ((jobMeta = pendingJobs.poll()) != null) {
+            try {
+                appContext.getRunnerPool().execute(jobMeta, callback);
+            } catch (NoAvailableJobRunnerException e) {
+                // 先取出来再执行, 不会和执行线程取到同一个
+                pendingJobs.offerFirst(jobMeta);
+                if (stopped) {
+                    releasePending();
+                }
+                return;
+            }
+        }
+    }
+
+    private static List<JobRunResult> getResults(List<Completed> batch) {
+        List<JobRunResult> results = new ArrayList<JobRunResult>(batch.size());
+        for (Completed completed : batch) {
+            results.add(completed.jobRunResult);
+        }
+        return results;
+    }
+
+    /**
+     * 发送失败, 在发送线程或者网络回调线程中调用
+     */
+    protected abstract void onFailed(List<JobRunResult> jobRunResults);
+
+    private static class Completed {
+        private final JobRunResult jobRunResult;
+        private final boolean receiveNewJob;
+
+        Completed(JobRunResult jobRunResult, boolean receiveNewJob) {
+            this.jobRunResult = jobRunResult;
+            this.receiveNewJob = receiveNewJob;
+        }
+    }
+}
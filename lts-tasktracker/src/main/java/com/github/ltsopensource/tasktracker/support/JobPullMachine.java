@@ -14,6 +14,8 @@ import com.github.ltsopensource.ec.EventSubscriber;
 import com.github.ltsopensource.ec.Observer;
 import com.github.ltsopensource.jvmmonitor.JVMConstants;
 import com.github.ltsopensource.jvmmonitor.JVMMonitor;
+import com.github.ltsopensource.remoting.AsyncCallback;
+import com.github.ltsopensource.remoting.ResponseFuture;
 import com.github.ltsopensource.remoting.exception.RemotingCommandFieldCheckException;
 import com.github.ltsopensource.remoting.protocol.RemotingCommand;
 import com.github.ltsopensource.tasktracker.domain.TaskTrackerAppContext;
@@ -21,6 +23,7 @@ import com.github.ltsopensource.tasktracker.domain.TaskTrackerAppContext;
 import java.math.BigDecimal;
 import java.math.MathContext;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
@@ -31,6 +34,7 @@ import java.util.concurrent.atomic.AtomicBoolean;
  * 1. 会订阅JobTracker的可用,不可用消息主题的订阅
  * 2. 只有当JobTracker可用的时候才会去Pull任务
  * 3. Pull只是会给JobTracker发送一个通知
+ * 4. 启用长轮询时, 同一时间只有一个pull请求在JobTracker端挂起, 返回之后立即发起下一次pull
  *
  * @author Robert HG (254963746@qq.com) on 3/25/15.
  */
@@ -47,6 +51,11 @@ public class JobPullMachine {
     private int jobPullFrequency;
     // 是否启用机器资源检查
     private boolean machineResCheckEnable = false;
+    // 是否启用长轮询
+    private boolean longPollEnable = false;
+    private long longPollTimeoutMillis;
+    // 是否有长轮询的pull请求还没有返回
+    private final AtomicBoolean longPolling = new AtomicBoolean(false);
 
     public JobPullMachine(final TaskTrackerAppContext appContext) {
         this.appContext = appContext;
@@ -54,6 +63,10 @@ public class JobPullMachine {
 
         this.machineResCheckEnable = appContext.getConfig().getParameter(ExtConfig.LB_MACHINE_RES_CHECK_ENABLE, false);
 
+        this.longPollEnable = appContext.getConfig().getParameter(ExtConfig.JOB_PULL_LONG_POLL_ENABLE, false);
+        this.longPollTimeoutMillis = appContext.getConfig().getParameter(ExtConfig.JOB_PULL_LONG_POLL_TIMEOUT_MILLIS,
+                Constants.DEFAULT_JOB_PULL_LONG_POLL_TIMEOUT_MILLIS);
+
         appContext.getEventCenter().subscribe(
                 new EventSubscriber(JobPullMachine.class.getSimpleName().concat(appContext.getConfig().getIdentity()),
                         new Observer() {
@@ -78,7 +91,11 @@ public class JobPullMachine {
                         // 如果机器资源不足,那么不去取任务
                         return;
                     }
-                    sendRequest();
+                    if (longPollEnable) {
+                        sendLongPollRequest();
+                    } else {
+                        sendRequest();
+                    }
                 } catch (Exception e) {
                     LOGGER.error("Job pull machine run error!", e);
                 }
@@ -144,6 +161,54 @@ public class JobPullMachine {
         }
     }
 
+    /**
+     * 发送长轮询的Job pull 请求, JobTracker 推送了任务或者超时才会返回
+     */
+    private void sendLongPollRequest() throws RemotingCommandFieldCheckException {
+        if (!longPolling.compareAndSet(false, true)) {
+            return;
+        }
+        boolean sent = false;
+        try {
+            int availableThreads = appContext.getRunnerPool().getAvailablePoolSize();
+            if (availableThreads == 0) {
+                return;
+            }
+            JobPullRequest requestBody = appContext.getCommandBodyWrapper().wrapper(new JobPullRequest());
+            requestBody.setAvailableThreads(availableThreads);
+            requestBody.setLongPollTimeoutMillis(longPollTimeoutMillis);
+            RemotingCommand request = RemotingCommand.createRequestCommand(JobProtos.RequestCode.JOB_PULL.code(), requestBody);
+
+            long timeoutMillis = longPollTimeoutMillis + appContext.getConfig().getInvokeTimeoutMillis();
+            appContext.getRemotingClient().invokeAsync(request, timeoutMillis, new AsyncCallback() {
+                @Override
+                public void operationComplete(ResponseFuture responseFuture) {
+                    longPolling.set(false);
+                    RemotingCommand responseCommand = responseFuture.getResponseCommand();
+                    if (responseCommand == null) {
+                        LOGGER.warn("Job long poll pull request failed! response command is null!");
+                        return;
+                    }
+                    // 老版本的JobTracker会直接返回JOB_PULL_SUCCESS, 这时候按照pull频率来, 不立即发起下一次
+                    if (JobProtos.ResponseCode.JOB_PULL_LONG_POLL_RETURN.code() == responseCommand.getCode()
+                            && start.get()) {
+                        try {
+                            executorService.execute(worker);
+                        } catch (RejectedExecutionException ignored) {
+                        }
+                    }
+                }
+            });
+            sent = true;
+        } catch (JobTrackerNotFoundException e) {
+            LOGGER.warn("no job tracker available!");
+        } finally {
+            if (!sent) {
+                longPolling.set(false);
+            }
+        }
+    }
+
     /**
      * 查看当前机器资源是否足够
      */
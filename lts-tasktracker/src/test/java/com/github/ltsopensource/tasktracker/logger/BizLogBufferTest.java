@@ -0,0 +1,146 @@
+package com.github.ltsopensource.tasktracker.logger;
+
+import com.github.ltsopensource.core.domain.BizLog;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class BizLogBufferTest {
+
+    private static class CollectBizLogBuffer extends BizLogBuffer {
+
+        final List<Integer> batchSizes = new CopyOnWriteArrayList<Integer>();
+        final AtomicInteger flushNum = new AtomicInteger(0);
+        final AtomicInteger overflowNum = new AtomicInteger(0);
+        final long flushSleepMillis;
+
+        CollectBizLogBuffer(int bufferSize, int batchSize, long lingerMillis, long flushSleepMillis) {
+            super("test", bufferSize, batchSize, lingerMillis);
+            this.flushSleepMillis = flushSleepMillis;
+        }
+
+        @Override
+        protected void flush(List<BizLog> bizLogs) {
+            if (flushSleepMillis > 0) {
+                try {
+                    Thread.sleep(flushSleepMillis);
+                } catch (InterruptedException ignored) {
+                }
+            }
+            batchSizes.add(bizLogs.size());
+            flushNum.addAndGet(bizLogs.size());
+        }
+
+        @Override
+        protected void overflow(List<BizLog> bizLogs) {
+            overflowNum.addAndGet(bizLogs.size());
+        }
+    }
+
+    private BizLog newBizLog(int i) {
+        BizLog bizLog = new BizLog();
+        bizLog.setJobId("job_" + i);
+        bizLog.setMsg("msg_" + i);
+        return bizLog;
+    }
+
+    @Test
+    public void testBatchBySize() throws Exception {
+        CollectBizLogBuffer buffer = new CollectBizLogBuffer(1000, 10, 60000, 0);
+        for (int i = 0; i < 100; i++) {
+            buffer.offer(newBizLog(i));
+        }
+        buffer.start();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (buffer.flushNum.get() < 100 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(100, buffer.flushNum.get());
+        for (Integer batchSize : buffer.batchSizes) {
+            Assert.assertEquals(10, batchSize.intValue());
+        }
+        buffer.stop();
+    }
+
+    @Test
+    public void testBatchByLinger() throws Exception {
+        CollectBizLogBuffer buffer = new CollectBizLogBuffer(1000, 100, 50, 0);
+        buffer.start();
+        for (int i = 0; i < 5; i++) {
+            buffer.offer(newBizLog(i));
+        }
+        Thread.sleep(500);
+        // 不够一批, 等待 linger 之后也要发送
+        Assert.assertEquals(5, buffer.flushNum.get());
+        Assert.assertEquals(1, buffer.batchSizes.size());
+        buffer.stop();
+    }
+
+    @Test
+    public void testOverflow() throws Exception {
+        CollectBizLogBuffer buffer = new CollectBizLogBuffer(10, 10, 50, 0);
+        // 没有启动, 不会消费
+        for (int i = 0; i < 15; i++) {
+            buffer.offer(newBizLog(i));
+        }
+        Assert.assertEquals(10, buffer.size());
+        Assert.assertEquals(5, buffer.overflowNum.get());
+    }
+
+    @Test
+    public void testFlushOnStop() throws Exception {
+        CollectBizLogBuffer buffer = new CollectBizLogBuffer(1000, 10, 60000, 20);
+        buffer.start();
+        for (int i = 0; i < 200; i++) {
+            buffer.offer(newBizLog(i));
+        }
+        buffer.stop();
+        Assert.assertEquals(200, buffer.flushNum.get());
+        Assert.assertEquals(0, buffer.size());
+
+        // 停止之后的直接 overflow
+        buffer.offer(newBizLog(200));
+        Assert.assertEquals(1, buffer.overflowNum.get());
+    }
+
+    /**
+     * 多个任务线程打日志的吞吐, 缓冲区满了的部分走 overflow
+     */
+    @Test
+    public void testThroughput() throws Exception {
+        final int logNum = 200000;
+        for (int threadNum : new int[]{1, 8, 32}) {
+            final CollectBizLogBuffer buffer = new CollectBizLogBuffer(10000, 200, 50, 0);
+            buffer.start();
+            final AtomicInteger counter = new AtomicInteger(0);
+            final CountDownLatch latch = new CountDownLatch(threadNum);
+            long start = System.nanoTime();
+            for (int t = 0; t < threadNum; t++) {
+                new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        int i;
+                        while ((i = counter.getAndIncrement()) < logNum) {
+                            buffer.offer(newBizLog(i));
+                        }
+                        latch.countDown();
+                    }
+                }).start();
+            }
+            latch.await();
+            long offerCost = System.nanoTime() - start;
+            buffer.stop();
+            long cost = System.nanoTime() - start;
+
+            Assert.assertEquals(logNum, buffer.flushNum.get() + buffer.overflowNum.get());
+            System.out.println("threads:" + threadNum + ", logs:" + logNum
+                    + ", offer lines/s:" + (logNum * 1000000000L / offerCost)
+                    + ", flushed:" + buffer.flushNum.get() + ", overflow:" + buffer.overflowNum.get()
+                    + ", batches:" + buffer.batchSizes.size() + ", total cost(ms):" + cost / 1000000);
+        }
+    }
+}
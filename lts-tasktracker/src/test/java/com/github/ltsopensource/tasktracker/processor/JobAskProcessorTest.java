@@ -0,0 +1,161 @@
+package com.github.ltsopensource.tasktracker.processor;
+
+import com.github.ltsopensource.core.cluster.Config;
+import com.github.ltsopensource.core.cluster.LTSConfig;
+import com.github.ltsopensource.core.cluster.NodeType;
+import com.github.ltsopensource.core.constant.Environment;
+import com.github.ltsopensource.core.domain.Action;
+import com.github.ltsopensource.core.domain.Job;
+import com.github.ltsopensource.core.domain.JobMeta;
+import com.github.ltsopensource.core.domain.JobRunResult;
+import com.github.ltsopensource.core.exception.JobTrackerNotFoundException;
+import com.github.ltsopensource.core.protocol.JobProtos;
+import com.github.ltsopensource.core.protocol.command.CommandBodyWrapper;
+import com.github.ltsopensource.core.protocol.command.JobAskRequest;
+import com.github.ltsopensource.core.protocol.command.JobAskResponse;
+import com.github.ltsopensource.core.protocol.command.JobCompletedRequest;
+import com.github.ltsopensource.core.protocol.command.JobPushRequest;
+import com.github.ltsopensource.core.remoting.RemotingClientDelegate;
+import com.github.ltsopensource.ec.injvm.InjvmEventCenter;
+import com.github.ltsopensource.remoting.AsyncCallback;
+import com.github.ltsopensource.remoting.ResponseFuture;
+import com.github.ltsopensource.remoting.protocol.RemotingCommand;
+import com.github.ltsopensource.remoting.protocol.RemotingProtos;
+import com.github.ltsopensource.tasktracker.Result;
+import com.github.ltsopensource.tasktracker.domain.Response;
+import com.github.ltsopensource.tasktracker.domain.TaskTrackerAppContext;
+import com.github.ltsopensource.tasktracker.monitor.TaskTrackerMStatReporter;
+import com.github.ltsopensource.tasktracker.runner.JobContext;
+import com.github.ltsopensource.tasktracker.runner.JobRunner;
+import com.github.ltsopensource.tasktracker.runner.RunnerCallback;
+import com.github.ltsopensource.tasktracker.runner.RunnerPool;
+import com.github.ltsopensource.tasktracker.support.JobCompletedSender;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 线程池满了放在待执行队列中的任务, JobTracker 询问时也算在执行
+ */
+public class JobAskProcessorTest {
+
+    private static final CountDownLatch STARTED = new CountDownLatch(1);
+    private static final CountDownLatch FINISH = new CountDownLatch(1);
+
+    @Test
+    public void testAskPendingJob() throws Exception {
+        LTSConfig.setEnvironment(Environment.UNIT_TEST);
+
+        Config config = new Config();
+        config.setWorkThreads(1);
+        config.setIdentity("job_ask_processor_test");
+        config.setNodeGroup("test_group");
+        config.setNodeType(NodeType.TASK_TRACKER);
+
+        final TaskTrackerAppContext appContext = new TaskTrackerAppContext();
+        appContext.setConfig(config);
+        appContext.setEventCenter(new InjvmEventCenter());
+        appContext.setCommandBodyWrapper(new CommandBodyWrapper(config));
+        appContext.setJobRunnerClass(BlockingJobRunner.class);
+        appContext.setRunnerPool(new RunnerPool(appContext));
+        appContext.setMStatReporter(new TaskTrackerMStatReporter(appContext));
+
+        final AtomicInteger newJobNum = new AtomicInteger(-1);
+        final CountDownLatch responded = new CountDownLatch(1);
+        appContext.setRemotingClient(new RemotingClientDelegate(null, appContext) {
+            @Override
+            public void invokeAsync(RemotingCommand request, long timeoutMillis, AsyncCallback asyncCallback)
+                    throws JobTrackerNotFoundException {
+                JobCompletedRequest requestBody = request.getBody();
+                JobPushRequest jobPushRequest = null;
+                if (requestBody.isReceiveNewJob()) {
+                    newJobNum.set(requestBody.getNewJobNum());
+                    jobPushRequest = new JobPushRequest();
+                    jobPushRequest.setJobMetaList(Collections.singletonList(newJobMeta("job_pending")));
+                }
+                ResponseFuture responseFuture = new ResponseFuture(0, 1000, asyncCallback, null);
+                responseFuture.putResponse(RemotingCommand.createResponseCommand(RemotingProtos.ResponseCode.SUCCESS.code(), jobPushRequest));
+                responseFuture.executeInvokeCallback();
+                responded.countDown();
+            }
+        });
+
+        final JobCompletedSender[] sender = new JobCompletedSender[1];
+        RunnerCallback callback = new RunnerCallback() {
+            @Override
+            public JobMeta runComplete(Response response) {
+                return null;
+            }
+        };
+        sender[0] = new JobCompletedSender(appContext, callback) {
+            @Override
+            protected void onFailed(List<JobRunResult> jobRunResults) {
+            }
+        };
+        sender[0].start();
+        JobAskProcessor processor = new JobAskProcessor(appContext);
+        try {
+            // 唯一的线程在执行
+            appContext.getRunnerPool().execute(newJobMeta("job_running"), callback);
+            Assert.assertTrue(STARTED.await(5, TimeUnit.SECONDS));
+
+            // 另一个任务执行完要新任务, 返回的新任务没有线程执行, 放到待执行队列
+            JobRunResult jobRunResult = new JobRunResult();
+            jobRunResult.setJobMeta(newJobMeta("job_done"));
+            jobRunResult.setAction(Action.EXECUTE_SUCCESS);
+            sender[0].offer(jobRunResult, true);
+            Assert.assertTrue(responded.await(5, TimeUnit.SECONDS));
+            // 只按要新任务的线程要, 不多要
+            Assert.assertEquals(1, newJobNum.get());
+
+            Assert.assertEquals(Arrays.asList("job_unknown"), ask(processor, "job_running", "job_pending", "job_unknown"));
+
+            // 停止之后待执行的不再执行, 询问时返回不存在, 由JobTracker收回
+            sender[0].stop();
+            Assert.assertNull(sender[0].pollPendingJob());
+            Assert.assertEquals(Arrays.asList("job_pending", "job_unknown"), ask(processor, "job_running", "job_pending", "job_unknown"));
+        } finally {
+            FINISH.countDown();
+            sender[0].stop();
+            appContext.getRunnerPool().shutDown();
+        }
+    }
+
+    private List<String> ask(JobAskProcessor processor, String... jobIds) throws Exception {
+        JobAskRequest requestBody = new JobAskRequest();
+        requestBody.setJobIds(new ArrayList<String>(Arrays.asList(jobIds)));
+        RemotingCommand response = processor.processRequest(null,
+                RemotingCommand.createRequestCommand(JobProtos.RequestCode.JOB_ASK.code(), requestBody));
+        Assert.assertEquals(RemotingProtos.ResponseCode.SUCCESS.code(), response.getCode());
+        JobAskResponse responseBody = response.getBody();
+        return responseBody.getJobIds();
+    }
+
+    private static JobMeta newJobMeta(String jobId) {
+        Job job = new Job();
+        job.setTaskId(jobId);
+        JobMeta jobMeta = new JobMeta();
+        jobMeta.setJobId(jobId);
+        jobMeta.setRealTaskId(job.getTaskId());
+        jobMeta.setRepeatedCount(0);
+        jobMeta.setRetryTimes(0);
+        jobMeta.setJob(job);
+        return jobMeta;
+    }
+
+    public static class BlockingJobRunner implements JobRunner {
+        @Override
+        public Result run(JobContext jobContext) throws Throwable {
+            STARTED.countDown();
+            FINISH.await(10, TimeUnit.SECONDS);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.github.ltsopensource.tasktracker.support;
+
+import com.github.ltsopensource.core.cluster.Config;
+import com.github.ltsopensource.core.cluster.LTSConfig;
+import com.github.ltsopensource.core.cluster.NodeType;
+import com.github.ltsopensource.core.constant.Environment;
+import com.github.ltsopensource.core.domain.Job;
+import com.github.ltsopensource.core.domain.JobMeta;
+import com.github.ltsopensource.core.domain.JobRunResult;
+import com.github.ltsopensource.core.exception.JobTrackerNotFoundException;
+import com.github.ltsopensource.core.protocol.command.CommandBodyWrapper;
+import com.github.ltsopensource.core.protocol.command.JobCompletedRequest;
+import com.github.ltsopensource.core.protocol.command.JobPushRequest;
+import com.github.ltsopensource.core.remoting.RemotingClientDelegate;
+import com.github.ltsopensource.ec.injvm.InjvmEventCenter;
+import com.github.ltsopensource.remoting.AsyncCallback;
+import com.github.ltsopensource.remoting.ResponseFuture;
+import com.github.ltsopensource.remoting.protocol.RemotingCommand;
+import com.github.ltsopensource.remoting.protocol.RemotingProtos;
+import com.github.ltsopensource.tasktracker.Result;
+import com.github.ltsopensource.tasktracker.domain.Response;
+import com.github.ltsopensource.tasktracker.domain.TaskTrackerAppContext;
+import com.github.ltsopensource.tasktracker.monitor.TaskTrackerMStatReporter;
+import com.github.ltsopensource.tasktracker.runner.JobContext;
+import com.github.ltsopensource.tasktracker.runner.JobRunner;
+import com.github.ltsopensource.tasktracker.runner.RunnerCallback;
+import com.github.ltsopensource.tasktracker.runner.RunnerPool;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class JobCompletedSenderTest {
+
+    private static final int JOB_NUM = 2000;
+    private static final int WORK_THREADS = 8;
+    // 模拟的网络往返时间
+    private static final long RTT_MILLIS = 10;
+
+    /**
+     * 模拟JobTracker, 每次反馈按 newJobNum 返回新任务, 直到发完 JOB_NUM 个
+     */
+    @Test
+    public void testBatchFeedback() throws Exception {
+        LTSConfig.setEnvironment(Environment.UNIT_TEST);
+
+        Config config = new Config();
+        config.setWorkThreads(WORK_THREADS);
+        config.setIdentity("job_completed_sender_test");
+        config.setNodeGroup("test_group");
+        config.setNodeType(NodeType.TASK_TRACKER);
+
+        final TaskTrackerAppContext appContext = new TaskTrackerAppContext();
+        appContext.setConfig(config);
+        appContext.setEventCenter(new InjvmEventCenter());
+        appContext.setCommandBodyWrapper(new CommandBodyWrapper(config));
+        appContext.setJobRunnerClass(QuickJobRunner.class);
+        appContext.setRunnerPool(new RunnerPool(appContext));
+        appContext.setMStatReporter(new TaskTrackerMStatReporter(appContext));
+
+        final AtomicInteger dispatched = new AtomicInteger(0);
+        final AtomicInteger completed = new AtomicInteger(0);
+        final AtomicInteger requestNum = new AtomicInteger(0);
+        final ExecutorService network = Executors.newCachedThreadPool();
+        appContext.setRemotingClient(new RemotingClientDelegate(null, appContext) {
+            @Override
+            public void invokeAsync(RemotingCommand request, long timeoutMillis, final AsyncCallback asyncCallback)
+                    throws JobTrackerNotFoundException {
+                requestNum.incrementAndGet();
+                final JobCompletedRequest requestBody = request.getBody();
+                completed.addAndGet(requestBody.getJobRunResults().size());
+                network.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            Thread.sleep(RTT_MILLIS);
+                        } catch (InterruptedException ignored) {
+                        }
+                        JobPushRequest jobPushRequest = null;
+                        if (requestBody.isReceiveNewJob()) {
+                            jobPushRequest = new JobPushRequest();
+                            jobPushRequest.setJobMetaList(newJobs(dispatched, Math.max(requestBody.getNewJobNum(), 1)));
+                        }
+                        ResponseFuture responseFuture = new ResponseFuture(0, 1000, asyncCallback, null);
+                        responseFuture.putResponse(RemotingCommand.createResponseCommand(RemotingProtos.ResponseCode.SUCCESS.code(), jobPushRequest));
+                        responseFuture.executeInvokeCallback();
+                    }
+                });
+            }
+        });
+
+        final List<JobRunResult> failed = new ArrayList<JobRunResult>();
+        final JobCompletedSender[] sender = new JobCompletedSender[1];
+        RunnerCallback callback = new RunnerCallback() {
+            @Override
+            public JobMeta runComplete(Response response) {
+                JobRunResult jobRunResult = new JobRunResult();
+                jobRunResult.setJobMeta(response.getJobMeta());
+                jobRunResult.setAction(response.getAction());
+                sender[0].offer(jobRunResult, response.isReceiveNewJob());
+                return response.isReceiveNewJob() ? sender[0].pollPendingJob() : null;
+            }
+        };
+        sender[0] = new JobCompletedSender(appContext, callback) {
+            @Override
+            protected void onFailed(List<JobRunResult> jobRunResults) {
+                failed.addAll(jobRunResults);
+            }
+        };
+        sender[0].start();
+
+        long start = System.nanoTime();
+        for (JobMeta jobMeta : newJobs(dispatched, WORK_THREADS)) {
+            appContext.getRunnerPool().execute(jobMeta, callback);
+        }
+        long deadline = System.currentTimeMillis() + 30000;
+        while (completed.get() < JOB_NUM && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1L);
+        }
+        long cost = System.nanoTime() - start;
+        sender[0].stop();
+        network.shutdown();
+        network.awaitTermination(1, TimeUnit.SECONDS);
+
+        System.out.println("completed:" + completed.get() + ", requests:" + requestNum.get()
+                + ", jobs/s:" + (completed.get() * 1000000000L / cost)
+                + ", one request per job would be at most:" + (WORK_THREADS * 1000 / RTT_MILLIS) + " jobs/s");
+        Assert.assertEquals(JOB_NUM, completed.get());
+        Assert.assertTrue(failed.isEmpty());
+        // 多个执行线程的结果合并到一个请求中
+        Assert.assertTrue(requestNum.get() < JOB_NUM);
+    }
+
+    private static List<JobMeta> newJobs(AtomicInteger dispatched, int size) {
+        List<JobMeta> jobMetas = new ArrayList<JobMeta>();
+        for (int i = 0; i < size; i++) {
+            int id = dispatched.incrementAndGet();
+            if (id > JOB_NUM) {
+                break;
+            }
+            Job job = new Job();
+            job.setTaskId("task_" + id);
+            JobMeta jobMeta = new JobMeta();
+            jobMeta.setJobId("job_" + id);
+            jobMeta.setRealTaskId(job.getTaskId());
+            jobMeta.setRepeatedCount(0);
+            jobMeta.setRetryTimes(0);
+            jobMeta.setJob(job);
+            jobMetas.add(jobMeta);
+        }
+        return jobMetas;
+    }
+
+    public static class QuickJobRunner implements JobRunner {
+        @Override
+        public Result run(JobContext jobContext) throws Throwable {
+            return null;
+        }
+    }
+}